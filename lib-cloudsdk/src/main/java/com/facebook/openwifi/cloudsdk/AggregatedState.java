@@ -42,6 +42,13 @@ public class AggregatedState {
 		/** Constructor with no args */
 		private AggregatedRate() {}
 
+		/** Copy constructor. */
+		private AggregatedRate(AggregatedRate rate) {
+			this.bitRate = rate.bitRate;
+			this.chWidth = rate.chWidth;
+			this.mcs = new ArrayList<>(rate.mcs);
+		}
+
 		/** Add a Rate to the AggregatedRate */
 		private void add(Rate rate) {
 			if (rate == null) {
@@ -141,6 +148,34 @@ public class AggregatedState {
 		this.radio = new Radio();
 	}
 
+	/**
+	 * Copy constructor. Aggregated fields are deep-copied, so that adding to
+	 * the copy does not modify the original.
+	 */
+	public AggregatedState(AggregatedState state) {
+		this.bssid = state.bssid;
+		this.station = state.station;
+		this.connected = state.connected;
+		this.inactive = state.inactive;
+		this.rssi = new ArrayList<>(state.rssi);
+		this.rxBytes = state.rxBytes;
+		this.rxPackets = state.rxPackets;
+		this.rxRate = new AggregatedRate(state.rxRate);
+		this.txBytes = state.txBytes;
+		this.txDuration = state.txDuration;
+		this.txFailed = state.txFailed;
+		this.txPackets = state.txPackets;
+		this.txRate = new AggregatedRate(state.txRate);
+		this.txRetries = state.txRetries;
+		this.ackSignal = state.ackSignal;
+		this.ackSignalAvg = state.ackSignalAvg;
+		this.radio = new Radio(
+			state.radio.channel,
+			state.radio.channelWidth,
+			state.radio.txPower
+		);
+	}
+
 	/** Construct from Association and radio */
 	public AggregatedState(
 		Association association,
@@ -177,7 +212,8 @@ public class AggregatedState {
 	 * @return boolean return true if the two matches for aggregation.
 	 */
 	public boolean matchesForAggregation(AggregatedState state) {
-		return bssid == state.bssid && station == state.station &&
+		return Objects.equals(bssid, state.bssid) &&
+			Objects.equals(station, state.station) &&
 			Objects.equals(radio, state.radio);
 	}
 
@@ -12,6 +12,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
 
 import org.json.JSONArray;
@@ -42,6 +43,7 @@ import com.google.gson.JsonSyntaxException;
 import kong.unirest.Config;
 import kong.unirest.FailedResponse;
 import kong.unirest.GetRequest;
+import kong.unirest.HttpRequest;
 import kong.unirest.HttpRequestSummary;
 import kong.unirest.HttpRequestWithBody;
 import kong.unirest.HttpResponse;
@@ -112,6 +114,17 @@ public class UCentralClient {
 		Unirest.config().verifySsl(enable);
 	}
 
+	/**
+	 * Set the maximum number of concurrent connections, in total and per
+	 * route. This limits the number of requests in flight at once, including
+	 * asynchronous requests (ex. {@link #wifiScanAsync(String, boolean)}).
+	 * This should be set only during initialization, otherwise it may NOT take
+	 * effect.
+	 */
+	public static void setConcurrency(int maxTotal, int maxPerRoute) {
+		Unirest.config().concurrency(maxTotal, maxPerRoute);
+	}
+
 	/** Gson instance */
 	private final Gson gson = new Gson();
 
@@ -373,6 +386,23 @@ public class UCentralClient {
 		Object body,
 		int connectTimeoutMs,
 		int socketTimeoutMs
+	) {
+		return buildPost(
+			endpoint,
+			service,
+			body,
+			connectTimeoutMs,
+			socketTimeoutMs
+		).asString();
+	}
+
+	/** Build a POST request with a JSON body using given timeout values. */
+	private HttpRequest<?> buildPost(
+		String endpoint,
+		String service,
+		Object body,
+		int connectTimeoutMs,
+		int socketTimeoutMs
 	) {
 		String url = makeServiceUrl(endpoint, service);
 		HttpRequestWithBody req = Unirest.post(url)
@@ -390,9 +420,9 @@ public class UCentralClient {
 		}
 		if (body != null) {
 			req.header("Content-Type", "application/json");
-			return req.body(body).asString();
+			return req.body(body);
 		} else {
-			return req.asString();
+			return req;
 		}
 	}
 
@@ -469,6 +499,49 @@ public class UCentralClient {
 			connectTimeoutMs,
 			wifiScanTimeoutMs
 		);
+		return parseWifiScanResponse(response);
+	}
+
+	/**
+	 * Launch a wifi scan for a device (by serial number) without blocking the
+	 * calling thread.
+	 * <p>
+	 * The returned future completes with the same result as
+	 * {@link #wifiScan(String, boolean)} (i.e. null upon failure), and never
+	 * completes exceptionally. Note that dependent actions may run on the HTTP
+	 * client's I/O thread, so any blocking work should be moved elsewhere.
+	 */
+	public CompletableFuture<CommandInfo> wifiScanAsync(
+		String serialNumber,
+		boolean verbose
+	) {
+		WifiScanRequest req = new WifiScanRequest();
+		req.serialNumber = serialNumber;
+		req.verbose = verbose;
+		CompletableFuture<HttpResponse<String>> future;
+		try {
+			future = buildPost(
+				String.format("device/%s/wifiscan", serialNumber),
+				OWGW_SERVICE,
+				req,
+				connectTimeoutMs,
+				wifiScanTimeoutMs
+			).asStringAsync();
+		} catch (Exception e) {
+			logger.error("Failed to send wifi scan request", e);
+			return CompletableFuture.completedFuture(null);
+		}
+		return future.handle((response, e) -> {
+			if (e != null) {
+				logger.error("Wifi scan request failed", e);
+				return null;
+			}
+			return parseWifiScanResponse(response);
+		});
+	}
+
+	/** Parse a wifi scan response, returning null upon failure. */
+	private CommandInfo parseWifiScanResponse(HttpResponse<String> response) {
 		if (!response.isSuccess()) {
 			logger.error("Error: {}", response.getBody());
 			return null;
@@ -109,10 +109,7 @@ public class UCentralUtils {
 				.getAsJsonObject("status")
 				.getAsJsonArray("scan");
 			for (JsonElement e : scanInfo) {
-				WifiScanEntry entry = gson.fromJson(e, WifiScanEntry.class);
-				entry.unixTimeMs = timestampMs;
-				extractIEs(e, entry);
-				entries.add(entry);
+				entries.add(parseWifiScanEntry(e, timestampMs));
 			}
 		} catch (Exception e) {
 			logger.debug("Exception when parsing wifiscan entries", e);
@@ -121,6 +118,24 @@ public class UCentralUtils {
 		return entries;
 	}
 
+	/**
+	 * Parse a single JSON wifi scan entry (an element of "status.scan") into
+	 * a WifiScanEntry object, including its information elements.
+	 *
+	 * @param e           the wifiscan entry JSON
+	 * @param timestampMs Unix time in ms
+	 * @throws com.google.gson.JsonParseException on deserialization errors
+	 */
+	public static WifiScanEntry parseWifiScanEntry(
+		JsonElement e,
+		long timestampMs
+	) {
+		WifiScanEntry entry = gson.fromJson(e, WifiScanEntry.class);
+		entry.unixTimeMs = timestampMs;
+		extractIEs(e, entry);
+		return entry;
+	}
+
 	/**
 	 * Extract desired information elements (IEs) from the wifiscan entry.
 	 * Modifies {@code entry} argument. Skips invalid IEs (IEs with missing
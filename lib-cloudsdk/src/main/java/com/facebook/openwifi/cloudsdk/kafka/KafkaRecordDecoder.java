@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.cloudsdk.kafka;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.facebook.openwifi.cloudsdk.UCentralUtils;
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaConsumer.KafkaRecord;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Streaming decoder for uCentral Kafka records.
+ *
+ * Record values are read in a single pass with a {@link JsonReader}, binding
+ * the fields of interest directly into typed objects instead of first
+ * building a JSON tree for the whole message. Reading stops as soon as the
+ * field of interest has been decoded.
+ */
+public class KafkaRecordDecoder {
+	/** The Gson instance. */
+	private static final Gson gson = new Gson();
+
+	/** The State adapter. */
+	private static final TypeAdapter<State> stateAdapter =
+		gson.getAdapter(State.class);
+
+	/** The JSON tree adapter (used for individual wifi scan entries). */
+	private static final TypeAdapter<JsonElement> jsonElementAdapter =
+		gson.getAdapter(JsonElement.class);
+
+	// This class should not be instantiated.
+	private KafkaRecordDecoder() {}
+
+	/**
+	 * Decode a record from the state topic, reading "payload.state".
+	 *
+	 * @param serialNumber the device serial number (record key)
+	 * @param value the record value JSON
+	 * @param timestampMs the record timestamp (Unix time, in ms)
+	 * @return the decoded record, or null if there is no payload object
+	 * @throws IOException if the value is not valid JSON
+	 * @throws com.google.gson.JsonParseException on deserialization errors
+	 */
+	public static KafkaRecord decodeStateRecord(
+		String serialNumber,
+		String value,
+		long timestampMs
+	) throws IOException {
+		JsonReader reader = newPayloadReader(value);
+		if (reader == null) {
+			return null;
+		}
+		State state = null;
+		while (reader.hasNext()) {
+			if (
+				reader.nextName().equals("state") &&
+					reader.peek() == JsonToken.BEGIN_OBJECT
+			) {
+				state = stateAdapter.read(reader);
+				break;
+			}
+			reader.skipValue();
+		}
+		return new KafkaRecord(serialNumber, timestampMs, state, null, value);
+	}
+
+	/**
+	 * Decode a record from the wifiscan topic, reading "payload.status.scan".
+	 *
+	 * Each scan entry is still materialized as a small JSON tree, which is
+	 * needed to extract its information elements (IEs).
+	 *
+	 * @param serialNumber the device serial number (record key)
+	 * @param value the record value JSON
+	 * @param timestampMs the record timestamp (Unix time, in ms)
+	 * @return the decoded record, or null if there is no payload object
+	 * @throws IOException if the value is not valid JSON
+	 * @throws com.google.gson.JsonParseException on deserialization errors
+	 */
+	public static KafkaRecord decodeWifiScanRecord(
+		String serialNumber,
+		String value,
+		long timestampMs
+	) throws IOException {
+		JsonReader reader = newPayloadReader(value);
+		if (reader == null) {
+			return null;
+		}
+		List<WifiScanEntry> entries = null;
+		while (reader.hasNext()) {
+			if (
+				reader.nextName().equals("status") &&
+					reader.peek() == JsonToken.BEGIN_OBJECT
+			) {
+				entries = readScanEntries(reader, timestampMs);
+				break;
+			}
+			reader.skipValue();
+		}
+		return new KafkaRecord(serialNumber, timestampMs, null, entries, value);
+	}
+
+	/**
+	 * Create a lenient reader (consistent with {@link Gson#fromJson}) over a
+	 * record value, positioned at the first field of its "payload" object, or
+	 * return null if there is no such object.
+	 *
+	 * @throws IOException if the value is not valid JSON
+	 */
+	static JsonReader newPayloadReader(String value) throws IOException {
+		JsonReader reader = new JsonReader(new StringReader(value));
+		reader.setLenient(true);
+		return enterPayload(reader) ? reader : null;
+	}
+
+	/**
+	 * Advance the reader into the top-level "payload" object, returning false
+	 * if there is no such object.
+	 */
+	private static boolean enterPayload(JsonReader reader) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("payload")) {
+				if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+					return false;
+				}
+				reader.beginObject();
+				return true;
+			}
+			reader.skipValue();
+		}
+		return false;
+	}
+
+	/**
+	 * Read the "scan" entries from a "status" object, or return null if
+	 * there are none.
+	 */
+	private static List<WifiScanEntry> readScanEntries(
+		JsonReader reader,
+		long timestampMs
+	) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (
+				!reader.nextName().equals("scan") ||
+					reader.peek() != JsonToken.BEGIN_ARRAY
+			) {
+				reader.skipValue();
+				continue;
+			}
+			List<WifiScanEntry> entries = new ArrayList<>();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				JsonElement e = jsonElementAdapter.read(reader);
+				entries.add(UCentralUtils.parseWifiScanEntry(e, timestampMs));
+			}
+			reader.endArray();
+			return Collections.unmodifiableList(entries);
+		}
+		return null;
+	}
+}
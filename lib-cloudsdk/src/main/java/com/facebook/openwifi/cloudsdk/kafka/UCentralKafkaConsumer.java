@@ -8,6 +8,7 @@
 
 package com.facebook.openwifi.cloudsdk.kafka;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,9 +31,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.facebook.openwifi.cloudsdk.UCentralClient;
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
 import com.facebook.openwifi.cloudsdk.models.gw.ServiceEvent;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 /**
  * Kafka consumer for uCentral.
@@ -62,14 +67,16 @@ public class UCentralKafkaConsumer {
 	/** The Gson instance. */
 	private final Gson gson = new Gson();
 
-	/** Representation of Kafka record. */
+	/**
+	 * Representation of Kafka record.
+	 *
+	 * Records are decoded once by {@link KafkaRecordDecoder}, and the decoded
+	 * objects are shared by all listeners.
+	 */
 	public static class KafkaRecord {
 		/** The device serial number. */
 		public final String serialNumber;
 
-		/** The state payload JSON. */
-		public final JsonObject payload;
-
 		/**
 		 * The record timestamp (Unix time, in ms).
 		 *
@@ -78,15 +85,60 @@ public class UCentralKafkaConsumer {
 		 */
 		public final long timestampMs;
 
+		/** The decoded state (state records only, or null if missing). */
+		public final State state;
+
+		/**
+		 * The decoded, unmodifiable wifi scan entries (wifiscan records only,
+		 * or null if missing).
+		 */
+		public final List<WifiScanEntry> wifiScanEntries;
+
+		/** The raw record value JSON. */
+		private final String value;
+
+		/** The payload JSON, parsed lazily from {@link #value}. */
+		private JsonObject payload;
+
 		/** Constructor. */
 		public KafkaRecord(
 			String serialNumber,
-			JsonObject payload,
-			long timestampMs
+			long timestampMs,
+			State state,
+			List<WifiScanEntry> wifiScanEntries,
+			String value
 		) {
 			this.serialNumber = serialNumber;
-			this.payload = payload;
 			this.timestampMs = timestampMs;
+			this.state = state;
+			this.wifiScanEntries = wifiScanEntries;
+			this.value = value;
+		}
+
+		/**
+		 * Return the raw payload JSON, which is parsed from the record value
+		 * on first access. Listeners should use the decoded fields or
+		 * {@link #newPayloadReader()} instead wherever possible.
+		 */
+		public synchronized JsonObject getPayload() {
+			if (payload == null) {
+				payload = JsonParser.parseString(value)
+					.getAsJsonObject()
+					.getAsJsonObject("payload");
+			}
+			return payload;
+		}
+
+		/**
+		 * Return a new streaming reader over the raw record value, positioned
+		 * at the first field of the payload object, or null if there is no
+		 * payload object. Unlike {@link #getPayload()}, this does not build a
+		 * JSON tree.
+		 *
+		 * @throws IOException if the value is not valid JSON
+		 */
+		public JsonReader newPayloadReader() throws IOException {
+			return KafkaRecordDecoder.newPayloadReader(value);
 		}
 	}
 
@@ -105,6 +157,35 @@ public class UCentralKafkaConsumer {
 
 		/** Handle a list of service event records. */
 		void handleServiceEventRecords(List<ServiceEvent> serviceEventRecords);
+
+		/**
+		 * Return true if state records for the given device should be passed
+		 * to this listener. This is checked using only the record key (device
+		 * serial number), before the record is decoded.
+		 */
+		default boolean acceptsStateRecord(String serialNumber) {
+			return true;
+		}
+
+		/**
+		 * Return true if wifi scan records for the given device should be
+		 * passed to this listener. This is checked using only the record key
+		 * (device serial number), before the record is decoded.
+		 */
+		default boolean acceptsWifiScanRecord(String serialNumber) {
+			return true;
+		}
+
+		/**
+		 * Return true if this listener cannot keep up with incoming records.
+		 *
+		 * While any listener is saturated, the consumer pauses fetching from
+		 * the state and wifiscan topics (service events are still consumed).
+		 * This is checked once per {@link UCentralKafkaConsumer#poll()}.
+		 */
+		default boolean isSaturated() {
+			return false;
+		}
 	}
 
 	/** Kafka record listeners. */
@@ -227,11 +308,21 @@ public class UCentralKafkaConsumer {
 
 	/** Poll for data. */
 	public void poll() {
+		applyBackpressure();
 		ConsumerRecords<String, String> records = consumer.poll(pollTimeout);
 		logger.debug("Poll returned with {} record(s)", records.count());
 
-		List<KafkaRecord> stateRecords = new ArrayList<>();
-		List<KafkaRecord> wifiScanRecords = new ArrayList<>();
+		// Records are delivered only to the listeners which accept them
+		List<KafkaListener> listeners =
+			new ArrayList<>(kafkaListeners.values());
+		List<List<KafkaRecord>> stateRecords = new ArrayList<>();
+		List<List<KafkaRecord>> wifiScanRecords = new ArrayList<>();
+		for (int i = 0; i < listeners.size(); i++) {
+			stateRecords.add(new ArrayList<>());
+			wifiScanRecords.add(new ArrayList<>());
+		}
+		boolean[] accepted = new boolean[listeners.size()];
+		int skippedCount = 0;
 		List<ServiceEvent> serviceEventRecords = new ArrayList<>();
 		for (ConsumerRecord<String, String> record : records) {
 			if (record.topic().equals(serviceEventsTopic)) {
@@ -247,12 +338,42 @@ public class UCentralKafkaConsumer {
 					continue;
 				}
 			} else {
-				// Parse payload JSON
-				JsonObject payload = null;
+				boolean isState = record.topic().equals(stateTopic);
+				if (!isState && !record.topic().equals(wifiScanTopic)) {
+					continue;
+				}
+
+				// Skip records that no listener wants before decoding them
+				String serialNumber = record.key();
+				boolean anyAccepted = false;
+				for (int i = 0; i < listeners.size(); i++) {
+					KafkaListener listener = listeners.get(i);
+					accepted[i] = isState
+						? listener.acceptsStateRecord(serialNumber)
+						: listener.acceptsWifiScanRecord(serialNumber);
+					anyAccepted |= accepted[i];
+				}
+				if (!anyAccepted) {
+					skippedCount++;
+					continue;
+				}
+
+				// Decode payload JSON
+				KafkaRecord kafkaRecord = null;
 				try {
-					JsonObject o =
-						gson.fromJson(record.value(), JsonObject.class);
-					payload = o.getAsJsonObject("payload");
+					if (isState) {
+						kafkaRecord = KafkaRecordDecoder.decodeStateRecord(
+							serialNumber,
+							record.value(),
+							record.timestamp()
+						);
+					} else {
+						kafkaRecord = KafkaRecordDecoder.decodeWifiScanRecord(
+							serialNumber,
+							record.value(),
+							record.timestamp()
+						);
+					}
 				} catch (Exception e) {
 					// uCentralGw pushes invalid JSON for empty messages
 					logger.trace(
@@ -261,49 +382,47 @@ public class UCentralKafkaConsumer {
 					);
 					continue;
 				}
-				if (payload == null) {
+				if (kafkaRecord == null) {
 					logger.trace("Offset {}: No payload", record.offset());
 					continue;
 				}
-				if (!payload.isJsonObject()) {
-					logger.trace(
-						"Offset {}: Payload not an object",
-						record.offset()
-					);
-					continue;
-				}
 
 				// Process records by topic
-				String serialNumber = record.key();
 				logger.trace(
 					"Offset {}: {} => {}",
 					record.offset(),
 					serialNumber,
-					payload.toString()
+					record.value()
 				);
-				KafkaRecord kafkaRecord =
-					new KafkaRecord(serialNumber, payload, record.timestamp());
-				if (record.topic().equals(stateTopic)) {
-					stateRecords.add(kafkaRecord);
-				} else if (record.topic().equals(wifiScanTopic)) {
-					wifiScanRecords.add(kafkaRecord);
+				List<List<KafkaRecord>> recordLists =
+					isState ? stateRecords : wifiScanRecords;
+				for (int i = 0; i < listeners.size(); i++) {
+					if (accepted[i]) {
+						recordLists.get(i).add(kafkaRecord);
+					}
 				}
 			}
 		}
+		if (skippedCount > 0) {
+			logger.debug(
+				"Skipped {} record(s) not accepted by any listener",
+				skippedCount
+			);
+		}
 
 		// Call listeners
-		if (!stateRecords.isEmpty()) {
-			for (KafkaListener listener : kafkaListeners.values()) {
-				listener.handleStateRecords(stateRecords);
+		for (int i = 0; i < listeners.size(); i++) {
+			if (!stateRecords.get(i).isEmpty()) {
+				listeners.get(i).handleStateRecords(stateRecords.get(i));
 			}
 		}
-		if (!wifiScanRecords.isEmpty()) {
-			for (KafkaListener listener : kafkaListeners.values()) {
-				listener.handleWifiScanRecords(wifiScanRecords);
+		for (int i = 0; i < listeners.size(); i++) {
+			if (!wifiScanRecords.get(i).isEmpty()) {
+				listeners.get(i).handleWifiScanRecords(wifiScanRecords.get(i));
 			}
 		}
 		if (!serviceEventRecords.isEmpty()) {
-			for (KafkaListener listener : kafkaListeners.values()) {
+			for (KafkaListener listener : listeners) {
 				listener.handleServiceEventRecords(serviceEventRecords);
 			}
 		}
@@ -312,6 +431,38 @@ public class UCentralKafkaConsumer {
 		consumer.commitAsync();
 	}
 
+	/**
+	 * Pause all assigned state and wifiscan partitions if any listener is
+	 * saturated, otherwise resume any paused partitions.
+	 *
+	 * Newly assigned partitions (after a rebalance) always start unpaused, so
+	 * this is re-applied before every poll.
+	 */
+	private void applyBackpressure() {
+		boolean saturated = kafkaListeners.values()
+			.stream()
+			.anyMatch(KafkaListener::isSaturated);
+		if (saturated) {
+			List<TopicPartition> partitions = consumer.assignment()
+				.stream()
+				.filter(p -> !p.topic().equals(serviceEventsTopic))
+				.collect(Collectors.toList());
+			if (!consumer.paused().containsAll(partitions)) {
+				logger.info(
+					"Listener saturated, pausing {} partition(s)",
+					partitions.size()
+				);
+				consumer.pause(partitions);
+			}
+		} else if (!consumer.paused().isEmpty()) {
+			logger.info(
+				"Resuming {} paused partition(s)",
+				consumer.paused().size()
+			);
+			consumer.resume(consumer.paused());
+		}
+	}
+
 	/**
 	 * Add/overwrite a Kafka listener with an arbitrary identifier.
 	 *
@@ -346,6 +497,16 @@ public class UCentralKafkaConsumer {
 		this.addKafkaListener(
 			"APIKey",
 			new UCentralKafkaConsumer.KafkaListener() {
+				@Override
+				public boolean acceptsStateRecord(String serialNumber) {
+					return false;
+				}
+
+				@Override
+				public boolean acceptsWifiScanRecord(String serialNumber) {
+					return false;
+				}
+
 				@Override
 				public void handleStateRecords(
 					List<UCentralKafkaConsumer.KafkaRecord> records
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.cloudsdk.kafka;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.facebook.openwifi.cloudsdk.UCentralUtils;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Compares per-record decoding cost of Kafka state and wifiscan records
+ * between the streaming {@link KafkaRecordDecoder} and the previous path
+ * (parsing the whole record into a {@link JsonObject}, then re-deserializing
+ * the tree once per listener).
+ *
+ * Each benchmark operation decodes one record, so the GC profiler's
+ * "gc.alloc.rate.norm" metric is the number of bytes allocated per record.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class KafkaRecordDecodeBenchmark {
+	/** Interface counter keys. */
+	private static final String[] COUNTER_KEYS = new String[] {
+		"collisions",
+		"multicast",
+		"rx_bytes",
+		"rx_packets",
+		"rx_errors",
+		"rx_dropped",
+		"tx_bytes",
+		"tx_packets",
+		"tx_errors",
+		"tx_dropped"
+	};
+
+	/** The number of associated clients (and scan entries) per record. */
+	@Param({ "1", "30" })
+	public int clientCount;
+
+	/** The Gson instance. */
+	private final Gson gson = new Gson();
+
+	/** The state record value JSON. */
+	private String stateValue;
+
+	/** The wifiscan record value JSON. */
+	private String wifiScanValue;
+
+	@Setup
+	public void setup() {
+		JsonArray associations = new JsonArray();
+		JsonArray scan = new JsonArray();
+		for (int i = 0; i < clientCount; i++) {
+			String mac = String.format("aa:00:00:00:00:%02x", i);
+			JsonObject rate = new JsonObject();
+			rate.addProperty("bitrate", 263300);
+			rate.addProperty("chwidth", 80);
+			rate.addProperty("mcs", 6);
+			rate.addProperty("nss", 2);
+			rate.addProperty("vht", true);
+			JsonObject association = new JsonObject();
+			association.addProperty("bssid", mac);
+			association.addProperty("station", mac);
+			association.addProperty("connected", 2061);
+			association.addProperty("inactive", 0);
+			association.addProperty("rssi", -73);
+			association.addProperty("rx_bytes", 225426);
+			association.addProperty("rx_packets", 1119);
+			association.add("rx_rate", rate);
+			association.addProperty("tx_bytes", 341611);
+			association.addProperty("tx_packets", 1304);
+			association.add("tx_rate", rate);
+			associations.add(association);
+
+			JsonObject entry = new JsonObject();
+			entry.addProperty("bssid", mac);
+			entry.addProperty("ssid", "test" + i);
+			entry.addProperty("channel", 36);
+			entry.addProperty("frequency", 5180);
+			entry.addProperty("signal", -60);
+			entry.addProperty("tsf", 123456789L);
+			entry.addProperty("last_seen", 1649306810L);
+			entry.addProperty("capability", 1);
+			entry.add("ies", new JsonArray());
+			scan.add(entry);
+		}
+
+		JsonObject counters = new JsonObject();
+		for (String s : COUNTER_KEYS) {
+			counters.addProperty(s, 12345);
+		}
+		JsonObject ssid = new JsonObject();
+		ssid.addProperty("bssid", "bb:00:00:00:00:01");
+		ssid.addProperty("ssid", "test");
+		ssid.add("counters", counters);
+		ssid.add("associations", associations);
+		JsonArray ssids = new JsonArray();
+		ssids.add(ssid);
+		JsonObject iface = new JsonObject();
+		iface.addProperty("name", "up0v0");
+		iface.add("counters", counters);
+		iface.add("ssids", ssids);
+		JsonArray interfaces = new JsonArray();
+		interfaces.add(iface);
+		JsonObject radio = new JsonObject();
+		radio.addProperty("channel", 36);
+		radio.addProperty("channel_width", "80");
+		radio.addProperty("noise", -105);
+		radio.addProperty("tx_power", 24);
+		JsonArray radios = new JsonArray();
+		radios.add(radio);
+		JsonObject unit = new JsonObject();
+		unit.addProperty("localtime", 1649306810L);
+		unit.addProperty("uptime", 73107L);
+		JsonObject state = new JsonObject();
+		state.add("interfaces", interfaces);
+		state.add("radios", radios);
+		state.add("unit", unit);
+		stateValue = wrapPayload("state", state);
+
+		JsonObject status = new JsonObject();
+		status.add("scan", scan);
+		wifiScanValue = wrapPayload("status", status);
+	}
+
+	/** Wrap a payload field into a record value JSON string. */
+	private String wrapPayload(String key, JsonObject o) {
+		JsonObject payload = new JsonObject();
+		payload.addProperty("serial", "aaaaaaaaaaaa");
+		payload.add(key, o);
+		payload.addProperty("uuid", 1);
+		JsonObject value = new JsonObject();
+		value.addProperty("serial", "aaaaaaaaaaaa");
+		value.add("payload", payload);
+		return gson.toJson(value);
+	}
+
+	/**
+	 * Previous state path: parse a tree in the consumer, then deserialize
+	 * "state" separately in Modeler and StationPinger.
+	 */
+	@Benchmark
+	public void stateTree(Blackhole bh) {
+		JsonObject payload = gson.fromJson(stateValue, JsonObject.class)
+			.getAsJsonObject("payload");
+		JsonObject state = payload.getAsJsonObject("state");
+		bh.consume(gson.fromJson(state, State.class));
+		bh.consume(gson.fromJson(state, State.class));
+	}
+
+	/** Streaming state path: decode once, shared by all listeners. */
+	@Benchmark
+	public void stateStreaming(Blackhole bh) throws IOException {
+		bh.consume(
+			KafkaRecordDecoder.decodeStateRecord("a", stateValue, 0).state
+		);
+	}
+
+	/** Previous wifiscan path: parse a tree, then deserialize entries. */
+	@Benchmark
+	public void wifiScanTree(Blackhole bh) {
+		JsonObject payload = gson.fromJson(wifiScanValue, JsonObject.class)
+			.getAsJsonObject("payload");
+		bh.consume(UCentralUtils.parseWifiScanEntries(payload, 0));
+	}
+
+	/** Streaming wifiscan path. */
+	@Benchmark
+	public void wifiScanStreaming(Blackhole bh) throws IOException {
+		bh.consume(
+			KafkaRecordDecoder
+				.decodeWifiScanRecord("a", wifiScanValue, 0).wifiScanEntries
+		);
+	}
+
+	/** Run all benchmarks in this class with the GC (allocation) profiler. */
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+			.include(KafkaRecordDecodeBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(opt).run();
+	}
+}
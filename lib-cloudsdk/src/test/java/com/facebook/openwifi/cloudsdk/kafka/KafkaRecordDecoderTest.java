@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.cloudsdk.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaConsumer.KafkaRecord;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.google.gson.stream.JsonReader;
+
+public class KafkaRecordDecoderTest {
+	@Test
+	void test_decodeStateRecord() throws Exception {
+		// @formatter:off
+		final String value =
+			"{\"serial\":\"aaaaaaaaaaaa\",\"payload\":{\"serial\":" +
+			"\"aaaaaaaaaaaa\",\"state\":{\"interfaces\":[{\"name\":\"up0v0\"," +
+			"\"counters\":{\"rx_bytes\":10825},\"ssids\":[{\"bssid\":" +
+			"\"bb:00:00:00:00:01\",\"associations\":[{\"station\":" +
+			"\"aa:00:00:00:00:01\",\"rssi\":-73,\"rx_rate\":{\"bitrate\":" +
+			"263300,\"vht\":true}}]}]}],\"radios\":[{\"channel\":36," +
+			"\"channel_width\":\"80\",\"tx_power\":24}],\"unit\":" +
+			"{\"localtime\":1649306810,\"uptime\":73107}},\"uuid\":1}}";
+		// @formatter:on
+		KafkaRecord record = KafkaRecordDecoder
+			.decodeStateRecord("aaaaaaaaaaaa", value, 1000L);
+		assertNotNull(record);
+		assertEquals("aaaaaaaaaaaa", record.serialNumber);
+		assertEquals(1000L, record.timestampMs);
+		assertNull(record.wifiScanEntries);
+
+		State state = record.state;
+		assertNotNull(state);
+		assertEquals(1649306810L, state.unit.localtime);
+		assertEquals(36, state.radios[0].channel);
+		assertEquals("80", state.radios[0].channel_width);
+		State.Interface.SSID.Association association =
+			state.interfaces[0].ssids[0].associations[0];
+		assertEquals(-73, association.rssi);
+		assertEquals(263300L, association.rx_rate.bitrate);
+		assertEquals(10825L, state.interfaces[0].counters.rx_bytes);
+
+		// The raw payload is still available on demand
+		assertEquals(
+			73107L,
+			record.getPayload()
+				.getAsJsonObject("state")
+				.getAsJsonObject("unit")
+				.get("uptime")
+				.getAsLong()
+		);
+
+		// ...or as a stream, positioned inside the payload object
+		try (JsonReader reader = record.newPayloadReader()) {
+			assertNotNull(reader);
+			assertEquals("serial", reader.nextName());
+			assertEquals("aaaaaaaaaaaa", reader.nextString());
+			assertEquals("state", reader.nextName());
+		}
+	}
+
+	@Test
+	void test_decodeWifiScanRecord() throws Exception {
+		// @formatter:off
+		final String value =
+			"{\"serial\":\"aaaaaaaaaaaa\",\"payload\":{\"serial\":" +
+			"\"aaaaaaaaaaaa\",\"status\":{\"scan\":[{\"bssid\":" +
+			"\"bb:00:00:00:00:01\",\"channel\":36,\"signal\":-60,\"ies\":" +
+			"[{\"type\":11,\"content\":{\"802.11e CCA Version\":" +
+			"{\"Station Count\":3,\"Channel Utilization\":20," +
+			"\"Available Admission Capabilities\":0}}}]},{\"bssid\":" +
+			"\"bb:00:00:00:00:02\",\"channel\":6,\"signal\":-80}]," +
+			"\"uuid\":1}}}";
+		// @formatter:on
+		KafkaRecord record = KafkaRecordDecoder
+			.decodeWifiScanRecord("aaaaaaaaaaaa", value, 1000L);
+		assertNotNull(record);
+		assertNull(record.state);
+
+		List<WifiScanEntry> entries = record.wifiScanEntries;
+		assertNotNull(entries);
+		assertEquals(2, entries.size());
+		assertEquals("bb:00:00:00:00:01", entries.get(0).bssid);
+		assertEquals(36, entries.get(0).channel);
+		assertEquals(-60, entries.get(0).signal);
+		assertEquals(1000L, entries.get(0).unixTimeMs);
+		assertEquals(3, entries.get(0).ieContainer.qbssLoad.stationCount);
+		assertEquals(6, entries.get(1).channel);
+		assertNull(entries.get(1).ieContainer);
+
+		// Decoded entries are shared by all listeners, so must be read-only
+		assertThrows(
+			UnsupportedOperationException.class,
+			() -> entries.add(new WifiScanEntry())
+		);
+	}
+
+	@Test
+	void test_invalidRecords() throws Exception {
+		// No payload
+		assertNull(
+			KafkaRecordDecoder.decodeStateRecord("a", "{\"serial\":\"a\"}", 0)
+		);
+		assertNull(
+			KafkaRecordDecoder
+				.decodeStateRecord("a", "{\"payload\":\"a\"}", 0)
+		);
+		assertNull(
+			new KafkaRecord("a", 0, null, null, "{\"serial\":\"a\"}")
+				.newPayloadReader()
+		);
+
+		// Payload without the expected fields
+		KafkaRecord record = KafkaRecordDecoder
+			.decodeWifiScanRecord("a", "{\"payload\":{\"status\":{}}}", 0);
+		assertNotNull(record);
+		assertNull(record.wifiScanEntries);
+
+		// Invalid JSON (e.g. empty messages)
+		assertThrows(
+			Exception.class,
+			() -> KafkaRecordDecoder.decodeStateRecord("a", "", 0)
+		);
+	}
+}
@@ -12,12 +12,15 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -53,6 +56,12 @@ public class DeviceDataManager {
 	/** The current device topology. */
 	private DeviceTopology topology;
 
+	/** Map of device serial number to zone, derived from {@link #topology}. */
+	private Map<String, String> deviceZones;
+
+	/** The topology version, incremented upon every topology change. */
+	private volatile long topologyVersion = 0;
+
 	/** The current layered device config. */
 	private DeviceLayeredConfig deviceLayeredConfig;
 
@@ -60,12 +69,38 @@ public class DeviceDataManager {
 	private Map<String, DeviceConfig> cachedDeviceConfigs =
 		new ConcurrentHashMap<>();
 
+	/**
+	 * The device config version, incremented whenever any computed device
+	 * config may have changed (i.e. upon topology or config layer changes).
+	 */
+	private final AtomicLong deviceConfigVersion = new AtomicLong();
+
+	/** Set of devices, stamped with the config version it was computed at. */
+	private static class VersionedDeviceSet {
+		/** The device config version. */
+		public final long version;
+
+		/** The unmodifiable set of device serial numbers. */
+		public final Set<String> serialNumbers;
+
+		/** Constructor. */
+		public VersionedDeviceSet(long version, Set<String> serialNumbers) {
+			this.version = version;
+			this.serialNumbers = serialNumbers;
+		}
+	}
+
+	/** The cached set of RRM-enabled devices. */
+	private volatile VersionedDeviceSet rrmEnabledDevices =
+		new VersionedDeviceSet(-1, Collections.emptySet());
+
 	/** Empty constructor without backing files (ex. for unit tests). */
 	public DeviceDataManager() {
 		this.topologyFile = null;
 		this.deviceLayeredConfigFile = null;
 
 		this.topology = new DeviceTopology();
+		this.deviceZones = new HashMap<>();
 		this.deviceLayeredConfig = new DeviceLayeredConfig();
 	}
 
@@ -82,6 +117,7 @@ public class DeviceDataManager {
 
 		// TODO: should we catch exceptions when reading files?
 		this.topology = readTopology(topologyFile);
+		this.deviceZones = validateTopology(topology);
 		this.deviceLayeredConfig =
 			readDeviceLayeredConfig(deviceLayeredConfigFile);
 	}
@@ -189,8 +225,12 @@ public class DeviceDataManager {
 		}
 	}
 
-	/** Validate the topology, throwing IllegalArgumentException upon error. */
-	private void validateTopology(DeviceTopology topo) {
+	/**
+	 * Validate the topology, throwing IllegalArgumentException upon error.
+	 *
+	 * @return the map of device serial number to zone
+	 */
+	private Map<String, String> validateTopology(DeviceTopology topo) {
 		if (topo == null) {
 			throw new NullPointerException();
 		}
@@ -223,6 +263,7 @@ public class DeviceDataManager {
 				deviceToZone.put(serialNumber, zone);
 			}
 		}
+		return deviceToZone;
 	}
 
 	/**
@@ -272,12 +313,14 @@ public class DeviceDataManager {
 
 	/** Set the topology. May throw unchecked exceptions upon error. */
 	public void setTopology(DeviceTopology topo) {
-		validateTopology(topo);
+		Map<String, String> zones = validateTopology(topo);
 
 		Lock l = topologyLock.writeLock();
 		l.lock();
 		try {
 			this.topology = topo;
+			this.deviceZones = zones;
+			topologyVersion++;
 		} finally {
 			l.unlock();
 		}
@@ -290,7 +333,7 @@ public class DeviceDataManager {
 		}
 
 		// Clear cached device configs
-		cachedDeviceConfigs.clear();
+		invalidateDeviceConfigs();
 	}
 
 	/** Return the topology as a JSON string. */
@@ -329,17 +372,35 @@ public class DeviceDataManager {
 		Lock l = topologyLock.readLock();
 		l.lock();
 		try {
-			for (Map.Entry<String, Set<String>> e : topology.entrySet()) {
-				if (e.getValue().contains(serialNumber)) {
-					return e.getKey();
-				}
-			}
-			return null;
+			return deviceZones.get(serialNumber);
+		} finally {
+			l.unlock();
+		}
+	}
+
+	/** Return the number of devices in the given RF zone (0 if not found). */
+	public int getZoneSize(String zone) {
+		if (zone == null || zone.isEmpty()) {
+			return 0;
+		}
+		Lock l = topologyLock.readLock();
+		l.lock();
+		try {
+			Set<String> devices = topology.get(zone);
+			return devices == null ? 0 : devices.size();
 		} finally {
 			l.unlock();
 		}
 	}
 
+	/**
+	 * Return the topology version, which is incremented upon every topology
+	 * change.
+	 */
+	public long getTopologyVersion() {
+		return topologyVersion;
+	}
+
 	/** Return true if the given device is present in the topology. */
 	public boolean isDeviceInTopology(String serialNumber) {
 		return getDeviceZone(serialNumber) != null;
@@ -375,7 +436,7 @@ public class DeviceDataManager {
 		saveDeviceLayeredConfig();
 
 		// Clear cached device configs
-		cachedDeviceConfigs.clear();
+		invalidateDeviceConfigs();
 	}
 
 	/** Return the device config layers as a JSON string. */
@@ -389,6 +450,12 @@ public class DeviceDataManager {
 		}
 	}
 
+	/** Clear all cached device configs. */
+	private void invalidateDeviceConfigs() {
+		cachedDeviceConfigs.clear();
+		deviceConfigVersion.incrementAndGet();
+	}
+
 	/**
 	 * Compute config for the given device by applying all config layers, or
 	 * return null if not present in the topology.
@@ -486,6 +553,58 @@ public class DeviceDataManager {
 		return configMap;
 	}
 
+	/**
+	 * Return the device config version, which is incremented whenever any
+	 * computed device config may have changed.
+	 */
+	public long getDeviceConfigVersion() {
+		return deviceConfigVersion.get();
+	}
+
+	/**
+	 * Return the unmodifiable set of all devices in the topology which have
+	 * RRM enabled.
+	 *
+	 * The set is cached and only recomputed after the device config version
+	 * changes, so this is cheap enough to call on every Kafka record.
+	 */
+	public Set<String> getRRMEnabledDevices() {
+		VersionedDeviceSet cached = rrmEnabledDevices;
+		long version = deviceConfigVersion.get();
+		if (cached.version == version) {
+			return cached.serialNumbers;
+		}
+
+		// Recompute (concurrent callers may do this redundantly)
+		Map<String, String> zones;
+		Lock l = topologyLock.readLock();
+		l.lock();
+		try {
+			zones = deviceZones;
+		} finally {
+			l.unlock();
+		}
+		Set<String> serialNumbers = new HashSet<>();
+		for (Map.Entry<String, String> entry : zones.entrySet()) {
+			DeviceConfig config =
+				getDeviceConfig(entry.getKey(), entry.getValue());
+			if (config != null && Boolean.TRUE.equals(config.enableRRM)) {
+				serialNumbers.add(entry.getKey());
+			}
+		}
+		cached = new VersionedDeviceSet(
+			version,
+			Collections.unmodifiableSet(serialNumbers)
+		);
+		rrmEnabledDevices = cached;
+		return cached.serialNumbers;
+	}
+
+	/** Return true if the given device is in the topology with RRM enabled. */
+	public boolean isRRMEnabled(String serialNumber) {
+		return getRRMEnabledDevices().contains(serialNumber);
+	}
+
 	/** Set the device network config. */
 	public void setDeviceNetworkConfig(DeviceConfig networkConfig) {
 		Lock l = deviceLayeredConfigLock.writeLock();
@@ -496,7 +615,7 @@ public class DeviceDataManager {
 		} finally {
 			l.unlock();
 		}
-		cachedDeviceConfigs.clear();
+		invalidateDeviceConfigs();
 		saveDeviceLayeredConfig();
 	}
 
@@ -521,7 +640,7 @@ public class DeviceDataManager {
 		} finally {
 			l.unlock();
 		}
-		cachedDeviceConfigs.clear();
+		invalidateDeviceConfigs();
 		saveDeviceLayeredConfig();
 	}
 
@@ -547,6 +666,7 @@ public class DeviceDataManager {
 			l.unlock();
 		}
 		cachedDeviceConfigs.remove(serialNumber);
+		deviceConfigVersion.incrementAndGet();
 		saveDeviceLayeredConfig();
 	}
 
@@ -571,7 +691,7 @@ public class DeviceDataManager {
 		} finally {
 			l.unlock();
 		}
-		cachedDeviceConfigs.clear();
+		invalidateDeviceConfigs();
 		saveDeviceLayeredConfig();
 	}
 
@@ -596,7 +716,7 @@ public class DeviceDataManager {
 		} finally {
 			l.unlock();
 		}
-		cachedDeviceConfigs.clear();
+		invalidateDeviceConfigs();
 		saveDeviceLayeredConfig();
 	}
 
@@ -12,7 +12,9 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Paths;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -22,6 +24,8 @@ import com.facebook.openwifi.cloudsdk.UCentralClient;
 import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaConsumer;
 import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaProducer;
 import com.facebook.openwifi.rrm.mysql.DatabaseManager;
+import com.facebook.openwifi.rrm.store.DataStore;
+import com.facebook.openwifi.rrm.store.SegmentFileStore;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
@@ -158,6 +162,10 @@ public class Launcher implements Callable<Integer> {
 
 		// Instantiate clients
 		UCentralClient.verifySsl(config.uCentralConfig.verifySsl);
+		UCentralClient.setConcurrency(
+			config.uCentralConfig.uCentralSocketParams.maxConnections,
+			config.uCentralConfig.uCentralSocketParams.maxConnections
+		);
 		UCentralClient client = new UCentralClient(
 			config.serviceConfig.publicEndpoint,
 			config.uCentralConfig.usePublicEndpoints,
@@ -196,19 +204,46 @@ public class Launcher implements Callable<Integer> {
 				config.serviceConfig.publicEndpoint
 			);
 		}
-		DatabaseManager dbManager;
-		if (config.databaseConfig.server.isEmpty()) {
-			logger.info("Database manager is disabled.");
-			dbManager = null;
-		} else {
-			dbManager = new DatabaseManager(
+		DataStore dbManager;
+		if (!config.databaseConfig.server.isEmpty()) {
+			DatabaseManager databaseManager = new DatabaseManager(
 				config.databaseConfig.server,
 				config.databaseConfig.user,
 				config.databaseConfig.password,
 				config.databaseConfig.dbName,
+				config.databaseConfig.dataRetentionIntervalDays,
+				config.databaseConfig.migrateLegacyState,
+				config.databaseConfig.compressWifiScans
+			);
+			databaseManager.init();
+			dbManager = databaseManager;
+		} else if (!config.databaseConfig.localStoreDir.isEmpty()) {
+			logger.info(
+				"Using local data store in {}",
+				config.databaseConfig.localStoreDir
+			);
+			// Segments are memory-mapped, so must fit in an int
+			long segmentSizeBytes =
+				config.databaseConfig.localStoreSegmentSizeMb * 1024L * 1024L;
+			if (segmentSizeBytes <= 0 || segmentSizeBytes > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(
+					"Invalid localStoreSegmentSizeMb (must be 1-2047): " +
+						config.databaseConfig.localStoreSegmentSizeMb
+				);
+			}
+			SegmentFileStore store = new SegmentFileStore(
+				Paths.get(config.databaseConfig.localStoreDir),
+				TimeUnit.MINUTES.toMillis(
+					config.databaseConfig.localStoreSegmentIntervalMinutes
+				),
+				(int) segmentSizeBytes,
 				config.databaseConfig.dataRetentionIntervalDays
 			);
-			dbManager.init();
+			store.init();
+			dbManager = store;
+		} else {
+			logger.info("Database manager is disabled.");
+			dbManager = null;
 		}
 
 		// Start RRM service
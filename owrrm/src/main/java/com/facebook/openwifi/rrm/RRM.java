@@ -29,8 +29,8 @@ import com.facebook.openwifi.rrm.modules.DataCollector;
 import com.facebook.openwifi.rrm.modules.Modeler;
 import com.facebook.openwifi.rrm.modules.ProvMonitor;
 import com.facebook.openwifi.rrm.modules.RRMScheduler;
-import com.facebook.openwifi.rrm.mysql.DatabaseManager;
 import com.facebook.openwifi.rrm.rca.modules.StationPinger;
+import com.facebook.openwifi.rrm.store.DataStore;
 
 /**
  * RRM service runner.
@@ -69,7 +69,7 @@ public class RRM {
 		UCentralClient client,
 		UCentralKafkaConsumer consumer,
 		UCentralKafkaProducer producer,
-		DatabaseManager dbManager
+		DataStore dbManager
 	) {
 		// If using public endpoints, log into uCentral now
 		if (config.uCentralConfig.usePublicEndpoints) {
@@ -113,7 +113,8 @@ public class RRM {
 			consumer,
 			client,
 			dataCollector,
-			configManager
+			configManager,
+			dbManager
 		);
 		ApiServer apiServer = new ApiServer(
 			config.moduleConfig.apiServerParams,
@@ -121,6 +122,7 @@ public class RRM {
 			deviceDataManager,
 			configManager,
 			modeler,
+			dbManager,
 			client,
 			scheduler
 		);
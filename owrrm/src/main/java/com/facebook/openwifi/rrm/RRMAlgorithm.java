@@ -94,6 +94,12 @@ public class RRMAlgorithm {
 		 * @see ClientSteeringOptimizer#computeApClientActionMap(boolean)
 		 */
 		public Map<String, Map<String, String>> apClientActionMap;
+
+		/**
+		 * The version of the data model snapshot used as input.
+		 * @see Modeler#getDataModelSnapshot(String)
+		 */
+		public Long modelVersion;
 	}
 
 	/** The algorithm name (should be AlgorithmType enum string). */
@@ -170,7 +176,8 @@ public class RRMAlgorithm {
 	 * 							to trigger immediate update
 	 *
 	 * @return the algorithm result, with exactly one field set ("error" upon
-	 *         failure, any others upon success)
+	 *         failure, any others upon success) in addition to
+	 *         "modelVersion" upon success
 	 */
 	public AlgorithmResult run(
 		DeviceDataManager deviceDataManager,
@@ -195,6 +202,9 @@ public class RRMAlgorithm {
 			name
 		);
 
+		// Take a snapshot of the data model for this zone
+		Modeler.DataModel model = modeler.getDataModelSnapshot(zone);
+
 		// Find algorithm to run
 		if (name.equals(RRMAlgorithm.AlgorithmType.OptimizeChannel.name())) {
 			logger.info(
@@ -213,7 +223,7 @@ public class RRMAlgorithm {
 				// fall through
 			case UnmanagedApAwareChannelOptimizer.ALGORITHM_ID:
 				optimizer = UnmanagedApAwareChannelOptimizer.makeWithArgs(
-					modeler.getDataModelCopy(),
+					model,
 					zone,
 					deviceDataManager,
 					args
@@ -221,7 +231,7 @@ public class RRMAlgorithm {
 				break;
 			case RandomChannelInitializer.ALGORITHM_ID:
 				optimizer = RandomChannelInitializer.makeWithArgs(
-					modeler.getDataModelCopy(),
+					model,
 					zone,
 					deviceDataManager,
 					args
@@ -229,7 +239,7 @@ public class RRMAlgorithm {
 				break;
 			case LeastUsedChannelOptimizer.ALGORITHM_ID:
 				optimizer = LeastUsedChannelOptimizer.makeWithArgs(
-					modeler.getDataModelCopy(),
+					model,
 					zone,
 					deviceDataManager,
 					args
@@ -266,7 +276,7 @@ public class RRMAlgorithm {
 				// fall through
 			case MeasurementBasedApApTPC.ALGORITHM_ID:
 				optimizer = MeasurementBasedApApTPC.makeWithArgs(
-					modeler.getDataModelCopy(),
+					model,
 					zone,
 					deviceDataManager,
 					args
@@ -274,7 +284,7 @@ public class RRMAlgorithm {
 				break;
 			case RandomTxPowerInitializer.ALGORITHM_ID:
 				optimizer = RandomTxPowerInitializer.makeWithArgs(
-					modeler.getDataModelCopy(),
+					model,
 					zone,
 					deviceDataManager,
 					args
@@ -282,7 +292,7 @@ public class RRMAlgorithm {
 				break;
 			case MeasurementBasedApClientTPC.ALGORITHM_ID:
 				optimizer = MeasurementBasedApClientTPC.makeWithArgs(
-					modeler.getDataModelCopy(),
+					model,
 					zone,
 					deviceDataManager,
 					args
@@ -290,7 +300,7 @@ public class RRMAlgorithm {
 				break;
 			case LocationBasedOptimalTPC.ALGORITHM_ID:
 				optimizer = LocationBasedOptimalTPC.makeWithArgs(
-					modeler.getDataModelCopy(),
+					model,
 					zone,
 					deviceDataManager,
 					args
@@ -327,7 +337,7 @@ public class RRMAlgorithm {
 				// fall through
 			case SingleAPBandSteering.ALGORITHM_ID:
 				optimizer = SingleAPBandSteering.makeWithArgs(
-					modeler.getDataModelCopy(),
+					model,
 					zone,
 					deviceDataManager,
 					clientSteeringState,
@@ -345,7 +355,9 @@ public class RRMAlgorithm {
 			}
 		} else {
 			result.error = String.format("Unknown algorithm: '%s'", name);
+			return result;
 		}
+		result.modelVersion = model.version;
 		return result;
 	}
 }
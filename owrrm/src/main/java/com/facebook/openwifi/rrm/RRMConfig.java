@@ -123,6 +123,13 @@ public class RRMConfig {
 			 * ({@code UCENTRALSOCKETPARAMS_WIFISCANTIMEOUTMS})
 			 */
 			public int wifiScanTimeoutMs = 45000;
+
+			/**
+			 * Maximum number of concurrent connections (in total and per
+			 * route), which also limits asynchronous requests in flight
+			 * ({@code UCENTRALSOCKETPARAMS_MAXCONNECTIONS})
+			 */
+			public int maxConnections = 200;
 		}
 
 		/** uCentral socket parameters */
@@ -217,6 +224,39 @@ public class RRMConfig {
 		 * ({@code DATABASECONFIG_DATARETENTIONINTERVALDAYS})
 		 */
 		public int dataRetentionIntervalDays = 14;
+
+		/**
+		 * Migrate rows from the legacy "state" table (one row per metric) into
+		 * the normalized state tables in the background, then drop it
+		 * ({@code DATABASECONFIG_MIGRATELEGACYSTATE})
+		 */
+		public boolean migrateLegacyState = true;
+
+		/**
+		 * Store each wifi scan's results as a single compressed blob instead
+		 * of one row per entry (existing rows remain readable)
+		 * ({@code DATABASECONFIG_COMPRESSWIFISCANS})
+		 */
+		public boolean compressWifiScans = false;
+
+		/**
+		 * Local data directory for the embedded segment-file store, used
+		 * when no MySQL server is configured (or empty to disable)
+		 * ({@code DATABASECONFIG_LOCALSTOREDIR})
+		 */
+		public String localStoreDir = "";
+
+		/**
+		 * Local store segment rolling interval, in minutes
+		 * ({@code DATABASECONFIG_LOCALSTORESEGMENTINTERVALMINUTES})
+		 */
+		public int localStoreSegmentIntervalMinutes = 60;
+
+		/**
+		 * Local store segment file size, in MB (at most 2047)
+		 * ({@code DATABASECONFIG_LOCALSTORESEGMENTSIZEMB})
+		 */
+		public int localStoreSegmentSizeMb = 64;
 	}
 
 	/** Database configuration. */
@@ -231,7 +271,7 @@ public class RRMConfig {
 		 */
 		public class DataCollectorParams {
 			/**
-			 * The main logic loop interval (i.e. sleep time), in ms
+			 * The device list update interval, in ms
 			 * ({@code DATACOLLECTORPARAMS_UPDATEINTERVALMS})
 			 */
 			public int updateIntervalMs = 30000; // 30sec
@@ -261,6 +301,96 @@ public class RRMConfig {
 			 * ({@code DATACOLLECTORPARAMS_EXECUTORTHREADCOUNT})
 			 */
 			public int executorThreadCount = 3;
+
+			/**
+			 * Maximum number of wifi scans in flight
+			 * ({@code DATACOLLECTORPARAMS_WIFISCANMAXINFLIGHT})
+			 */
+			public int wifiScanMaxInFlight = 100;
+
+			/**
+			 * Maximum number of wifi scans in flight per zone, to avoid
+			 * neighboring APs scanning at the same time, or 0 to scale with
+			 * the zone size (the fewest concurrent scans needed to scan every
+			 * device in the zone once per {@link #wifiScanIntervalSec}, given
+			 * {@link #wifiScanDurationSec})
+			 * ({@code DATACOLLECTORPARAMS_WIFISCANMAXINFLIGHTPERZONE})
+			 */
+			public int wifiScanMaxInFlightPerZone = 0;
+
+			/**
+			 * The expected duration of a single wifi scan, in seconds, used to
+			 * scale the per-zone wifi scan limit (defaults to the wifi scan
+			 * request timeout, i.e. the worst case)
+			 * ({@code DATACOLLECTORPARAMS_WIFISCANDURATIONSEC})
+			 */
+			public int wifiScanDurationSec = 45;
+
+			/**
+			 * The polling tick interval, in ms, i.e. the granularity at which
+			 * capabilities requests and wifi scans are scheduled
+			 * ({@code DATACOLLECTORPARAMS_POLLTICKMS})
+			 */
+			public int pollTickMs = 1000; // 1sec
+
+			/**
+			 * The random jitter applied to capabilities and wifi scan
+			 * intervals, as a percentage of the interval
+			 * ({@code DATACOLLECTORPARAMS_POLLJITTERPERCENT})
+			 */
+			public int pollJitterPercent = 10;
+
+			/**
+			 * Maximum number of state records per database insert batch
+			 * ({@code DATACOLLECTORPARAMS_STATEWRITEBATCHSIZE})
+			 */
+			public int stateWriteBatchSize = 5000;
+
+			/**
+			 * Maximum time a state record is held before being written to the
+			 * database, in ms
+			 * ({@code DATACOLLECTORPARAMS_STATEWRITEMAXDELAYMS})
+			 */
+			public int stateWriteMaxDelayMs = 1000; // 1sec
+
+			/**
+			 * Maximum number of state records queued for database writes
+			 * ({@code DATACOLLECTORPARAMS_STATEWRITEQUEUECAPACITY})
+			 */
+			public int stateWriteQueueCapacity = 200000;
+
+			/**
+			 * Maximum time to block Kafka consumption while the state record
+			 * write queue is full, in ms, after which records are dropped
+			 * ({@code DATACOLLECTORPARAMS_STATEWRITEENQUEUETIMEOUTMS})
+			 */
+			public int stateWriteEnqueueTimeoutMs = 10000; // 10sec
+
+			/**
+			 * Number of threads writing state records to the database
+			 * ({@code DATACOLLECTORPARAMS_STATEWRITETHREADCOUNT})
+			 */
+			public int stateWriteThreadCount = 2;
+
+			/**
+			 * Maximum number of wifi scans per database insert batch
+			 * ({@code DATACOLLECTORPARAMS_WIFISCANWRITEBATCHSIZE})
+			 */
+			public int wifiScanWriteBatchSize = 100;
+
+			/**
+			 * Maximum time a wifi scan is held before being written to the
+			 * database, in ms
+			 * ({@code DATACOLLECTORPARAMS_WIFISCANWRITEMAXDELAYMS})
+			 */
+			public int wifiScanWriteMaxDelayMs = 1000; // 1sec
+
+			/**
+			 * Maximum number of wifi scans queued for database writes, after
+			 * which scans are dropped
+			 * ({@code DATACOLLECTORPARAMS_WIFISCANWRITEQUEUECAPACITY})
+			 */
+			public int wifiScanWriteQueueCapacity = 5000;
 		}
 
 		/** DataCollector parameters. */
@@ -317,6 +447,55 @@ public class RRMConfig {
 			 * ({@code MODELERPARAMS_STATEBUFFERSIZE})
 			 */
 			public int stateBufferSize = 10;
+
+			/**
+			 * Number of ingest shards (threads) used to process Kafka records,
+			 * partitioned by device serial number
+			 * ({@code MODELERPARAMS_INGESTSHARDCOUNT})
+			 */
+			public int ingestShardCount = 4;
+
+			/**
+			 * Maximum number of Kafka records queued per ingest shard; records
+			 * received while a shard queue is full are dropped
+			 * ({@code MODELERPARAMS_INGESTQUEUECAPACITY})
+			 */
+			public int ingestQueueCapacity = 20000;
+
+			/**
+			 * Number of queued records in any ingest shard at which to pause
+			 * consumption of Kafka state and wifiscan partitions (all of them,
+			 * since every partition feeds every shard)
+			 * ({@code MODELERPARAMS_INGESTQUEUEHIGHWATERMARK})
+			 */
+			public int ingestQueueHighWatermark = 10000;
+
+			/**
+			 * Number of queued records in every ingest shard at or below which
+			 * to resume consumption of paused Kafka partitions
+			 * ({@code MODELERPARAMS_INGESTQUEUELOWWATERMARK})
+			 */
+			public int ingestQueueLowWatermark = 2000;
+
+			/**
+			 * Whether to backfill recent wifi scans from the database upon
+			 * startup (states are always fetched from uCentralGw)
+			 * ({@code MODELERPARAMS_BACKFILLFROMDATABASE})
+			 */
+			public boolean backfillFromDatabase = true;
+
+			/**
+			 * Maximum age of data to backfill from the database upon startup
+			 * ({@code MODELERPARAMS_BACKFILLWINDOWMS})
+			 */
+			public long backfillWindowMs = 900000;
+
+			/**
+			 * Maximum number of concurrent uCentralGw requests when fetching
+			 * initial device states upon startup
+			 * ({@code MODELERPARAMS_INITIALFETCHPARALLELISM})
+			 */
+			public int initialFetchParallelism = 16;
 		}
 
 		/** Modeler parameters. */
@@ -469,6 +648,9 @@ public class RRMConfig {
 		if ((v = env.get("UCENTRALSOCKETPARAMS_WIFISCANTIMEOUTMS")) != null) {
 			uCentralSocketParams.wifiScanTimeoutMs = Integer.parseInt(v);
 		}
+		if ((v = env.get("UCENTRALSOCKETPARAMS_MAXCONNECTIONS")) != null) {
+			uCentralSocketParams.maxConnections = Integer.parseInt(v);
+		}
 
 		/* KafkaConfig */
 		KafkaConfig kafkaConfig = config.kafkaConfig;
@@ -511,6 +693,21 @@ public class RRMConfig {
 		if ((v = env.get("DATABASECONFIG_DATARETENTIONINTERVALDAYS")) != null) {
 			databaseConfig.dataRetentionIntervalDays = Integer.parseInt(v);
 		}
+		if ((v = env.get("DATABASECONFIG_MIGRATELEGACYSTATE")) != null) {
+			databaseConfig.migrateLegacyState = Boolean.parseBoolean(v);
+		}
+		if ((v = env.get("DATABASECONFIG_COMPRESSWIFISCANS")) != null) {
+			databaseConfig.compressWifiScans = Boolean.parseBoolean(v);
+		}
+		if ((v = env.get("DATABASECONFIG_LOCALSTOREDIR")) != null) {
+			databaseConfig.localStoreDir = v;
+		}
+		if ((v = env.get("DATABASECONFIG_LOCALSTORESEGMENTINTERVALMINUTES")) != null) {
+			databaseConfig.localStoreSegmentIntervalMinutes = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATABASECONFIG_LOCALSTORESEGMENTSIZEMB")) != null) {
+			databaseConfig.localStoreSegmentSizeMb = Integer.parseInt(v);
+		}
 
 		/* ModuleConfig */
 		ModuleConfig.DataCollectorParams dataCollectorParams =
@@ -530,6 +727,45 @@ public class RRMConfig {
 		if ((v = env.get("DATACOLLECTORPARAMS_EXECUTORTHREADCOUNT")) != null) {
 			dataCollectorParams.executorThreadCount = Integer.parseInt(v);
 		}
+		if ((v = env.get("DATACOLLECTORPARAMS_WIFISCANMAXINFLIGHT")) != null) {
+			dataCollectorParams.wifiScanMaxInFlight = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_WIFISCANMAXINFLIGHTPERZONE")) != null) {
+			dataCollectorParams.wifiScanMaxInFlightPerZone = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_WIFISCANDURATIONSEC")) != null) {
+			dataCollectorParams.wifiScanDurationSec = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_POLLTICKMS")) != null) {
+			dataCollectorParams.pollTickMs = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_POLLJITTERPERCENT")) != null) {
+			dataCollectorParams.pollJitterPercent = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_STATEWRITEBATCHSIZE")) != null) {
+			dataCollectorParams.stateWriteBatchSize = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_STATEWRITEMAXDELAYMS")) != null) {
+			dataCollectorParams.stateWriteMaxDelayMs = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_STATEWRITEQUEUECAPACITY")) != null) {
+			dataCollectorParams.stateWriteQueueCapacity = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_STATEWRITEENQUEUETIMEOUTMS")) != null) {
+			dataCollectorParams.stateWriteEnqueueTimeoutMs = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_STATEWRITETHREADCOUNT")) != null) {
+			dataCollectorParams.stateWriteThreadCount = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_WIFISCANWRITEBATCHSIZE")) != null) {
+			dataCollectorParams.wifiScanWriteBatchSize = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_WIFISCANWRITEMAXDELAYMS")) != null) {
+			dataCollectorParams.wifiScanWriteMaxDelayMs = Integer.parseInt(v);
+		}
+		if ((v = env.get("DATACOLLECTORPARAMS_WIFISCANWRITEQUEUECAPACITY")) != null) {
+			dataCollectorParams.wifiScanWriteQueueCapacity = Integer.parseInt(v);
+		}
 		ModuleConfig.ConfigManagerParams configManagerParams =
 			config.moduleConfig.configManagerParams;
 		if ((v = env.get("CONFIGMANAGERPARAMS_UPDATEINTERVALMS")) != null) {
@@ -552,6 +788,27 @@ public class RRMConfig {
 		if ((v = env.get("MODELERPARAMS_STATEBUFFERSIZE")) != null) {
 			modelerParams.stateBufferSize = Integer.parseInt(v);
 		}
+		if ((v = env.get("MODELERPARAMS_INGESTSHARDCOUNT")) != null) {
+			modelerParams.ingestShardCount = Integer.parseInt(v);
+		}
+		if ((v = env.get("MODELERPARAMS_INGESTQUEUECAPACITY")) != null) {
+			modelerParams.ingestQueueCapacity = Integer.parseInt(v);
+		}
+		if ((v = env.get("MODELERPARAMS_INGESTQUEUEHIGHWATERMARK")) != null) {
+			modelerParams.ingestQueueHighWatermark = Integer.parseInt(v);
+		}
+		if ((v = env.get("MODELERPARAMS_INGESTQUEUELOWWATERMARK")) != null) {
+			modelerParams.ingestQueueLowWatermark = Integer.parseInt(v);
+		}
+		if ((v = env.get("MODELERPARAMS_BACKFILLFROMDATABASE")) != null) {
+			modelerParams.backfillFromDatabase = Boolean.parseBoolean(v);
+		}
+		if ((v = env.get("MODELERPARAMS_BACKFILLWINDOWMS")) != null) {
+			modelerParams.backfillWindowMs = Long.parseLong(v);
+		}
+		if ((v = env.get("MODELERPARAMS_INITIALFETCHPARALLELISM")) != null) {
+			modelerParams.initialFetchParallelism = Integer.parseInt(v);
+		}
 		ModuleConfig.ApiServerParams apiServerParams =
 			config.moduleConfig.apiServerParams;
 		if ((v = env.get("APISERVERPARAMS_INTERNALHTTPPORT")) != null) {
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.facebook.openwifi.cloudsdk.AggregatedState;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.facebook.openwifi.cloudsdk.models.ap.State.Interface;
+import com.facebook.openwifi.cloudsdk.models.ap.State.Interface.SSID;
+import com.facebook.openwifi.cloudsdk.models.ap.State.Interface.SSID.Association;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Incrementally maintained index of station associations per device and
+ * (BSSID, station), used to compute aggregated states without sorting or
+ * modifying the buffered states on every query.
+ *
+ * States can be added as they arrive, and states evicted from the per-device
+ * history buffers must be removed again, so the memory used per station is
+ * bounded by the history buffer size (the index mirrors
+ * {@link Modeler.DataModel#latestStates}). Indexed data is never modified by
+ * queries.
+ *
+ * Each device is updated by a single writer at a time, and queries may run
+ * concurrently with updates.
+ */
+public class AggregatedStateIndex {
+	/** The SSID radio fields which must match for aggregation. */
+	private static final String[] RADIO_KEYS =
+		new String[] { "channel", "channel_width", "tx_power" };
+
+	/** Map of device serial number to its index. */
+	private final Map<String, DeviceIndex> deviceIndexes =
+		new ConcurrentHashMap<>();
+
+	/** A single association from an indexed state. */
+	private static class Sample {
+		/** The state this was taken from. */
+		public final State source;
+
+		/** The state timestamp, in ms (from {@code unit.localtime}). */
+		public final long time;
+
+		/** The association, converted (but not aggregated). */
+		public final AggregatedState state;
+
+		/** Constructor. */
+		public Sample(State source, AggregatedState state) {
+			this.source = source;
+			this.time = source.unit.localtime * 1000;
+			this.state = state;
+		}
+	}
+
+	/** Index for a single device. */
+	private static class DeviceIndex {
+		/**
+		 * Map of (BSSID, station) key to its samples, sorted from oldest to
+		 * newest. Among samples with equal timestamps, earlier insertions come
+		 * last.
+		 */
+		public final Map<String, LinkedList<Sample>> samples = new HashMap<>();
+
+		/** The indexed states. */
+		public final Set<State> states =
+			Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+
+	/** Build an index holding all states in the given history buffers. */
+	public static AggregatedStateIndex of(
+		Map<String, RingBuffer<State>> latestStates
+	) {
+		AggregatedStateIndex index = new AggregatedStateIndex();
+		for (Map.Entry<String, RingBuffer<State>> e : latestStates.entrySet()) {
+			for (State state : e.getValue()) {
+				index.addState(e.getKey(), state, null);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Add a state from the given device, and remove a state which was evicted
+	 * from the device's history buffer (if non-null).
+	 */
+	public void addState(
+		String serialNumber,
+		State state,
+		State evictedState
+	) {
+		DeviceIndex deviceIndex =
+			deviceIndexes.computeIfAbsent(serialNumber, k -> new DeviceIndex());
+		synchronized (deviceIndex) {
+			if (
+				evictedState != null && deviceIndex.states.remove(evictedState)
+			) {
+				removeState(deviceIndex, evictedState);
+			}
+			if (state.unit != null && deviceIndex.states.add(state)) {
+				for (Sample sample : toSamples(state)) {
+					addSample(deviceIndex, sample);
+				}
+			}
+			if (deviceIndex.states.isEmpty()) {
+				deviceIndexes.remove(serialNumber, deviceIndex);
+			}
+		}
+	}
+
+	/** Remove all devices matching the given predicate from the index. */
+	public void removeIf(Predicate<String> filter) {
+		deviceIndexes.keySet().removeIf(filter);
+	}
+
+	/** Return the number of indexed devices. */
+	public int size() {
+		return deviceIndexes.size();
+	}
+
+	/** Convert all associations in the given state to samples. */
+	private static List<Sample> toSamples(State state) {
+		List<Sample> samples = new ArrayList<>();
+		if (state.interfaces == null) {
+			return samples;
+		}
+		for (Interface stateInterface : state.interfaces) {
+			if (stateInterface.ssids == null) {
+				continue;
+			}
+			for (SSID ssid : stateInterface.ssids) {
+				if (ssid.associations == null) {
+					continue;
+				}
+				Map<String, Integer> radioInfo = getRadioInfo(ssid.radio);
+				for (Association association : ssid.associations) {
+					if (association == null) {
+						continue;
+					}
+					samples.add(
+						new Sample(
+							state,
+							new AggregatedState(association, radioInfo)
+						)
+					);
+				}
+			}
+		}
+		return samples;
+	}
+
+	/** Return the channel, channel width, and tx power of an SSID's radio. */
+	private static Map<String, Integer> getRadioInfo(JsonObject radio) {
+		Map<String, Integer> radioInfo = new HashMap<>();
+		if (radio == null) {
+			return radioInfo;
+		}
+		for (String key : RADIO_KEYS) {
+			JsonElement e = radio.get(key);
+			if (e != null && e.isJsonPrimitive()) {
+				try {
+					radioInfo.put(key, e.getAsInt());
+				} catch (NumberFormatException ex) {
+					// ignore
+				}
+			}
+		}
+		return radioInfo;
+	}
+
+	/** Return the key for a sample. */
+	private static String keyOf(Sample sample) {
+		return ModelerUtils.getBssidStationKeyPair(
+			sample.state.bssid,
+			sample.state.station
+		);
+	}
+
+	/** Add a sample, keeping each key's samples sorted by time. */
+	private static void addSample(DeviceIndex deviceIndex, Sample sample) {
+		LinkedList<Sample> samples = deviceIndex.samples
+			.computeIfAbsent(keyOf(sample), k -> new LinkedList<>());
+
+		// States almost always arrive in order, so search from the end
+		ListIterator<Sample> iter = samples.listIterator(samples.size());
+		while (iter.hasPrevious()) {
+			if (iter.previous().time < sample.time) {
+				iter.next();
+				break;
+			}
+		}
+		iter.add(sample);
+	}
+
+	/** Remove all samples taken from the given state. */
+	private static void removeState(DeviceIndex deviceIndex, State state) {
+		for (Sample sample : toSamples(state)) {
+			String key = keyOf(sample);
+			LinkedList<Sample> samples = deviceIndex.samples.get(key);
+			if (samples == null) {
+				continue;
+			}
+			samples.removeIf(s -> s.source == state);
+			if (samples.isEmpty()) {
+				deviceIndex.samples.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Compute aggregated states for all indexed devices.
+	 *
+	 * @see #getAggregatedStates(Collection, long, long)
+	 */
+	public Map<String, Map<String, List<AggregatedState>>> getAggregatedStates(
+		long obsoletionPeriodMs,
+		long refTimeMs
+	) {
+		return getAggregatedStates(null, obsoletionPeriodMs, refTimeMs);
+	}
+
+	/**
+	 * Compute aggregated states for the given devices (or all devices if
+	 * null). Only non-obsolete samples are visited, and the returned objects
+	 * are new copies.
+	 *
+	 * @see ModelerUtils#getAggregatedStates(Modeler.DataModel, long, long)
+	 */
+	public Map<String, Map<String, List<AggregatedState>>> getAggregatedStates(
+		Collection<String> serialNumbers,
+		long obsoletionPeriodMs,
+		long refTimeMs
+	) {
+		if (obsoletionPeriodMs < 0) {
+			throw new IllegalArgumentException(
+				"obsoletionPeriodMs must be non-negative."
+			);
+		}
+		Map<String, Map<String, List<AggregatedState>>> aggregatedStates =
+			new HashMap<>();
+		if (serialNumbers == null) {
+			serialNumbers = deviceIndexes.keySet();
+		}
+		for (String serialNumber : serialNumbers) {
+			DeviceIndex deviceIndex = deviceIndexes.get(serialNumber);
+			if (deviceIndex == null) {
+				continue;
+			}
+			synchronized (deviceIndex) {
+				if (deviceIndex.states.isEmpty()) {
+					continue;
+				}
+				Map<String, List<AggregatedState>> keyToAggregatedStates =
+					new HashMap<>();
+				for (
+					Map.Entry<String, LinkedList<Sample>> e : deviceIndex.samples
+						.entrySet()
+				) {
+					List<AggregatedState> aggregated =
+						aggregate(e.getValue(), obsoletionPeriodMs, refTimeMs);
+					if (!aggregated.isEmpty()) {
+						keyToAggregatedStates.put(e.getKey(), aggregated);
+					}
+				}
+				aggregatedStates.put(serialNumber, keyToAggregatedStates);
+			}
+		}
+		return aggregatedStates;
+	}
+
+	/**
+	 * Aggregate the given samples (sorted from oldest to newest) by radio,
+	 * starting from the newest sample.
+	 */
+	private static List<AggregatedState> aggregate(
+		LinkedList<Sample> samples,
+		long obsoletionPeriodMs,
+		long refTimeMs
+	) {
+		List<AggregatedState> aggregatedStates = new ArrayList<>();
+		for (
+			Iterator<Sample> iter = samples.descendingIterator();
+			iter.hasNext();
+		) {
+			Sample sample = iter.next();
+			if (refTimeMs - sample.time > obsoletionPeriodMs) {
+				// discard obsolete samples
+				break;
+			}
+			boolean merged = false;
+			for (AggregatedState aggregatedState : aggregatedStates) {
+				if (aggregatedState.add(sample.state)) {
+					merged = true;
+					break;
+				}
+			}
+			if (!merged) {
+				aggregatedStates.add(new AggregatedState(sample.state));
+			}
+		}
+		return aggregatedStates;
+	}
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.rrm.aggregators.Aggregator;
+
+/**
+ * Incrementally maintained index of wifi scan entries per (AP, BSSID), used
+ * to compute aggregated wifi scan entries without regrouping all buffered
+ * scans on every query.
+ *
+ * Scans can be added as they arrive, and scans evicted from the per-device
+ * history buffers must be removed again so that the index mirrors
+ * {@link Modeler.DataModel#latestWifiScans}. Optionally, entries are
+ * expired in fixed-width time buckets once they are older than the retention
+ * period (relative to the newest entry seen from each AP); the latest entry
+ * per (AP, BSSID) is always kept.
+ *
+ * Each AP is updated by a single writer at a time, and queries may run
+ * concurrently with updates.
+ */
+public class AggregatedWifiScanIndex {
+	/**
+	 * The retention period, in ms. Queries with a larger obsoletion period
+	 * (or with a reference time before the newest entry) may miss entries.
+	 */
+	private final long retentionMs;
+
+	/** The time bucket width for expiry, in ms. */
+	private final long bucketWidthMs;
+
+	/** Map of AP serial number to its index. */
+	private final Map<String, ApIndex> apIndexes = new ConcurrentHashMap<>();
+
+	/** Index for a single AP. */
+	private static class ApIndex {
+		/**
+		 * Map of BSSID to its entries, sorted from oldest to newest. Among
+		 * entries with equal timestamps, earlier insertions come last.
+		 */
+		public final Map<String, LinkedList<WifiScanEntry>> entries =
+			new HashMap<>();
+
+		/** Map of time bucket number to the entries it holds. */
+		public final TreeMap<Long, List<WifiScanEntry>> buckets =
+			new TreeMap<>();
+
+		/** The newest entry timestamp seen. */
+		public long maxTimeMs = Long.MIN_VALUE;
+	}
+
+	/** Constructor with no time-based expiry. */
+	public AggregatedWifiScanIndex() {
+		this(Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param retentionMs the retention period, in ms
+	 * @param bucketWidthMs the time bucket width for expiry, in ms
+	 */
+	public AggregatedWifiScanIndex(long retentionMs, long bucketWidthMs) {
+		if (retentionMs < 0) {
+			throw new IllegalArgumentException(
+				"retentionMs must be non-negative"
+			);
+		}
+		if (bucketWidthMs < 1) {
+			throw new IllegalArgumentException(
+				"bucketWidthMs must be positive"
+			);
+		}
+		this.retentionMs = retentionMs;
+		this.bucketWidthMs = bucketWidthMs;
+	}
+
+	/** Build an index holding all scans in the given history buffers. */
+	public static AggregatedWifiScanIndex of(
+		Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans
+	) {
+		AggregatedWifiScanIndex index = new AggregatedWifiScanIndex();
+		for (
+			Map.Entry<String, RingBuffer<List<WifiScanEntry>>> e : latestWifiScans
+				.entrySet()
+		) {
+			for (List<WifiScanEntry> scan : e.getValue()) {
+				index.addScan(e.getKey(), scan, null);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Add a scan from the given AP, and remove a scan which was evicted from
+	 * the AP's history buffer (if non-null).
+	 */
+	public void addScan(
+		String serialNumber,
+		List<WifiScanEntry> scan,
+		List<WifiScanEntry> evictedScan
+	) {
+		ApIndex apIndex =
+			apIndexes.computeIfAbsent(serialNumber, k -> new ApIndex());
+		synchronized (apIndex) {
+			if (evictedScan != null) {
+				for (WifiScanEntry entry : evictedScan) {
+					removeEntry(apIndex, entry);
+				}
+			}
+			for (WifiScanEntry entry : scan) {
+				addEntry(apIndex, entry);
+			}
+			expire(apIndex);
+			if (apIndex.entries.isEmpty()) {
+				apIndexes.remove(serialNumber, apIndex);
+			}
+		}
+	}
+
+	/** Remove all APs matching the given predicate from the index. */
+	public void removeIf(Predicate<String> filter) {
+		apIndexes.keySet().removeIf(filter);
+	}
+
+	/** Return the number of indexed APs. */
+	public int size() {
+		return apIndexes.size();
+	}
+
+	/** Add an entry, keeping each BSSID's entries sorted by time. */
+	private void addEntry(ApIndex apIndex, WifiScanEntry entry) {
+		if (entry.bssid == null) {
+			return;
+		}
+		LinkedList<WifiScanEntry> entries = apIndex.entries
+			.computeIfAbsent(entry.bssid, k -> new LinkedList<>());
+
+		// Entries almost always arrive in order, so search from the end
+		ListIterator<WifiScanEntry> iter = entries.listIterator(entries.size());
+		while (iter.hasPrevious()) {
+			if (iter.previous().unixTimeMs < entry.unixTimeMs) {
+				iter.next();
+				break;
+			}
+		}
+		iter.add(entry);
+
+		apIndex.buckets
+			.computeIfAbsent(bucketOf(entry.unixTimeMs), k -> new ArrayList<>())
+			.add(entry);
+		apIndex.maxTimeMs = Math.max(apIndex.maxTimeMs, entry.unixTimeMs);
+	}
+
+	/** Remove an entry (by identity), if present. */
+	private void removeEntry(ApIndex apIndex, WifiScanEntry entry) {
+		if (entry.bssid == null) {
+			return;
+		}
+		LinkedList<WifiScanEntry> entries = apIndex.entries.get(entry.bssid);
+		if (entries == null || !removeIdentical(entries, entry)) {
+			return;
+		}
+		if (entries.isEmpty()) {
+			apIndex.entries.remove(entry.bssid);
+		}
+		long bucket = bucketOf(entry.unixTimeMs);
+		List<WifiScanEntry> bucketEntries = apIndex.buckets.get(bucket);
+		if (bucketEntries != null) {
+			removeIdentical(bucketEntries, entry);
+			if (bucketEntries.isEmpty()) {
+				apIndex.buckets.remove(bucket);
+			}
+		}
+	}
+
+	/**
+	 * Drop all time buckets which lie entirely outside the retention period,
+	 * except for the latest entry of each BSSID.
+	 */
+	private void expire(ApIndex apIndex) {
+		if (retentionMs == Long.MAX_VALUE || apIndex.buckets.isEmpty()) {
+			return;
+		}
+		long minTimeMs = apIndex.maxTimeMs - retentionMs;
+		while (
+			!apIndex.buckets.isEmpty() &&
+				(apIndex.buckets.firstKey() + 1) * bucketWidthMs <= minTimeMs
+		) {
+			for (WifiScanEntry entry : apIndex.buckets.pollFirstEntry()
+				.getValue()) {
+				LinkedList<WifiScanEntry> entries =
+					apIndex.entries.get(entry.bssid);
+				if (entries != null && entries.getLast() != entry) {
+					removeIdentical(entries, entry);
+				}
+			}
+		}
+	}
+
+	/** Return the time bucket number for the given timestamp. */
+	private long bucketOf(long timeMs) {
+		return Math.floorDiv(timeMs, bucketWidthMs);
+	}
+
+	/** Remove the first element identical to {@code e} from the list. */
+	private static boolean removeIdentical(
+		List<WifiScanEntry> list,
+		WifiScanEntry e
+	) {
+		for (Iterator<WifiScanEntry> iter = list.iterator(); iter.hasNext();) {
+			if (iter.next() == e) {
+				iter.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Compute aggregated wifi scan entries for all indexed APs.
+	 *
+	 * @see #getAggregatedWifiScans(Collection, long, Aggregator, long)
+	 */
+	public Map<String, Map<String, WifiScanEntry>> getAggregatedWifiScans(
+		long obsoletionPeriodMs,
+		Aggregator<Double> agg,
+		long refTimeMs
+	) {
+		return getAggregatedWifiScans(
+			null,
+			obsoletionPeriodMs,
+			agg,
+			refTimeMs
+		);
+	}
+
+	/**
+	 * Compute aggregated wifi scan entries for the given APs (or all APs if
+	 * null). Only non-obsolete entries are visited.
+	 *
+	 * @see ModelerUtils#getAggregatedWifiScans(Modeler.DataModel, long,
+	 *      Aggregator, long)
+	 */
+	public Map<String, Map<String, WifiScanEntry>> getAggregatedWifiScans(
+		Collection<String> serialNumbers,
+		long obsoletionPeriodMs,
+		Aggregator<Double> agg,
+		long refTimeMs
+	) {
+		if (obsoletionPeriodMs < 0) {
+			throw new IllegalArgumentException(
+				"obsoletionPeriodMs must be non-negative."
+			);
+		}
+		Map<String, Map<String, WifiScanEntry>> aggregatedWifiScans =
+			new HashMap<>();
+		if (serialNumbers == null) {
+			serialNumbers = apIndexes.keySet();
+		}
+		for (String serialNumber : serialNumbers) {
+			ApIndex apIndex = apIndexes.get(serialNumber);
+			if (apIndex == null) {
+				continue;
+			}
+			synchronized (apIndex) {
+				if (apIndex.entries.isEmpty()) {
+					continue;
+				}
+				Map<String, WifiScanEntry> bssidToEntry = new HashMap<>();
+				for (
+					Map.Entry<String, LinkedList<WifiScanEntry>> e : apIndex.entries
+						.entrySet()
+				) {
+					WifiScanEntry entry = aggregate(
+						e.getValue(),
+						obsoletionPeriodMs,
+						agg,
+						refTimeMs
+					);
+					bssidToEntry.put(e.getKey(), entry);
+				}
+				aggregatedWifiScans.put(serialNumber, bssidToEntry);
+			}
+		}
+		return aggregatedWifiScans;
+	}
+
+	/** Aggregate the given entries (sorted from oldest to newest). */
+	private static WifiScanEntry aggregate(
+		LinkedList<WifiScanEntry> entries,
+		long obsoletionPeriodMs,
+		Aggregator<Double> agg,
+		long refTimeMs
+	) {
+		WifiScanEntry mostRecentEntry = entries.getLast();
+		agg.reset();
+		for (
+			Iterator<WifiScanEntry> iter = entries.descendingIterator();
+			iter.hasNext();
+		) {
+			WifiScanEntry entry = iter.next();
+			if (refTimeMs - entry.unixTimeMs > obsoletionPeriodMs) {
+				// discard obsolete entries
+				break;
+			}
+			if (
+				mostRecentEntry == entry ||
+					ModelerUtils.matchesForAggregation(mostRecentEntry, entry)
+			) {
+				agg.addValue((double) entry.signal);
+			}
+		}
+		if (agg.getCount() == 0) {
+			return mostRecentEntry;
+		}
+		WifiScanEntry aggregatedEntry = new WifiScanEntry(mostRecentEntry);
+		aggregatedEntry.signal = (int) Math.round(agg.getAggregate());
+		return aggregatedEntry;
+	}
+}
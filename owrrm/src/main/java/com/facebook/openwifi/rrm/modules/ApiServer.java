@@ -8,10 +8,15 @@
 
 package com.facebook.openwifi.rrm.modules;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
@@ -58,8 +63,10 @@ import com.facebook.openwifi.rrm.optimizers.tpc.LocationBasedOptimalTPC;
 import com.facebook.openwifi.rrm.optimizers.tpc.MeasurementBasedApApTPC;
 import com.facebook.openwifi.rrm.optimizers.tpc.MeasurementBasedApClientTPC;
 import com.facebook.openwifi.rrm.optimizers.tpc.RandomTxPowerInitializer;
+import com.facebook.openwifi.rrm.store.DataStore;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
 import io.swagger.v3.core.util.Json;
 import io.swagger.v3.core.util.Yaml;
@@ -85,6 +92,7 @@ import spark.Route;
 import spark.Service;
 import spark.embeddedserver.EmbeddedServers;
 import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+import spark.utils.GzipUtils;
 
 /**
  * HTTP API server.
@@ -123,6 +131,9 @@ public class ApiServer implements Runnable {
 	private static final String SPARK_EMBEDDED_SERVER_IDENTIFIER =
 		ApiServer.class.getName();
 
+	/** The maximum number of buckets per metric in a metric series query. */
+	private static final long MAX_METRIC_SERIES_BUCKETS = 10000;
+
 	/**
 	 * The Spark service instance. Normally, you would use the static methods on
 	 * Spark, but since we need to spin up multiple instances of Spark for testing,
@@ -152,6 +163,9 @@ public class ApiServer implements Runnable {
 	/** The Modeler module instance. */
 	private final Modeler modeler;
 
+	/** The data store (may be null). */
+	private final DataStore dbManager;
+
 	/** The uCentral Client instance. */
 	private final UCentralClient client;
 
@@ -185,6 +199,7 @@ public class ApiServer implements Runnable {
 		DeviceDataManager deviceDataManager,
 		ConfigManager configManager,
 		Modeler modeler,
+		DataStore dbManager,
 		UCentralClient client,
 		RRMScheduler scheduler
 	) {
@@ -195,6 +210,7 @@ public class ApiServer implements Runnable {
 		this.deviceDataManager = deviceDataManager;
 		this.configManager = configManager;
 		this.modeler = modeler;
+		this.dbManager = dbManager;
 		this.client = client;
 		this.scheduler = scheduler;
 		this.tokenCache = Collections.synchronizedMap(
@@ -309,8 +325,13 @@ public class ApiServer implements Runnable {
 			new ModifyDeviceApConfigEndpoint()
 		);
 		service.get("/api/v1/currentModel", new GetCurrentModelEndpoint());
+		service.get(
+			"/api/v1/currentModelStats",
+			new GetCurrentModelStatsEndpoint()
+		);
 		service.get("/api/v1/optimizeChannel", new OptimizeChannelEndpoint());
 		service.get("/api/v1/optimizeTxPower", new OptimizeTxPowerEndpoint());
+		service.get("/api/v1/getMetricSeries", new GetMetricSeriesEndpoint());
 
 		logger.info(
 			"API server listening for HTTP internal on port {} and external on port {}",
@@ -1250,6 +1271,39 @@ public class ApiServer implements Runnable {
 		}
 	}
 
+	@Path("/api/v1/currentModelStats")
+	public class GetCurrentModelStatsEndpoint implements Route {
+		@GET
+		@Produces({ MediaType.APPLICATION_JSON })
+		@Operation(
+			summary = "Get current RRM model statistics",
+			description = "Returns runtime statistics for the RRM data model, " +
+				"such as per-shard ingest queue depth and latency, and for " +
+				"wifi scan dispatching and database writes.",
+			operationId = "getCurrentModelStats",
+			tags = { "Optimization" },
+			responses = {
+				@ApiResponse(
+					responseCode = "200",
+					description = "Data model statistics",
+					content = @Content(
+						schema = @Schema(
+							implementation = Modeler.ModelerStats.class
+						)
+					)
+				)
+			}
+		)
+		@Override
+		public String handle(
+			@Parameter(hidden = true) Request request,
+			@Parameter(hidden = true) Response response
+		) {
+			response.type(MediaType.APPLICATION_JSON);
+			return gson.toJson(modeler.getStats());
+		}
+	}
+
 	@Path("/api/v1/optimizeChannel")
 	public class OptimizeChannelEndpoint implements Route {
 		// Hack for use in @ApiResponse -> @Content -> @Schema
@@ -1471,4 +1525,182 @@ public class ApiServer implements Runnable {
 			return gson.toJson(new TxPowerAllocation(result.txPowerMap));
 		}
 	}
+
+	@Path("/api/v1/getMetricSeries")
+	public class GetMetricSeriesEndpoint implements Route {
+		// Hack for use in @ApiResponse -> @Content -> @Schema
+		@SuppressWarnings("unused")
+		private class MetricSeries {
+			public Map<String, List<MetricPoint>> data;
+		}
+
+		@SuppressWarnings("unused")
+		private class MetricPoint {
+			public long timestamp;
+			public long count;
+			public long min;
+			public long max;
+			public double avg;
+			public long last;
+		}
+
+		@GET
+		@Produces({ MediaType.APPLICATION_JSON })
+		@Operation(
+			summary = "Get metric series",
+			description = "Returns downsampled time series of a device's state metrics, keyed by metric name. Each point aggregates all values within a fixed-size time bucket, and empty buckets are omitted.",
+			operationId = "getMetricSeries",
+			tags = { "Optimization" },
+			parameters = {
+				@Parameter(
+					name = "serial",
+					description = "The device serial number",
+					in = ParameterIn.QUERY,
+					schema = @Schema(type = "string"),
+					required = true
+				),
+				@Parameter(
+					name = "metric",
+					description = "The metric name prefix (ex. \"radio.0.\"), or all metrics if omitted",
+					in = ParameterIn.QUERY,
+					schema = @Schema(type = "string")
+				),
+				@Parameter(
+					name = "from",
+					description = "The start time (Unix time, in ms)",
+					in = ParameterIn.QUERY,
+					schema = @Schema(type = "integer", format = "int64"),
+					required = true
+				),
+				@Parameter(
+					name = "to",
+					description = "The end time (Unix time, in ms), or the current time if omitted",
+					in = ParameterIn.QUERY,
+					schema = @Schema(type = "integer", format = "int64")
+				),
+				@Parameter(
+					name = "step",
+					description = "The bucket size, in ms",
+					in = ParameterIn.QUERY,
+					schema = @Schema(type = "integer", format = "int64"),
+					required = true
+				)
+			},
+			responses = {
+				@ApiResponse(
+					responseCode = "200",
+					description = "Metric series",
+					content = @Content(
+						schema = @Schema(implementation = MetricSeries.class)
+					)
+				),
+				@ApiResponse(responseCode = "400", description = "Bad Request"),
+				@ApiResponse(
+					responseCode = "500",
+					description = "Internal Server Error"
+				),
+				@ApiResponse(
+					responseCode = "503",
+					description = "Service Unavailable"
+				)
+			}
+		)
+		@Override
+		public String handle(
+			@Parameter(hidden = true) Request request,
+			@Parameter(hidden = true) Response response
+		) {
+			String serialNumber = request.queryParams("serial");
+			if (serialNumber == null || serialNumber.trim().isEmpty()) {
+				response.status(400);
+				return "Invalid serial number";
+			}
+			String metricPrefix = request.queryParamOrDefault("metric", "");
+			long fromMs, toMs, stepMs;
+			try {
+				fromMs =
+					Long.parseLong(request.queryParamOrDefault("from", ""));
+				toMs = Long.parseLong(
+					request.queryParamOrDefault(
+						"to",
+						Long.toString(System.currentTimeMillis())
+					)
+				);
+				stepMs =
+					Long.parseLong(request.queryParamOrDefault("step", ""));
+			} catch (NumberFormatException e) {
+				response.status(400);
+				return "Invalid from, to, or step";
+			}
+			if (fromMs < 0 || toMs <= fromMs) {
+				response.status(400);
+				return "Invalid time range";
+			}
+			if (
+				stepMs <= 0 ||
+					(toMs - fromMs - 1) / stepMs >= MAX_METRIC_SERIES_BUCKETS
+			) {
+				response.status(400);
+				return "Invalid step";
+			}
+			if (dbManager == null) {
+				response.status(503);
+				return "Database is not configured";
+			}
+
+			// Stream buckets as they are read (grouped by metric), compressed
+			// the same way Spark compresses returned bodies (see afterFilter)
+			response.type(MediaType.APPLICATION_JSON);
+			try {
+				OutputStream out = GzipUtils
+					.checkAndWrap(request.raw(), response.raw(), false);
+				JsonWriter writer = new JsonWriter(
+					new OutputStreamWriter(out, StandardCharsets.UTF_8)
+				);
+				writer.beginObject().name("data").beginObject();
+				String[] currentMetric = new String[1];
+				dbManager.getMetricSeries(
+					serialNumber,
+					metricPrefix,
+					fromMs,
+					toMs,
+					stepMs,
+					bucket -> {
+						if (!bucket.metric.equals(currentMetric[0])) {
+							if (currentMetric[0] != null) {
+								writer.endArray();
+							}
+							currentMetric[0] = bucket.metric;
+							writer.name(bucket.metric).beginArray();
+						}
+						writer.beginObject()
+							.name("timestamp").value(bucket.timestamp)
+							.name("count").value(bucket.count)
+							.name("min").value(bucket.min)
+							.name("max").value(bucket.max)
+							.name("avg").value(bucket.avg)
+							.name("last").value(bucket.last)
+							.endObject();
+					}
+				);
+				if (currentMetric[0] != null) {
+					writer.endArray();
+				}
+				writer.endObject().endObject();
+				writer.close();
+			} catch (SQLException | IOException e) {
+				logger.error("Failed to query metric series", e);
+				if (!response.raw().isCommitted()) {
+					// Spark writes (and compresses) the error body instead
+					response.raw().resetBuffer();
+					response.type(MediaType.TEXT_PLAIN);
+					response.status(500);
+					return "Failed to query metric series";
+				}
+			}
+
+			// The response was committed above, so Spark writes nothing more
+			return "";
+		}
+	}
 }
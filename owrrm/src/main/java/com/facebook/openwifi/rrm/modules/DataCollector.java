@@ -8,16 +8,18 @@
 
 package com.facebook.openwifi.rrm.modules;
 
-import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -37,12 +39,15 @@ import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.Utils;
 import com.facebook.openwifi.rrm.RRMConfig.ModuleConfig.DataCollectorParams;
-import com.facebook.openwifi.rrm.mysql.DatabaseManager;
-import com.facebook.openwifi.rrm.mysql.StateRecord;
+import com.facebook.openwifi.rrm.modules.WifiScanDispatcher.WifiScanDispatcherStats;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.facebook.openwifi.rrm.mysql.StateRecordWriter;
+import com.facebook.openwifi.rrm.mysql.StateRecordWriter.StateRecordWriterStats;
+import com.facebook.openwifi.rrm.mysql.WifiScanWriter;
+import com.facebook.openwifi.rrm.mysql.WifiScanWriter.WifiScanWriterStats;
+import com.facebook.openwifi.rrm.store.DataStore;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
 /**
  * Data collector module.
@@ -52,7 +57,7 @@ public class DataCollector implements Runnable {
 		LoggerFactory.getLogger(DataCollector.class);
 
 	/** Radio keys from state records to store. */
-	private static final String[] RADIO_KEYS = new String[] {
+	static final String[] RADIO_KEYS = new String[] {
 		"channel",
 		"channel_width",
 		"noise",
@@ -60,7 +65,7 @@ public class DataCollector implements Runnable {
 	};
 
 	/** AP client keys from state records to store. */
-	private static final String[] CLIENT_KEYS = new String[] {
+	static final String[] CLIENT_KEYS = new String[] {
 		"connected",
 		"inactive",
 		"rssi",
@@ -74,9 +79,28 @@ public class DataCollector implements Runnable {
 		"tx_retries"
 	};
 	/** AP client rate keys from state records to store. */
-	private static final String[] CLIENT_RATE_KEYS =
+	static final String[] CLIENT_RATE_KEYS =
 		new String[] { "rx_rate", "tx_rate" };
 
+	/** The maximum number of cached metric names (for state records). */
+	private static final int METRIC_NAME_CACHE_SIZE = 200000;
+
+	/** The maximum time to wait for queued state records on shutdown. */
+	private static final long STATE_WRITE_SHUTDOWN_TIMEOUT_MS = 30000;
+
+	/** The maximum time to wait for queued wifi scans on shutdown. */
+	private static final long WIFISCAN_WRITE_SHUTDOWN_TIMEOUT_MS = 10000;
+
+	/** The number of slots in each timing wheel. */
+	private static final int TIMING_WHEEL_SIZE = 1024;
+
+	/**
+	 * The number of device list update intervals within which new devices
+	 * get their first capabilities request (if less than the capabilities
+	 * interval).
+	 */
+	private static final int CAPABILITIES_STARTUP_UPDATE_INTERVALS = 2;
+
 	/** The module parameters. */
 	private final DataCollectorParams params;
 
@@ -86,23 +110,61 @@ public class DataCollector implements Runnable {
 	/** The uCentral client. */
 	private final UCentralClient client;
 
-	/** The database manager. */
-	private final DatabaseManager dbManager;
+	/** The data store. */
+	private final DataStore dbManager;
 
 	/** The executor service instance. */
 	private final ExecutorService executor;
 
-	/** Runtime per-device data. */
-	private class DeviceData {
-		/** Last wifi scan time (in monotonic ns). */
-		public Long lastWifiScanTimeNs;
+	/** The state record write-behind stage (null if no database). */
+	private final StateRecordWriter stateRecordWriter;
 
-		/** Last capabilities request time (in monotonic ns). */
-		public Long lastCapabilitiesTimeNs;
-	}
+	/** The wifi scan write-behind stage (null if no database). */
+	private final WifiScanWriter wifiScanWriter;
+
+	/** The wifi scan dispatcher. */
+	private final WifiScanDispatcher wifiScanDispatcher;
+
+	/** The time this module was created (in monotonic ns). */
+	private final long startTimeNs = System.nanoTime();
+
+	/** The timing wheel tick duration (in ns). */
+	private final long tickNs;
+
+	/** Timing wheel of device serial number to next capabilities request. */
+	private final HashedTimingWheel<String> capabilitiesWheel;
+
+	/** Timing wheel of device serial number to next wifi scan. */
+	private final HashedTimingWheel<String> wifiScanWheel;
 
-	/** Map from device serial number to runtime data. */
-	private Map<String, DeviceData> deviceDataMap = new HashMap<>();
+	/** The last device list update time (in monotonic ns), or null if never. */
+	private Long lastDeviceListUpdateTimeNs = null;
+
+	/** Map from device serial number to the latest device status. */
+	private Map<String, DeviceWithStatus> knownDevices = new HashMap<>();
+
+	/** Devices which have not had a capabilities request yet. */
+	private final Set<String> newCapabilitiesDevices = new HashSet<>();
+
+	/**
+	 * The metric name cache for state records. Only accessed from the Kafka
+	 * consumer thread.
+	 */
+	private final MetricNameCache metricNameCache =
+		new MetricNameCache(METRIC_NAME_CACHE_SIZE);
+
+	/**
+	 * The reusable batch for state records. Only accessed from the Kafka
+	 * consumer thread.
+	 */
+	private final StateRecordBatch stateRecordBatch = new StateRecordBatch();
+
+	/**
+	 * The streaming flattener for state records. Only accessed from the Kafka
+	 * consumer thread.
+	 */
+	private final StateRecordFlattener stateRecordFlattener =
+		new StateRecordFlattener(metricNameCache);
 
 	/** Data listener interface. */
 	public interface DataListener {
@@ -123,7 +185,7 @@ public class DataCollector implements Runnable {
 		UCentralClient client,
 		UCentralKafkaConsumer consumer,
 		ConfigManager configManager,
-		DatabaseManager dbManager
+		DataStore dbManager
 	) {
 		this.params = params;
 		this.deviceDataManager = deviceDataManager;
@@ -136,6 +198,36 @@ public class DataCollector implements Runnable {
 					"RRM_" + this.getClass().getSimpleName()
 				)
 			);
+		if (dbManager == null) {
+			this.stateRecordWriter = null;
+			this.wifiScanWriter = null;
+		} else {
+			this.stateRecordWriter = new StateRecordWriter(
+				dbManager,
+				params.stateWriteBatchSize,
+				params.stateWriteMaxDelayMs,
+				params.stateWriteQueueCapacity,
+				params.stateWriteEnqueueTimeoutMs,
+				params.stateWriteThreadCount
+			);
+			this.wifiScanWriter = new WifiScanWriter(
+				dbManager,
+				params.wifiScanWriteBatchSize,
+				params.wifiScanWriteMaxDelayMs,
+				params.wifiScanWriteQueueCapacity
+			);
+		}
+		this.wifiScanDispatcher = new WifiScanDispatcher(
+			params.wifiScanMaxInFlight,
+			this::getWifiScanMaxInFlightPerZone,
+			this::startWifiScan
+		);
+		this.tickNs =
+			TimeUnit.MILLISECONDS.toNanos(Math.max(params.pollTickMs, 1));
+		this.capabilitiesWheel =
+			new HashedTimingWheel<>(TIMING_WHEEL_SIZE, currentTick());
+		this.wifiScanWheel =
+			new HashedTimingWheel<>(TIMING_WHEEL_SIZE, currentTick());
 
 		// Register config hooks
 		configManager.addConfigListener(
@@ -164,6 +256,17 @@ public class DataCollector implements Runnable {
 			consumer.addKafkaListener(
 				getClass().getSimpleName(),
 				new UCentralKafkaConsumer.KafkaListener() {
+					@Override
+					public boolean acceptsStateRecord(String serialNumber) {
+						// State records are only written to the database
+						return dbManager != null;
+					}
+
+					@Override
+					public boolean acceptsWifiScanRecord(String serialNumber) {
+						return false;
+					}
+
 					@Override
 					public void handleStateRecords(List<KafkaRecord> records) {
 						handleKafkaStateRecords(records);
@@ -190,6 +293,33 @@ public class DataCollector implements Runnable {
 	/** Shut down all resources. */
 	public void shutdown() {
 		executor.shutdownNow();
+		if (stateRecordWriter != null) {
+			stateRecordWriter.shutdown(STATE_WRITE_SHUTDOWN_TIMEOUT_MS);
+		}
+		if (wifiScanWriter != null) {
+			wifiScanWriter.shutdown(WIFISCAN_WRITE_SHUTDOWN_TIMEOUT_MS);
+		}
+	}
+
+	/** Return the current wifi scan dispatcher statistics. */
+	public WifiScanDispatcherStats getWifiScanStats() {
+		return wifiScanDispatcher.getStats();
+	}
+
+	/**
+	 * Return the current state record write-behind statistics, or null if
+	 * there is no database.
+	 */
+	public StateRecordWriterStats getStateWriteStats() {
+		return stateRecordWriter == null ? null : stateRecordWriter.getStats();
+	}
+
+	/**
+	 * Return the current wifi scan write-behind statistics, or null if there
+	 * is no database.
+	 */
+	public WifiScanWriterStats getWifiScanWriteStats() {
+		return wifiScanWriter == null ? null : wifiScanWriter.getStats();
 	}
 
 	@Override
@@ -198,7 +328,7 @@ public class DataCollector implements Runnable {
 		while (!Thread.currentThread().isInterrupted()) {
 			try {
 				runImpl();
-				Thread.sleep(params.updateIntervalMs);
+				Thread.sleep(Math.max(params.pollTickMs, 1));
 			} catch (InterruptedException e) {
 				logger.error("Interrupted!", e);
 				break;
@@ -219,7 +349,77 @@ public class DataCollector implements Runnable {
 			}
 		}
 
-		// Fetch device list
+		// Refresh device list periodically
+		long now = System.nanoTime();
+		if (
+			lastDeviceListUpdateTimeNs == null ||
+				now - lastDeviceListUpdateTimeNs >=
+					TimeUnit.MILLISECONDS.toNanos(params.updateIntervalMs)
+		) {
+			lastDeviceListUpdateTimeNs = now;
+			updateDeviceList();
+		}
+
+		// Handle due devices
+		long tick = currentTick();
+		List<String> dueCapabilities = capabilitiesWheel.advance(tick);
+		if (!dueCapabilities.isEmpty()) {
+			logger.debug(
+				"{} device(s) due for capabilities",
+				dueCapabilities.size()
+			);
+			for (String serialNumber : dueCapabilities) {
+				pollDeviceCapabilities(serialNumber, tick);
+			}
+		}
+		List<String> dueWifiScans = wifiScanWheel.advance(tick);
+		if (!dueWifiScans.isEmpty()) {
+			logger.debug(
+				"{} device(s) due for wifi scans",
+				dueWifiScans.size()
+			);
+			for (String serialNumber : dueWifiScans) {
+				pollWifiScan(serialNumber, tick);
+			}
+		}
+	}
+
+	/** Return the current timing wheel tick. */
+	private long currentTick() {
+		return (System.nanoTime() - startTimeNs) / tickNs;
+	}
+
+	/** Convert an interval (in seconds) to ticks, with a minimum of 1. */
+	private long intervalToTicks(long intervalSec) {
+		return Math.max(TimeUnit.SECONDS.toNanos(intervalSec) / tickNs, 1);
+	}
+
+	/**
+	 * Return the given interval (in ticks) with random jitter applied, i.e.
+	 * uniformly distributed within {@code pollJitterPercent} of the interval.
+	 */
+	private long jitter(long intervalTicks) {
+		long maxJitter = intervalTicks *
+			Math.min(Math.max(params.pollJitterPercent, 0), 100) / 100;
+		if (maxJitter == 0) {
+			return intervalTicks;
+		}
+		return Math.max(
+			intervalTicks + ThreadLocalRandom.current()
+				.nextLong(-maxJitter, maxJitter + 1),
+			1
+		);
+	}
+
+	/**
+	 * Fetch the device list, scheduling new devices at random offsets within
+	 * their intervals (to spread load) and unscheduling removed devices.
+	 *
+	 * The first capabilities request is instead scheduled within a few device
+	 * list updates, since optimizers need capabilities for every device (the
+	 * next request is then spread over the full interval).
+	 */
+	private void updateDeviceList() {
 		List<DeviceWithStatus> devices = client.getDevices();
 		if (devices == null) {
 			logger.error("Failed to fetch devices!");
@@ -239,18 +439,41 @@ public class DataCollector implements Runnable {
 				removedSize
 			);
 		}
+
+		long tick = currentTick();
+		long capabilitiesStartupTicks = Math.min(
+			intervalToTicks(Math.max(params.capabilitiesIntervalSec, 1)),
+			CAPABILITIES_STARTUP_UPDATE_INTERVALS * retryTicks()
+		);
+		long wifiScanIntervalTicks =
+			intervalToTicks(Math.max(params.wifiScanIntervalSec, 1));
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Map<String, DeviceWithStatus> newDevices = new HashMap<>();
 		for (DeviceWithStatus device : devices) {
-			deviceDataMap.computeIfAbsent(
+			newDevices.put(device.serialNumber, device);
+			if (knownDevices.containsKey(device.serialNumber)) {
+				continue;
+			}
+			newCapabilitiesDevices.add(device.serialNumber);
+			capabilitiesWheel.schedule(
 				device.serialNumber,
-				k -> new DeviceData()
+				tick + random.nextLong(capabilitiesStartupTicks)
 			);
+			if (params.wifiScanIntervalSec != -1) {
+				wifiScanWheel.schedule(
+					device.serialNumber,
+					tick + random.nextLong(wifiScanIntervalTicks)
+				);
+			}
 		}
-
-		// Fetch device capabilities
-		fetchDeviceCapabilities(devices);
-
-		// Perform wifi scans
-		scheduleWifiScans(devices);
+		for (String serialNumber : knownDevices.keySet()) {
+			if (!newDevices.containsKey(serialNumber)) {
+				capabilitiesWheel.cancel(serialNumber);
+				newCapabilitiesDevices.remove(serialNumber);
+				wifiScanWheel.cancel(serialNumber);
+			}
+		}
+		knownDevices = newDevices;
 	}
 
 	/**
@@ -285,112 +508,134 @@ public class DataCollector implements Runnable {
 		return modified;
 	}
 
-	/** Fetch capabilities for the given list of devices. */
-	private void fetchDeviceCapabilities(List<DeviceWithStatus> devices) {
-		long now = System.nanoTime();
-		final long CAPABILITIES_INTERVAL_NS =
-			Math.max(params.capabilitiesIntervalSec, 1) * 1_000_000_000L;
-
-		for (DeviceWithStatus device : devices) {
-			// Check if online/connected
-			if (!device.connected) {
-				logger.info(
-					"Skipping capabilities for {} (device offline)",
-					device.serialNumber
-				);
-				continue;
-			}
-
-			// Check last request time
-			DeviceData data = deviceDataMap.get(device.serialNumber);
-			if (
-				data.lastCapabilitiesTimeNs != null &&
-					now - data.lastCapabilitiesTimeNs < CAPABILITIES_INTERVAL_NS
-			) {
-				logger.trace(
-					"Skipping capabilities for {} (last requested {}s ago)",
-					device.serialNumber,
-					(now - data.lastCapabilitiesTimeNs) / 1_000_000_000L
-				);
-				continue;
-			}
+	/**
+	 * Issue a capabilities request to the given (due) device if needed, and
+	 * schedule the next request.
+	 */
+	private void pollDeviceCapabilities(String serialNumber, long tick) {
+		DeviceWithStatus device = knownDevices.get(serialNumber);
+		if (device == null) {
+			return;
+		}
 
-			// Issue capabilities request (via executor, will run async eventually)
-			// Set "lastCapabilitiesTimeNs" now and again when the request actually runs
+		// Check if online/connected (and retry after the next device update)
+		if (!device.connected) {
 			logger.info(
-				"Device {}: queued capabilities request",
-				device.serialNumber
+				"Skipping capabilities for {} (device offline)",
+				serialNumber
 			);
-			data.lastCapabilitiesTimeNs = now;
-			executor.submit(() -> {
-				data.lastCapabilitiesTimeNs = System.nanoTime();
-				performDeviceCapabilitiesRequest(device.serialNumber);
-			});
+			capabilitiesWheel.schedule(serialNumber, tick + retryTicks());
+			return;
 		}
+
+		// Issue capabilities request (via executor, will run async eventually)
+		// and schedule the next one, at a random offset within the interval
+		// after the first request (to spread load)
+		logger.info("Device {}: queued capabilities request", serialNumber);
+		long intervalTicks =
+			intervalToTicks(Math.max(params.capabilitiesIntervalSec, 1));
+		capabilitiesWheel.schedule(
+			serialNumber,
+			tick + (newCapabilitiesDevices.remove(serialNumber)
+				? 1 + ThreadLocalRandom.current().nextLong(intervalTicks)
+				: jitter(intervalTicks))
+		);
+		executor.submit(() -> performDeviceCapabilitiesRequest(serialNumber));
 	}
 
-	/** Schedule wifi scans for the given list of devices. */
-	private void scheduleWifiScans(List<DeviceWithStatus> devices) {
-		// Disabled?
-		if (params.wifiScanIntervalSec == -1) {
-			logger.trace("Automatic wifi scans are disabled.");
+	/**
+	 * Queue a wifi scan for the given (due) device if needed, and schedule the
+	 * next scan.
+	 */
+	private void pollWifiScan(String serialNumber, long tick) {
+		DeviceWithStatus device = knownDevices.get(serialNumber);
+		if (device == null) {
 			return;
 		}
 
-		long now = System.nanoTime();
-		final long WIFI_SCAN_INTERVAL_NS =
-			Math.max(params.wifiScanIntervalSec, 1) * 1_000_000_000L;
-		for (DeviceWithStatus device : devices) {
-			// Check if online/connected
-			if (!device.connected) {
-				logger.info(
-					"Skipping wifi scan for {} (device offline)",
-					device.serialNumber
-				);
-				continue;
-			}
+		// Check if online/connected (and retry after the next device update)
+		if (!device.connected) {
+			logger.info(
+				"Skipping wifi scan for {} (device offline)",
+				serialNumber
+			);
+			wifiScanWheel.schedule(serialNumber, tick + retryTicks());
+			return;
+		}
 
-			// Check if scans are enabled in device config
-			DeviceConfig deviceConfig =
-				deviceDataManager.getDeviceConfig(device.serialNumber);
-			if (deviceConfig == null) {
-				logger.trace(
-					"Skipping wifi scan for {} (null device config)",
-					device.serialNumber
-				);
-				continue;
-			}
-			if (!deviceConfig.enableWifiScan) {
-				logger.trace(
-					"Skipping wifi scan for {} (disabled in device config)",
-					device.serialNumber
-				);
-				continue;
-			}
+		// Check if scans are enabled in device config (and retry later, since
+		// the config may change)
+		DeviceConfig deviceConfig =
+			deviceDataManager.getDeviceConfig(serialNumber);
+		if (deviceConfig == null) {
+			logger.trace(
+				"Skipping wifi scan for {} (null device config)",
+				serialNumber
+			);
+			wifiScanWheel.schedule(serialNumber, tick + retryTicks());
+			return;
+		}
+		if (!deviceConfig.enableWifiScan) {
+			logger.trace(
+				"Skipping wifi scan for {} (disabled in device config)",
+				serialNumber
+			);
+			wifiScanWheel.schedule(serialNumber, tick + retryTicks());
+			return;
+		}
 
-			// Check last request time
-			DeviceData data = deviceDataMap.get(device.serialNumber);
-			if (
-				data.lastWifiScanTimeNs != null &&
-					now - data.lastWifiScanTimeNs < WIFI_SCAN_INTERVAL_NS
-			) {
-				logger.trace(
-					"Skipping wifi scan for {} (last scanned {}s ago)",
-					device.serialNumber,
-					(now - data.lastWifiScanTimeNs) / 1_000_000_000L
-				);
-				continue;
-			}
+		// Check zone
+		String zone = deviceDataManager.getDeviceZone(serialNumber);
+		if (zone == null) {
+			logger.trace("Skipping wifi scan for {} (no zone)", serialNumber);
+			wifiScanWheel.schedule(serialNumber, tick + retryTicks());
+			return;
+		}
 
-			// Issue scan command (via executor, will run async eventually)
-			// Set "lastWifiScanTime" now and again when the scan actually runs
-			logger.info("Device {}: queued wifi scan", device.serialNumber);
-			data.lastWifiScanTimeNs = now;
-			executor.submit(() -> {
-				data.lastWifiScanTimeNs = System.nanoTime();
-				performWifiScan(device.serialNumber);
-			});
+		// Queue scan command (via dispatcher, will run async eventually)
+		wifiScanWheel.schedule(
+			serialNumber,
+			tick + jitter(
+				intervalToTicks(Math.max(params.wifiScanIntervalSec, 1))
+			)
+		);
+		if (wifiScanDispatcher.submit(serialNumber, zone)) {
+			logger.info("Device {}: queued wifi scan", serialNumber);
+		} else {
+			logger.trace(
+				"Skipping wifi scan for {} (already queued)",
+				serialNumber
+			);
+		}
+	}
+
+	/**
+	 * Return the maximum number of wifi scans in flight for the given zone.
+	 *
+	 * Unless configured explicitly, this is the fewest concurrent scans which
+	 * let every device in the zone scan once per wifi scan interval, i.e. one
+	 * scan at a time for zones of up to (interval / scan duration) devices.
+	 */
+	int getWifiScanMaxInFlightPerZone(String zone) {
+		if (params.wifiScanMaxInFlightPerZone > 0) {
+			return params.wifiScanMaxInFlightPerZone;
 		}
+		long zoneSize = deviceDataManager.getZoneSize(zone);
+		long intervalSec = Math.max(params.wifiScanIntervalSec, 1);
+		long durationSec = Math.max(params.wifiScanDurationSec, 1);
+		long limit = (zoneSize * durationSec + intervalSec - 1) / intervalSec;
+		return (int) Math.max(Math.min(limit, params.wifiScanMaxInFlight), 1);
+	}
+
+	/**
+	 * Return the delay (in ticks) before rechecking a device which was
+	 * skipped, i.e. the device list update interval.
+	 */
+	private long retryTicks() {
+		return Math.max(
+			TimeUnit.MILLISECONDS.toNanos(params.updateIntervalMs) / tickNs,
+			1
+		);
 	}
 
 	/**
@@ -420,13 +665,33 @@ public class DataCollector implements Runnable {
 	}
 
 	/**
-	 * Issue a wifi scan command to the given device and handle results.
+	 * Issue a wifi scan command to the given device without blocking, and
+	 * handle results on the executor.
 	 *
-	 * Returns true upon failure and false otherwise.
+	 * The returned future completes with true upon success and false
+	 * otherwise.
 	 */
-	private boolean performWifiScan(String serialNumber) {
+	private CompletableFuture<Boolean> startWifiScan(String serialNumber) {
 		logger.info("Device {}: performing wifi scan...", serialNumber);
-		CommandInfo wifiScanResult = client.wifiScan(serialNumber, true);
+		return client.wifiScanAsync(serialNumber, true)
+			.thenApplyAsync(
+				wifiScanResult -> handleWifiScanResult(
+					serialNumber,
+					wifiScanResult
+				),
+				executor
+			);
+	}
+
+	/**
+	 * Handle the results of a wifi scan command.
+	 *
+	 * Returns true upon success and false otherwise.
+	 */
+	private boolean handleWifiScanResult(
+		String serialNumber,
+		CommandInfo wifiScanResult
+	) {
 		if (wifiScanResult == null) {
 			logger.error("Device {}: wifi scan request failed", serialNumber);
 			return false;
@@ -489,22 +754,21 @@ public class DataCollector implements Runnable {
 		return true;
 	}
 
-	/** Insert wifi scan results into database. */
+	/** Queue wifi scan results for insertion into the database. */
 	private void insertWifiScanResultsToDatabase(
 		String serialNumber,
 		long timestampSeconds,
 		List<WifiScanEntry> entries
 	) {
-		if (dbManager == null) {
+		if (wifiScanWriter == null) {
 			return;
 		}
 
-		// Insert into database
-		try {
-			dbManager.addWifiScan(serialNumber, timestampSeconds, entries);
-		} catch (SQLException e) {
-			logger.error("Failed to insert wifi scan results into database", e);
-			return;
+		if (!wifiScanWriter.enqueue(serialNumber, timestampSeconds, entries)) {
+			logger.error(
+				"Device {}: dropped wifi scan results (write queue is full)",
+				serialNumber
+			);
 		}
 	}
 
@@ -514,210 +778,63 @@ public class DataCollector implements Runnable {
 		insertStateRecordsToDatabase(records);
 	}
 
-	/** Parse a single state record into individual metrics. */
-	protected static void parseStateRecord(
-		String serialNumber,
-		JsonObject payload,
-		List<StateRecord> results
-	) {
-		JsonObject state = payload.getAsJsonObject("state");
-		JsonArray interfaces = state.getAsJsonArray("interfaces");
-		JsonArray radios = state.getAsJsonArray("radios");
-		JsonObject unit = state.getAsJsonObject("unit");
-		long localtime = unit.get("localtime").getAsLong();
-
-		// "interfaces"
-		// - store all entries from "counters" as
-		//   "interface.<interface_name>.<counter_name>"
-		// - store all entries from "ssids.<N>.associations.<M>" as
-		//   "interface.<interface_name>.bssid.<bssid>.client.<bssid>.<counter_name>"
-		for (JsonElement o1 : interfaces) {
-			JsonObject iface = o1.getAsJsonObject();
-			String ifname = iface.get("name").getAsString();
-
-			JsonObject counters = iface.getAsJsonObject("counters");
-			if (counters != null) {
-				for (
-					Map.Entry<String, JsonElement> entry : counters.entrySet()
-				) {
-					String metric = String.format(
-						"interface.%s.%s",
-						ifname,
-						entry.getKey()
-					);
-					long value = entry.getValue().getAsLong();
-					results.add(
-						new StateRecord(
-							localtime,
-							metric,
-							value,
-							serialNumber
-						)
-					);
-				}
-			}
-			JsonArray ssids = iface.getAsJsonArray("ssids");
-			if (ssids != null) {
-				for (JsonElement o2 : ssids) {
-					JsonObject ssid = o2.getAsJsonObject();
-					if (!ssid.has("bssid")) {
-						continue;
-					}
-					String bssid = ssid.get("bssid").getAsString();
-					JsonArray associations =
-						ssid.getAsJsonArray("associations");
-					if (associations != null) {
-						for (JsonElement o3 : associations) {
-							JsonObject client = o3.getAsJsonObject();
-							if (!client.has("bssid")) {
-								continue;
-							}
-							String clientBssid =
-								client.get("bssid").getAsString();
-							for (String s : CLIENT_KEYS) {
-								if (
-									!client.has(s) ||
-										!client.get(s).isJsonPrimitive()
-								) {
-									continue;
-								}
-								String metric = String.format(
-									"interface.%s.bssid.%s.client.%s.%s",
-									ifname,
-									bssid,
-									clientBssid,
-									s
-								);
-								long value = client.get(s).getAsLong();
-								results.add(
-									new StateRecord(
-										localtime,
-										metric,
-										value,
-										serialNumber
-									)
-								);
-							}
-							for (String s : CLIENT_RATE_KEYS) {
-								if (
-									!client.has(s) ||
-										!client.get(s).isJsonObject()
-								) {
-									continue;
-								}
-								String metricBase = String.format(
-									"interface.%s.bssid.%s.client.%s.%s",
-									ifname,
-									bssid,
-									clientBssid,
-									s
-								);
-								for (
-									Map.Entry<String, JsonElement> entry : client
-										.getAsJsonObject(s)
-										.entrySet()
-								) {
-									String metric = String.format(
-										"%s.%s",
-										metricBase,
-										entry.getKey()
-									);
-									long value;
-									if (
-										entry.getValue()
-											.getAsJsonPrimitive()
-											.isBoolean()
-									) {
-										value = entry.getValue().getAsBoolean()
-											? 1 : 0;
-									} else {
-										value = entry.getValue().getAsLong();
-									}
-									results.add(
-										new StateRecord(
-											localtime,
-											metric,
-											value,
-											serialNumber
-										)
-									);
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-
-		// "radios"
-		// - store "channel", "channel_width", "noise", "tx_power" as
-		//   "radio.<N>.<counter_name>"
-		if (radios != null) {
-			for (int i = 0; i < radios.size(); i++) {
-				JsonObject o = radios.get(i).getAsJsonObject();
-				for (String s : RADIO_KEYS) {
-					if (!o.has(s) || !o.get(s).isJsonPrimitive()) {
-						continue;
-					}
-					String metric = String.format("radio.%d.%s", i, s);
-					long value = o.get(s).getAsLong();
-					results.add(
-						new StateRecord(localtime, metric, value, serialNumber)
-					);
-				}
-			}
-		}
-
-		// "unit"
-		// - store "uptime" as "unit.<counter_name>"
-		// - "load.0", "load.1", "load.2" => unclear what is going on
-		//   with these values, leaving them out for now
-		/*
-		JsonArray loadArray = unit.getAsJsonArray("load");
-		for (int i = 0; i < loadArray.size(); i++) {
-			String metric = String.format("unit.load.%d", i);
-			long load = loadArray.get(i).getAsLong();
-			results.add(new StateRecord(localtime, metric, load, serialNumber));
-		}
-		*/
-		long uptime = unit.get("uptime").getAsLong();
-		results.add(
-			new StateRecord(localtime, "unit.uptime", uptime, serialNumber)
-		);
-	}
-
-	/** Parse state records into individual metrics. */
-	private static List<StateRecord> parseStateRecords(
-		List<KafkaRecord> records
+	/**
+	 * Flatten state records into individual metrics, appending them to the
+	 * given batch.
+	 *
+	 * Records are read from their raw values (without building a JSON tree),
+	 * since {@link KafkaRecord#state} does not preserve which fields are
+	 * present.
+	 */
+	private static void flattenStateRecords(
+		List<KafkaRecord> records,
+		StateRecordFlattener flattener,
+		StateRecordBatch batch
 	) {
-		List<StateRecord> results = new ArrayList<>();
 		for (KafkaRecord record : records) {
-			try {
-				parseStateRecord(record.serialNumber, record.payload, results);
+			try (JsonReader payload = record.newPayloadReader()) {
+				if (payload == null) {
+					throw new IllegalStateException("No payload");
+				}
+				flattener.flatten(record.serialNumber, payload, batch);
 			} catch (Exception e) {
 				String errMsg = String.format(
-					"Failed to parse state record: %s",
-					record.payload.toString()
+					"Device %s: failed to parse state record",
+					record.serialNumber
 				);
 				logger.error(errMsg, e);
 				continue;
 			}
 		}
-		return results;
 	}
 
-	/** Parse state records into individual metrics and insert into database. */
+	/**
+	 * Parse state records into individual metrics and queue them for database
+	 * insertion. Blocks while the write queue is full (i.e. applies
+	 * backpressure to Kafka consumption), up to a timeout.
+	 */
 	private void insertStateRecordsToDatabase(List<KafkaRecord> records) {
-		if (dbManager == null) {
+		if (stateRecordWriter == null) {
 			return;
 		}
 
-		List<StateRecord> dbRecords = parseStateRecords(records);
+		if (metricNameCache.clearIfFull()) {
+			logger.debug("Cleared metric name cache");
+		}
+		stateRecordBatch.clear();
+		flattenStateRecords(records, stateRecordFlattener, stateRecordBatch);
 		try {
-			dbManager.addStateRecords(dbRecords);
-		} catch (SQLException e) {
-			logger.error("Failed to insert state records into database", e);
-			return;
+			if (!stateRecordWriter.enqueue(stateRecordBatch)) {
+				logger.error(
+					"State record write queue is full, dropped {} record(s)",
+					stateRecordBatch.size()
+				);
+			}
+		} catch (InterruptedException e) {
+			logger.error("Interrupted while queueing state records", e);
+			Thread.currentThread().interrupt();
+		} finally {
+			stateRecordBatch.clear();
 		}
 	}
 
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel holding at most one deadline per key.
+ *
+ * Deadlines are expressed in ticks (of arbitrary duration). Each key is stored
+ * in the slot given by its deadline modulo the wheel size, so advancing by one
+ * tick only visits keys in a single slot: with the wheel size on the order of
+ * the scheduling interval, this is roughly the number of keys which are due.
+ * Scheduling and cancelling are O(1).
+ *
+ * This class is not thread-safe.
+ *
+ * @param <K> the key type
+ */
+public class HashedTimingWheel<K> {
+	/** The wheel slots, each holding keys in insertion order. */
+	private final List<Set<K>> slots;
+
+	/** Map of scheduled key to its deadline tick. */
+	private final Map<K, Long> deadlines = new HashMap<>();
+
+	/** The last tick processed by {@link #advance(long)}. */
+	private long currentTick;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param wheelSize the number of slots
+	 * @param startTick the initial tick (keys are only returned by
+	 *                  {@link #advance(long)} for later ticks)
+	 */
+	public HashedTimingWheel(int wheelSize, long startTick) {
+		if (wheelSize < 1) {
+			throw new IllegalArgumentException("wheelSize must be positive");
+		}
+		this.slots = new ArrayList<>(wheelSize);
+		for (int i = 0; i < wheelSize; i++) {
+			slots.add(new LinkedHashSet<>());
+		}
+		this.currentTick = startTick;
+	}
+
+	/**
+	 * Schedule the given key at the given deadline tick, replacing any
+	 * existing deadline. Deadlines which have already passed are due upon the
+	 * next {@link #advance(long)}.
+	 */
+	public void schedule(K key, long deadlineTick) {
+		cancel(key);
+		deadlineTick = Math.max(deadlineTick, currentTick + 1);
+		deadlines.put(key, deadlineTick);
+		slotOf(deadlineTick).add(key);
+	}
+
+	/** Cancel the given key, returning true if it was scheduled. */
+	public boolean cancel(K key) {
+		Long deadlineTick = deadlines.remove(key);
+		if (deadlineTick == null) {
+			return false;
+		}
+		slotOf(deadlineTick).remove(key);
+		return true;
+	}
+
+	/** Return whether the given key is scheduled. */
+	public boolean contains(K key) {
+		return deadlines.containsKey(key);
+	}
+
+	/** Return the deadline tick for the given key, or null if unscheduled. */
+	public Long getDeadline(K key) {
+		return deadlines.get(key);
+	}
+
+	/** Return the number of scheduled keys. */
+	public int size() {
+		return deadlines.size();
+	}
+
+	/** Return the last tick processed by {@link #advance(long)}. */
+	public long getCurrentTick() {
+		return currentTick;
+	}
+
+	/**
+	 * Advance to the given tick, and remove and return all keys with
+	 * deadlines up to (and including) it. Keys are returned in deadline order,
+	 * except after advancing by more than one full rotation of the wheel.
+	 */
+	public List<K> advance(long tick) {
+		List<K> dueKeys = new ArrayList<>();
+		if (tick <= currentTick) {
+			return dueKeys;
+		}
+
+		// Visit each slot at most once, even after a long pause
+		long startTick = Math.max(currentTick + 1, tick - slots.size() + 1);
+		for (long t = startTick; t <= tick; t++) {
+			for (Iterator<K> iter = slotOf(t).iterator(); iter.hasNext();) {
+				K key = iter.next();
+				if (deadlines.get(key) > tick) {
+					continue; // a later rotation
+				}
+				iter.remove();
+				deadlines.remove(key);
+				dueKeys.add(key);
+			}
+		}
+		currentTick = tick;
+		return dueKeys;
+	}
+
+	/** Return the slot for the given tick. */
+	private Set<K> slotOf(long tick) {
+		return slots.get((int) Math.floorMod(tick, (long) slots.size()));
+	}
+}
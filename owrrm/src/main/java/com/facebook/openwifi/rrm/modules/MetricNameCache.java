@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of dot-separated metric names (ex. "interface.up0v0.rx_bytes"),
+ * organized as a tree of name components.
+ *
+ * Each name is built once, when its {@link Key} is first looked up, and the
+ * same (interned) string is returned afterwards. Looking up a cached key is a
+ * single hash lookup per component and allocates nothing, so callers should
+ * hold on to {@link Key} prefixes and only look up the remaining components.
+ *
+ * The cache is bounded: callers should periodically call
+ * {@link #clearIfFull()} at a point where no {@link Key} objects are held.
+ * Names returned earlier remain valid, since they are plain strings.
+ *
+ * This class is not thread-safe.
+ */
+public class MetricNameCache {
+	/** A metric name (or prefix) in the cache. */
+	public class Key {
+		/** The full metric name. */
+		public final String name;
+
+		/** Child keys by name component, created on first use. */
+		private Map<String, Key> children;
+
+		/** Constructor. */
+		private Key(String name) {
+			this.name = name;
+		}
+
+		/** Return the key for this name followed by the given component. */
+		public Key child(String component) {
+			if (children == null) {
+				children = new HashMap<>();
+			}
+			Key key = children.get(component);
+			if (key == null) {
+				key = new Key(
+					name.isEmpty()
+						? component.intern()
+						: (name + "." + component).intern()
+				);
+				children.put(component, key);
+				size++;
+			}
+			return key;
+		}
+
+		/** Return the key for this name followed by the given index. */
+		public Key child(int index) {
+			return child(
+				index >= 0 && index < INDEX_STRINGS.length
+					? INDEX_STRINGS[index]
+					: Integer.toString(index)
+			);
+		}
+	}
+
+	/** Preallocated strings for small indexes. */
+	private static final String[] INDEX_STRINGS = new String[64];
+	static {
+		for (int i = 0; i < INDEX_STRINGS.length; i++) {
+			INDEX_STRINGS[i] = Integer.toString(i);
+		}
+	}
+
+	/** The maximum number of cached names before clearing. */
+	private final int maxSize;
+
+	/** The root key (empty name). */
+	private Key root = new Key("");
+
+	/** The number of cached names. */
+	private int size = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize the maximum number of cached names (see
+	 *                {@link #clearIfFull()})
+	 */
+	public MetricNameCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/** Return the root key, i.e. the empty prefix. */
+	public Key root() {
+		return root;
+	}
+
+	/** Return the number of cached names (including prefixes). */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Clear the cache if it holds more than the maximum number of names,
+	 * returning true if cleared. Metric names include client MAC addresses,
+	 * so the cache would otherwise grow without bound.
+	 */
+	public boolean clearIfFull() {
+		if (size <= maxSize) {
+			return false;
+		}
+		root = new Key("");
+		size = 0;
+		return true;
+	}
+}
@@ -8,22 +8,37 @@
 
 package com.facebook.openwifi.rrm.modules;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.facebook.openwifi.cloudsdk.AggregatedState;
 import com.facebook.openwifi.cloudsdk.UCentralApConfiguration;
 import com.facebook.openwifi.cloudsdk.UCentralClient;
-import com.facebook.openwifi.cloudsdk.UCentralUtils;
 import com.facebook.openwifi.cloudsdk.WifiScanEntry;
 import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaConsumer;
 import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaConsumer.KafkaRecord;
@@ -33,10 +48,14 @@ import com.facebook.openwifi.cloudsdk.models.gw.DeviceCapabilities;
 import com.facebook.openwifi.cloudsdk.models.gw.DeviceWithStatus;
 import com.facebook.openwifi.cloudsdk.models.gw.ServiceEvent;
 import com.facebook.openwifi.cloudsdk.models.gw.StatisticsRecords;
-import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.RRMConfig.ModuleConfig.ModelerParams;
 import com.facebook.openwifi.rrm.Utils;
+import com.facebook.openwifi.rrm.aggregators.Aggregator;
+import com.facebook.openwifi.rrm.modules.WifiScanDispatcher.WifiScanDispatcherStats;
+import com.facebook.openwifi.rrm.mysql.StateRecordWriter.StateRecordWriterStats;
+import com.facebook.openwifi.rrm.mysql.WifiScanWriter.WifiScanWriterStats;
+import com.facebook.openwifi.rrm.store.DataStore;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -57,6 +76,12 @@ public class Modeler implements Runnable {
 	/** The uCentral client instance. */
 	private final UCentralClient client;
 
+	/** The data collector module. */
+	private final DataCollector dataCollector;
+
+	/** The data store, or null if not storing data. */
+	private final DataStore dbManager;
+
 	/** Kafka input data types. */
 	public enum InputDataType { STATE, WIFISCAN }
 
@@ -68,6 +93,9 @@ public class Modeler implements Runnable {
 		/** Records. */
 		public final List<KafkaRecord> records;
 
+		/** Enqueue time (in monotonic ns). */
+		public final long enqueueTimeNs = System.nanoTime();
+
 		/** Constructor. */
 		public InputData(InputDataType type, List<KafkaRecord> records) {
 			this.type = type;
@@ -75,9 +103,152 @@ public class Modeler implements Runnable {
 		}
 	}
 
-	/** The blocking data queue. */
-	private final BlockingQueue<InputData> dataQueue =
-		new LinkedBlockingQueue<>();
+	/**
+	 * Ingest shard, owning the input data for a fixed subset of devices.
+	 *
+	 * Each device is always routed to the same shard, so records for a device
+	 * are processed in order by a single thread (which is also the only writer
+	 * of that device's {@link RingBuffer} histories).
+	 */
+	private class IngestShard {
+		/**
+		 * The blocking data queue, bounded by the number of queued records
+		 * (see {@link #queuedRecordCount}).
+		 */
+		public final BlockingQueue<InputData> dataQueue =
+			new LinkedBlockingQueue<>();
+
+		/** Number of records currently queued. */
+		public final AtomicInteger queuedRecordCount = new AtomicInteger();
+
+		/** Number of records dropped because the queue was full. */
+		public final AtomicLong droppedRecordCount = new AtomicLong();
+
+		/** Number of batches processed. */
+		public final AtomicLong batchCount = new AtomicLong();
+
+		/** Number of records processed. */
+		public final AtomicLong recordCount = new AtomicLong();
+
+		/** Total time batches spent waiting in the queue (in ns). */
+		public final AtomicLong totalQueueTimeNs = new AtomicLong();
+
+		/** Total time spent processing batches (in ns). */
+		public final AtomicLong totalProcessingTimeNs = new AtomicLong();
+
+		/** Maximum time spent processing a single batch (in ns). */
+		public final AtomicLong maxProcessingTimeNs = new AtomicLong();
+	}
+
+	/** Ingest statistics for a single shard. */
+	public static class IngestShardStats {
+		/** The shard index. */
+		public int shard;
+
+		/** The number of batches currently queued. */
+		public int queueDepth;
+
+		/** The number of records currently queued. */
+		public int queuedRecords;
+
+		/** The number of records dropped because the queue was full. */
+		public long droppedRecordCount;
+
+		/** The number of batches processed. */
+		public long batchCount;
+
+		/** The number of records processed. */
+		public long recordCount;
+
+		/** The average time a batch spent queued (in ms). */
+		public double avgQueueLatencyMs;
+
+		/** The average time spent processing a batch (in ms). */
+		public double avgProcessingLatencyMs;
+
+		/** The maximum time spent processing a batch (in ms). */
+		public double maxProcessingLatencyMs;
+	}
+
+	/** Modeler runtime statistics. */
+	public static class ModelerStats {
+		/** Ingest statistics for each shard. */
+		public List<IngestShardStats> ingestShards;
+
+		/** Whether Kafka consumption is currently paused (backpressure). */
+		public boolean ingestPaused;
+
+		/** The number of times Kafka consumption was paused. */
+		public long ingestPauseCount;
+
+		/** The total time Kafka consumption has been paused (in ms). */
+		public double ingestPausedMs;
+
+		/** Whether the initial data fetch has completed. */
+		public boolean ready;
+
+		/**
+		 * The time from startup until the initial data fetch completed, or the
+		 * time elapsed so far if not yet ready (in ms).
+		 */
+		public double timeToReadyMs;
+
+		/** The number of initial wifi scans backfilled from the database. */
+		public long initialWifiScansFromDatabase;
+
+		/** The number of initial states fetched from uCentralGw. */
+		public long initialStatesFromGateway;
+
+		/** Wifi scan dispatcher statistics (from the data collector). */
+		public WifiScanDispatcherStats wifiScans;
+
+		/**
+		 * State record database write statistics (from the data collector),
+		 * or null if there is no database.
+		 */
+		public StateRecordWriterStats stateWrites;
+
+		/**
+		 * Wifi scan database write statistics (from the data collector), or
+		 * null if there is no database.
+		 */
+		public WifiScanWriterStats wifiScanWrites;
+	}
+
+	/** The ingest shards. */
+	private final IngestShard[] shards;
+
+	/**
+	 * Whether the ingest queues are saturated, i.e. Kafka consumption should
+	 * be paused. This is only updated from the Kafka consumer thread.
+	 *
+	 * @see #isIngestSaturated()
+	 */
+	private volatile boolean ingestSaturated = false;
+
+	/** The time {@link #ingestSaturated} was last set (in monotonic ns). */
+	private volatile long ingestSaturatedSinceNs;
+
+	/** The number of times {@link #ingestSaturated} was set. */
+	private final AtomicLong ingestPauseCount = new AtomicLong();
+
+	/** The total time {@link #ingestSaturated} was set, excluding now. */
+	private final AtomicLong ingestPausedNs = new AtomicLong();
+
+	/** The time this module was created (in monotonic ns). */
+	private final long startTimeNs = System.nanoTime();
+
+	/**
+	 * The time the initial data fetch completed (in monotonic ns), or 0 if not
+	 * yet completed.
+	 */
+	private volatile long readyTimeNs = 0;
+
+	/** The number of initial wifi scans backfilled from the database. */
+	private final AtomicLong initialWifiScansFromDatabase = new AtomicLong();
+
+	/** The number of initial states fetched from uCentralGw. */
+	private final AtomicLong initialStatesFromGateway = new AtomicLong();
 
 	/** Data model representation. */
 	public static class DataModel {
@@ -92,11 +263,11 @@ public class Modeler implements Runnable {
 		 *
 		 * @see UCentralClient#wifiScan(String, boolean)
 		 */
-		public Map<String, List<List<WifiScanEntry>>> latestWifiScans =
+		public Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans =
 			new ConcurrentHashMap<>();
 
 		/** List of latest states per device. */
-		public Map<String, List<State>> latestStates =
+		public Map<String, RingBuffer<State>> latestStates =
 			new ConcurrentHashMap<>();
 
 		/** List of radio info per device. */
@@ -106,11 +277,116 @@ public class Modeler implements Runnable {
 		/** List of capabilities per device. */
 		public Map<String, Map<String, Capabilities.Phy>> latestDeviceCapabilitiesPhy =
 			new ConcurrentHashMap<>();
+
+		/**
+		 * The model version this snapshot was taken at, or 0 if this is not a
+		 * snapshot (not serialized).
+		 *
+		 * @see Modeler#getDataModelSnapshot(String)
+		 */
+		public transient long version = 0;
 	}
 
 	/** The data model. */
 	public DataModel dataModel = new DataModel();
 
+	/** The data model version, incremented upon every update. */
+	private final AtomicLong modelVersion = new AtomicLong();
+
+	/**
+	 * Lock used for taking consistent snapshots of {@link #dataModel}.
+	 *
+	 * Updates can run concurrently (e.g. from different ingest shards), so
+	 * they all share the read lock. Taking a snapshot holds the write lock,
+	 * which briefly blocks all updates.
+	 */
+	private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+	/** A history buffer and its position, captured for a snapshot. */
+	private static class BufferPosition<E> {
+		/** The buffer. */
+		public final RingBuffer<E> buffer;
+
+		/** The buffer position. */
+		public final long position;
+
+		/** Constructor. */
+		public BufferPosition(RingBuffer<E> buffer) {
+			this.buffer = buffer;
+			this.position = buffer.position();
+		}
+
+		/** Return a read-only copy of the buffer at the captured position. */
+		public RingBuffer<E> readOnlyCopy() {
+			return buffer.readOnlyCopy(position);
+		}
+	}
+
+	/**
+	 * References to data model entries, captured under the
+	 * {@link #snapshotLock} write lock and copied into a snapshot after it is
+	 * released.
+	 */
+	private static class ModelCapture {
+		/** The model version. */
+		public long version;
+
+		/** Captured wifi scan histories. */
+		public Map<String, BufferPosition<List<WifiScanEntry>>> latestWifiScans;
+
+		/** Captured state histories. */
+		public Map<String, BufferPosition<State>> latestStates;
+
+		/** Captured radio info. */
+		public Map<String, JsonArray> latestDeviceStatusRadios;
+
+		/** Captured capabilities. */
+		public Map<String, Map<String, Capabilities.Phy>>
+			latestDeviceCapabilitiesPhy;
+	}
+
+	/** Cached data model snapshot. */
+	private static class CachedSnapshot {
+		/** The topology version used to select devices. */
+		public final long topologyVersion;
+
+		/** The snapshot. */
+		public final DataModel model;
+
+		/** Constructor. */
+		public CachedSnapshot(long topologyVersion, DataModel model) {
+			this.topologyVersion = topologyVersion;
+			this.model = model;
+		}
+	}
+
+	/** The latest snapshot including all devices. */
+	private volatile CachedSnapshot fullSnapshot;
+
+	/** The latest snapshot per zone. */
+	private final Map<String, CachedSnapshot> zoneSnapshots =
+		new ConcurrentHashMap<>();
+
+	/**
+	 * Index of devices present in the data model, keyed on RF zone.
+	 *
+	 * This is maintained upon ingest and rebuilt whenever the topology
+	 * changes, so that zone snapshots scale with the zone size rather than
+	 * the fleet size.
+	 */
+	private final Map<String, Set<String>> zoneIndex =
+		new ConcurrentHashMap<>();
+
+	/** Map of serial number to zone for all devices in {@link #zoneIndex}. */
+	private final Map<String, String> indexedDeviceZones =
+		new ConcurrentHashMap<>();
+
+	/**
+	 * The topology version that {@link #zoneIndex} was built from, or -1 if
+	 * it needs to be rebuilt.
+	 */
+	private volatile long zoneIndexTopologyVersion = -1;
+
 	/** The Gson instance. */
 	private final Gson gson = new Gson();
 
@@ -121,11 +397,18 @@ public class Modeler implements Runnable {
 		UCentralKafkaConsumer consumer,
 		UCentralClient client,
 		DataCollector dataCollector,
-		ConfigManager configManager
+		ConfigManager configManager,
+		DataStore dbManager
 	) {
 		this.params = params;
 		this.deviceDataManager = deviceDataManager;
 		this.client = client;
+		this.dataCollector = dataCollector;
+		this.dbManager = dbManager;
+		this.shards = new IngestShard[Math.max(params.ingestShardCount, 1)];
+		for (int i = 0; i < shards.length; i++) {
+			shards[i] = new IngestShard();
+		}
 
 		// Register data hooks
 		dataCollector.addDataListener(
@@ -165,33 +448,31 @@ public class Modeler implements Runnable {
 
 		// Register Kafka listener
 		if (consumer != null) {
-			// We only push data to a blocking queue to be processed by this
-			// thread later, instead of the Kafka consumer thread
+			// We only push data to the shard queues to be processed by the
+			// ingest threads later, instead of the Kafka consumer thread
 			consumer.addKafkaListener(
 				getClass().getSimpleName(),
 				new UCentralKafkaConsumer.KafkaListener() {
-					// NOTE: list copying due to potential modification in run()
+					@Override
+					public boolean acceptsStateRecord(String serialNumber) {
+						return isRRMEnabled(serialNumber);
+					}
+
+					@Override
+					public boolean acceptsWifiScanRecord(String serialNumber) {
+						return isRRMEnabled(serialNumber);
+					}
 
 					@Override
 					public void handleStateRecords(List<KafkaRecord> records) {
-						dataQueue.offer(
-							new InputData(
-								InputDataType.STATE,
-								new ArrayList<>(records)
-							)
-						);
+						enqueueRecords(InputDataType.STATE, records);
 					}
 
 					@Override
 					public void handleWifiScanRecords(
 						List<KafkaRecord> records
 					) {
-						dataQueue.offer(
-							new InputData(
-								InputDataType.WIFISCAN,
-								new ArrayList<>(records)
-							)
-						);
+						enqueueRecords(InputDataType.WIFISCAN, records);
 					}
 
 					@Override
@@ -200,45 +481,259 @@ public class Modeler implements Runnable {
 					) {
 						// ignored
 					}
+
+					@Override
+					public boolean isSaturated() {
+						return isIngestSaturated();
+					}
 				}
 			);
 		}
 	}
 
+	/** Return the ingest shard index for the given device. */
+	int getShardIndex(String serialNumber) {
+		return Math.floorMod(serialNumber.hashCode(), shards.length);
+	}
+
+	/**
+	 * Split the given records by shard and push them to the shard queues.
+	 * Records for a shard are dropped if they would exceed its capacity.
+	 *
+	 * This must only be called from the Kafka consumer thread, which is the
+	 * only producer for the shard queues.
+	 *
+	 * NOTE: this always copies the records, since they are modified later
+	 */
+	void enqueueRecords(
+		InputDataType type,
+		List<KafkaRecord> records
+	) {
+		List<List<KafkaRecord>> shardRecords = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			shardRecords.add(null);
+		}
+		for (KafkaRecord record : records) {
+			int i = getShardIndex(record.serialNumber);
+			if (shardRecords.get(i) == null) {
+				shardRecords.set(i, new ArrayList<>());
+			}
+			shardRecords.get(i).add(record);
+		}
+		for (int i = 0; i < shards.length; i++) {
+			List<KafkaRecord> recordList = shardRecords.get(i);
+			if (recordList == null) {
+				continue;
+			}
+			IngestShard shard = shards[i];
+			int queued = shard.queuedRecordCount.get();
+			if (queued + recordList.size() > params.ingestQueueCapacity) {
+				shard.droppedRecordCount.addAndGet(recordList.size());
+				logger.debug(
+					"Shard {} is full ({} queued), dropping {} record(s)",
+					i,
+					queued,
+					recordList.size()
+				);
+				continue;
+			}
+			shard.queuedRecordCount.addAndGet(recordList.size());
+			shard.dataQueue.offer(new InputData(type, recordList));
+		}
+	}
+
+	/**
+	 * Return whether the ingest queues are saturated, updating the state
+	 * using the configured high/low watermarks (on the largest shard queue).
+	 *
+	 * A single saturated shard pauses all Kafka partitions, since records are
+	 * sharded by device rather than by partition (every partition feeds every
+	 * shard), so there is no subset of partitions to pause instead. This
+	 * throttles the other shards along with it, but avoids dropping records
+	 * for a hot shard; a persistently hot shard calls for more shards.
+	 *
+	 * This must only be called from the Kafka consumer thread.
+	 */
+	boolean isIngestSaturated() {
+		int maxQueued = 0;
+		for (IngestShard shard : shards) {
+			maxQueued = Math.max(maxQueued, shard.queuedRecordCount.get());
+		}
+		if (!ingestSaturated && maxQueued >= params.ingestQueueHighWatermark) {
+			logger.warn(
+				"Ingest queue reached high watermark ({} records), " +
+					"pausing Kafka consumption",
+				maxQueued
+			);
+			ingestSaturatedSinceNs = System.nanoTime();
+			ingestPauseCount.incrementAndGet();
+			ingestSaturated = true;
+		} else if (
+			ingestSaturated && maxQueued <= params.ingestQueueLowWatermark
+		) {
+			long pausedNs = System.nanoTime() - ingestSaturatedSinceNs;
+			logger.info(
+				"Ingest queue drained ({} records), resuming Kafka " +
+					"consumption after {} ms",
+				maxQueued,
+				pausedNs / 1_000_000
+			);
+			ingestPausedNs.addAndGet(pausedNs);
+			ingestSaturated = false;
+		}
+		return ingestSaturated;
+	}
+
 	@Override
 	public void run() {
 		logger.info("Fetching initial data...");
 		fetchInitialData();
 
-		// Poll for data until interrupted
-		logger.info("Modeler awaiting data...");
+		// Poll for data on each shard until interrupted
+		logger.info(
+			"Modeler awaiting data on {} ingest shard(s)...",
+			shards.length
+		);
+		ExecutorService executor = Executors.newFixedThreadPool(
+			shards.length,
+			new Utils.NamedThreadFactory("RRM_" + getClass().getSimpleName())
+		);
+		CompletionService<Void> completionService =
+			new ExecutorCompletionService<>(executor);
+		for (IngestShard shard : shards) {
+			completionService.submit(() -> runShard(shard), null);
+		}
+		try {
+			// Shard threads only return if interrupted or on exceptions
+			completionService.take().get();
+		} catch (InterruptedException e) {
+			logger.error("Interrupted!", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Ingest shard failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		logger.error("Thread terminated!");
+	}
+
+	/** Process data for the given shard until interrupted. */
+	private void runShard(IngestShard shard) {
 		while (!Thread.currentThread().isInterrupted()) {
 			try {
-				InputData inputData = dataQueue.take();
-
-				// Drop records here if RRM is disabled for a device
-				int recordCount = inputData.records.size();
-				if (
-					inputData.records.removeIf(
-						record -> !isRRMEnabled(record.serialNumber)
-					)
-				) {
-					logger.debug(
-						"Dropping {} Kafka record(s) for non-RRM-enabled devices",
-						recordCount - inputData.records.size()
-					);
-				}
-
-				processData(inputData);
+				processBatch(shard, shard.dataQueue.take());
 			} catch (InterruptedException e) {
-				logger.error("Interrupted!", e);
-				break;
+				Thread.currentThread().interrupt();
 			}
 		}
-		logger.error("Thread terminated!");
 	}
 
-	/** Fetch initial data (called only once). */
+	/**
+	 * Process up to the given number of batches queued on the given shard,
+	 * on the calling thread, and return the number processed. This is only
+	 * intended for when the ingest threads are not running (i.e. tests).
+	 */
+	int processQueuedBatches(int shardIndex, int maxBatches) {
+		IngestShard shard = shards[shardIndex];
+		int count = 0;
+		InputData inputData;
+		while (
+			count < maxBatches && (inputData = shard.dataQueue.poll()) != null
+		) {
+			processBatch(shard, inputData);
+			count++;
+		}
+		return count;
+	}
+
+	/** Process a batch taken from the given shard's queue. */
+	private void processBatch(IngestShard shard, InputData inputData) {
+		long startNs = System.nanoTime();
+		int recordCount = inputData.records.size();
+		shard.queuedRecordCount.addAndGet(-recordCount);
+
+		// Drop records here if RRM was disabled for a device after it was
+		// admitted by the Kafka consumer
+		if (
+			inputData.records.removeIf(
+				record -> !isRRMEnabled(record.serialNumber)
+			)
+		) {
+			logger.debug(
+				"Dropping {} Kafka record(s) for non-RRM-enabled devices",
+				recordCount - inputData.records.size()
+			);
+		}
+
+		updateDataModel(() -> processData(inputData));
+
+		// Update stats
+		long processingTimeNs = System.nanoTime() - startNs;
+		shard.batchCount.incrementAndGet();
+		shard.recordCount.addAndGet(recordCount);
+		shard.totalQueueTimeNs.addAndGet(startNs - inputData.enqueueTimeNs);
+		shard.totalProcessingTimeNs.addAndGet(processingTimeNs);
+		shard.maxProcessingTimeNs.accumulateAndGet(processingTimeNs, Math::max);
+	}
+
+	/** Return the current runtime statistics. */
+	public ModelerStats getStats() {
+		ModelerStats stats = new ModelerStats();
+		stats.ingestShards = getIngestStats();
+		boolean paused = ingestSaturated;
+		long pausedNs = ingestPausedNs.get();
+		if (paused) {
+			pausedNs += System.nanoTime() - ingestSaturatedSinceNs;
+		}
+		stats.ingestPaused = paused;
+		stats.ingestPauseCount = ingestPauseCount.get();
+		stats.ingestPausedMs = pausedNs / 1_000_000.0;
+		long readyNs = readyTimeNs;
+		stats.ready = readyNs != 0;
+		stats.timeToReadyMs =
+			((stats.ready ? readyNs : System.nanoTime()) - startTimeNs) /
+				1_000_000.0;
+		stats.initialWifiScansFromDatabase =
+			initialWifiScansFromDatabase.get();
+		stats.initialStatesFromGateway = initialStatesFromGateway.get();
+		stats.wifiScans = dataCollector.getWifiScanStats();
+		stats.stateWrites = dataCollector.getStateWriteStats();
+		stats.wifiScanWrites = dataCollector.getWifiScanWriteStats();
+		return stats;
+	}
+
+	/** Return the current ingest statistics for each shard. */
+	private List<IngestShardStats> getIngestStats() {
+		List<IngestShardStats> results = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			IngestShard shard = shards[i];
+			IngestShardStats stats = new IngestShardStats();
+			stats.shard = i;
+			stats.queueDepth = shard.dataQueue.size();
+			stats.queuedRecords = shard.queuedRecordCount.get();
+			stats.droppedRecordCount = shard.droppedRecordCount.get();
+			stats.batchCount = shard.batchCount.get();
+			stats.recordCount = shard.recordCount.get();
+			if (stats.batchCount > 0) {
+				stats.avgQueueLatencyMs = shard.totalQueueTimeNs.get() /
+					(stats.batchCount * 1_000_000.0);
+				stats.avgProcessingLatencyMs =
+					shard.totalProcessingTimeNs.get() /
+						(stats.batchCount * 1_000_000.0);
+			}
+			stats.maxProcessingLatencyMs =
+				shard.maxProcessingTimeNs.get() / 1_000_000.0;
+			results.add(stats);
+		}
+		return results;
+	}
+
+	/**
+	 * Fetch initial data (called only once).
+	 *
+	 * Recent wifi scans are first backfilled from the database (if enabled),
+	 * then states for all devices are fetched from uCentralGw with bounded
+	 * parallelism.
+	 */
 	private void fetchInitialData() {
 		while (!client.isInitialized()) {
 			logger.trace("Waiting for ucentral client");
@@ -250,57 +745,142 @@ public class Modeler implements Runnable {
 			}
 		}
 
-		// TODO: backfill data from database?
+		if (params.backfillFromDatabase && dbManager != null) {
+			backfillFromDatabase();
+		}
+		fetchGatewayStates();
+
+		long readyNs = System.nanoTime();
+		readyTimeNs = readyNs;
+		logger.info(
+			"Modeler ready after {} ms ({} wifi scan(s) from database, " +
+				"{} state(s) from uCentralGw)",
+			(readyNs - startTimeNs) / 1_000_000,
+			initialWifiScansFromDatabase.get(),
+			initialStatesFromGateway.get()
+		);
+	}
+
+	/**
+	 * Backfill recent wifi scans from the database.
+	 *
+	 * States are not backfilled: states rebuilt from stored metrics lack the
+	 * SSID radio references and other fields which the optimizers rely on, so
+	 * the latest state of every device is always fetched from uCentralGw.
+	 */
+	void backfillFromDatabase() {
+		final long minTimeMs =
+			System.currentTimeMillis() - params.backfillWindowMs;
 
-		// Fetch state from uCentralGw
+		try {
+			Map<String, List<List<WifiScanEntry>>> scans =
+				dbManager.getLatestWifiScans(
+					deviceDataManager.getRRMEnabledDevices(),
+					params.wifiScanBufferSize,
+					minTimeMs
+				);
+			if (scans != null) {
+				for (
+					Map.Entry<String, List<List<WifiScanEntry>>> e : scans
+						.entrySet()
+				) {
+					String serialNumber = e.getKey();
+					if (!isRRMEnabled(serialNumber)) {
+						continue;
+					}
+					updateDeviceData(serialNumber, () -> {
+						for (List<WifiScanEntry> scan : e.getValue()) {
+							addWifiScan(serialNumber, scan);
+						}
+					});
+					initialWifiScansFromDatabase
+						.addAndGet(e.getValue().size());
+				}
+			}
+		} catch (SQLException e) {
+			logger.error("Failed to backfill wifi scans from database", e);
+		}
+	}
+
+	/**
+	 * Fetch the latest state from uCentralGw for all RRM-enabled devices,
+	 * using up to {@link ModelerParams#initialFetchParallelism} concurrent
+	 * requests.
+	 */
+	private void fetchGatewayStates() {
 		List<DeviceWithStatus> devices = client.getDevices();
 		if (devices == null) {
 			logger.error("Failed to fetch devices!");
 			return;
 		}
 		logger.debug("Received device list of size = {}", devices.size());
-		for (DeviceWithStatus device : devices) {
-			// Check if enabled
-			if (!isRRMEnabled(device.serialNumber)) {
-				logger.debug(
-					"Skipping data for non-RRM-enabled device {}",
-					device.serialNumber
-				);
-				continue;
-			}
 
-			StatisticsRecords records =
-				client.getLatestStats(device.serialNumber, 1);
-			if (records == null || records.data.size() != 1) {
-				continue;
-			}
-			JsonObject state = records.data.get(0).data;
-			if (state != null) {
-				try {
-					State stateModel = gson.fromJson(state, State.class);
-					dataModel.latestStates.computeIfAbsent(
-						device.serialNumber,
-						k -> new LinkedList<>()
-					).add(stateModel);
+		ExecutorService executor = Executors.newFixedThreadPool(
+			Math.max(params.initialFetchParallelism, 1),
+			new Utils.NamedThreadFactory(
+				"RRM_" + getClass().getSimpleName() + "_InitialFetch"
+			)
+		);
+		try {
+			for (DeviceWithStatus device : devices) {
+				// Check if enabled
+				if (!isRRMEnabled(device.serialNumber)) {
 					logger.debug(
-						"Device {}: added initial state from uCentralGw",
+						"Skipping data for non-RRM-enabled device {}",
 						device.serialNumber
 					);
-				} catch (JsonSyntaxException e) {
-					logger.error(
-						String.format(
-							"Device %s: failed to deserialize state: %s",
-							device.serialNumber,
-							state
-						),
-						e
-					);
+					continue;
 				}
+				executor.submit(() -> fetchGatewayState(device.serialNumber));
 			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** Fetch the latest state for the given device from uCentralGw. */
+	private void fetchGatewayState(String serialNumber) {
+		StatisticsRecords records = client.getLatestStats(serialNumber, 1);
+		if (records == null || records.data.size() != 1) {
+			return;
+		}
+		JsonObject state = records.data.get(0).data;
+		if (state == null) {
+			return;
+		}
+		try {
+			State stateModel = gson.fromJson(state, State.class);
+			updateDeviceData(
+				serialNumber,
+				() -> addState(serialNumber, stateModel)
+			);
+			initialStatesFromGateway.incrementAndGet();
+			logger.debug(
+				"Device {}: added initial state from uCentralGw",
+				serialNumber
+			);
+		} catch (JsonSyntaxException e) {
+			logger.error(
+				String.format(
+					"Device %s: failed to deserialize state: %s",
+					serialNumber,
+					state
+				),
+				e
+			);
 		}
 	}
 
-	/** Process input data. */
+	/**
+	 * Process input data.
+	 *
+	 * This may be called concurrently from different shards, but all records
+	 * for a given device are always processed by the same shard.
+	 */
 	private void processData(InputData data) {
 		// for logging only
 		Set<String> stateUpdates = new TreeSet<>();
@@ -309,55 +889,23 @@ public class Modeler implements Runnable {
 		switch (data.type) {
 		case STATE:
 			for (KafkaRecord record : data.records) {
-				JsonObject state = record.payload.getAsJsonObject("state");
-				if (state != null) {
-					try {
-						State stateModel = gson.fromJson(state, State.class);
-						List<State> latestStatesList = dataModel.latestStates
-							.computeIfAbsent(
-								record.serialNumber,
-								k -> new LinkedList<>()
-							);
-						while (
-							latestStatesList.size() >= params.stateBufferSize
-						) {
-							latestStatesList.remove(0);
-						}
-						latestStatesList.add(stateModel);
-						stateUpdates.add(record.serialNumber);
-					} catch (JsonSyntaxException e) {
-						logger.error(
-							String.format(
-								"Device %s: failed to deserialize state: %s",
-								record.serialNumber,
-								state
-							),
-							e
-						);
-					}
+				if (record.state == null) {
+					continue;
 				}
+				addState(record.serialNumber, record.state);
+				indexDevice(record.serialNumber);
+				stateUpdates.add(record.serialNumber);
 			}
 			break;
 		case WIFISCAN:
 			for (KafkaRecord record : data.records) {
-				List<List<WifiScanEntry>> wifiScanList =
-					dataModel.latestWifiScans.computeIfAbsent(
-						record.serialNumber,
-						k -> new LinkedList<>()
-					);
-
-				// Parse and validate this record
-				List<WifiScanEntry> scanEntries = UCentralUtils
-					.parseWifiScanEntries(record.payload, record.timestampMs);
+				List<WifiScanEntry> scanEntries = record.wifiScanEntries;
 				if (scanEntries == null) {
 					continue;
 				}
 
-				// Add to list (and truncate to max size)
-				while (wifiScanList.size() >= params.wifiScanBufferSize) {
-					wifiScanList.remove(0);
-				}
-				wifiScanList.add(scanEntries);
+				addWifiScan(record.serialNumber, scanEntries);
+				indexDevice(record.serialNumber);
 				wifiScanUpdates.add(record.serialNumber);
 			}
 			break;
@@ -379,6 +927,38 @@ public class Modeler implements Runnable {
 		}
 	}
 
+	/**
+	 * Append a state to the device's history (evicting the oldest state when
+	 * full).
+	 *
+	 * This must only be called from within {@link #updateDataModel(Runnable)},
+	 * and from a single thread at a time per device.
+	 */
+	private void addState(String serialNumber, State state) {
+		dataModel.latestStates
+			.computeIfAbsent(
+				serialNumber,
+				k -> new RingBuffer<>(params.stateBufferSize)
+			)
+			.add(state);
+	}
+
+	/**
+	 * Append a wifi scan to the device's history (evicting the oldest scan
+	 * when full).
+	 *
+	 * This must only be called from within {@link #updateDataModel(Runnable)},
+	 * and from a single thread at a time per device.
+	 */
+	private void addWifiScan(String serialNumber, List<WifiScanEntry> scan) {
+		dataModel.latestWifiScans
+			.computeIfAbsent(
+				serialNumber,
+				k -> new RingBuffer<>(params.wifiScanBufferSize)
+			)
+			.add(scan);
+	}
+
 	/**
 	 * Update device capabilities into DataModel whenever there are new changes.
 	 */
@@ -386,9 +966,12 @@ public class Modeler implements Runnable {
 		String serialNumber,
 		DeviceCapabilities capabilities
 	) {
-		dataModel.latestDeviceCapabilitiesPhy.put(
+		updateDeviceData(
 			serialNumber,
-			capabilities.capabilities.wifi
+			() -> dataModel.latestDeviceCapabilitiesPhy.put(
+				serialNumber,
+				capabilities.capabilities.wifi
+			)
 		);
 	}
 
@@ -402,8 +985,13 @@ public class Modeler implements Runnable {
 		// Get old vs new radios info and store the new radios info
 		JsonArray newRadioList = config.getRadioConfigList();
 		Set<String> newRadioBandsSet = config.getRadioBandsSet(newRadioList);
-		JsonArray oldRadioList = dataModel.latestDeviceStatusRadios
-			.put(serialNumber, newRadioList);
+		JsonArray oldRadioList =
+			dataModel.latestDeviceStatusRadios.get(serialNumber);
+		updateDeviceData(
+			serialNumber,
+			() -> dataModel.latestDeviceStatusRadios
+				.put(serialNumber, newRadioList)
+		);
 		Set<String> oldRadioBandsSet = config.getRadioBandsSet(oldRadioList);
 
 		// Print info only when there are any updates
@@ -419,12 +1007,7 @@ public class Modeler implements Runnable {
 
 	/** Return whether the given device has RRM enabled. */
 	private boolean isRRMEnabled(String serialNumber) {
-		DeviceConfig deviceConfig =
-			deviceDataManager.getDeviceConfig(serialNumber);
-		if (deviceConfig == null) {
-			return false;
-		}
-		return deviceConfig.enableRRM;
+		return deviceDataManager.isRRMEnabled(serialNumber);
 	}
 
 	/** Return the current data model (direct reference). */
@@ -432,13 +1015,257 @@ public class Modeler implements Runnable {
 		return dataModel;
 	}
 
-	/** Return the current data model (deep copy). */
-	public DataModel getDataModelCopy() {
-		return Utils.deepCopy(dataModel, DataModel.class);
+	/**
+	 * Return an immutable snapshot of the data model for all devices.
+	 *
+	 * @see #getDataModelSnapshot(String)
+	 */
+	public DataModel getDataModelSnapshot() {
+		return getDataModelSnapshot(null);
+	}
+
+	/**
+	 * Return an immutable snapshot of the data model, restricted to the given
+	 * RF zone (or including all devices if null).
+	 *
+	 * The snapshot is consistent across all devices, and is reused until the
+	 * next model update. Only the maps and histories are copied, so the
+	 * objects contained within must not be modified. Histories are copied
+	 * after releasing the update lock, so their oldest entries may be omitted
+	 * if they are evicted by concurrent updates.
+	 */
+	public DataModel getDataModelSnapshot(String zone) {
+		long topologyVersion = deviceDataManager.getTopologyVersion();
+		CachedSnapshot cached =
+			(zone == null) ? fullSnapshot : zoneSnapshots.get(zone);
+		if (
+			cached != null &&
+				cached.model.version == modelVersion.get() &&
+				cached.topologyVersion == topologyVersion
+		) {
+			return cached.model;
+		}
+
+		// Only capture references under the lock, and copy outside of it
+		ModelCapture capture;
+		Lock l = snapshotLock.writeLock();
+		l.lock();
+		try {
+			if (zoneIndexTopologyVersion != topologyVersion) {
+				rebuildZoneIndex(topologyVersion);
+			}
+			Set<String> serialNumbers = (zone == null)
+				? null
+				: zoneIndex.getOrDefault(zone, Collections.emptySet());
+			capture = captureModel(serialNumbers);
+		} finally {
+			l.unlock();
+		}
+		CachedSnapshot snapshot =
+			new CachedSnapshot(topologyVersion, takeSnapshot(capture));
+		if (zone == null) {
+			fullSnapshot = snapshot;
+		} else {
+			zoneSnapshots.put(zone, snapshot);
+		}
+		return snapshot.model;
+	}
+
+	/**
+	 * Return aggregated wifi scan entries for all devices in the given RF zone
+	 * (or all devices if null), computed from a data model snapshot.
+	 *
+	 * @see ModelerUtils#getAggregatedWifiScans(DataModel, long, Aggregator)
+	 */
+	public Map<String, Map<String, WifiScanEntry>> getAggregatedWifiScans(
+		String zone,
+		long obsoletionPeriodMs,
+		Aggregator<Double> agg
+	) {
+		return ModelerUtils.getAggregatedWifiScans(
+			getDataModelSnapshot(zone),
+			obsoletionPeriodMs,
+			agg
+		);
+	}
+
+	/**
+	 * Return aggregated states for all devices in the given RF zone (or all
+	 * devices if null), computed from a data model snapshot.
+	 *
+	 * @see ModelerUtils#getAggregatedStates(DataModel, long, long)
+	 */
+	public Map<String, Map<String, List<AggregatedState>>> getAggregatedStates(
+		String zone,
+		long obsoletionPeriodMs
+	) {
+		return ModelerUtils.getAggregatedStates(
+			getDataModelSnapshot(zone),
+			obsoletionPeriodMs,
+			System.currentTimeMillis()
+		);
+	}
+
+	/**
+	 * Capture references to the data model entries for the given devices (or
+	 * all devices if null), along with the current position of each history.
+	 *
+	 * The caller must hold the {@link #snapshotLock} write lock.
+	 */
+	private ModelCapture captureModel(Set<String> serialNumbers) {
+		ModelCapture capture = new ModelCapture();
+		capture.version = modelVersion.get();
+		capture.latestWifiScans = copyEntries(
+			dataModel.latestWifiScans,
+			serialNumbers,
+			BufferPosition::new
+		);
+		capture.latestStates = copyEntries(
+			dataModel.latestStates,
+			serialNumbers,
+			BufferPosition::new
+		);
+		capture.latestDeviceStatusRadios = copyEntries(
+			dataModel.latestDeviceStatusRadios,
+			serialNumbers,
+			Function.identity()
+		);
+		capture.latestDeviceCapabilitiesPhy = copyEntries(
+			dataModel.latestDeviceCapabilitiesPhy,
+			serialNumbers,
+			Function.identity()
+		);
+		return capture;
+	}
+
+	/**
+	 * Build a data model snapshot from captured references, copying each
+	 * history as of its captured position. This does not require any lock.
+	 */
+	private static DataModel takeSnapshot(ModelCapture capture) {
+		DataModel snapshot = new DataModel();
+		snapshot.version = capture.version;
+		snapshot.latestWifiScans = copyEntries(
+			capture.latestWifiScans,
+			null,
+			BufferPosition::readOnlyCopy
+		);
+		snapshot.latestStates = copyEntries(
+			capture.latestStates,
+			null,
+			BufferPosition::readOnlyCopy
+		);
+		snapshot.latestDeviceStatusRadios = capture.latestDeviceStatusRadios;
+		snapshot.latestDeviceCapabilitiesPhy = copyEntries(
+			capture.latestDeviceCapabilitiesPhy,
+			null,
+			Collections::unmodifiableMap
+		);
+		return snapshot;
+	}
+
+	/** Add the given device to the zone index, if not already present. */
+	private void indexDevice(String serialNumber) {
+		if (indexedDeviceZones.containsKey(serialNumber)) {
+			return;
+		}
+		String zone = deviceDataManager.getDeviceZone(serialNumber);
+		if (zone == null) {
+			return;
+		}
+		indexedDeviceZones.put(serialNumber, zone);
+		zoneIndex.computeIfAbsent(zone, k -> ConcurrentHashMap.newKeySet())
+			.add(serialNumber);
+	}
+
+	/**
+	 * Rebuild the zone index from all devices in the data model.
+	 *
+	 * The caller must hold the {@link #snapshotLock} write lock.
+	 */
+	private void rebuildZoneIndex(long topologyVersion) {
+		zoneIndex.clear();
+		indexedDeviceZones.clear();
+		Set<String> serialNumbers = new HashSet<>();
+		serialNumbers.addAll(dataModel.latestWifiScans.keySet());
+		serialNumbers.addAll(dataModel.latestStates.keySet());
+		serialNumbers.addAll(dataModel.latestDeviceStatusRadios.keySet());
+		serialNumbers.addAll(dataModel.latestDeviceCapabilitiesPhy.keySet());
+		for (String serialNumber : serialNumbers) {
+			indexDevice(serialNumber);
+		}
+		zoneIndexTopologyVersion = topologyVersion;
+		logger.debug(
+			"Rebuilt zone index with {} device(s) in {} zone(s)",
+			indexedDeviceZones.size(),
+			zoneIndex.size()
+		);
+	}
+
+	/**
+	 * Return an immutable copy of the given map restricted to the given keys
+	 * (or all keys if null), applying the given function to each value.
+	 */
+	private static <V, R> Map<String, R> copyEntries(
+		Map<String, V> map,
+		Set<String> keys,
+		Function<V, R> copyFn
+	) {
+		Map<String, R> result = new HashMap<>();
+		if (keys == null) {
+			for (Map.Entry<String, V> e : map.entrySet()) {
+				result.put(e.getKey(), copyFn.apply(e.getValue()));
+			}
+		} else {
+			for (String key : keys) {
+				V value = map.get(key);
+				if (value != null) {
+					result.put(key, copyFn.apply(value));
+				}
+			}
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Apply an update to the data model and increment the model version.
+	 *
+	 * All modifications to {@link #dataModel} must happen through here.
+	 */
+	private void updateDataModel(Runnable update) {
+		Lock l = snapshotLock.readLock();
+		l.lock();
+		try {
+			update.run();
+			modelVersion.incrementAndGet();
+		} finally {
+			l.unlock();
+		}
+	}
+
+	/**
+	 * Apply an update for the given device to the data model (as in
+	 * {@link #updateDataModel(Runnable)}) and add it to the zone index.
+	 */
+	private void updateDeviceData(String serialNumber, Runnable update) {
+		updateDataModel(() -> {
+			update.run();
+			indexDevice(serialNumber);
+		});
 	}
 
 	/** Revalidate the data model to remove any non-RRM-enabled devices. */
 	public void revalidate() {
+		updateDataModel(this::revalidateImpl);
+		zoneSnapshots.keySet()
+			.removeIf(zone -> !deviceDataManager.isZoneInTopology(zone));
+	}
+
+	/** Remove any non-RRM-enabled devices from the data model. */
+	private void revalidateImpl() {
+		// Removed devices may still be in the zone index
+		zoneIndexTopologyVersion = -1;
+
 		if (
 			dataModel.latestWifiScans.entrySet()
 				.removeIf(e -> !isRRMEnabled(e.getKey()))
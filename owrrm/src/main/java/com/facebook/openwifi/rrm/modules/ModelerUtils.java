@@ -13,8 +13,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +29,6 @@ import com.facebook.openwifi.cloudsdk.models.ap.State.Interface;
 import com.facebook.openwifi.cloudsdk.models.ap.State.Interface.SSID;
 import com.facebook.openwifi.cloudsdk.models.ap.State.Interface.SSID.Association;
 import com.facebook.openwifi.rrm.aggregators.Aggregator;
-import com.facebook.openwifi.rrm.aggregators.MeanAggregator;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
 
 /**
@@ -40,22 +39,22 @@ public class ModelerUtils {
 		LoggerFactory.getLogger(ModelerUtils.class);
 
 	/** The pathloss exponent for mapping the distance (in meters) to prop loss (in dB).*/
-	private static final double PATHLOSS_EXPONENT = 2;
+	static final double PATHLOSS_EXPONENT = 2;
 
 	/** The net loss/gain in the link budget, including all antenna gains/system loss. */
-	private static final double LINKBUDGET_FACTOR = 20;
+	static final double LINKBUDGET_FACTOR = 20;
 
 	/** The default noise power in dBm depending on the BW (should be adjusted later). */
-	private static final double NOISE_POWER = -94;
+	static final double NOISE_POWER = -94;
 
 	/** The guaranteed SINR threshold in dB */
-	private static final double SINR_THRESHOLD = 20;
+	static final double SINR_THRESHOLD = 20;
 
 	/** The guaranteed RSL value in dBm */
-	private static final double RX_THRESHOLD = -80;
+	static final double RX_THRESHOLD = -80;
 
 	/** The pre defined target coverage in percentage. */
-	private static final double COVERAGE_THRESHOLD = 70;
+	static final double COVERAGE_THRESHOLD = 70;
 
 	// This class should not be instantiated.
 	private ModelerUtils() {}
@@ -236,7 +235,7 @@ public class ModelerUtils {
 	 *
 	 * @return true if the entries should be aggregated
 	 */
-	private static boolean matchesForAggregation(
+	static boolean matchesForAggregation(
 		WifiScanEntry entry1,
 		WifiScanEntry entry2
 	) {
@@ -290,7 +289,7 @@ public class ModelerUtils {
 		return getAggregatedWifiScans(
 			dataModel,
 			obsoletionPeriodMs,
-			new MeanAggregator(),
+			agg,
 			System.currentTimeMillis()
 		);
 	}
@@ -298,6 +297,9 @@ public class ModelerUtils {
 	/**
 	 * Compute aggregated wifiscans using a given reference time.
 	 *
+	 * This indexes all entries in the data model on every call, so callers
+	 * should pass a zone-scoped snapshot where possible.
+	 *
 	 * @see #getAggregatedWifiScans(com.facebook.openwifi.rrm.modules.Modeler.DataModel,
 	 *      long, Aggregator)
 	 */
@@ -309,84 +311,8 @@ public class ModelerUtils {
 	) {
 		// this method and the getAggregatedWifiScans() which does not take in
 		// the ref time were separated to make testing easier
-		if (obsoletionPeriodMs < 0) {
-			throw new IllegalArgumentException(
-				"obsoletionPeriodMs must be non-negative."
-			);
-		}
-		Map<String, Map<String, WifiScanEntry>> aggregatedWifiScans =
-			new HashMap<>();
-		for (
-			Map.Entry<String, List<List<WifiScanEntry>>> apToScansMapEntry : dataModel.latestWifiScans
-				.entrySet()
-		) {
-			String serialNumber = apToScansMapEntry.getKey();
-			List<List<WifiScanEntry>> scans = apToScansMapEntry.getValue();
-			if (scans.isEmpty()) {
-				continue;
-			}
-			/*
-			 * Flatten the wifiscan entries and sort in reverse chronological order. Sorting
-			 * is done just in case the entries in the original list are not chronological
-			 * already - although they are inserted chronologically, perhaps latency,
-			 * synchronization, etc. could cause the actual unixTimeMs to be out-of-order.
-			 */
-			List<WifiScanEntry> mostRecentToOldestEntries =
-				scans.stream().flatMap(List::stream)
-					.sorted((entry1, entry2) -> {
-						return -Long
-							.compare(entry1.unixTimeMs, entry2.unixTimeMs);
-					})
-					.collect(Collectors.toUnmodifiableList());
-			// Split mostRecentToOldest into separate lists for each BSSID
-			// These lists will be in reverse chronological order also
-			Map<String, List<WifiScanEntry>> bssidToEntriesMap =
-				new HashMap<>();
-			for (WifiScanEntry entry : mostRecentToOldestEntries) {
-				if (entry.bssid == null) {
-					continue;
-				}
-				bssidToEntriesMap
-					.computeIfAbsent(entry.bssid, bssid -> new ArrayList<>())
-					.add(entry);
-			}
-
-			// calculate the aggregate for each bssid for this AP
-			for (
-				Map.Entry<String, List<WifiScanEntry>> bssidToWifiScanEntriesMapEntry : bssidToEntriesMap
-					.entrySet()
-			) {
-				String bssid = bssidToWifiScanEntriesMapEntry.getKey();
-				List<WifiScanEntry> entries =
-					bssidToWifiScanEntriesMapEntry.getValue();
-				WifiScanEntry mostRecentEntry = entries.get(0);
-				agg.reset();
-				for (WifiScanEntry entry : entries) {
-					if (refTimeMs - entry.unixTimeMs > obsoletionPeriodMs) {
-						// discard obsolete entries
-						break;
-					}
-					if (
-						mostRecentEntry == entry ||
-							matchesForAggregation(mostRecentEntry, entry)
-					) {
-						aggregatedWifiScans
-							.computeIfAbsent(serialNumber, k -> new HashMap<>())
-							.computeIfAbsent(bssid, k -> new WifiScanEntry(entry));
-						agg.addValue((double) entry.signal);
-					}
-				}
-				if (agg.getCount() > 0) {
-					aggregatedWifiScans.get(serialNumber).get(bssid).signal =
-						(int) Math.round(agg.getAggregate());
-				} else {
-					aggregatedWifiScans
-						.computeIfAbsent(serialNumber, k -> new HashMap<>())
-						.put(bssid, mostRecentEntry);
-				}
-			}
-		}
-		return aggregatedWifiScans;
+		return AggregatedWifiScanIndex.of(dataModel.latestWifiScans)
+			.getAggregatedWifiScans(obsoletionPeriodMs, agg, refTimeMs);
 	}
 
 	/**
@@ -464,6 +390,9 @@ public class ModelerUtils {
 	 * rssi fields are being aggregated. They are of {@code List<Integer>} type in AggregatedState,
 	 * which list all the values over the time.
 	 *
+	 * This indexes all States in the data model on every call (without
+	 * modifying them).
+	 *
 	 * @param dataModel the data model which includes the latest recorded States
 	 * @param obsoletionPeriodMs the maximum amount of time (in milliseconds) it
 	 *                           is worth aggregating over, starting from the
@@ -473,55 +402,18 @@ public class ModelerUtils {
 	 *                           (i.e., the "non-obsolete" window is inclusive).
 	 *                           Must be non-negative.
 	 * @param refTimeMs	the reference time were passed to make testing easier
+	 *                  (Unix time in ms, while State timestamps are in seconds)
 	 * @return map from serial number to a map from bssid_station String pair to a list of AggregatedState
+	 *
+	 * @see Modeler#getAggregatedStates(String, long)
 	 */
 	public static Map<String, Map<String, List<AggregatedState>>> getAggregatedStates(
 		Modeler.DataModel dataModel,
 		long obsoletionPeriodMs,
 		long refTimeMs
 	) {
-		if (obsoletionPeriodMs < 0) {
-			throw new IllegalArgumentException(
-				"obsoletionPeriodMs must be non-negative."
-			);
-		}
-		Map<String, Map<String, List<AggregatedState>>> aggregatedStates =
-			new HashMap<>();
-
-		for (
-			Map.Entry<String, List<State>> deviceToStateList : dataModel.latestStates
-				.entrySet()
-		) {
-			String serialNumber = deviceToStateList.getKey();
-			List<State> states = deviceToStateList.getValue();
-
-			if (states.isEmpty()) {
-				continue;
-			}
-
-			/**
-			 * Sort in reverse chronological order. Sorting is done just in case the
-			 * States in the original list are not chronological already - although
-			 * they are inserted chronologically, perhaps latency, synchronization, etc.
-			 */
-			states.sort(
-				(state1, state2) -> -Long.compare(state1.unit.localtime, state2.unit.localtime)
-			);
-
-			Map<String, List<AggregatedState>> bssidToAggregatedStates =
-				aggregatedStates
-					.computeIfAbsent(serialNumber, k -> new HashMap<>());
-
-			for (State state : states) {
-				if (refTimeMs - state.unit.localtime > obsoletionPeriodMs) {
-					// discard obsolete entries
-					break;
-				}
-
-				addStateToAggregation(bssidToAggregatedStates, state);
-			}
-		}
-		return aggregatedStates;
+		return AggregatedStateIndex.of(dataModel.latestStates)
+			.getAggregatedStates(obsoletionPeriodMs, refTimeMs);
 	}
 
 	/**
@@ -531,18 +423,18 @@ public class ModelerUtils {
 	 * @return map from device String to latest State
 	 */
 	public static Map<String, State> getLatestState(
-		Map<String, List<State>> latestStates
+		Map<String, RingBuffer<State>> latestStates
 	) {
 		Map<String, State> latestState = new ConcurrentHashMap<>();
 		for (
-			Map.Entry<String, List<State>> stateEntry : latestStates.entrySet()
+			Map.Entry<String, RingBuffer<State>> stateEntry : latestStates
+				.entrySet()
 		) {
-			String key = stateEntry.getKey();
-			List<State> value = stateEntry.getValue();
-			if (value.isEmpty()) {
-				latestState.put(key, null);
-			} else {
-				latestState.put(key, value.get(value.size() - 1));
+			// ConcurrentHashMap does not permit null values, so devices with
+			// no states are omitted
+			State state = stateEntry.getValue().latest();
+			if (state != null) {
+				latestState.put(stateEntry.getKey(), state);
 			}
 		}
 		return latestState;
@@ -575,4 +467,39 @@ public class ModelerUtils {
 		}
 		return bands[0];
 	}
+
+	/**
+	 * Return a shallow copy of the given data model which only includes the
+	 * given devices. The input model is not modified.
+	 */
+	public static DataModel restrictDataModel(
+		DataModel model,
+		Set<String> serialNumbers
+	) {
+		DataModel result = new DataModel();
+		result.version = model.version;
+		result.latestWifiScans =
+			restrictEntries(model.latestWifiScans, serialNumbers);
+		result.latestStates =
+			restrictEntries(model.latestStates, serialNumbers);
+		result.latestDeviceStatusRadios =
+			restrictEntries(model.latestDeviceStatusRadios, serialNumbers);
+		result.latestDeviceCapabilitiesPhy =
+			restrictEntries(model.latestDeviceCapabilitiesPhy, serialNumbers);
+		return result;
+	}
+
+	/** Return a copy of the given map which only includes the given keys. */
+	private static <V> Map<String, V> restrictEntries(
+		Map<String, V> map,
+		Set<String> keys
+	) {
+		Map<String, V> result = new HashMap<>();
+		for (Map.Entry<String, V> e : map.entrySet()) {
+			if (keys.contains(e.getKey())) {
+				result.put(e.getKey(), e.getValue());
+			}
+		}
+		return result;
+	}
 }
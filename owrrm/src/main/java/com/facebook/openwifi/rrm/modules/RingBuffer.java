@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Fixed-capacity, append-only history buffer used by {@link Modeler.DataModel}.
+ *
+ * Appending is O(1) and evicts the oldest element once the buffer is full.
+ * The buffer supports a single writer and any number of concurrent readers
+ * without locking: readers always operate on a consistent snapshot (oldest
+ * first) and never observe a {@code ConcurrentModificationException}.
+ *
+ * This is intentionally not a {@link java.util.Collection}: elements can
+ * only be appended, and the buffer is serialized as a plain JSON array.
+ *
+ * @param <E> the element type
+ */
+@JsonAdapter(RingBuffer.GsonAdapterFactory.class)
+public class RingBuffer<E> implements Iterable<E> {
+	/**
+	 * The element slots. One extra slot is allocated so that the slot being
+	 * written is never one of the {@link #capacity} visible elements.
+	 */
+	private final AtomicReferenceArray<E> slots;
+
+	/** The maximum number of visible elements. */
+	private final int capacity;
+
+	/**
+	 * The total number of elements ever appended. Only the writer modifies
+	 * this, after the corresponding slot has been written.
+	 */
+	private volatile long writeCount = 0;
+
+	/** Whether this buffer rejects further appends. */
+	private final boolean readOnly;
+
+	/** Constructor. */
+	public RingBuffer(int capacity) {
+		this(capacity, false);
+	}
+
+	/** Constructor. */
+	private RingBuffer(int capacity, boolean readOnly) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.slots = new AtomicReferenceArray<>(capacity + 1);
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Create a buffer holding the given elements (oldest first), with capacity
+	 * equal to the number of elements.
+	 */
+	@SafeVarargs
+	public static <E> RingBuffer<E> of(E... elements) {
+		return copyOf(List.of(elements), Math.max(elements.length, 1));
+	}
+
+	/**
+	 * Create a buffer with the given capacity holding the latest elements of
+	 * the given collection (oldest first).
+	 */
+	public static <E> RingBuffer<E> copyOf(Iterable<E> elements, int capacity) {
+		RingBuffer<E> buf = new RingBuffer<>(capacity);
+		for (E e : elements) {
+			buf.add(e);
+		}
+		return buf;
+	}
+
+	/**
+	 * Return a read-only copy of this buffer holding its current elements,
+	 * with the same capacity. Elements are not copied.
+	 */
+	public RingBuffer<E> readOnlyCopy() {
+		return readOnlyCopy(writeCount);
+	}
+
+	/**
+	 * Return a read-only copy of this buffer holding the elements it held at
+	 * the given {@link #position()}, with the same capacity. This allows
+	 * copying to happen after the position is recorded (ex. outside of a
+	 * lock); elements evicted in the meantime are omitted.
+	 *
+	 * @throws IllegalArgumentException if the position is in the future
+	 */
+	public RingBuffer<E> readOnlyCopy(long position) {
+		if (position < 0 || position > writeCount) {
+			throw new IllegalArgumentException("Invalid position");
+		}
+		RingBuffer<E> buf = new RingBuffer<>(capacity, true);
+		List<E> elements = range(position, capacity);
+		for (int i = 0; i < elements.size(); i++) {
+			buf.slots.set(i, elements.get(i));
+		}
+		buf.writeCount = elements.size();
+		return buf;
+	}
+
+	/** Return the total number of elements ever appended to this buffer. */
+	public long position() {
+		return writeCount;
+	}
+
+	/** Return whether this buffer rejects further appends. */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/** Return the maximum number of elements held by this buffer. */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Append an element, evicting the oldest element if the buffer is full.
+	 *
+	 * This must only be called from a single writer thread at a time.
+	 *
+	 * @throws UnsupportedOperationException if this buffer is read-only
+	 */
+	public void add(E e) {
+		if (readOnly) {
+			throw new UnsupportedOperationException("buffer is read-only");
+		}
+		long seq = writeCount;
+		slots.set(slotIndex(seq), e);
+		writeCount = seq + 1;
+	}
+
+	/** Return the number of elements currently held by this buffer. */
+	public int size() {
+		return (int) Math.min(writeCount, capacity);
+	}
+
+	/** Return true if no elements have been added to this buffer. */
+	public boolean isEmpty() {
+		return writeCount == 0;
+	}
+
+	/**
+	 * Return the element at the given position, where index 0 is the oldest
+	 * element. Callers needing more than one element should use
+	 * {@link #snapshot()} or {@link #latest(int)} instead, since the buffer
+	 * may advance between calls.
+	 */
+	public E get(int index) {
+		long count = writeCount;
+		int size = (int) Math.min(count, capacity);
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(
+				"Index: " + index + ", Size: " + size
+			);
+		}
+		return slots.get(slotIndex(count - size + index));
+	}
+
+	/** Return the most recent element, or null if the buffer is empty. */
+	public E latest() {
+		long count = writeCount;
+		return (count == 0) ? null : slots.get(slotIndex(count - 1));
+	}
+
+	/**
+	 * Return an immutable list of (up to) the {@code n} most recent elements,
+	 * ordered from oldest to newest.
+	 */
+	public List<E> latest(int n) {
+		return range(writeCount, n);
+	}
+
+	/**
+	 * Return an immutable list of (up to) the {@code n} most recent elements
+	 * appended before the given position, ordered from oldest to newest, and
+	 * omitting any which were already evicted.
+	 */
+	private List<E> range(long end, int n) {
+		if (n <= 0) {
+			return Collections.emptyList();
+		}
+		long start = Math.max(0, end - Math.min(n, capacity));
+		List<E> result = new ArrayList<>((int) (end - start));
+		for (long seq = start; seq < end; seq++) {
+			result.add(slots.get(slotIndex(seq)));
+		}
+
+		// If the writer advanced while copying, the oldest elements may have
+		// been overwritten (a write of sequence "s" clobbers "s - capacity - 1")
+		long minValid = writeCount - capacity;
+		if (start < minValid) {
+			result = result.subList(
+				(int) Math.min(minValid - start, result.size()),
+				result.size()
+			);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Return an immutable snapshot of all elements, ordered from oldest to
+	 * newest.
+	 */
+	public List<E> snapshot() {
+		return latest(capacity);
+	}
+
+	/** Iterate over a snapshot of this buffer (oldest first). */
+	@Override
+	public Iterator<E> iterator() {
+		return snapshot().iterator();
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	/** Map a sequence number to its slot. */
+	private int slotIndex(long seq) {
+		return (int) (seq % (capacity + 1));
+	}
+
+	/**
+	 * Gson adapter which (de)serializes a buffer as a plain JSON array.
+	 * Deserialized buffers have capacity equal to their number of elements.
+	 */
+	static class GsonAdapterFactory implements TypeAdapterFactory {
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+			Type elementType = Object.class;
+			if (type.getType() instanceof ParameterizedType) {
+				elementType = ((ParameterizedType) type.getType())
+					.getActualTypeArguments()[0];
+			}
+			return (TypeAdapter<T>) new Adapter<>(
+				gson.getAdapter(TypeToken.get(elementType))
+			);
+		}
+	}
+
+	/** Gson adapter for a specific element type. */
+	private static class Adapter<E> extends TypeAdapter<RingBuffer<E>> {
+		/** The element adapter. */
+		private final TypeAdapter<E> elementAdapter;
+
+		/** Constructor. */
+		public Adapter(TypeAdapter<E> elementAdapter) {
+			this.elementAdapter = elementAdapter;
+		}
+
+		@Override
+		public void write(JsonWriter out, RingBuffer<E> value)
+			throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginArray();
+			for (E e : value.snapshot()) {
+				elementAdapter.write(out, e);
+			}
+			out.endArray();
+		}
+
+		@Override
+		public RingBuffer<E> read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			List<E> elements = new ArrayList<>();
+			in.beginArray();
+			while (in.hasNext()) {
+				elements.add(elementAdapter.read(in));
+			}
+			in.endArray();
+			return copyOf(elements, Math.max(elements.size(), 1));
+		}
+	}
+}
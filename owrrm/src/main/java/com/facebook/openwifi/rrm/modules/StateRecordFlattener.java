@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Streaming flattener of state record payloads into individual metrics.
+ * <p>
+ * The payload is read with a {@link JsonReader} instead of a JSON tree, and
+ * metric names are looked up from a {@link MetricNameCache} by component. So
+ * no tree, strings, or per-row objects are allocated for metrics which were
+ * seen before, apart from the reader's own tokens.
+ * <p>
+ * Devices send object keys in any order (in practice, alphabetically), so the
+ * name component of an object (ex. an interface's "name" or a client's
+ * "bssid") and the record time ("unit.localtime") may only be known after its
+ * values were read. Rows are therefore staged in reusable arrays, keyed by a
+ * node per object whose metric name prefix is resolved at the end of the
+ * record. Rows are only added to the batch if the whole record is valid.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class StateRecordFlattener {
+	/** The initial staging capacity (nodes and rows). */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Radio keys to store (see {@link DataCollector#RADIO_KEYS}). */
+	private static final Set<String> RADIO_KEYS =
+		new HashSet<>(Arrays.asList(DataCollector.RADIO_KEYS));
+
+	/** AP client keys to store (see {@link DataCollector#CLIENT_KEYS}). */
+	private static final Set<String> CLIENT_KEYS =
+		new HashSet<>(Arrays.asList(DataCollector.CLIENT_KEYS));
+
+	/**
+	 * AP client rate keys to store (see
+	 * {@link DataCollector#CLIENT_RATE_KEYS}).
+	 */
+	private static final Set<String> CLIENT_RATE_KEYS =
+		new HashSet<>(Arrays.asList(DataCollector.CLIENT_RATE_KEYS));
+
+	/** The metric name cache. */
+	private final MetricNameCache cache;
+
+	/** Staged node parent indexes (-1 for nodes with a known key). */
+	private int[] nodeParents = new int[INITIAL_CAPACITY];
+
+	/** Staged node name components, or null if not (yet) known. */
+	private String[] nodeComponents = new String[INITIAL_CAPACITY];
+
+	/** Staged node keys, or null if not (yet) resolved. */
+	private MetricNameCache.Key[] nodeKeys =
+		new MetricNameCache.Key[INITIAL_CAPACITY];
+
+	/** The number of staged nodes. */
+	private int nodeCount = 0;
+
+	/** Staged row nodes. */
+	private int[] rowNodes = new int[INITIAL_CAPACITY];
+
+	/** Staged row name components (following the node's name). */
+	private String[] rowComponents = new String[INITIAL_CAPACITY];
+
+	/** Staged row values. */
+	private long[] rowValues = new long[INITIAL_CAPACITY];
+
+	/** The number of staged rows. */
+	private int rowCount = 0;
+
+	/** The record time (Unix time, in seconds), if read. */
+	private long localtime;
+
+	/** Whether {@link #localtime} was read. */
+	private boolean hasLocaltime;
+
+	/** The device uptime, if read. */
+	private long uptime;
+
+	/** Whether {@link #uptime} was read. */
+	private boolean hasUptime;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cache the metric name cache (callers must call
+	 *              {@link MetricNameCache#clearIfFull()} between records only)
+	 */
+	public StateRecordFlattener(MetricNameCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Flatten a single state record into individual metrics, appending them
+	 * to the given batch.
+	 *
+	 * @param serialNumber the device serial number
+	 * @param payload a reader positioned inside the record's "payload" object
+	 * @param batch the batch to append to
+	 * @throws IOException if the payload is not valid JSON
+	 * @throws RuntimeException if the payload is not a valid state record,
+	 *                          in which case nothing is appended
+	 */
+	public void flatten(
+		String serialNumber,
+		JsonReader payload,
+		StateRecordBatch batch
+	) throws IOException {
+		nodeCount = 0;
+		rowCount = 0;
+		hasLocaltime = false;
+		hasUptime = false;
+		boolean hasState = false;
+		while (payload.hasNext()) {
+			if (payload.nextName().equals("state")) {
+				readState(payload);
+				hasState = true;
+				break;
+			}
+			payload.skipValue();
+		}
+		if (!hasState || !hasLocaltime || !hasUptime) {
+			throw new IllegalStateException("Incomplete state record");
+		}
+
+		// Resolve node keys (parents always precede their children)
+		for (int i = 0; i < nodeCount; i++) {
+			if (nodeKeys[i] == null && nodeComponents[i] != null) {
+				MetricNameCache.Key parentKey = nodeKeys[nodeParents[i]];
+				if (parentKey != null) {
+					nodeKeys[i] = parentKey.child(nodeComponents[i]);
+				}
+			}
+		}
+
+		// Append rows with resolved names (skipping unnamed SSIDs/clients)
+		for (int i = 0; i < rowCount; i++) {
+			MetricNameCache.Key key = nodeKeys[rowNodes[i]];
+			if (key != null) {
+				batch.add(
+					localtime,
+					key.child(rowComponents[i]).name,
+					rowValues[i],
+					serialNumber
+				);
+			}
+		}
+		batch.add(
+			localtime,
+			cache.root().child("unit").child("uptime").name,
+			uptime,
+			serialNumber
+		);
+	}
+
+	/**
+	 * Read the "state" object, staging "interface.*" rows (from "counters"
+	 * and selected client keys in "ssids.N.associations.M"), "radio.N.*" rows
+	 * (selected keys), and the "unit" values.
+	 */
+	private void readState(JsonReader reader) throws IOException {
+		boolean hasInterfaces = false;
+		boolean hasUnit = false;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "interfaces":
+				int interfacesNode =
+					addNode(-1, null, cache.root().child("interface"));
+				reader.beginArray();
+				while (reader.hasNext()) {
+					readInterface(reader, interfacesNode);
+				}
+				reader.endArray();
+				hasInterfaces = true;
+				break;
+			case "radios":
+				readRadios(reader);
+				break;
+			case "unit":
+				readUnit(reader);
+				hasUnit = true;
+				break;
+			default:
+				reader.skipValue();
+				break;
+			}
+		}
+		reader.endObject();
+		if (!hasInterfaces || !hasUnit) {
+			throw new IllegalStateException("Incomplete state record");
+		}
+	}
+
+	/** Read an "interfaces" entry. */
+	private void readInterface(JsonReader reader, int interfacesNode)
+		throws IOException {
+		int ifaceNode = addNode(interfacesNode, null, null);
+		int bssidsNode = -1;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "name":
+				nodeComponents[ifaceNode] = reader.nextString();
+				break;
+			case "counters":
+				reader.beginObject();
+				while (reader.hasNext()) {
+					addRow(ifaceNode, reader.nextName(), readLong(reader));
+				}
+				reader.endObject();
+				break;
+			case "ssids":
+				if (bssidsNode == -1) {
+					bssidsNode = addNode(ifaceNode, "bssid", null);
+				}
+				reader.beginArray();
+				while (reader.hasNext()) {
+					readSsid(reader, bssidsNode);
+				}
+				reader.endArray();
+				break;
+			default:
+				reader.skipValue();
+				break;
+			}
+		}
+		reader.endObject();
+		if (nodeComponents[ifaceNode] == null) {
+			throw new IllegalStateException("Interface without name");
+		}
+	}
+
+	/** Read an "ssids" entry. */
+	private void readSsid(JsonReader reader, int bssidsNode)
+		throws IOException {
+		int ssidNode = addNode(bssidsNode, null, null);
+		int clientsNode = addNode(ssidNode, "client", null);
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "bssid":
+				nodeComponents[ssidNode] = reader.nextString();
+				break;
+			case "associations":
+				reader.beginArray();
+				while (reader.hasNext()) {
+					readClient(reader, clientsNode);
+				}
+				reader.endArray();
+				break;
+			default:
+				reader.skipValue();
+				break;
+			}
+		}
+		reader.endObject();
+	}
+
+	/** Read an "associations" entry. */
+	private void readClient(JsonReader reader, int clientsNode)
+		throws IOException {
+		int clientNode = addNode(clientsNode, null, null);
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("bssid")) {
+				nodeComponents[clientNode] = reader.nextString();
+			} else if (CLIENT_KEYS.contains(name) && isPrimitive(reader)) {
+				addRow(clientNode, name, readLong(reader));
+			} else if (
+				CLIENT_RATE_KEYS.contains(name) &&
+					reader.peek() == JsonToken.BEGIN_OBJECT
+			) {
+				int rateNode = addNode(clientNode, name, null);
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String rateName = reader.nextName();
+					long value;
+					if (reader.peek() == JsonToken.BOOLEAN) {
+						value = reader.nextBoolean() ? 1 : 0;
+					} else {
+						value = readLong(reader);
+					}
+					addRow(rateNode, rateName, value);
+				}
+				reader.endObject();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/** Read the "radios" array. */
+	private void readRadios(JsonReader reader) throws IOException {
+		MetricNameCache.Key radiosKey = cache.root().child("radio");
+		reader.beginArray();
+		for (int i = 0; reader.hasNext(); i++) {
+			int radioNode = addNode(-1, null, radiosKey.child(i));
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (RADIO_KEYS.contains(name) && isPrimitive(reader)) {
+					addRow(radioNode, name, readLong(reader));
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		}
+		reader.endArray();
+	}
+
+	/** Read the "unit" object. */
+	private void readUnit(JsonReader reader) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "localtime":
+				localtime = readLong(reader);
+				hasLocaltime = true;
+				break;
+			case "uptime":
+				uptime = readLong(reader);
+				hasUptime = true;
+				break;
+			default:
+				reader.skipValue();
+				break;
+			}
+		}
+		reader.endObject();
+	}
+
+	/** Return whether the next value is a JSON primitive (not null). */
+	private static boolean isPrimitive(JsonReader reader) throws IOException {
+		JsonToken token = reader.peek();
+		return token == JsonToken.NUMBER ||
+			token == JsonToken.STRING ||
+			token == JsonToken.BOOLEAN;
+	}
+
+	/**
+	 * Read the next value as a long, with the same conversions as
+	 * {@link com.google.gson.JsonElement#getAsLong()} (numbers are truncated,
+	 * and strings must be integers).
+	 *
+	 * @throws NumberFormatException if the value is not a number
+	 * @throws IllegalStateException if the value is not a primitive
+	 */
+	private static long readLong(JsonReader reader) throws IOException {
+		switch (reader.peek()) {
+		case NUMBER:
+			try {
+				// Parses integers without allocating a string
+				return reader.nextLong();
+			} catch (NumberFormatException e) {
+				// Fractional or out of range (the reader keeps the token)
+				return new BigDecimal(reader.nextString()).longValue();
+			}
+		case STRING:
+			return Long.parseLong(reader.nextString());
+		case BOOLEAN:
+			throw new NumberFormatException(
+				"Expected a number but was " + reader.nextBoolean()
+			);
+		default:
+			throw new IllegalStateException(
+				"Expected a number but was " + reader.peek()
+			);
+		}
+	}
+
+	/**
+	 * Stage a node, i.e. a metric name prefix given by its parent's name and
+	 * a component, or by a known key. Returns the node index.
+	 */
+	private int addNode(
+		int parent,
+		String component,
+		MetricNameCache.Key key
+	) {
+		if (nodeCount == nodeParents.length) {
+			int capacity = nodeParents.length * 2;
+			nodeParents = Arrays.copyOf(nodeParents, capacity);
+			nodeComponents = Arrays.copyOf(nodeComponents, capacity);
+			nodeKeys = Arrays.copyOf(nodeKeys, capacity);
+		}
+		nodeParents[nodeCount] = parent;
+		nodeComponents[nodeCount] = component;
+		nodeKeys[nodeCount] = key;
+		return nodeCount++;
+	}
+
+	/** Stage a row under the given node. */
+	private void addRow(int node, String component, long value) {
+		if (rowCount == rowNodes.length) {
+			int capacity = rowNodes.length * 2;
+			rowNodes = Arrays.copyOf(rowNodes, capacity);
+			rowComponents = Arrays.copyOf(rowComponents, capacity);
+			rowValues = Arrays.copyOf(rowValues, capacity);
+		}
+		rowNodes[rowCount] = node;
+		rowComponents[rowCount] = component;
+		rowValues[rowCount] = value;
+		rowCount++;
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coverage model for evaluating many tx power combinations of a fixed set of
+ * AP locations.
+ * <p>
+ * This computes the same metric as {@link ModelerUtils#generateRxPower},
+ * {@link ModelerUtils#generateHeatMap}, {@link ModelerUtils#generateSinr},
+ * and {@link ModelerUtils#calculateTPCMetrics}, but the path loss between
+ * every grid point and AP (which does not depend on tx power) is computed
+ * only once, in the linear domain. Each evaluation then only multiplies and
+ * sums into reusable scratch buffers, without any logarithms, powers, or
+ * allocations.
+ * <p>
+ * The maximum SINR at a point is always that of the AP with the highest rx
+ * power, so only the highest and total rx power are tracked per point.
+ * <p>
+ * After a full {@link #evaluate(int[])}, {@link #update(int, int)} changes
+ * the tx power of a single AP in place, adjusting the total rx power by the
+ * difference and rescanning the other APs only at points where the changed
+ * AP was the highest and dropped. This makes walking through combinations
+ * that differ in one AP at a time (see {@code GrayCodePermutations}) cost
+ * about as much per combination as a model with one AP.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class TxPowerCoverageModel {
+	/** The maximum rx power (dBm), as a linear value (mW). */
+	private static final double MAX_RX_POWER_MW = dbmToMw(-30);
+
+	/** The noise power, as a linear value (mW). */
+	private static final double NOISE_POWER_MW =
+		dbmToMw(ModelerUtils.NOISE_POWER);
+
+	/** The rx power threshold, as a linear value (mW). */
+	private static final double RX_THRESHOLD_MW =
+		dbmToMw(ModelerUtils.RX_THRESHOLD);
+
+	/** The SINR threshold, as a linear ratio. */
+	private static final double SINR_THRESHOLD_LINEAR =
+		dbmToMw(ModelerUtils.SINR_THRESHOLD);
+
+	/** The number of APs. */
+	private final int numOfAPs;
+
+	/** The number of grid points. */
+	private final int pointCount;
+
+	/**
+	 * The linear path gain from each AP to each grid point, including the
+	 * link budget factor, indexed by {@code apIndex * pointCount + point}.
+	 */
+	private final double[] pathGain;
+
+	/** Scratch buffer: the highest rx power (mW) at each grid point. */
+	private final double[] bestRxPower;
+
+	/** Scratch buffer: the total rx power (mW) at each grid point. */
+	private final double[] totalRxPower;
+
+	/** The tx power (mW) of each AP in the last evaluation. */
+	private final double[] txPowerMw;
+
+	/** Whether the scratch buffers hold the last evaluation. */
+	private boolean evaluated = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sampleSpace the boundary of the space
+	 * @param apLocX the location x of the APs
+	 * @param apLocY the location y of the APs
+	 * @throws IllegalArgumentException if the locations are invalid or out of
+	 *                                  range
+	 */
+	public TxPowerCoverageModel(
+		int sampleSpace,
+		List<Double> apLocX,
+		List<Double> apLocY
+	) {
+		if (
+			sampleSpace <= 0 ||
+				apLocX == null ||
+				apLocY == null ||
+				apLocX.size() != apLocY.size()
+		) {
+			throw new IllegalArgumentException("Invalid input data");
+		}
+
+		this.numOfAPs = apLocX.size();
+		this.pointCount = sampleSpace * sampleSpace;
+		this.pathGain = new double[numOfAPs * pointCount];
+		this.bestRxPower = new double[pointCount];
+		this.totalRxPower = new double[pointCount];
+		this.txPowerMw = new double[numOfAPs];
+
+		for (int apIndex = 0; apIndex < numOfAPs; apIndex++) {
+			double x = apLocX.get(apIndex);
+			double y = apLocY.get(apIndex);
+			if (x > sampleSpace || y > sampleSpace) {
+				throw new IllegalArgumentException(
+					"The location of the AP is out of range."
+				);
+			}
+			int offset = apIndex * pointCount;
+			for (int xIndex = 0; xIndex < sampleSpace; xIndex++) {
+				for (int yIndex = 0; yIndex < sampleSpace; yIndex++) {
+					double distance = Math.sqrt(
+						Math.pow((x - xIndex), 2) + Math.pow((y - yIndex), 2)
+					);
+					double pathLoss = ModelerUtils.LINKBUDGET_FACTOR +
+						20 * ModelerUtils.PATHLOSS_EXPONENT *
+							Math.log10(distance + 0.01);
+					pathGain[offset + xIndex * sampleSpace + yIndex] =
+						dbmToMw(-pathLoss);
+				}
+			}
+		}
+	}
+
+	/** Convert a power from dBm to mW (or any ratio from dB to linear). */
+	private static double dbmToMw(double dbm) {
+		return Math.pow(10, dbm / 10.0);
+	}
+
+	/** Return the number of APs. */
+	public int getNumOfAPs() {
+		return numOfAPs;
+	}
+
+	/**
+	 * Return the coverage metric for the given tx powers (see
+	 * {@link ModelerUtils#calculateTPCMetrics}), lower is better.
+	 *
+	 * @param txPower the tx power (dBm) of each AP
+	 * @return the combined metric of over and under coverage, infinity if the
+	 *         coverage target is not met
+	 */
+	public double evaluate(int[] txPower) {
+		if (txPower.length != numOfAPs) {
+			throw new IllegalArgumentException("Invalid input data");
+		}
+
+		final double[] best = bestRxPower;
+		final double[] total = totalRxPower;
+		Arrays.fill(best, 0);
+		Arrays.fill(total, 0);
+		for (int apIndex = 0; apIndex < numOfAPs; apIndex++) {
+			final double apTxPowerMw = dbmToMw(txPower[apIndex]);
+			final int offset = apIndex * pointCount;
+			for (int point = 0; point < pointCount; point++) {
+				double rxPower = Math.min(
+					apTxPowerMw * pathGain[offset + point],
+					MAX_RX_POWER_MW
+				);
+				best[point] = Math.max(best[point], rxPower);
+				total[point] += rxPower;
+			}
+			txPowerMw[apIndex] = apTxPowerMw;
+		}
+		evaluated = true;
+		return calculateMetric();
+	}
+
+	/**
+	 * Change the tx power of one AP from the last {@link #evaluate(int[])} or
+	 * {@link #update(int, int)}, and return the coverage metric for the
+	 * resulting tx powers.
+	 *
+	 * @param apIndex the index of the AP to change
+	 * @param txPower the new tx power (dBm) of the AP
+	 * @return the combined metric of over and under coverage, infinity if the
+	 *         coverage target is not met
+	 * @throws IllegalStateException if there is no previous evaluation (or it
+	 *                               was overwritten by {@link #lowerBound})
+	 */
+	public double update(int apIndex, int txPower) {
+		if (apIndex < 0 || apIndex >= numOfAPs) {
+			throw new IllegalArgumentException("Invalid input data");
+		}
+		if (!evaluated) {
+			throw new IllegalStateException("No previous evaluation");
+		}
+
+		final double[] best = bestRxPower;
+		final double[] total = totalRxPower;
+		final double oldTxPowerMw = txPowerMw[apIndex];
+		final double newTxPowerMw = dbmToMw(txPower);
+		txPowerMw[apIndex] = newTxPowerMw;
+		final int offset = apIndex * pointCount;
+		for (int point = 0; point < pointCount; point++) {
+			double gain = pathGain[offset + point];
+			double oldRxPower = Math.min(oldTxPowerMw * gain, MAX_RX_POWER_MW);
+			double newRxPower = Math.min(newTxPowerMw * gain, MAX_RX_POWER_MW);
+			total[point] += newRxPower - oldRxPower;
+			if (newRxPower >= best[point]) {
+				best[point] = newRxPower;
+			} else if (oldRxPower == best[point]) {
+				// This AP was the highest and dropped, so find the new highest
+				double rxPower = 0;
+				for (int i = 0; i < numOfAPs; i++) {
+					rxPower = Math.max(
+						rxPower,
+						Math.min(
+							txPowerMw[i] * pathGain[i * pointCount + point],
+							MAX_RX_POWER_MW
+						)
+					);
+				}
+				best[point] = rxPower;
+			}
+		}
+		return calculateMetric();
+	}
+
+	/**
+	 * Return a lower bound on the coverage metric of all tx powers within the
+	 * given per-AP ranges (equal for APs with a fixed tx power), or infinity
+	 * if none of them can meet the coverage target.
+	 * <p>
+	 * A point is counted as uncovered if it is uncovered with every AP at its
+	 * maximum tx power, and as below the SINR threshold if no AP at its
+	 * maximum tx power can exceed the threshold against the interference of
+	 * all other APs at their minimum tx power.
+	 *
+	 * @param minTxPower the minimum tx power (dBm) of each AP
+	 * @param maxTxPower the maximum tx power (dBm) of each AP
+	 */
+	public double lowerBound(int[] minTxPower, int[] maxTxPower) {
+		if (
+			minTxPower.length != numOfAPs || maxTxPower.length != numOfAPs
+		) {
+			throw new IllegalArgumentException("Invalid input data");
+		}
+		evaluated = false;
+
+		// Highest possible rx power and lowest possible total rx power
+		final double[] best = bestRxPower;
+		final double[] total = totalRxPower;
+		Arrays.fill(best, 0);
+		Arrays.fill(total, 0);
+		for (int apIndex = 0; apIndex < numOfAPs; apIndex++) {
+			final double minTxPowerMw = dbmToMw(minTxPower[apIndex]);
+			final double maxTxPowerMw = dbmToMw(maxTxPower[apIndex]);
+			final int offset = apIndex * pointCount;
+			for (int point = 0; point < pointCount; point++) {
+				double gain = pathGain[offset + point];
+				best[point] = Math.max(
+					best[point],
+					Math.min(maxTxPowerMw * gain, MAX_RX_POWER_MW)
+				);
+				total[point] += Math.min(minTxPowerMw * gain, MAX_RX_POWER_MW);
+			}
+		}
+		int rxPowerCount = 0;
+		for (int point = 0; point < pointCount; point++) {
+			if (best[point] <= RX_THRESHOLD_MW) {
+				rxPowerCount++;
+			}
+		}
+		double rxPowerPercentage = rxPowerCount / (double) pointCount;
+		if (
+			rxPowerPercentage * 100.0 >= 100.0 - ModelerUtils.COVERAGE_THRESHOLD
+		) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		// Highest possible SINR margin over the threshold (reusing "best")
+		Arrays.fill(best, Double.NEGATIVE_INFINITY);
+		for (int apIndex = 0; apIndex < numOfAPs; apIndex++) {
+			final double minTxPowerMw = dbmToMw(minTxPower[apIndex]);
+			final double maxTxPowerMw = dbmToMw(maxTxPower[apIndex]);
+			final int offset = apIndex * pointCount;
+			for (int point = 0; point < pointCount; point++) {
+				double gain = pathGain[offset + point];
+				double minRxPower =
+					Math.min(minTxPowerMw * gain, MAX_RX_POWER_MW);
+				double maxRxPower =
+					Math.min(maxTxPowerMw * gain, MAX_RX_POWER_MW);
+				double interference =
+					total[point] - minRxPower + NOISE_POWER_MW;
+				best[point] = Math.max(
+					best[point],
+					maxRxPower - SINR_THRESHOLD_LINEAR * interference
+				);
+			}
+		}
+		int sinrCount = 0;
+		for (int point = 0; point < pointCount; point++) {
+			if (best[point] <= 0) {
+				sinrCount++;
+			}
+		}
+		return sinrCount / (double) pointCount;
+	}
+
+	/** Return the coverage metric from the current scratch buffers. */
+	private double calculateMetric() {
+		int rxPowerCount = 0;
+		int sinrCount = 0;
+		for (int point = 0; point < pointCount; point++) {
+			double best = bestRxPower[point];
+			if (best <= RX_THRESHOLD_MW) {
+				rxPowerCount++;
+			}
+			double interference = totalRxPower[point] - best + NOISE_POWER_MW;
+			if (best <= SINR_THRESHOLD_LINEAR * interference) {
+				sinrCount++;
+			}
+		}
+		double rxPowerPercentage = rxPowerCount / (double) pointCount;
+		double sinrPercentage = sinrCount / (double) pointCount;
+		if (
+			rxPowerPercentage * 100.0 < 100.0 - ModelerUtils.COVERAGE_THRESHOLD
+		) {
+			return sinrPercentage;
+		} else {
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches asynchronous wifi scans, limiting the number of scans in flight
+ * both in total and per zone.
+ *
+ * Scans are queued per zone and started in round-robin order across zones
+ * whenever capacity is available, so that no threads are held while scans are
+ * in flight. Limiting scans per zone prevents neighboring APs from scanning at
+ * the same time, which would skew each other's results.
+ */
+public class WifiScanDispatcher {
+	private static final Logger logger =
+		LoggerFactory.getLogger(WifiScanDispatcher.class);
+
+	/** Dispatcher runtime statistics. */
+	public static class WifiScanDispatcherStats {
+		/** The number of scans in flight. */
+		public int inFlight;
+
+		/** The number of queued scans not yet started. */
+		public int backlog;
+
+		/** The number of scans in flight per zone (omitting idle zones). */
+		public Map<String, Integer> zoneInFlight = new TreeMap<>();
+
+		/** The number of queued scans per zone (omitting idle zones). */
+		public Map<String, Integer> zoneBacklog = new TreeMap<>();
+
+		/** The number of scans completed successfully. */
+		public long succeededCount;
+
+		/** The number of scans which failed. */
+		public long failedCount;
+	}
+
+	/** Per-zone state. */
+	private static class ZoneState {
+		/** Queued serial numbers, in submission order. */
+		public final ArrayDeque<String> queue = new ArrayDeque<>();
+
+		/** The number of scans in flight. */
+		public int inFlight = 0;
+
+		/** The maximum number of scans in flight. */
+		public int maxInFlight = 1;
+	}
+
+	/** The maximum number of scans in flight. */
+	private final int maxInFlight;
+
+	/** Returns the maximum number of scans in flight for a given zone. */
+	private final ToIntFunction<String> maxInFlightPerZone;
+
+	/**
+	 * The function to start a scan for a serial number, returning a future
+	 * which completes with true upon success.
+	 */
+	private final Function<String, CompletableFuture<Boolean>> scanFunction;
+
+	/**
+	 * Map of zone to state, in round-robin order (zones are moved to the end
+	 * after starting a scan). Idle zones are removed.
+	 */
+	private final Map<String, ZoneState> zones = new LinkedHashMap<>();
+
+	/** Serial numbers which are queued or in flight. */
+	private final Set<String> activeDevices = new HashSet<>();
+
+	/** The total number of scans in flight. */
+	private int inFlight = 0;
+
+	/** The total number of queued scans. */
+	private int backlog = 0;
+
+	/** The number of scans completed successfully. */
+	private long succeededCount = 0;
+
+	/** The number of scans which failed. */
+	private long failedCount = 0;
+
+	/** Whether a thread is currently starting scans. */
+	private boolean dispatching = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxInFlight the maximum number of scans in flight
+	 * @param maxInFlightPerZone the maximum number of scans in flight per zone
+	 * @param scanFunction the function to start a scan for a serial number,
+	 *                     returning a future which completes with true upon
+	 *                     success
+	 */
+	public WifiScanDispatcher(
+		int maxInFlight,
+		int maxInFlightPerZone,
+		Function<String, CompletableFuture<Boolean>> scanFunction
+	) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be positive");
+		}
+		if (maxInFlightPerZone < 1) {
+			throw new IllegalArgumentException(
+				"maxInFlightPerZone must be positive"
+			);
+		}
+		this.maxInFlight = maxInFlight;
+		this.maxInFlightPerZone = zone -> maxInFlightPerZone;
+		this.scanFunction = scanFunction;
+	}
+
+	/**
+	 * Constructor with a per-zone limit which can vary by zone (ex. with the
+	 * zone size). The limit is re-evaluated whenever a scan is submitted, and
+	 * values below 1 are treated as 1.
+	 *
+	 * @param maxInFlight the maximum number of scans in flight
+	 * @param maxInFlightPerZone the function returning the maximum number of
+	 *                           scans in flight for a zone
+	 * @param scanFunction the function to start a scan for a serial number,
+	 *                     returning a future which completes with true upon
+	 *                     success
+	 */
+	public WifiScanDispatcher(
+		int maxInFlight,
+		ToIntFunction<String> maxInFlightPerZone,
+		Function<String, CompletableFuture<Boolean>> scanFunction
+	) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be positive");
+		}
+		this.maxInFlight = maxInFlight;
+		this.maxInFlightPerZone = Objects.requireNonNull(maxInFlightPerZone);
+		this.scanFunction = scanFunction;
+	}
+
+	/**
+	 * Queue a scan for the given device in the given zone, and start any scans
+	 * which can run now.
+	 *
+	 * Returns false (and does nothing) if the device already has a scan queued
+	 * or in flight, and true otherwise.
+	 */
+	public boolean submit(String serialNumber, String zone) {
+		Objects.requireNonNull(zone);
+		int zoneMaxInFlight = Math.max(maxInFlightPerZone.applyAsInt(zone), 1);
+		synchronized (this) {
+			if (!activeDevices.add(serialNumber)) {
+				return false;
+			}
+			ZoneState zoneState =
+				zones.computeIfAbsent(zone, k -> new ZoneState());
+			zoneState.queue.add(serialNumber);
+			zoneState.maxInFlight = zoneMaxInFlight;
+			backlog++;
+		}
+		dispatch();
+		return true;
+	}
+
+	/** Return whether the given device has a scan queued or in flight. */
+	public synchronized boolean isActive(String serialNumber) {
+		return activeDevices.contains(serialNumber);
+	}
+
+	/** Return the current runtime statistics. */
+	public synchronized WifiScanDispatcherStats getStats() {
+		WifiScanDispatcherStats stats = new WifiScanDispatcherStats();
+		stats.inFlight = inFlight;
+		stats.backlog = backlog;
+		for (Map.Entry<String, ZoneState> e : zones.entrySet()) {
+			ZoneState zoneState = e.getValue();
+			if (zoneState.inFlight > 0) {
+				stats.zoneInFlight.put(e.getKey(), zoneState.inFlight);
+			}
+			if (!zoneState.queue.isEmpty()) {
+				stats.zoneBacklog.put(e.getKey(), zoneState.queue.size());
+			}
+		}
+		stats.succeededCount = succeededCount;
+		stats.failedCount = failedCount;
+		return stats;
+	}
+
+	/**
+	 * Start as many queued scans as capacity allows.
+	 *
+	 * Scans are started outside the lock. Only one thread starts scans at a
+	 * time; others (including completion callbacks which run synchronously
+	 * when a scan fails immediately) just release capacity and return, which
+	 * avoids unbounded recursion.
+	 */
+	private void dispatch() {
+		synchronized (this) {
+			if (dispatching) {
+				return;
+			}
+			dispatching = true;
+		}
+		while (true) {
+			List<String[]> toStart;
+			synchronized (this) {
+				toStart = pollStartable();
+				if (toStart.isEmpty()) {
+					dispatching = false;
+					return;
+				}
+			}
+			for (String[] scan : toStart) {
+				start(scan[0], scan[1]);
+			}
+		}
+	}
+
+	/**
+	 * Remove and return all (serial number, zone) pairs which can start now,
+	 * taking one per zone in each round, and mark them as in flight.
+	 */
+	private List<String[]> pollStartable() {
+		List<String[]> results = new ArrayList<>();
+		List<String> startedZones = new ArrayList<>();
+		boolean progress = true;
+		while (progress && inFlight < maxInFlight) {
+			progress = false;
+			for (
+				Iterator<Map.Entry<String, ZoneState>> iter =
+					zones.entrySet().iterator();
+				iter.hasNext() && inFlight < maxInFlight;
+			) {
+				Map.Entry<String, ZoneState> e = iter.next();
+				ZoneState zoneState = e.getValue();
+				if (
+					zoneState.queue.isEmpty() ||
+						zoneState.inFlight >= zoneState.maxInFlight
+				) {
+					continue;
+				}
+				String serialNumber = zoneState.queue.poll();
+				zoneState.inFlight++;
+				backlog--;
+				inFlight++;
+				results.add(new String[] { serialNumber, e.getKey() });
+				startedZones.add(e.getKey());
+				progress = true;
+			}
+		}
+
+		// Move zones which started scans to the end, for fairness
+		for (String zone : startedZones) {
+			ZoneState zoneState = zones.remove(zone);
+			if (zoneState != null) {
+				zones.put(zone, zoneState);
+			}
+		}
+		return results;
+	}
+
+	/** Start a single scan. */
+	private void start(String serialNumber, String zone) {
+		CompletableFuture<Boolean> future;
+		try {
+			future = scanFunction.apply(serialNumber);
+		} catch (Exception e) {
+			String errMsg = String.format(
+				"Device %s: failed to start wifi scan",
+				serialNumber
+			);
+			logger.error(errMsg, e);
+			future = CompletableFuture.completedFuture(false);
+		}
+		if (future == null) {
+			future = CompletableFuture.completedFuture(false);
+		}
+		future.whenComplete((success, e) -> {
+			if (e != null) {
+				String errMsg =
+					String.format("Device %s: wifi scan failed", serialNumber);
+				logger.error(errMsg, e);
+			}
+			complete(
+				serialNumber,
+				zone,
+				e == null && Boolean.TRUE.equals(success)
+			);
+		});
+	}
+
+	/** Release capacity held by a finished scan, then start more scans. */
+	private void complete(String serialNumber, String zone, boolean success) {
+		synchronized (this) {
+			activeDevices.remove(serialNumber);
+			inFlight--;
+			if (success) {
+				succeededCount++;
+			} else {
+				failedCount++;
+			}
+			ZoneState zoneState = zones.get(zone);
+			if (zoneState != null) {
+				zoneState.inFlight--;
+				if (zoneState.inFlight == 0 && zoneState.queue.isEmpty()) {
+					zones.remove(zone);
+				}
+			}
+		}
+		dispatch();
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for daily range partitioning of tables on a "time" column
+ * (TIMESTAMP), with days in UTC.
+ *
+ * Each day has a partition named "pYYYYMMDD" holding rows before the start of
+ * the next day. A final partition ({@link #MAX_PARTITION}) holds any rows past
+ * the last day; new days are split out of it while it is still empty.
+ */
+public class DailyPartitions {
+	/** The name of the partition holding rows past the last day. */
+	public static final String MAX_PARTITION = "pmax";
+
+	/** The partitioning function (for "PARTITION BY"). */
+	public static final String PARTITION_FUNCTION =
+		"RANGE (UNIX_TIMESTAMP(`time`))";
+
+	/** The partition name date format. */
+	private static final DateTimeFormatter NAME_FORMAT =
+		DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+	// This class should not be instantiated.
+	private DailyPartitions() {}
+
+	/** Return the current day (in UTC). */
+	public static LocalDate today() {
+		return LocalDate.now(ZoneOffset.UTC);
+	}
+
+	/** Return the partition name for the given day. */
+	public static String name(LocalDate day) {
+		return day.format(NAME_FORMAT);
+	}
+
+	/**
+	 * Return the exclusive upper bound of the given day's partition, i.e. the
+	 * start of the next day (Unix time, in seconds).
+	 */
+	public static long upperBound(LocalDate day) {
+		return day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+	}
+
+	/** Return the definition of the given day's partition. */
+	public static String definition(LocalDate day) {
+		return String.format(
+			"PARTITION %s VALUES LESS THAN (%d)",
+			name(day),
+			upperBound(day)
+		);
+	}
+
+	/** Return the definition of the {@link #MAX_PARTITION} partition. */
+	public static String maxDefinition() {
+		return "PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE";
+	}
+
+	/**
+	 * Return a "PARTITION BY" clause with partitions for the given days
+	 * (inclusive) and the {@link #MAX_PARTITION} partition.
+	 */
+	public static String partitionClause(
+		LocalDate firstDay,
+		LocalDate lastDay
+	) {
+		List<String> definitions = new ArrayList<>();
+		for (LocalDate day : daysBetween(firstDay, lastDay, Long.MIN_VALUE)) {
+			definitions.add(definition(day));
+		}
+		definitions.add(maxDefinition());
+		return String.format(
+			"PARTITION BY %s (%s)",
+			PARTITION_FUNCTION,
+			String.join(", ", definitions)
+		);
+	}
+
+	/**
+	 * Return the days in the given range (inclusive) whose partitions have an
+	 * upper bound above the given existing upper bound, i.e. the days to
+	 * create in order to cover the range.
+	 */
+	public static List<LocalDate> daysBetween(
+		LocalDate firstDay,
+		LocalDate lastDay,
+		long maxExistingBound
+	) {
+		List<LocalDate> days = new ArrayList<>();
+		for (
+			LocalDate day = firstDay;
+			!day.isAfter(lastDay);
+			day = day.plusDays(1)
+		) {
+			if (upperBound(day) > maxExistingBound) {
+				days.add(day);
+			}
+		}
+		return days;
+	}
+
+	/**
+	 * Return the names of all partitions holding only rows before the given
+	 * day, given a map of existing partition names to upper bounds (null for
+	 * {@link #MAX_PARTITION}).
+	 */
+	public static List<String> expiredPartitions(
+		Map<String, Long> bounds,
+		LocalDate firstRetainedDay
+	) {
+		long cutoff = firstRetainedDay.atStartOfDay(ZoneOffset.UTC)
+			.toEpochSecond();
+		List<String> names = new ArrayList<>();
+		for (Map.Entry<String, Long> e : bounds.entrySet()) {
+			if (e.getValue() != null && e.getValue() <= cutoff) {
+				names.add(e.getKey());
+			}
+		}
+		return names;
+	}
+}
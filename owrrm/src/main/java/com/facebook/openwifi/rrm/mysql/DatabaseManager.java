@@ -8,6 +8,7 @@
 
 package com.facebook.openwifi.rrm.mysql;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -15,11 +16,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -29,6 +42,7 @@ import org.slf4j.LoggerFactory;
 import com.facebook.openwifi.cloudsdk.WifiScanEntry;
 import com.facebook.openwifi.cloudsdk.models.ap.State;
 import com.facebook.openwifi.rrm.Utils;
+import com.facebook.openwifi.rrm.store.DataStore;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -36,12 +50,44 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 /**
- * Database connection manager.
+ * Database connection manager (MySQL {@link DataStore}).
  */
-public class DatabaseManager {
+public class DatabaseManager implements DataStore {
 	private static final Logger logger =
 		LoggerFactory.getLogger(DatabaseManager.class);
 
+	/** The legacy state table (one row per metric). */
+	private static final String LEGACY_STATE_TABLE = "state";
+
+	/** The number of legacy state rows migrated per transaction. */
+	private static final int MIGRATION_CHUNK_SIZE = 10000;
+
+	/** The number of scans whose legacy results are backfilled at a time. */
+	private static final int WIFISCAN_MIGRATION_CHUNK_SIZE = 1000;
+
+	/** The number of migrated snapshot IDs to remember across chunks. */
+	private static final int MIGRATION_RECENT_SNAPSHOTS = 10000;
+
+	/** The tables partitioned by day (see {@link DailyPartitions}). */
+	private static final String[] PARTITIONED_TABLES = new String[] {
+		"state_snapshot",
+		"state_radio",
+		"state_interface",
+		"state_client",
+		"state_metric_value",
+		"wifiscan",
+		"wifiscan_results"
+	};
+
+	/** The number of days ahead for which to create partitions. */
+	private static final int PARTITION_PRECREATE_DAYS = 3;
+
+	/** The maximum number of parameters in a single "IN (...)" list. */
+	private static final int MAX_QUERY_PARAMS = 1000;
+
+	/** The partition maintenance interval, in minutes. */
+	private static final long PARTITION_MAINTENANCE_INTERVAL_MINUTES = 60;
+
 	/** The database host:port. */
 	private final String server;
 
@@ -57,9 +103,28 @@ public class DatabaseManager {
 	/** The data retention interval in days (0 to disable). */
 	private final int dataRetentionIntervalDays;
 
+	/** Whether to migrate rows from the legacy "state" table. */
+	private final boolean migrateLegacyState;
+
+	/** Whether to store wifi scan results as compressed blobs. */
+	private final boolean compressWifiScans;
+
 	/** The pooled data source. */
 	private HikariDataSource ds;
 
+	/** Cache of the "state_metric" dictionary (name to ID). */
+	private final Map<String, Integer> metricIds = new ConcurrentHashMap<>();
+
+	/** The legacy table migration executor, or null if not running. */
+	private ExecutorService migrationExecutor;
+
+	/** The generator of wifi scan IDs for {@link #addWifiScan}. */
+	private final TimeOrderedIdGenerator scanIdGenerator =
+		new TimeOrderedIdGenerator();
+
+	/** The partition maintenance executor, or null if not running. */
+	private ScheduledExecutorService maintenanceExecutor;
+
 	/**
 	 * Constructor.
 	 * @param server the database host:port (ex. "localhost:3306")
@@ -67,19 +132,29 @@ public class DatabaseManager {
 	 * @param password the database password
 	 * @param dbName the database name
 	 * @param dataRetentionIntervalDays the data retention interval in days (0 to disable)
+	 * @param migrateLegacyState whether to migrate rows from the legacy "state"
+	 *                           table (in the background) upon initialization
+	 * @param compressWifiScans whether to store each wifi scan's results as a
+	 *                          single compressed blob (see
+	 *                          {@link WifiScanCodec}) instead of one row per
+	 *                          entry
 	 */
 	public DatabaseManager(
 		String server,
 		String user,
 		String password,
 		String dbName,
-		int dataRetentionIntervalDays
+		int dataRetentionIntervalDays,
+		boolean migrateLegacyState,
+		boolean compressWifiScans
 	) {
 		this.server = server;
 		this.user = user;
 		this.password = password;
 		this.dbName = dbName;
 		this.dataRetentionIntervalDays = dataRetentionIntervalDays;
+		this.migrateLegacyState = migrateLegacyState;
+		this.compressWifiScans = compressWifiScans;
 	}
 
 	/** Run database initialization. */
@@ -87,6 +162,9 @@ public class DatabaseManager {
 		IllegalAccessException,
 		ClassNotFoundException,
 		SQLException {
+		boolean migrateWifiScan;
+		boolean migrateWifiScanResults;
+
 		// Load database drivers
 		Class.forName("com.mysql.cj.jdbc.Driver");
 
@@ -115,24 +193,127 @@ public class DatabaseManager {
 		) {
 			// @formatter:off
 
-			// Create tables
+			// Create tables, partitioned by day on "time" (except the metric
+			// dictionary) so that retention only needs to drop partitions
+			// (see StateSnapshot for the layout of the "state_*" tables)
+			final String PARTITIONS = partitionClause();
 			String sql =
-				"CREATE TABLE IF NOT EXISTS `state` (" +
-					"`id` BIGINT UNSIGNED AUTO_INCREMENT PRIMARY KEY, " +
+				"CREATE TABLE IF NOT EXISTS `state_snapshot` (" +
+					"`id` BIGINT UNSIGNED AUTO_INCREMENT, " +
 					"`time` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-					"`metric` VARCHAR(255) NOT NULL, " +
-					"`value` BIGINT NOT NULL, " +
-					"`serial` VARCHAR(63) NOT NULL" +
+					"`serial` VARCHAR(63) NOT NULL, " +
+					"`uptime` BIGINT, " +
+					"PRIMARY KEY (`id`, `time`), " +
+					"INDEX `serial_id` (`serial`, `id`), " +
+					"INDEX `serial_time` (`serial`, `time`)" +
+				") ENGINE = InnoDB DEFAULT CHARSET = UTF8" + PARTITIONS;
+			stmt.executeUpdate(sql);
+			sql =
+				"CREATE TABLE IF NOT EXISTS `state_radio` (" +
+					"`snapshot_id` BIGINT UNSIGNED NOT NULL, " +
+					"`radio` SMALLINT UNSIGNED NOT NULL, " +
+					"`time` TIMESTAMP NOT NULL, " +
+					columnDefinitions(StateSnapshot.RADIO_COLUMNS) +
+					"PRIMARY KEY (`snapshot_id`, `radio`, `time`)" +
+				") ENGINE = InnoDB DEFAULT CHARSET = UTF8" + PARTITIONS;
+			stmt.executeUpdate(sql);
+			sql =
+				"CREATE TABLE IF NOT EXISTS `state_interface` (" +
+					"`snapshot_id` BIGINT UNSIGNED NOT NULL, " +
+					"`name` VARCHAR(63) NOT NULL, " +
+					"`time` TIMESTAMP NOT NULL, " +
+					columnDefinitions(StateSnapshot.INTERFACE_COLUMNS) +
+					"PRIMARY KEY (`snapshot_id`, `name`, `time`)" +
+				") ENGINE = InnoDB DEFAULT CHARSET = UTF8" + PARTITIONS;
+			stmt.executeUpdate(sql);
+			sql =
+				"CREATE TABLE IF NOT EXISTS `state_client` (" +
+					"`snapshot_id` BIGINT UNSIGNED NOT NULL, " +
+					"`interface` VARCHAR(63) NOT NULL, " +
+					"`bssid` BIGINT NOT NULL, " +
+					"`client` BIGINT NOT NULL, " +
+					"`time` TIMESTAMP NOT NULL, " +
+					columnDefinitions(StateSnapshot.CLIENT_COLUMNS) +
+					"PRIMARY KEY (" +
+						"`snapshot_id`, `interface`, `bssid`, `client`, " +
+						"`time`" +
+					")" +
+				") ENGINE = InnoDB DEFAULT CHARSET = UTF8" + PARTITIONS;
+			stmt.executeUpdate(sql);
+			sql =
+				"CREATE TABLE IF NOT EXISTS `state_latest` (" +
+					"`serial` VARCHAR(63) NOT NULL PRIMARY KEY, " +
+					"`snapshot_id` BIGINT UNSIGNED NOT NULL, " +
+					"`time` TIMESTAMP NOT NULL" +
+				") ENGINE = InnoDB DEFAULT CHARSET = UTF8";
+			stmt.executeUpdate(sql);
+			sql =
+				"INSERT IGNORE INTO `state_latest` " +
+					"SELECT s.`serial`, s.`id`, s.`time` " +
+					"FROM `state_snapshot` s INNER JOIN (" +
+						"SELECT MAX(`id`) AS `id` FROM `state_snapshot` " +
+						"GROUP BY `serial`" +
+					") ids ON s.`id` = ids.`id` " +
+					"WHERE NOT EXISTS (SELECT 1 FROM `state_latest`)";
+			stmt.executeUpdate(sql);
+			sql =
+				"CREATE TABLE IF NOT EXISTS `state_metric` (" +
+					"`id` INT UNSIGNED AUTO_INCREMENT PRIMARY KEY, " +
+					"`name` VARCHAR(255) NOT NULL, " +
+					"UNIQUE INDEX `name` (`name`)" +
 				") ENGINE = InnoDB DEFAULT CHARSET = UTF8";
 			stmt.executeUpdate(sql);
+			sql =
+				"CREATE TABLE IF NOT EXISTS `state_metric_value` (" +
+					"`snapshot_id` BIGINT UNSIGNED NOT NULL, " +
+					"`metric_id` INT UNSIGNED NOT NULL, " +
+					"`time` TIMESTAMP NOT NULL, " +
+					"`value` BIGINT NOT NULL, " +
+					"PRIMARY KEY (`snapshot_id`, `metric_id`, `time`)" +
+				") ENGINE = InnoDB DEFAULT CHARSET = UTF8" + PARTITIONS;
+			stmt.executeUpdate(sql);
+
+			// Convert wifiscan tables created by earlier versions: the
+			// wifiscan table is partitioned in the background (see
+			// partitionLegacyWifiScanTable()), and for wifiscan_results, only
+			// add the "time" column (empty for existing rows) and scan ID
+			// index here; rows are backfilled and the table partitioned in
+			// the background (see migrateLegacyWifiScanResults())
+			migrateWifiScan =
+				tableExists("wifiscan") && !isPartitioned("wifiscan");
+			migrateWifiScanResults = tableExists("wifiscan_results") &&
+				!isPartitioned("wifiscan_results");
+			if (migrateWifiScanResults) {
+				if (!columnExists("wifiscan_results", "time")) {
+					sql =
+						"ALTER TABLE `wifiscan_results` " +
+							"ADD COLUMN `time` TIMESTAMP NULL";
+					stmt.executeUpdate(sql);
+				}
+				if (!indexExists("wifiscan_results", "scan_id")) {
+					sql =
+						"ALTER TABLE `wifiscan_results` " +
+							"ADD INDEX `scan_id` (`scan_id`)";
+					stmt.executeUpdate(sql);
+				}
+			}
+
+			// Scan IDs are assigned by the client (see addWifiScans()), but
+			// may be auto-generated in tables created by earlier versions
 			sql =
 				"CREATE TABLE IF NOT EXISTS `wifiscan` (" +
-					"`id` BIGINT UNSIGNED AUTO_INCREMENT PRIMARY KEY, " +
+					"`id` BIGINT UNSIGNED AUTO_INCREMENT, " +
 					"`time` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
-					"`serial` VARCHAR(63) NOT NULL" +
-				") ENGINE = InnoDB DEFAULT CHARSET = UTF8";
+					"`serial` VARCHAR(63) NOT NULL, " +
+					"`results` MEDIUMBLOB, " +
+					"PRIMARY KEY (`id`, `time`), " +
+					"INDEX `serial_time` (`serial`, `time`)" +
+				") ENGINE = InnoDB DEFAULT CHARSET = UTF8" + PARTITIONS;
 			stmt.executeUpdate(sql);
-			// TODO : add newer wifiscan fields?
+			if (!columnExists("wifiscan", "results")) {
+				sql = "ALTER TABLE `wifiscan` ADD COLUMN `results` MEDIUMBLOB";
+				stmt.executeUpdate(sql);
+			}
 			sql =
 				"CREATE TABLE IF NOT EXISTS `wifiscan_results` (" +
 					"`scan_id` BIGINT NOT NULL, " +
@@ -140,195 +321,1341 @@ public class DatabaseManager {
 					"`ssid` VARCHAR(32), " +
 					"`lastseen` BIGINT NOT NULL, " +
 					"`rssi` INT NOT NULL, " +
-					"`channel` INT NOT NULL" +
-				") ENGINE = InnoDB DEFAULT CHARSET = UTF8";
+					"`channel` INT NOT NULL, " +
+					"`time` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+					"`frequency` INT, " +
+					"`ht_oper` VARCHAR(255), " +
+					"`vht_oper` VARCHAR(255), " +
+					"INDEX `scan_id` (`scan_id`)" +
+				") ENGINE = InnoDB DEFAULT CHARSET = UTF8" + PARTITIONS;
 			stmt.executeUpdate(sql);
+			if (!columnExists("wifiscan_results", "frequency")) {
+				sql =
+					"ALTER TABLE `wifiscan_results` " +
+						"ADD COLUMN `frequency` INT, " +
+						"ADD COLUMN `ht_oper` VARCHAR(255), " +
+						"ADD COLUMN `vht_oper` VARCHAR(255)";
+				stmt.executeUpdate(sql);
+			}
+
+			// @formatter:on
 
-			// Create clean-up event to run daily at midnight
-			// TODO: do we need partitioning?
-			final String EVENT_NAME = "RRM_DeleteOldRecords";
+			// Remove the clean-up event used by earlier versions, which
+			// deleted old rows (retention now drops partitions, and rows in
+			// unpartitioned tables are deleted by deleteExpiredRows())
+			stmt.executeUpdate("DROP EVENT IF EXISTS RRM_DeleteOldRecords");
+		}
+
+		// Create upcoming partitions and drop expired ones, now and hourly,
+		// and delete expired rows from unpartitioned tables in the background
+		maintainPartitions();
+		maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(
+			new Utils.NamedThreadFactory("RRM_DatabaseMaintenance")
+		);
+		maintenanceExecutor.scheduleWithFixedDelay(
+			() -> {
+				try {
+					maintainPartitions();
+				} catch (Exception e) {
+					logger.error("Partition maintenance failed", e);
+				}
+				try {
+					deleteExpiredRows();
+				} catch (Exception e) {
+					logger.error("Failed to delete expired rows", e);
+				}
+			},
+			0,
+			PARTITION_MAINTENANCE_INTERVAL_MINUTES,
+			TimeUnit.MINUTES
+		);
+
+		// Load metric dictionary
+		loadMetricIds();
+
+		// Migrate legacy "state", "wifiscan", and "wifiscan_results" tables
+		// in the background
+		boolean migrateState =
+			migrateLegacyState && tableExists(LEGACY_STATE_TABLE);
+		if (migrateState || migrateWifiScan || migrateWifiScanResults) {
+			migrationExecutor = Executors.newSingleThreadExecutor(
+				new Utils.NamedThreadFactory("RRM_Migration")
+			);
+		}
+		if (migrateState) {
+			logger.info("Migrating legacy state table in the background...");
+			migrationExecutor.submit(this::migrateLegacyStateTable);
+		}
+		if (migrateWifiScan) {
+			logger.info(
+				"Partitioning existing wifiscan table in the background..."
+			);
+			migrationExecutor.submit(this::partitionLegacyWifiScanTable);
+		}
+		if (migrateWifiScanResults) {
+			logger.info(
+				"Partitioning existing wifiscan_results table in the background..."
+			);
+			migrationExecutor.submit(this::migrateLegacyWifiScanResults);
+		}
+	}
+
+	/**
+	 * Return the partitioning clause (with leading space) for a new or
+	 * converted table, covering the data retention interval up to
+	 * {@link #PARTITION_PRECREATE_DAYS} ahead.
+	 */
+	private String partitionClause() {
+		LocalDate today = DailyPartitions.today();
+		return " " + DailyPartitions.partitionClause(
+			today.minusDays(Math.max(dataRetentionIntervalDays, 0)),
+			today.plusDays(PARTITION_PRECREATE_DAYS)
+		);
+	}
+
+	/** Return SQL column definitions (with trailing comma) for a table. */
+	private static String columnDefinitions(
+		List<StateSnapshot.Column> columns
+	) {
+		StringBuilder sb = new StringBuilder();
+		for (StateSnapshot.Column column : columns) {
+			sb.append(String.format("`%s` %s, ", column.name, column.type));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Create daily partitions up to {@link #PARTITION_PRECREATE_DAYS} ahead
+	 * and, if data retention is enabled, drop partitions holding only expired
+	 * rows, for all partitioned tables.
+	 *
+	 * New partitions are split out of the (empty) last partition, and dropping
+	 * a partition does not touch any other rows, so both are fast regardless
+	 * of table size.
+	 */
+	public void maintainPartitions() throws SQLException {
+		if (ds == null) {
+			return;
+		}
+
+		LocalDate today = DailyPartitions.today();
+		LocalDate lastDay = today.plusDays(PARTITION_PRECREATE_DAYS);
+		try (
+			Connection conn = getConnection();
+			Statement stmt = conn.createStatement()
+		) {
+			for (String table : PARTITIONED_TABLES) {
+				Map<String, Long> bounds = getPartitionBounds(conn, table);
+				if (bounds.isEmpty()) {
+					// Not converted yet (see deleteExpiredRows())
+					logger.info("Table {} is not partitioned", table);
+					continue;
+				}
+
+				// Create upcoming partitions
+				long maxBound = Long.MIN_VALUE;
+				for (Long bound : bounds.values()) {
+					if (bound != null) {
+						maxBound = Math.max(maxBound, bound);
+					}
+				}
+				List<String> definitions = new ArrayList<>();
+				for (
+					LocalDate day : DailyPartitions
+						.daysBetween(today, lastDay, maxBound)
+				) {
+					definitions.add(DailyPartitions.definition(day));
+				}
+				if (!definitions.isEmpty()) {
+					definitions.add(DailyPartitions.maxDefinition());
+					stmt.executeUpdate(
+						String.format(
+							"ALTER TABLE `%s` REORGANIZE PARTITION %s " +
+								"INTO (%s)",
+							table,
+							DailyPartitions.MAX_PARTITION,
+							String.join(", ", definitions)
+						)
+					);
+					logger.info(
+						"Created {} partition(s) in table {}",
+						definitions.size() - 1,
+						table
+					);
+				}
+
+				// Drop expired partitions
+				if (dataRetentionIntervalDays > 0) {
+					List<String> expired = DailyPartitions.expiredPartitions(
+						bounds,
+						today.minusDays(dataRetentionIntervalDays)
+					);
+					if (!expired.isEmpty()) {
+						stmt.executeUpdate(
+							String.format(
+								"ALTER TABLE `%s` DROP PARTITION %s",
+								table,
+								String.join(", ", expired)
+							)
+						);
+						logger.info(
+							"Dropped partition(s) {} in table {}",
+							expired,
+							table
+						);
+					}
+				}
+			}
+
+			// Remove latest-snapshot entries for expired snapshots
 			if (dataRetentionIntervalDays > 0) {
-				// Enable the event scheduler
-				stmt.executeUpdate("SET GLOBAL event_scheduler = ON");
+				LocalDate firstRetainedDay =
+					today.minusDays(dataRetentionIntervalDays);
+				try (
+					PreparedStatement delete = conn.prepareStatement(
+						"DELETE FROM `state_latest` WHERE `time` < ?"
+					)
+				) {
+					delete.setTimestamp(
+						1,
+						new Timestamp(
+							DailyPartitions.upperBound(
+								firstRetainedDay.minusDays(1)
+							) * 1000
+						)
+					);
+					delete.executeUpdate();
+				}
+			}
+		}
+	}
 
-				// To handle both cases (where the event exists or doesn't yet),
-				// send a no-op "CREATE EVENT" with the schedule followed by
-				// "ALTER EVENT" containing the actual event body
-				sql =
-					"CREATE EVENT IF NOT EXISTS " + EVENT_NAME + " " +
-						"ON SCHEDULE EVERY 1 DAY " +
-						"STARTS (CURRENT_DATE + INTERVAL 1 DAY) " +
-					"DO SELECT 1";  // no-op
-				stmt.executeUpdate(sql);
+	/**
+	 * If data retention is enabled, delete expired rows from tables which are
+	 * not partitioned: the legacy "state" table (when not migrated) and tables
+	 * created by earlier versions which are still being converted.
+	 *
+	 * Rows are deleted in chunks, each in its own transaction, using the same
+	 * cutoff as {@link #maintainPartitions()}.
+	 */
+	public void deleteExpiredRows() throws SQLException {
+		if (ds == null || dataRetentionIntervalDays <= 0) {
+			return;
+		}
 
-				final String oldDate =
-					"DATE_SUB(NOW(), INTERVAL " + dataRetentionIntervalDays + " DAY)";
-				sql =
-					"ALTER EVENT " + EVENT_NAME + " " +
-					"DO BEGIN " +
-						"DELETE FROM state WHERE DATE(time) < " + oldDate + "; " +
-						"DELETE FROM wifiscan WHERE DATE(time) < " + oldDate + "; " +
-						"DELETE wifiscan_results FROM wifiscan_results " +
-							"INNER JOIN wifiscan ON wifiscan_results.scan_id = wifiscan.id " +
-							"WHERE DATE(wifiscan.time) < " + oldDate + "; " +
-					"END;";
-				stmt.executeUpdate(sql);
+		List<String> tables = new ArrayList<>();
+		if (tableExists(LEGACY_STATE_TABLE)) {
+			tables.add(LEGACY_STATE_TABLE);
+		}
+		for (String table : PARTITIONED_TABLES) {
+			if (tableExists(table) && !isPartitioned(table)) {
+				tables.add(table);
+			}
+		}
+		if (tables.isEmpty()) {
+			return;
+		}
 
-				// @formatter:on
+		LocalDate firstRetainedDay =
+			DailyPartitions.today().minusDays(dataRetentionIntervalDays);
+		Timestamp cutoff = new Timestamp(
+			DailyPartitions.upperBound(firstRetainedDay.minusDays(1)) * 1000
+		);
+		try (Connection conn = getConnection()) {
+			for (String table : tables) {
+				long rowCount = 0;
+				try (
+					PreparedStatement delete = conn.prepareStatement(
+						"DELETE FROM `" + table + "` WHERE `time` < ? " +
+							"LIMIT " + MIGRATION_CHUNK_SIZE
+					)
+				) {
+					delete.setTimestamp(1, cutoff);
+					int deleted;
+					do {
+						deleted = delete.executeUpdate();
+						rowCount += deleted;
+					} while (
+						deleted > 0 && !Thread.currentThread().isInterrupted()
+					);
+				}
+				if (rowCount > 0) {
+					logger.info(
+						"Deleted {} expired row(s) from table {}",
+						rowCount,
+						table
+					);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return a map of partition name to exclusive upper bound (Unix time, in
+	 * seconds, or null for MAXVALUE) for the given table, or an empty map if
+	 * the table is not partitioned.
+	 */
+	private Map<String, Long> getPartitionBounds(
+		Connection conn,
+		String table
+	) throws SQLException {
+		Map<String, Long> bounds = new TreeMap<>();
+		try (
+			PreparedStatement stmt = conn.prepareStatement(
+				"SELECT `partition_name`, `partition_description` " +
+					"FROM `information_schema`.`partitions` " +
+					"WHERE `table_schema` = ? AND `table_name` = ? " +
+					"AND `partition_name` IS NOT NULL"
+			)
+		) {
+			stmt.setString(1, dbName);
+			stmt.setString(2, table);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					String description = rs.getString(2);
+					bounds.put(
+						rs.getString(1),
+						"MAXVALUE".equals(description)
+							? null
+							: Long.parseLong(description)
+					);
+				}
+			}
+		}
+		return bounds;
+	}
+
+	/** Return whether the given table is partitioned. */
+	private boolean isPartitioned(String table) throws SQLException {
+		try (Connection conn = getConnection()) {
+			return !getPartitionBounds(conn, table).isEmpty();
+		}
+	}
+
+	/** Return whether the given table exists in the database. */
+	private boolean tableExists(String table) throws SQLException {
+		try (
+			Connection conn = getConnection();
+			PreparedStatement stmt = conn.prepareStatement(
+				"SELECT COUNT(*) FROM `information_schema`.`tables` " +
+					"WHERE `table_schema` = ? AND `table_name` = ?"
+			)
+		) {
+			stmt.setString(1, dbName);
+			stmt.setString(2, table);
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() && rs.getInt(1) > 0;
+			}
+		}
+	}
+
+	/** Return whether the given index exists in the given table. */
+	private boolean indexExists(String table, String index)
+		throws SQLException {
+		try (
+			Connection conn = getConnection();
+			PreparedStatement stmt = conn.prepareStatement(
+				"SELECT COUNT(*) FROM `information_schema`.`statistics` " +
+					"WHERE `table_schema` = ? AND `table_name` = ? " +
+					"AND `index_name` = ?"
+			)
+		) {
+			stmt.setString(1, dbName);
+			stmt.setString(2, table);
+			stmt.setString(3, index);
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() && rs.getInt(1) > 0;
+			}
+		}
+	}
+
+	/** Return whether the given column exists in the given table. */
+	private boolean columnExists(String table, String column)
+		throws SQLException {
+		try (
+			Connection conn = getConnection();
+			PreparedStatement stmt = conn.prepareStatement(
+				"SELECT COUNT(*) FROM `information_schema`.`columns` " +
+					"WHERE `table_schema` = ? AND `table_name` = ? " +
+					"AND `column_name` = ?"
+			)
+		) {
+			stmt.setString(1, dbName);
+			stmt.setString(2, table);
+			stmt.setString(3, column);
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() && rs.getInt(1) > 0;
+			}
+		}
+	}
+
+	/** Initialize database connection pooling. */
+	private void initConnectionPool() {
+		HikariConfig config = new HikariConfig();
+		config.setJdbcUrl(getConnectionUrl(dbName));
+		config.setUsername(user);
+		config.setPassword(password);
+		config.addDataSourceProperty("cachePrepStmts", "true");
+		config.addDataSourceProperty("prepStmtCacheSize", "250");
+		config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+		config.addDataSourceProperty("useServerPrepStmts", "true");
+		config.addDataSourceProperty("useLocalSessionState", "true");
+		config.addDataSourceProperty("rewriteBatchedStatements", "true");
+		config.addDataSourceProperty("cacheResultSetMetadata", "true");
+		config.addDataSourceProperty("cacheServerConfiguration", "true");
+		config.addDataSourceProperty("elideSetAutoCommits", "true");
+		config.addDataSourceProperty("maintainTimeStats", "false");
+		config.addDataSourceProperty("connectionTimeZone", "+00:00");
+		ds = new HikariDataSource(config);
+	}
+
+	/** Return a pooled database connection. */
+	private Connection getConnection() throws SQLException {
+		return ds.getConnection();
+	}
+
+	/** Return a JDBC URL for the given database. */
+	private String getConnectionUrl(String database) {
+		return String.format("jdbc:mysql://%s/%s", server, database);
+	}
+
+	/** Close all database resources. */
+	@Override
+	public void close() throws SQLException {
+		if (maintenanceExecutor != null) {
+			maintenanceExecutor.shutdownNow();
+			maintenanceExecutor = null;
+		}
+		if (migrationExecutor != null) {
+			migrationExecutor.shutdownNow();
+			try {
+				migrationExecutor.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			migrationExecutor = null;
+		}
+		if (ds != null) {
+			ds.close();
+			ds = null;
+		}
+	}
+
+	/** Insert state record(s) into the database. */
+	public void addStateRecords(List<StateRecord> records) throws SQLException {
+		StateRecordBatch batch = new StateRecordBatch(records.size());
+		for (StateRecord record : records) {
+			batch.add(
+				record.timestamp,
+				record.metric,
+				record.value,
+				record.serial
+			);
+		}
+		addStateRecords(batch);
+	}
+
+	/**
+	 * Insert a batch of state records into the database.
+	 *
+	 * Rows are grouped into snapshots by serial number and timestamp (see
+	 * {@link StateSnapshot}), so all rows of a state record should be
+	 * inserted in the same batch.
+	 */
+	@Override
+	public void addStateRecords(StateRecordBatch batch) throws SQLException {
+		if (ds == null) {
+			return;
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		long startTime = System.nanoTime();
+		List<StateSnapshot> snapshots = StateSnapshot.fromBatch(batch);
+		try (Connection conn = getConnection()) {
+			resolveMetricIds(conn, snapshots);
+
+			// Disable auto-commit
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+
+			try {
+				long[] snapshotIds = insertSnapshots(conn, snapshots);
+				insertSnapshotRows(conn, snapshots, snapshotIds);
+				updateLatestSnapshots(conn, snapshots, snapshotIds);
+
+				// Commit changes
+				conn.commit();
+
+				logger.debug(
+					"Inserted {} state row(s) as {} snapshot(s) in {} ms",
+					batch.size(),
+					snapshots.size(),
+					(System.nanoTime() - startTime) / 1_000_000L
+				);
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				// Restore auto-commit state
+				conn.setAutoCommit(autoCommit);
+			}
+		}
+	}
+
+	/** Load the "state_metric" dictionary into memory. */
+	private void loadMetricIds() throws SQLException {
+		try (
+			Connection conn = getConnection();
+			Statement stmt = conn.createStatement();
+			ResultSet rs =
+				stmt.executeQuery("SELECT `id`, `name` FROM `state_metric`")
+		) {
+			while (rs.next()) {
+				metricIds.put(rs.getString(2), rs.getInt(1));
+			}
+		}
+	}
+
+	/**
+	 * Add any metric names used by the given snapshots which are missing from
+	 * the "state_metric" dictionary. This is committed immediately (i.e. not
+	 * part of any enclosing transaction), so cached IDs are always valid.
+	 */
+	private void resolveMetricIds(
+		Connection conn,
+		List<StateSnapshot> snapshots
+	) throws SQLException {
+		Set<String> missing = new TreeSet<>();
+		for (StateSnapshot snapshot : snapshots) {
+			for (String name : snapshot.metrics.keySet()) {
+				if (!metricIds.containsKey(name)) {
+					missing.add(name);
+				}
+			}
+		}
+		if (missing.isEmpty()) {
+			return;
+		}
+
+		try (
+			PreparedStatement insert = conn.prepareStatement(
+				"INSERT IGNORE INTO `state_metric` (`name`) VALUES (?)"
+			);
+			PreparedStatement select = conn.prepareStatement(
+				"SELECT `id` FROM `state_metric` WHERE `name` = ?"
+			)
+		) {
+			for (String name : missing) {
+				insert.setString(1, name);
+				insert.addBatch();
+			}
+			insert.executeBatch();
+			for (String name : missing) {
+				select.setString(1, name);
+				try (ResultSet rs = select.executeQuery()) {
+					if (!rs.next()) {
+						throw new SQLException("Missing metric ID for " + name);
+					}
+					metricIds.put(name, rs.getInt(1));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Insert the given snapshots into "state_snapshot", returning the
+	 * generated IDs (in the same order).
+	 */
+	private long[] insertSnapshots(
+		Connection conn,
+		List<StateSnapshot> snapshots
+	) throws SQLException {
+		long[] snapshotIds = new long[snapshots.size()];
+		if (snapshots.isEmpty()) {
+			return snapshotIds;
+		}
+		try (
+			PreparedStatement stmt = conn.prepareStatement(
+				"INSERT INTO `state_snapshot` (`time`, `serial`, `uptime`) " +
+					"VALUES (?, ?, ?)",
+				Statement.RETURN_GENERATED_KEYS
+			)
+		) {
+			for (StateSnapshot snapshot : snapshots) {
+				stmt.setTimestamp(1, new Timestamp(snapshot.timestamp * 1000));
+				stmt.setString(2, snapshot.serial);
+				setNullableLong(stmt, 3, snapshot.uptime);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+			try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+				for (int i = 0; i < snapshotIds.length; i++) {
+					if (!generatedKeys.next()) {
+						throw new SQLException(
+							"Adding state snapshot failed (missing ID)"
+						);
+					}
+					snapshotIds[i] = generatedKeys.getLong(1);
+				}
+			}
+		}
+		return snapshotIds;
+	}
+
+	/**
+	 * Insert the radio, interface, client, and other metric rows of the given
+	 * snapshots. Existing rows are merged (non-null values overwrite).
+	 */
+	private void insertSnapshotRows(
+		Connection conn,
+		List<StateSnapshot> snapshots,
+		long[] snapshotIds
+	) throws SQLException {
+		try (
+			PreparedStatement radioStmt = conn.prepareStatement(
+				upsertSql(
+					"state_radio",
+					Arrays.asList("snapshot_id", "radio", "time"),
+					StateSnapshot.RADIO_COLUMNS
+				)
+			);
+			PreparedStatement ifaceStmt = conn.prepareStatement(
+				upsertSql(
+					"state_interface",
+					Arrays.asList("snapshot_id", "name", "time"),
+					StateSnapshot.INTERFACE_COLUMNS
+				)
+			);
+			PreparedStatement clientStmt = conn.prepareStatement(
+				upsertSql(
+					"state_client",
+					Arrays.asList(
+						"snapshot_id",
+						"interface",
+						"bssid",
+						"client",
+						"time"
+					),
+					StateSnapshot.CLIENT_COLUMNS
+				)
+			);
+			PreparedStatement metricStmt = conn.prepareStatement(
+				"INSERT INTO `state_metric_value` " +
+					"(`snapshot_id`, `metric_id`, `time`, `value`) " +
+					"VALUES (?, ?, ?, ?) " +
+					"ON DUPLICATE KEY UPDATE `value` = VALUES(`value`)"
+			)
+		) {
+			boolean hasRadios = false, hasIfaces = false, hasClients = false,
+				hasMetrics = false;
+			for (int i = 0; i < snapshots.size(); i++) {
+				StateSnapshot snapshot = snapshots.get(i);
+				long snapshotId = snapshotIds[i];
+				Timestamp time = new Timestamp(snapshot.timestamp * 1000);
+				for (
+					Map.Entry<Integer, Long[]> e : snapshot.radios.entrySet()
+				) {
+					radioStmt.setLong(1, snapshotId);
+					radioStmt.setInt(2, e.getKey());
+					radioStmt.setTimestamp(3, time);
+					setNullableLongs(radioStmt, 4, e.getValue());
+					radioStmt.addBatch();
+					hasRadios = true;
+				}
+				for (
+					Map.Entry<String, Long[]> e : snapshot.interfaces.entrySet()
+				) {
+					ifaceStmt.setLong(1, snapshotId);
+					ifaceStmt.setString(2, e.getKey());
+					ifaceStmt.setTimestamp(3, time);
+					setNullableLongs(ifaceStmt, 4, e.getValue());
+					ifaceStmt.addBatch();
+					hasIfaces = true;
+				}
+				for (StateSnapshot.Client c : snapshot.clients.values()) {
+					clientStmt.setLong(1, snapshotId);
+					clientStmt.setString(2, c.iface);
+					clientStmt.setLong(3, c.bssid);
+					clientStmt.setLong(4, c.client);
+					clientStmt.setTimestamp(5, time);
+					setNullableLongs(clientStmt, 6, c.values);
+					clientStmt.addBatch();
+					hasClients = true;
+				}
+				for (Map.Entry<String, Long> e : snapshot.metrics.entrySet()) {
+					metricStmt.setLong(1, snapshotId);
+					metricStmt.setInt(2, metricIds.get(e.getKey()));
+					metricStmt.setTimestamp(3, time);
+					metricStmt.setLong(4, e.getValue());
+					metricStmt.addBatch();
+					hasMetrics = true;
+				}
+			}
+			if (hasRadios) {
+				radioStmt.executeBatch();
+			}
+			if (hasIfaces) {
+				ifaceStmt.executeBatch();
+			}
+			if (hasClients) {
+				clientStmt.executeBatch();
+			}
+			if (hasMetrics) {
+				metricStmt.executeBatch();
+			}
+		}
+	}
+
+	/**
+	 * Point "state_latest" at the given snapshots where they are newer than
+	 * the current entries. Rows are locked in serial number order, so
+	 * concurrent transactions cannot deadlock.
+	 */
+	private void updateLatestSnapshots(
+		Connection conn,
+		List<StateSnapshot> snapshots,
+		long[] snapshotIds
+	) throws SQLException {
+		// Find the newest snapshot per device
+		Map<String, Integer> newest = new TreeMap<>();
+		for (int i = 0; i < snapshots.size(); i++) {
+			StateSnapshot snapshot = snapshots.get(i);
+			Integer j = newest.get(snapshot.serial);
+			if (j == null || snapshots.get(j).timestamp <= snapshot.timestamp) {
+				newest.put(snapshot.serial, i);
+			}
+		}
+		if (newest.isEmpty()) {
+			return;
+		}
+
+		try (
+			// @formatter:off
+			PreparedStatement stmt = conn.prepareStatement(
+				"INSERT INTO `state_latest` (`serial`, `snapshot_id`, `time`) " +
+				"VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE " +
+					"`snapshot_id` = IF(VALUES(`time`) >= `time`, " +
+						"VALUES(`snapshot_id`), `snapshot_id`), " +
+					"`time` = GREATEST(VALUES(`time`), `time`)"
+			)
+			// @formatter:on
+		) {
+			for (Map.Entry<String, Integer> e : newest.entrySet()) {
+				int i = e.getValue();
+				stmt.setString(1, e.getKey());
+				stmt.setLong(2, snapshotIds[i]);
+				stmt.setTimestamp(
+					3,
+					new Timestamp(snapshots.get(i).timestamp * 1000)
+				);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Return an "INSERT ... ON DUPLICATE KEY UPDATE" statement for the given
+	 * key and value columns, where non-null values overwrite existing ones.
+	 */
+	private static String upsertSql(
+		String table,
+		List<String> keyColumns,
+		List<StateSnapshot.Column> valueColumns
+	) {
+		List<String> names = new ArrayList<>();
+		for (String key : keyColumns) {
+			names.add("`" + key + "`");
+		}
+		List<String> updates = new ArrayList<>();
+		for (StateSnapshot.Column column : valueColumns) {
+			String name = "`" + column.name + "`";
+			names.add(name);
+			updates.add(
+				String.format("%s = COALESCE(VALUES(%s), %s)", name, name, name)
+			);
+		}
+		return String.format(
+			"INSERT INTO `%s` (%s) VALUES (%s) ON DUPLICATE KEY UPDATE %s",
+			table,
+			String.join(", ", names),
+			String.join(", ", Collections.nCopies(names.size(), "?")),
+			String.join(", ", updates)
+		);
+	}
+
+	/** Set a nullable BIGINT parameter. */
+	private static void setNullableLong(
+		PreparedStatement stmt,
+		int index,
+		Long value
+	) throws SQLException {
+		if (value == null) {
+			stmt.setNull(index, Types.BIGINT);
+		} else {
+			stmt.setLong(index, value);
+		}
+	}
+
+	/** Set consecutive nullable BIGINT parameters. */
+	private static void setNullableLongs(
+		PreparedStatement stmt,
+		int startIndex,
+		Long[] values
+	) throws SQLException {
+		for (int i = 0; i < values.length; i++) {
+			setNullableLong(stmt, startIndex + i, values[i]);
+		}
+	}
+
+	/**
+	 * Return the latest state for each of the given devices (if any).
+	 *
+	 * Latest snapshots are located through the "state_latest" table, so the
+	 * cost depends only on the number of rows returned. Each table is read in
+	 * one streamed query per {@link #MAX_QUERY_PARAMS} devices.
+	 *
+	 * @param serialNumbers the device serial numbers, or null for all devices
+	 */
+	@Override
+	public Map<String, State> getLatestState(Collection<String> serialNumbers)
+		throws SQLException {
+		if (ds == null) {
+			return null;
+		}
+
+		Map<String, State> ret = new HashMap<>();
+		try (Connection conn = getConnection()) {
+			if (serialNumbers == null) {
+				addLatestStates(conn, Collections.emptyList(), ret);
 			} else {
-				sql = "DROP EVENT IF EXISTS " + EVENT_NAME;
-				stmt.executeUpdate(sql);
+				List<String> serials = new ArrayList<>(serialNumbers);
+				for (int i = 0; i < serials.size(); i += MAX_QUERY_PARAMS) {
+					List<String> chunk = serials.subList(
+						i,
+						Math.min(i + MAX_QUERY_PARAMS, serials.size())
+					);
+					addLatestStates(conn, chunk, ret);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Fetch the latest snapshots for the given devices (or all devices if
+	 * empty), and add them to the given map as State objects.
+	 */
+	private void addLatestStates(
+		Connection conn,
+		List<String> serials,
+		Map<String, State> ret
+	) throws SQLException {
+		// @formatter:off
+		final String LATEST = serials.isEmpty()
+			? "`state_latest` l "
+			: "(SELECT * FROM `state_latest` WHERE `serial` IN (" +
+				String.join(", ", Collections.nCopies(serials.size(), "?")) +
+				")) l ";
+		// @formatter:on
+
+		// Snapshots
+		Map<Long, StateSnapshot> snapshots = new HashMap<>();
+		// @formatter:off
+		String sql =
+			"SELECT s.`id`, s.`time`, s.`serial`, s.`uptime` " +
+			"FROM " + LATEST +
+			"INNER JOIN `state_snapshot` s " +
+				"ON s.`id` = l.`snapshot_id` AND s.`time` = l.`time`";
+		// @formatter:on
+		try (
+			PreparedStatement stmt = prepareStreamingQuery(conn, sql, serials);
+			ResultSet rs = stmt.executeQuery()
+		) {
+			while (rs.next()) {
+				StateSnapshot snapshot = new StateSnapshot(
+					rs.getString(3),
+					rs.getTimestamp(2).getTime() / 1000
+				);
+				snapshot.uptime = getNullableLong(rs, 4);
+				snapshots.put(rs.getLong(1), snapshot);
+			}
+		}
+		if (snapshots.isEmpty()) {
+			return;
+		}
+
+		// Child rows (columns: key columns, "time", then value columns)
+		try (
+			PreparedStatement stmt = prepareStreamingQuery(
+				conn,
+				childRowSql("state_radio", LATEST),
+				serials
+			);
+			ResultSet rs = stmt.executeQuery()
+		) {
+			while (rs.next()) {
+				StateSnapshot snapshot = snapshots.get(rs.getLong(1));
+				if (snapshot != null) {
+					getNullableLongs(rs, 4, snapshot.radio(rs.getInt(2)));
+				}
+			}
+		}
+		try (
+			PreparedStatement stmt = prepareStreamingQuery(
+				conn,
+				childRowSql("state_interface", LATEST),
+				serials
+			);
+			ResultSet rs = stmt.executeQuery()
+		) {
+			while (rs.next()) {
+				StateSnapshot snapshot = snapshots.get(rs.getLong(1));
+				if (snapshot != null) {
+					getNullableLongs(rs, 4, snapshot.iface(rs.getString(2)));
+				}
+			}
+		}
+		try (
+			PreparedStatement stmt = prepareStreamingQuery(
+				conn,
+				childRowSql("state_client", LATEST),
+				serials
+			);
+			ResultSet rs = stmt.executeQuery()
+		) {
+			while (rs.next()) {
+				StateSnapshot snapshot = snapshots.get(rs.getLong(1));
+				if (snapshot != null) {
+					StateSnapshot.Client c = snapshot.client(
+						rs.getString(2),
+						rs.getLong(3),
+						rs.getLong(4)
+					);
+					getNullableLongs(rs, 6, c.values);
+				}
+			}
+		}
+		// @formatter:off
+		sql =
+			"SELECT t.`snapshot_id`, m.`name`, t.`value` " +
+			"FROM " + LATEST +
+			"INNER JOIN `state_metric_value` t " +
+				"ON t.`snapshot_id` = l.`snapshot_id` AND t.`time` = l.`time` " +
+			"INNER JOIN `state_metric` m ON m.`id` = t.`metric_id`";
+		// @formatter:on
+		try (
+			PreparedStatement stmt = prepareStreamingQuery(conn, sql, serials);
+			ResultSet rs = stmt.executeQuery()
+		) {
+			while (rs.next()) {
+				StateSnapshot snapshot = snapshots.get(rs.getLong(1));
+				if (snapshot != null) {
+					snapshot.metrics.put(rs.getString(2), rs.getLong(3));
+				}
 			}
 		}
-	}
 
-	/** Initialize database connection pooling. */
-	private void initConnectionPool() {
-		HikariConfig config = new HikariConfig();
-		config.setJdbcUrl(getConnectionUrl(dbName));
-		config.setUsername(user);
-		config.setPassword(password);
-		config.addDataSourceProperty("cachePrepStmts", "true");
-		config.addDataSourceProperty("prepStmtCacheSize", "250");
-		config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-		config.addDataSourceProperty("useServerPrepStmts", "true");
-		config.addDataSourceProperty("useLocalSessionState", "true");
-		config.addDataSourceProperty("rewriteBatchedStatements", "true");
-		config.addDataSourceProperty("cacheResultSetMetadata", "true");
-		config.addDataSourceProperty("cacheServerConfiguration", "true");
-		config.addDataSourceProperty("elideSetAutoCommits", "true");
-		config.addDataSourceProperty("maintainTimeStats", "false");
-		config.addDataSourceProperty("connectionTimeZone", "+00:00");
-		ds = new HikariDataSource(config);
+		for (StateSnapshot snapshot : snapshots.values()) {
+			ret.put(snapshot.serial, toState(snapshot));
+		}
 	}
 
-	/** Return a pooled database connection. */
-	private Connection getConnection() throws SQLException {
-		return ds.getConnection();
+	/**
+	 * Return a query for all rows of a snapshot child table joined with the
+	 * given "state_latest" table expression (aliased "l").
+	 */
+	private static String childRowSql(String table, String latest) {
+		return String.format(
+			"SELECT t.* FROM %s INNER JOIN `%s` t " +
+				"ON t.`snapshot_id` = l.`snapshot_id` AND t.`time` = l.`time`",
+			latest,
+			table
+		);
 	}
 
-	/** Return a JDBC URL for the given database. */
-	private String getConnectionUrl(String database) {
-		return String.format("jdbc:mysql://%s/%s", server, database);
+	/**
+	 * Prepare a read-only query whose results are streamed row by row rather
+	 * than buffered in memory, and bind the given string parameters.
+	 */
+	private static PreparedStatement prepareStreamingQuery(
+		Connection conn,
+		String sql,
+		List<String> params
+	) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(
+			sql,
+			ResultSet.TYPE_FORWARD_ONLY,
+			ResultSet.CONCUR_READ_ONLY
+		);
+		stmt.setFetchSize(Integer.MIN_VALUE);
+		for (int i = 0; i < params.size(); i++) {
+			stmt.setString(i + 1, params.get(i));
+		}
+		return stmt;
 	}
 
-	/** Close all database resources. */
-	public void close() throws SQLException {
-		if (ds != null) {
-			ds.close();
-			ds = null;
+	/**
+	 * Convert a snapshot to a State object, building it directly from typed
+	 * columns unless the snapshot has other metrics.
+	 */
+	public static State toState(StateSnapshot snapshot) {
+		if (snapshot.metrics.isEmpty()) {
+			return snapshot.toState();
 		}
+		return toState(snapshot.toStateRecords(), snapshot.timestamp * 1000);
 	}
 
-	/** Insert state record(s) into the database. */
-	public void addStateRecords(List<StateRecord> records) throws SQLException {
+	/**
+	 * Stream a downsampled time series of every metric of the given device
+	 * with the given name prefix, ordered by metric name and time. Buckets
+	 * without any values are omitted. Aggregation is done by the database
+	 * (see {@link MetricSeriesQuery}), and rows are passed to the consumer as
+	 * they arrive.
+	 *
+	 * @param serialNumber the device serial number
+	 * @param metricPrefix the metric name prefix (ex. "radio.0.")
+	 * @param fromMs the start time (Unix time, in ms, inclusive)
+	 * @param toMs the end time (Unix time, in ms, exclusive)
+	 * @param stepMs the bucket size, in ms
+	 * @param consumer the consumer of each bucket (one instance is reused)
+	 */
+	@Override
+	public void getMetricSeries(
+		String serialNumber,
+		String metricPrefix,
+		long fromMs,
+		long toMs,
+		long stepMs,
+		RowConsumer<MetricBucket> consumer
+	) throws SQLException, IOException {
+		if (serialNumber == null || serialNumber.isEmpty()) {
+			throw new IllegalArgumentException("Invalid serialNumber");
+		}
+		if (metricPrefix == null) {
+			throw new IllegalArgumentException("Invalid metricPrefix");
+		}
+		if (toMs <= fromMs) {
+			throw new IllegalArgumentException("Invalid time range");
+		}
+
 		if (ds == null) {
 			return;
 		}
-		if (records.isEmpty()) {
-			return;
+
+		MetricSeriesQuery query =
+			new MetricSeriesQuery(metricPrefix, fromMs, stepMs);
+		String like = MetricSeriesQuery.likePattern(metricPrefix);
+		try (
+			Connection conn = getConnection();
+			PreparedStatement stmt = conn.prepareStatement(
+				query.sql,
+				ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY
+			)
+		) {
+			stmt.setFetchSize(Integer.MIN_VALUE);
+			int param = 1;
+			for (int i = 0; i < query.sourceCount; i++) {
+				stmt.setString(param++, serialNumber);
+				stmt.setTimestamp(param++, new Timestamp(fromMs));
+				stmt.setTimestamp(param++, new Timestamp(toMs));
+				stmt.setString(param++, like);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				MetricBucket bucket = new MetricBucket();
+				while (rs.next()) {
+					bucket.metric = rs.getString(1);
+					bucket.timestamp = fromMs + rs.getLong(2) * stepMs;
+					bucket.count = rs.getLong(3);
+					bucket.min = rs.getLong(4);
+					bucket.max = rs.getLong(5);
+					bucket.avg = rs.getDouble(6);
+					bucket.last = rs.getLong(7);
+					consumer.accept(bucket);
+				}
+			}
+		}
+	}
+
+	/** Return a nullable BIGINT column. */
+	private static Long getNullableLong(ResultSet rs, int index)
+		throws SQLException {
+		long value = rs.getLong(index);
+		return rs.wasNull() ? null : value;
+	}
+
+	/** Read consecutive nullable BIGINT columns into the given array. */
+	private static void getNullableLongs(
+		ResultSet rs,
+		int startIndex,
+		Long[] values
+	) throws SQLException {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getNullableLong(rs, startIndex + i);
 		}
+	}
 
+	/**
+	 * Migrate all rows from the legacy "state" table (one row per metric)
+	 * into the normalized state tables, then drop it.
+	 *
+	 * Rows are moved in chunks by ID, each in a single transaction which also
+	 * deletes the migrated rows, so this can be interrupted and resumed at any
+	 * point. Snapshots spanning multiple chunks are merged.
+	 */
+	private void migrateLegacyStateTable() {
 		long startTime = System.nanoTime();
+		long rowCount = 0;
+
+		// Recently migrated snapshots, to merge snapshots spanning chunks
+		Map<List<Object>, Long> recentSnapshotIds =
+			new Utils.LruCache<>(MIGRATION_RECENT_SNAPSHOTS);
 		try (Connection conn = getConnection()) {
 			// @formatter:off
-			PreparedStatement stmt = conn.prepareStatement(
-				"INSERT INTO `state` (`time`, `metric`, `value`, `serial`) " +
-				"VALUES (?, ?, ?, ?)"
+			PreparedStatement select = conn.prepareStatement(
+				"SELECT `id`, `time`, `metric`, `value`, `serial` " +
+				"FROM `" + LEGACY_STATE_TABLE + "` " +
+				"WHERE `id` > ? ORDER BY `id` LIMIT " + MIGRATION_CHUNK_SIZE
+			);
+			PreparedStatement delete = conn.prepareStatement(
+				"DELETE FROM `" + LEGACY_STATE_TABLE + "` WHERE `id` <= ?"
+			);
+			PreparedStatement updateUptime = conn.prepareStatement(
+				"UPDATE `state_snapshot` SET `uptime` = ? WHERE `id` = ?"
 			);
 			// @formatter:on
+			StateRecordBatch batch = new StateRecordBatch(MIGRATION_CHUNK_SIZE);
+			long lastId = 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				// Read the next chunk
+				batch.clear();
+				select.setLong(1, lastId);
+				try (ResultSet rs = select.executeQuery()) {
+					while (rs.next()) {
+						lastId = rs.getLong(1);
+						batch.add(
+							rs.getTimestamp(2).getTime() / 1000,
+							rs.getString(3),
+							rs.getLong(4),
+							rs.getString(5)
+						);
+					}
+				}
+				if (batch.isEmpty()) {
+					break;
+				}
 
-			// Disable auto-commit
-			boolean autoCommit = conn.getAutoCommit();
-			conn.setAutoCommit(false);
-
-			try {
-				// Insert records
-				for (StateRecord record : records) {
-					Timestamp timestamp =
-						new Timestamp(record.timestamp * 1000);
-					stmt.setTimestamp(1, timestamp);
-					stmt.setString(2, record.metric);
-					stmt.setLong(3, record.value);
-					stmt.setString(4, record.serial);
-					stmt.addBatch();
-				}
-				stmt.executeBatch();
+				// Split into new snapshots and parts of migrated snapshots
+				List<StateSnapshot> snapshots = StateSnapshot.fromBatch(batch);
+				List<StateSnapshot> newSnapshots = new ArrayList<>();
+				List<StateSnapshot> existingSnapshots = new ArrayList<>();
+				List<Long> existingIds = new ArrayList<>();
+				for (StateSnapshot snapshot : snapshots) {
+					Long id = recentSnapshotIds.get(
+						Arrays.asList(snapshot.serial, snapshot.timestamp)
+					);
+					if (id == null) {
+						newSnapshots.add(snapshot);
+					} else {
+						existingSnapshots.add(snapshot);
+						existingIds.add(id);
+					}
+				}
+				resolveMetricIds(conn, snapshots);
 
-				// Commit changes
-				conn.commit();
+				// Insert and delete in one transaction
+				conn.setAutoCommit(false);
+				try {
+					long[] newIds = insertSnapshots(conn, newSnapshots);
+					insertSnapshotRows(conn, newSnapshots, newIds);
+					updateLatestSnapshots(conn, newSnapshots, newIds);
+					long[] ids = new long[existingIds.size()];
+					for (int i = 0; i < ids.length; i++) {
+						ids[i] = existingIds.get(i);
+						Long uptime = existingSnapshots.get(i).uptime;
+						if (uptime != null) {
+							updateUptime.setLong(1, uptime);
+							updateUptime.setLong(2, ids[i]);
+							updateUptime.executeUpdate();
+						}
+					}
+					insertSnapshotRows(conn, existingSnapshots, ids);
+					delete.setLong(1, lastId);
+					delete.executeUpdate();
+					conn.commit();
+					for (int i = 0; i < newIds.length; i++) {
+						StateSnapshot snapshot = newSnapshots.get(i);
+						recentSnapshotIds.put(
+							Arrays.asList(snapshot.serial, snapshot.timestamp),
+							newIds[i]
+						);
+					}
+				} catch (SQLException e) {
+					conn.rollback();
+					throw e;
+				} finally {
+					conn.setAutoCommit(true);
+				}
+				rowCount += batch.size();
+			}
+			select.close();
+			delete.close();
+			updateUptime.close();
 
-				logger.debug(
-					"Inserted {} state row(s) in {} ms",
-					records.size(),
-					(System.nanoTime() - startTime) / 1_000_000L
+			if (Thread.currentThread().isInterrupted()) {
+				logger.info(
+					"Legacy state migration interrupted after {} row(s)",
+					rowCount
 				);
-			} finally {
-				// Restore auto-commit state
-				conn.setAutoCommit(autoCommit);
+				return;
+			}
+			try (Statement stmt = conn.createStatement()) {
+				stmt.executeUpdate("DROP TABLE `" + LEGACY_STATE_TABLE + "`");
 			}
+			logger.info(
+				"Migrated {} legacy state row(s) in {} ms",
+				rowCount,
+				(System.nanoTime() - startTime) / 1_000_000L
+			);
+		} catch (SQLException e) {
+			logger.error(
+				String.format(
+					"Legacy state migration failed after %d row(s)",
+					rowCount
+				),
+				e
+			);
 		}
 	}
 
-	/** Return the latest state records for each unique device. */
-	public Map<String, State> getLatestState() throws SQLException {
-		if (ds == null) {
-			return null;
+	/**
+	 * Partition a "wifiscan" table created by an earlier version, adding the
+	 * time to its primary key and a (serial, time) index.
+	 *
+	 * This rebuilds the table, which blocks writes to it until done (wifi
+	 * scans are queued by {@link WifiScanWriter} meanwhile, and dropped once
+	 * its queue is full).
+	 */
+	private void partitionLegacyWifiScanTable() {
+		long startTime = System.nanoTime();
+		try (
+			Connection conn = getConnection();
+			Statement stmt = conn.createStatement()
+		) {
+			stmt.executeUpdate(
+				"ALTER TABLE `wifiscan` " +
+					"DROP PRIMARY KEY, " +
+					"ADD PRIMARY KEY (`id`, `time`), " +
+					"ADD INDEX `serial_time` (`serial`, `time`)" +
+					partitionClause()
+			);
+			logger.info(
+				"Partitioned legacy wifiscan table in {} ms",
+				(System.nanoTime() - startTime) / 1_000_000L
+			);
+		} catch (SQLException e) {
+			logger.error("Legacy wifiscan table partitioning failed", e);
 		}
+	}
 
-		Map<String, State> ret = new HashMap<>();
-		try (Connection conn = getConnection()) {
-			// Fetch latest (device, timestamp) records
-			Map<String, Timestamp> deviceToTs = new HashMap<>();
-			try (Statement stmt = conn.createStatement()) {
-				// @formatter:off
-				String sql =
-					"SELECT `serial`, `time` FROM `state` " +
-					"WHERE `id` IN (SELECT MAX(`id`) FROM `state` GROUP BY `serial`)";
-				// @formatter:on
-				try (ResultSet rs = stmt.executeQuery(sql)) {
-					while (rs.next()) {
-						String serial = rs.getString(1);
-						Timestamp time = rs.getTimestamp(2);
-						deviceToTs.put(serial, time);
+	/**
+	 * Convert a "wifiscan_results" table created by an earlier version (with
+	 * an empty "time" column added by {@link #init()}): backfill each row's
+	 * time from its parent "wifiscan" row, delete rows without a parent, then
+	 * partition the table.
+	 *
+	 * Rows are backfilled in chunks of scan IDs, each in its own transaction,
+	 * and only rows without the correct time are updated (including rows
+	 * filled with the current time by earlier conversions), so this can be
+	 * interrupted and resumed at any point. Rows are not returned by queries until they
+	 * are backfilled. The final partitioning rebuilds the table, which blocks
+	 * writes to it until done.
+	 */
+	private void migrateLegacyWifiScanResults() {
+		long startTime = System.nanoTime();
+		long rowCount = 0;
+		try (
+			Connection conn = getConnection();
+			// @formatter:off
+			PreparedStatement selectChunk = conn.prepareStatement(
+				"SELECT MAX(`id`) FROM (" +
+					"SELECT `id` FROM `wifiscan` WHERE `id` > ? " +
+					"ORDER BY `id` LIMIT " + WIFISCAN_MIGRATION_CHUNK_SIZE +
+				") ids"
+			);
+			PreparedStatement update = conn.prepareStatement(
+				"UPDATE `wifiscan_results` r " +
+				"INNER JOIN `wifiscan` w ON r.`scan_id` = w.`id` " +
+				"SET r.`time` = w.`time` " +
+				"WHERE r.`scan_id` > ? AND r.`scan_id` <= ? " +
+				"AND (r.`time` IS NULL OR r.`time` <> w.`time`)"
+			);
+			PreparedStatement deleteOrphans = conn.prepareStatement(
+				"DELETE FROM `wifiscan_results` WHERE `time` IS NULL " +
+				"LIMIT " + MIGRATION_CHUNK_SIZE
+			);
+			Statement stmt = conn.createStatement()
+			// @formatter:on
+		) {
+			// Backfill rows by scan ID range
+			long lastId = 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				long maxId;
+				selectChunk.setLong(1, lastId);
+				try (ResultSet rs = selectChunk.executeQuery()) {
+					if (!rs.next() || rs.getObject(1) == null) {
+						break;
 					}
+					maxId = rs.getLong(1);
 				}
+				update.setLong(1, lastId);
+				update.setLong(2, maxId);
+				rowCount += update.executeUpdate();
+				lastId = maxId;
 			}
 
-			if (deviceToTs.isEmpty()) {
-				return ret; // empty database
-			}
-
-			// For each device, query all records at latest timestamp
-			PreparedStatement stmt = conn.prepareStatement(
-				"SELECT `metric`, `value` FROM `state` WHERE `serial` = ? AND `time` = ?"
-			);
-			for (Map.Entry<String, Timestamp> e : deviceToTs.entrySet()) {
-				String serial = e.getKey();
-				Timestamp time = e.getValue();
-				stmt.setString(1, serial);
-				stmt.setTimestamp(2, time);
-
-				List<StateRecord> records = new ArrayList<>();
-				try (ResultSet rs = stmt.executeQuery()) {
-					while (rs.next()) {
-						String metric = rs.getString(1);
-						long value = rs.getLong(2);
-						records.add(
-							new StateRecord(
-								0 /*unused*/,
-								time.getTime(),
-								metric,
-								value,
-								serial
-							)
-						);
-					}
+			// Delete rows without a parent scan
+			int deleted;
+			do {
+				if (Thread.currentThread().isInterrupted()) {
+					break;
 				}
-				ret.put(serial, toState(records, time.getTime()));
+				deleted = deleteOrphans.executeUpdate();
+			} while (deleted > 0);
+
+			if (Thread.currentThread().isInterrupted()) {
+				logger.info(
+					"Legacy wifiscan_results migration interrupted after {} row(s)",
+					rowCount
+				);
+				return;
 			}
+			logger.info(
+				"Backfilled {} legacy wifiscan_results row(s) in {} ms, partitioning...",
+				rowCount,
+				(System.nanoTime() - startTime) / 1_000_000L
+			);
+			stmt.executeUpdate(
+				"ALTER TABLE `wifiscan_results` " +
+					"MODIFY `time` TIMESTAMP NOT NULL " +
+					"DEFAULT CURRENT_TIMESTAMP" + partitionClause()
+			);
+			logger.info(
+				"Partitioned legacy wifiscan_results table in {} ms",
+				(System.nanoTime() - startTime) / 1_000_000L
+			);
+		} catch (SQLException e) {
+			logger.error(
+				String.format(
+					"Legacy wifiscan_results migration failed after %d row(s)",
+					rowCount
+				),
+				e
+			);
 		}
-		return ret;
 	}
 
 	/**
@@ -336,7 +1663,7 @@ public class DatabaseManager {
 	 * string value), or insert a new JsonObject with this key-value entry if
 	 * not found.
 	 */
-	private JsonObject getOrAddObjectFromArray(
+	private static JsonObject getOrAddObjectFromArray(
 		JsonArray a,
 		String key,
 		String value
@@ -357,11 +1684,16 @@ public class DatabaseManager {
 		return ret;
 	}
 
-	/** Convert a list of state records to a State object. */
-	private State toState(List<StateRecord> records, long ts) {
+	/**
+	 * Convert a list of state records to a State object.
+	 *
+	 * @param records the state records
+	 * @param ts the state timestamp (Unix time, in ms)
+	 */
+	static State toState(List<StateRecord> records, long ts) {
 		State state = new State();
 		state.unit = new State.Unit();
-		state.unit.localtime = ts;
+		state.unit.localtime = ts / 1000;
 
 		// Parse each record
 		Map<String, JsonObject> interfaces = new TreeMap<>();
@@ -454,10 +1786,11 @@ public class DatabaseManager {
 			.map(o -> gson.fromJson(o, State.Interface.class))
 			.collect(Collectors.toList())
 			.toArray(new State.Interface[0]);
-		state.radios = new State.Radio[radios.lastKey() + 1];
+		int radioCount = radios.isEmpty() ? 0 : radios.lastKey() + 1;
+		state.radios = new State.Radio[radioCount];
 		for (Map.Entry<Integer, JsonObject> entry : radios.entrySet()) {
-			State.Radio radio = new State.Radio();
-			state.radios[entry.getKey()] = radio;
+			state.radios[entry.getKey()] =
+				gson.fromJson(entry.getValue(), State.Radio.class);
 		}
 		return state;
 	}
@@ -469,85 +1802,136 @@ public class DatabaseManager {
 	 * @param timestampSeconds timestamp (Unix time in seconds).
 	 * @param entries          list of wifiscan entries
 	 */
+	@Override
 	public void addWifiScan(
 		String serialNumber,
 		long timestampSeconds,
 		List<WifiScanEntry> entries
 	) throws SQLException {
-		if (ds == null) {
+		addWifiScans(
+			Collections.singletonList(
+				new WifiScanRecord(
+					scanIdGenerator.next(),
+					serialNumber,
+					timestampSeconds,
+					entries
+				)
+			)
+		);
+	}
+
+	/**
+	 * Insert multiple wifi scans and their results into the database.
+	 *
+	 * Scan IDs are assigned by the caller (see {@link TimeOrderedIdGenerator}),
+	 * so all scans and all results are each written in one batch, within a
+	 * single transaction. If wifi scan compression is enabled, results are
+	 * instead encoded into the "wifiscan" rows (see {@link WifiScanCodec}).
+	 */
+	@Override
+	public void addWifiScans(List<WifiScanRecord> scans) throws SQLException {
+		if (ds == null || scans.isEmpty()) {
 			return;
 		}
 
 		long startTime = System.nanoTime();
+		int resultCount = 0;
 		try (Connection conn = getConnection()) {
-			// Insert scan entry to "wifiscan"
-			PreparedStatement stmt = conn.prepareStatement(
-				"INSERT INTO `wifiscan` (`time`, `serial`) VALUES (?, ?)",
-				Statement.RETURN_GENERATED_KEYS
-			);
-			stmt.setTimestamp(1, new Timestamp(timestampSeconds * 1000));
-			stmt.setString(2, serialNumber);
-			int rows = stmt.executeUpdate();
-			if (rows == 0) {
-				throw new SQLException(
-					"Adding wifiscan entry failed (insert returned no rows)"
+			// Disable auto-commit
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+
+			try (
+				PreparedStatement scanStmt = conn.prepareStatement(
+					"INSERT INTO `wifiscan` " +
+						"(`id`, `time`, `serial`, `results`) " +
+						"VALUES (?, ?, ?, ?)"
 				);
-			}
+				// @formatter:off
+				PreparedStatement resultStmt = conn.prepareStatement(
+					"INSERT INTO `wifiscan_results` (" +
+					  "`scan_id`, `bssid`, `ssid`, `lastseen`, `rssi`, " +
+					  "`channel`, `time`, `frequency`, `ht_oper`, `vht_oper`" +
+					") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+				)
+				// @formatter:on
+			) {
+				for (WifiScanRecord scan : scans) {
+					Timestamp time = new Timestamp(scan.timestamp * 1000);
+					scanStmt.setLong(1, scan.id);
+					scanStmt.setTimestamp(2, time);
+					scanStmt.setString(3, scan.serial);
+					resultCount += scan.entries.size();
+					if (compressWifiScans) {
+						byte[] results = WifiScanCodec.encode(scan.entries);
+						scanStmt.setBytes(4, results);
+						scanStmt.addBatch();
+						continue;
+					}
+					scanStmt.setNull(4, Types.BLOB);
+					scanStmt.addBatch();
 
-			// Retrieve generated "id" column
-			long scanId;
-			try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-				if (!generatedKeys.next()) {
-					throw new SQLException(
-						"Adding wifiscan entry failed (missing generated ID)"
-					);
+					for (WifiScanEntry entry : scan.entries) {
+						long bssid = 0;
+						try {
+							bssid = Utils.macToLong(entry.bssid);
+						} catch (IllegalArgumentException e) { /* ignore */ }
+						resultStmt.setLong(1, scan.id);
+						resultStmt.setLong(2, bssid);
+						resultStmt.setString(3, entry.ssid);
+						resultStmt.setLong(4, entry.last_seen);
+						resultStmt.setInt(5, entry.signal);
+						resultStmt.setInt(6, entry.channel);
+						resultStmt.setTimestamp(7, time);
+						resultStmt.setInt(8, entry.frequency);
+						resultStmt.setString(9, entry.ht_oper);
+						resultStmt.setString(10, entry.vht_oper);
+						resultStmt.addBatch();
+					}
 				}
-				scanId = generatedKeys.getLong(1);
-			}
-			stmt.close();
-
-			// Insert scan result entries to "wifiscan_results"
-			// @formatter:off
-			stmt = conn.prepareStatement(
-				"INSERT INTO `wifiscan_results` (" +
-				  "`scan_id`, `bssid`, `ssid`, `lastseen`, `rssi`, `channel`" +
-				") VALUES (?, ?, ?, ?, ?, ?)"
-			);
-			// @formatter:on
-			for (WifiScanEntry entry : entries) {
-				long bssid = 0;
-				try {
-					bssid = Utils.macToLong(entry.bssid);
-				} catch (IllegalArgumentException e) { /* ignore */ }
-				stmt.setLong(1, scanId);
-				stmt.setLong(2, bssid);
-				stmt.setString(3, entry.ssid);
-				stmt.setLong(4, entry.last_seen);
-				stmt.setInt(5, entry.signal);
-				stmt.setInt(6, entry.channel);
-				stmt.addBatch();
+				scanStmt.executeBatch();
+				if (!compressWifiScans && resultCount > 0) {
+					resultStmt.executeBatch();
+				}
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				// Restore auto-commit state
+				conn.setAutoCommit(autoCommit);
 			}
-			stmt.executeBatch();
-
-			logger.debug(
-				"Inserted wifi scan id {} with {} result(s) in {} ms",
-				scanId,
-				entries.size(),
-				(System.nanoTime() - startTime) / 1_000_000L
-			);
 		}
+
+		logger.debug(
+			"Inserted {} wifi scan(s) with {} result(s) in {} ms",
+			scans.size(),
+			resultCount,
+			(System.nanoTime() - startTime) / 1_000_000L
+		);
 	}
 
 	/**
-	 * Return up to the N latest wifiscan results for the given device as a map
-	 * of timestamp to scan results.
+	 * Return up to the N latest wifiscan results recorded at or after the
+	 * given time for each of the given devices, as a map of device serial
+	 * number to scans (oldest first). Each entry's {@code unixTimeMs} is set
+	 * to its scan time. Scans without any results are omitted.
+	 *
+	 * Devices are fetched in one streamed query per {@link #MAX_QUERY_PARAMS}
+	 * devices, ordered such that entries are appended directly to their lists.
+	 *
+	 * @param serialNumbers the device serial numbers
+	 * @param count         the maximum number of scans per device
+	 * @param minTimeMs     the minimum scan time (Unix time, in ms)
 	 */
-	public Map<Long, List<WifiScanEntry>> getLatestWifiScans(
-		String serialNumber,
-		int count
+	@Override
+	public Map<String, List<List<WifiScanEntry>>> getLatestWifiScans(
+		Collection<String> serialNumbers,
+		int count,
+		long minTimeMs
 	) throws SQLException {
-		if (serialNumber == null || serialNumber.isEmpty()) {
-			throw new IllegalArgumentException("Invalid serialNumber");
+		if (serialNumbers == null) {
+			throw new IllegalArgumentException("Invalid serialNumbers");
 		}
 		if (count < 1) {
 			throw new IllegalArgumentException("Invalid count");
@@ -557,57 +1941,138 @@ public class DatabaseManager {
 			return null;
 		}
 
-		Map<Long, List<WifiScanEntry>> ret = new TreeMap<>();
+		Map<String, List<List<WifiScanEntry>>> ret = new HashMap<>();
+		List<String> serials = new ArrayList<>(serialNumbers);
 		try (Connection conn = getConnection()) {
-			// Fetch latest N scan IDs
-			Map<Long, Long> scanIdToTs = new HashMap<>();
-			// @formatter:off
-			PreparedStatement stmt1 = conn.prepareStatement(
-				"SELECT `id`, `time` FROM `wifiscan` WHERE `serial` = ? " +
-				"ORDER BY `id` DESC LIMIT " + count
-			);
-			// @formatter:on
-			stmt1.setString(1, serialNumber);
-			try (ResultSet rs = stmt1.executeQuery()) {
-				while (rs.next()) {
-					long id = rs.getLong(1);
-					Timestamp time = rs.getTimestamp(2);
-					scanIdToTs.put(id, time.getTime());
-				}
-			}
-			stmt1.close();
-			if (scanIdToTs.isEmpty()) {
-				return ret; // no results
+			for (int i = 0; i < serials.size(); i += MAX_QUERY_PARAMS) {
+				List<String> chunk = serials.subList(
+					i,
+					Math.min(i + MAX_QUERY_PARAMS, serials.size())
+				);
+				addLatestWifiScans(conn, chunk, count, minTimeMs, ret);
 			}
+		}
+		return ret;
+	}
 
-			// Query all scan results
-			try (Statement stmt2 = conn.createStatement()) {
-				List<String> scanIds = scanIdToTs.keySet()
-					.stream()
-					.map(i -> Long.toString(i))
-					.collect(Collectors.toList());
-				String sql = String.format(
-					"SELECT * FROM `wifiscan_results` WHERE `scan_id` IN (%s)",
-					String.join(",", scanIds)
-				);
-				try (ResultSet rs = stmt2.executeQuery(sql)) {
-					while (rs.next()) {
-						long scanId = rs.getLong("scan_id");
-
-						WifiScanEntry entry = new WifiScanEntry();
-						entry.channel = rs.getInt("channel");
-						entry.last_seen = rs.getLong("lastseen");
-						entry.signal = rs.getInt("rssi");
-						entry.bssid = Utils.longToMac(rs.getLong("bssid"));
-						entry.ssid = rs.getString("ssid");
-						entry.tsf = scanIdToTs.getOrDefault(scanId, 0L);
-
-						ret.computeIfAbsent(scanId, i -> new ArrayList<>())
-							.add(entry);
+	/**
+	 * Fetch the latest wifiscan results for the given devices, and add them
+	 * to the given map.
+	 *
+	 * @see #getLatestWifiScans(Collection, int, long)
+	 */
+	private void addLatestWifiScans(
+		Connection conn,
+		List<String> serials,
+		int count,
+		long minTimeMs,
+		Map<String, List<List<WifiScanEntry>>> ret
+	) throws SQLException {
+		// Rank each device's scans (newest first) using the "serial_time"
+		// index, then join the top N with their results (either compressed in
+		// the "wifiscan" row, or as "wifiscan_results" rows)
+		// @formatter:off
+		String sql =
+			"SELECT w.`id`, w.`time`, w.`serial`, b.`results`, " +
+				"r.`bssid`, r.`ssid`, r.`lastseen`, r.`rssi`, r.`channel`, " +
+				"r.`frequency`, r.`ht_oper`, r.`vht_oper` " +
+			"FROM (" +
+				"SELECT `id`, `time`, `serial`, ROW_NUMBER() OVER (" +
+					"PARTITION BY `serial` ORDER BY `time` DESC, `id` DESC" +
+				") AS `row_num` " +
+				"FROM `wifiscan` " +
+				"WHERE `time` >= ? AND `serial` IN (" +
+					String.join(", ", Collections.nCopies(serials.size(), "?")) +
+				")" +
+			") w " +
+			"INNER JOIN `wifiscan` b " +
+				"ON b.`id` = w.`id` AND b.`time` = w.`time` " +
+			"LEFT JOIN `wifiscan_results` r " +
+				"ON r.`scan_id` = w.`id` AND r.`time` = w.`time` " +
+			"WHERE w.`row_num` <= ? " +
+			"ORDER BY w.`serial`, w.`time`, w.`id`";
+		// @formatter:on
+		try (
+			PreparedStatement stmt = conn.prepareStatement(
+				sql,
+				ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY
+			)
+		) {
+			stmt.setFetchSize(Integer.MIN_VALUE);
+			int param = 1;
+			stmt.setTimestamp(param++, new Timestamp(minTimeMs));
+			for (String serial : serials) {
+				stmt.setString(param++, serial);
+			}
+			stmt.setInt(param, count);
+			try (ResultSet rs = stmt.executeQuery()) {
+				// Rows arrive grouped by device, then by scan
+				String lastSerial = null;
+				long lastScanId = -1;
+				List<List<WifiScanEntry>> scans = null;
+				List<WifiScanEntry> scan = null;
+				while (rs.next()) {
+					long scanId = rs.getLong(1);
+					long time = rs.getTimestamp(2).getTime();
+					String serial = rs.getString(3);
+					if (!serial.equals(lastSerial)) {
+						scans = null;
+						lastSerial = serial;
+						lastScanId = -1;
 					}
+					if (scanId == lastScanId) {
+						if (scan == null) {
+							continue; // compressed scan (already decoded)
+						}
+					} else {
+						lastScanId = scanId;
+						byte[] results = rs.getBytes(4);
+						if (results != null) {
+							// Compressed scan
+							scan = null;
+							List<WifiScanEntry> entries;
+							try {
+								entries = WifiScanCodec.decode(results, time);
+							} catch (IllegalArgumentException e) {
+								logger.error("Invalid wifi scan {}", scanId, e);
+								continue;
+							}
+							if (!entries.isEmpty()) {
+								if (scans == null) {
+									scans = new ArrayList<>(count);
+									ret.put(serial, scans);
+								}
+								scans.add(entries);
+							}
+							continue;
+						}
+						rs.getLong(5);
+						if (rs.wasNull()) {
+							scan = null;
+							continue; // no results
+						}
+						scan = new ArrayList<>();
+						if (scans == null) {
+							scans = new ArrayList<>(count);
+							ret.put(serial, scans);
+						}
+						scans.add(scan);
+					}
+
+					WifiScanEntry entry = new WifiScanEntry();
+					entry.bssid = Utils.longToMac(rs.getLong(5));
+					entry.ssid = rs.getString(6);
+					entry.last_seen = rs.getLong(7);
+					entry.signal = rs.getInt(8);
+					entry.channel = rs.getInt(9);
+					entry.frequency = rs.getInt(10);
+					entry.ht_oper = rs.getString(11);
+					entry.vht_oper = rs.getString(12);
+					entry.unixTimeMs = time;
+					scan.add(entry);
 				}
 			}
 		}
-		return ret;
 	}
 }
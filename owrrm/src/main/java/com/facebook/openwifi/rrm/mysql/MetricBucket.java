@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+/**
+ * A downsampled time bucket of a single metric's values.
+ */
+public class MetricBucket {
+	/** The metric name (ex. "radio.0.noise"). */
+	public String metric;
+
+	/** The bucket start time (Unix time, in ms). */
+	public long timestamp;
+
+	/** The number of values in the bucket. */
+	public long count;
+
+	/** The minimum value. */
+	public long min;
+
+	/** The maximum value. */
+	public long max;
+
+	/** The average value. */
+	public double avg;
+
+	/** The latest value. */
+	public long last;
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builder of downsampled metric series queries over the normalized state
+ * tables (see {@link StateSnapshot}).
+ *
+ * Metrics are selected by name prefix (as in {@link StateRecord#metric}). Each
+ * typed column whose metric names may match the prefix contributes one
+ * subquery, which derives metric names from the key columns; non-matching
+ * columns are pruned up front. Values are then grouped into fixed-size time
+ * buckets and aggregated (count, min, max, avg, last) by the database, with
+ * results ordered by metric and time so they can be streamed.
+ */
+public class MetricSeriesQuery {
+	/** A metric source: one value column with a metric name expression. */
+	static class Source {
+		/** Pattern of all metric names produced by this source. */
+		final Pattern pattern;
+
+		/** The SQL join clause(s) from "state_snapshot" (alias "s"). */
+		final String join;
+
+		/** The SQL metric name expression. */
+		final String nameExpr;
+
+		/** The SQL value expression. */
+		final String valueExpr;
+
+		/** Constructor. */
+		Source(String regex, String join, String nameExpr, String valueExpr) {
+			this.pattern = Pattern.compile(regex);
+			this.join = join;
+			this.nameExpr = nameExpr;
+			this.valueExpr = valueExpr;
+		}
+
+		/** Return whether any metric name of this source has the prefix. */
+		boolean mayMatch(String prefix) {
+			Matcher m = pattern.matcher(prefix);
+			return m.matches() || m.hitEnd();
+		}
+	}
+
+	/** All metric sources. */
+	static final List<Source> SOURCES;
+
+	static {
+		List<Source> sources = new ArrayList<>();
+		sources.add(
+			new Source("unit\\.uptime", "", "'unit.uptime'", "s.`uptime`")
+		);
+		String join = childJoin("state_radio");
+		for (StateSnapshot.Column c : StateSnapshot.RADIO_COLUMNS) {
+			sources.add(
+				new Source(
+					"radio\\.\\d+\\." + Pattern.quote(c.key),
+					join,
+					"CONCAT('radio.', t.`radio`, '." + c.key + "')",
+					"t.`" + c.name + "`"
+				)
+			);
+		}
+		join = childJoin("state_interface");
+		for (StateSnapshot.Column c : StateSnapshot.INTERFACE_COLUMNS) {
+			sources.add(
+				new Source(
+					"interface\\.[^.]+\\." + Pattern.quote(c.key),
+					join,
+					"CONCAT('interface.', t.`name`, '." + c.key + "')",
+					"t.`" + c.name + "`"
+				)
+			);
+		}
+		join = childJoin("state_client");
+		for (StateSnapshot.Column c : StateSnapshot.CLIENT_COLUMNS) {
+			sources.add(
+				new Source(
+					"interface\\.[^.]+\\.bssid\\.[0-9a-f:]+\\.client\\." +
+						"[0-9a-f:]+\\." + Pattern.quote(c.key),
+					join,
+					"CONCAT('interface.', t.`interface`, " +
+						"'.bssid.', " + macExpr("t.`bssid`") + ", " +
+						"'.client.', " + macExpr("t.`client`") + ", " +
+						"'." + c.key + "')",
+					"t.`" + c.name + "`"
+				)
+			);
+		}
+		sources.add(
+			new Source(
+				".*",
+				childJoin("state_metric_value") +
+					"INNER JOIN `state_metric` m ON m.`id` = t.`metric_id` ",
+				"m.`name`",
+				"t.`value`"
+			)
+		);
+		SOURCES = Collections.unmodifiableList(sources);
+	}
+
+	/** The SQL query. */
+	public final String sql;
+
+	/** The number of metric sources in the query. */
+	public final int sourceCount;
+
+	/**
+	 * Build a query.
+	 *
+	 * The query takes the following parameters for each source, in order:
+	 * serial number, start time (inclusive), end time (exclusive), and
+	 * {@link #likePattern(String)} of the prefix (see
+	 * {@link DatabaseManager#getMetricSeries}).
+	 *
+	 * @param metricPrefix the metric name prefix (empty for all metrics)
+	 * @param fromMs the start time (Unix time, in ms), i.e. the start of the
+	 *               first bucket
+	 * @param stepMs the bucket size, in ms
+	 */
+	public MetricSeriesQuery(String metricPrefix, long fromMs, long stepMs) {
+		if (stepMs <= 0) {
+			throw new IllegalArgumentException("stepMs must be positive");
+		}
+		List<String> parts = new ArrayList<>();
+		for (Source source : SOURCES) {
+			if (source.mayMatch(metricPrefix)) {
+				parts.add(
+					"SELECT " + source.nameExpr + " AS `metric`, " +
+						"s.`time` AS `time`, " +
+						source.valueExpr + " AS `value` " +
+					"FROM `state_snapshot` s " + source.join +
+					"WHERE s.`serial` = ? " +
+						"AND s.`time` >= ? AND s.`time` < ? " +
+						"AND " + source.valueExpr + " IS NOT NULL " +
+						"AND " + source.nameExpr + " LIKE ?"
+				);
+			}
+		}
+		this.sourceCount = parts.size();
+
+		String bucket = String.format(
+			"(UNIX_TIMESTAMP(`time`) * 1000 - %d) DIV %d",
+			fromMs,
+			stepMs
+		);
+		this.sql =
+			"SELECT `metric`, `bucket`, COUNT(*), MIN(`value`), " +
+				"MAX(`value`), AVG(`value`), " +
+				"MAX(CASE WHEN `row_num` = 1 THEN `value` END) " +
+			"FROM (" +
+				"SELECT `metric`, `value`, " + bucket + " AS `bucket`, " +
+					"ROW_NUMBER() OVER (" +
+						"PARTITION BY `metric`, " + bucket + " " +
+						"ORDER BY `time` DESC" +
+					") AS `row_num` " +
+				"FROM (" + String.join(" UNION ALL ", parts) + ") u" +
+			") b " +
+			"GROUP BY `metric`, `bucket` " +
+			"ORDER BY `metric`, `bucket`";
+	}
+
+	/** Return a "LIKE" pattern matching all strings with the given prefix. */
+	public static String likePattern(String prefix) {
+		return prefix.replace("\\", "\\\\")
+			.replace("%", "\\%")
+			.replace("_", "\\_") + "%";
+	}
+
+	/** Return a join clause for the given snapshot child table (alias "t"). */
+	private static String childJoin(String table) {
+		return "INNER JOIN `" + table + "` t " +
+			"ON t.`snapshot_id` = s.`id` AND t.`time` = s.`time` ";
+	}
+
+	/**
+	 * Return an SQL expression formatting the given BIGINT expression as a
+	 * MAC address (as in {@link com.facebook.openwifi.rrm.Utils#longToMac}).
+	 */
+	private static String macExpr(String expr) {
+		String hex = "LPAD(LOWER(HEX(" + expr + ")), 12, '0')";
+		List<String> octets = new ArrayList<>();
+		for (int i = 1; i <= 11; i += 2) {
+			octets.add("SUBSTR(" + hex + ", " + i + ", 2)");
+		}
+		return "CONCAT_WS(':', " + String.join(", ", octets) + ")";
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable, column-oriented batch of rows for the "state" table.
+ *
+ * Rows are stored in parallel arrays instead of one {@link StateRecord} per
+ * row, so appending a row allocates nothing once the arrays have grown large
+ * enough. Metric names and serial numbers are stored by reference, so callers
+ * should pass shared (ex. cached) strings. {@link #clear()} keeps the
+ * allocated capacity for the next batch.
+ *
+ * This class is not thread-safe.
+ */
+public class StateRecordBatch {
+	/** The default initial capacity. */
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/** Row timestamps (Unix time, in seconds). */
+	private long[] timestamps;
+
+	/** Row metric names. */
+	private String[] metrics;
+
+	/** Row values. */
+	private long[] values;
+
+	/** Row device serial numbers. */
+	private String[] serials;
+
+	/** The number of rows. */
+	private int size = 0;
+
+	/** Constructor with default initial capacity. */
+	public StateRecordBatch() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Constructor. */
+	public StateRecordBatch(int initialCapacity) {
+		int capacity = Math.max(initialCapacity, 1);
+		this.timestamps = new long[capacity];
+		this.metrics = new String[capacity];
+		this.values = new long[capacity];
+		this.serials = new String[capacity];
+	}
+
+	/** Append a row. */
+	public void add(long timestamp, String metric, long value, String serial) {
+		if (size == timestamps.length) {
+			int capacity = timestamps.length * 2;
+			timestamps = Arrays.copyOf(timestamps, capacity);
+			metrics = Arrays.copyOf(metrics, capacity);
+			values = Arrays.copyOf(values, capacity);
+			serials = Arrays.copyOf(serials, capacity);
+		}
+		timestamps[size] = timestamp;
+		metrics[size] = metric;
+		values[size] = value;
+		serials[size] = serial;
+		size++;
+	}
+
+	/** Remove all rows, keeping the allocated capacity. */
+	public void clear() {
+		Arrays.fill(metrics, 0, size, null);
+		Arrays.fill(serials, 0, size, null);
+		size = 0;
+	}
+
+	/** Return the number of rows. */
+	public int size() {
+		return size;
+	}
+
+	/** Return whether this batch has no rows. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Return the timestamp of the given row (Unix time, in seconds). */
+	public long getTimestamp(int i) {
+		checkIndex(i);
+		return timestamps[i];
+	}
+
+	/** Return the metric name of the given row. */
+	public String getMetric(int i) {
+		checkIndex(i);
+		return metrics[i];
+	}
+
+	/** Return the value of the given row. */
+	public long getValue(int i) {
+		checkIndex(i);
+		return values[i];
+	}
+
+	/** Return the device serial number of the given row. */
+	public String getSerial(int i) {
+		checkIndex(i);
+		return serials[i];
+	}
+
+	/** Convert all rows into {@link StateRecord} objects. */
+	public List<StateRecord> toStateRecords() {
+		List<StateRecord> records = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			records.add(
+				new StateRecord(
+					timestamps[i],
+					metrics[i],
+					values[i],
+					serials[i]
+				)
+			);
+		}
+		return records;
+	}
+
+	/** Throw an exception if the given row index is out of range. */
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException(
+				String.format("Index %d out of bounds for size %d", i, size)
+			);
+		}
+	}
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.facebook.openwifi.rrm.Utils;
+import com.facebook.openwifi.rrm.store.DataStore;
+
+/**
+ * Asynchronous write-behind stage for the "state" table.
+ *
+ * Rows passed to {@link #enqueue(StateRecordBatch)} are copied into a pending
+ * batch, which is handed to a writer thread once it reaches the maximum batch
+ * size or its oldest row reaches the maximum delay. Writer threads insert
+ * batches via {@link DataStore#addStateRecords(StateRecordBatch)}.
+ * Consecutive rows with the same serial number and timestamp (i.e. a single
+ * state record) are never split across batches, so a batch may exceed the
+ * maximum size by up to one record. Callers should not split a state record
+ * across calls.
+ *
+ * Memory is bounded by the queue capacity, counted in rows (including rows
+ * being written). When full, {@link #enqueue(StateRecordBatch)} blocks the
+ * caller for up to the given timeout, after which the rows are dropped.
+ * Batches which fail to insert are dropped as well.
+ */
+public class StateRecordWriter {
+	private static final Logger logger =
+		LoggerFactory.getLogger(StateRecordWriter.class);
+
+	/** Write-behind statistics. */
+	public static class StateRecordWriterStats {
+		/** The number of rows queued or being written. */
+		public long queuedRows;
+
+		/** The maximum number of rows queued or being written. */
+		public long queueCapacity;
+
+		/** The number of full batches waiting for a writer thread. */
+		public int readyBatches;
+
+		/** The number of batches written. */
+		public long batchCount;
+
+		/** The number of rows written. */
+		public long rowCount;
+
+		/** The average number of rows per written batch. */
+		public double avgBatchSize;
+
+		/** The average batch insert latency, in ms. */
+		public double avgFlushLatencyMs;
+
+		/** The maximum batch insert latency, in ms. */
+		public double maxFlushLatencyMs;
+
+		/** The number of enqueue calls which blocked on a full queue. */
+		public long blockedCount;
+
+		/** The number of rows dropped because the queue was full. */
+		public long droppedRowCount;
+
+		/** The number of rows dropped because their insert failed. */
+		public long failedRowCount;
+	}
+
+	/** The data store. */
+	private final DataStore dataStore;
+
+	/** The maximum number of rows per batch. */
+	private final int maxBatchSize;
+
+	/** The maximum time a row waits before its batch is written (in ns). */
+	private final long maxDelayNs;
+
+	/** The maximum number of rows queued or being written. */
+	private final long queueCapacity;
+
+	/** The maximum time to block when enqueueing into a full queue (in ns). */
+	private final long enqueueTimeoutNs;
+
+	/** The writer threads. */
+	private final ExecutorService executor;
+
+	/** Lock guarding all state below. */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Signaled when a batch is ready or pending, or on shutdown. */
+	private final Condition batchAvailable = lock.newCondition();
+
+	/** Signaled when queue capacity is freed, or on shutdown. */
+	private final Condition notFull = lock.newCondition();
+
+	/** The batch being filled, or null if none. */
+	private StateRecordBatch pending = null;
+
+	/** The time the first row was added to the pending batch (in ns). */
+	private long pendingSinceNs;
+
+	/** Full batches waiting for a writer thread. */
+	private final Deque<StateRecordBatch> readyBatches = new ArrayDeque<>();
+
+	/** Empty batches available for reuse. */
+	private final Deque<StateRecordBatch> freeBatches = new ArrayDeque<>();
+
+	/** The maximum number of empty batches kept for reuse. */
+	private final int maxFreeBatches;
+
+	/** The number of rows queued or being written. */
+	private long queuedRows = 0;
+
+	/** Whether {@link #shutdown(long)} was called. */
+	private boolean isShutdown = false;
+
+	// Statistics
+	private long batchCount = 0;
+	private long rowCount = 0;
+	private long totalFlushNs = 0;
+	private long maxFlushNs = 0;
+	private long blockedCount = 0;
+	private long droppedRowCount = 0;
+	private long failedRowCount = 0;
+
+	/**
+	 * Constructor. Writer threads are started immediately.
+	 *
+	 * @param dataStore the data store
+	 * @param maxBatchSize the maximum number of rows per batch
+	 * @param maxDelayMs the maximum time a row waits before its batch is
+	 *                   written, in ms
+	 * @param queueCapacity the maximum number of rows queued or being written
+	 * @param enqueueTimeoutMs the maximum time to block when enqueueing into a
+	 *                         full queue, in ms
+	 * @param threadCount the number of writer threads
+	 */
+	public StateRecordWriter(
+		DataStore dataStore,
+		int maxBatchSize,
+		int maxDelayMs,
+		int queueCapacity,
+		int enqueueTimeoutMs,
+		int threadCount
+	) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be positive");
+		}
+		if (queueCapacity < maxBatchSize) {
+			throw new IllegalArgumentException(
+				"queueCapacity must be at least maxBatchSize"
+			);
+		}
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("threadCount must be positive");
+		}
+		this.dataStore = dataStore;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNs =
+			TimeUnit.MILLISECONDS.toNanos(Math.max(maxDelayMs, 0));
+		this.queueCapacity = queueCapacity;
+		this.enqueueTimeoutNs =
+			TimeUnit.MILLISECONDS.toNanos(Math.max(enqueueTimeoutMs, 0));
+		this.maxFreeBatches = threadCount + 1;
+		this.executor = Executors.newFixedThreadPool(
+			threadCount,
+			new Utils.NamedThreadFactory(
+				"RRM_" + this.getClass().getSimpleName()
+			)
+		);
+		for (int i = 0; i < threadCount; i++) {
+			executor.submit(this::runWriter);
+		}
+	}
+
+	/**
+	 * Copy all rows from the given batch into the queue, blocking while the
+	 * queue is full (up to the enqueue timeout). The given batch is not
+	 * modified and can be reused immediately.
+	 *
+	 * @return true if the rows were queued, or false if they were dropped
+	 *         because the queue remained full or the writer was shut down
+	 * @throws InterruptedException if interrupted while blocked (the rows are
+	 *         not queued)
+	 */
+	public boolean enqueue(StateRecordBatch batch)
+		throws InterruptedException {
+		int n = batch.size();
+		if (n == 0) {
+			return true;
+		}
+
+		lock.lock();
+		try {
+			// Block while full
+			if (!isShutdown && isFull(n)) {
+				blockedCount++;
+				long remainingNs = enqueueTimeoutNs;
+				while (!isShutdown && isFull(n)) {
+					if (remainingNs <= 0) {
+						droppedRowCount += n;
+						return false;
+					}
+					remainingNs = notFull.awaitNanos(remainingNs);
+				}
+			}
+			if (isShutdown) {
+				droppedRowCount += n;
+				return false;
+			}
+
+			for (int i = 0; i < n; i++) {
+				// Hand off a full batch at the next state record boundary
+				if (
+					pending != null && pending.size() >= maxBatchSize &&
+						!isSameRecord(pending, pending.size() - 1, batch, i)
+				) {
+					readyBatches.add(pending);
+					pending = null;
+					batchAvailable.signal();
+				}
+				if (pending == null) {
+					pending = freeBatches.isEmpty()
+						? new StateRecordBatch(maxBatchSize)
+						: freeBatches.poll();
+					pendingSinceNs = System.nanoTime();
+					batchAvailable.signal();
+				}
+				pending.add(
+					batch.getTimestamp(i),
+					batch.getMetric(i),
+					batch.getValue(i),
+					batch.getSerial(i)
+				);
+			}
+			if (pending != null && pending.size() >= maxBatchSize) {
+				// Records are not split across calls
+				readyBatches.add(pending);
+				pending = null;
+				batchAvailable.signal();
+			}
+			queuedRows += n;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stop accepting rows, write all queued rows, and stop the writer threads,
+	 * waiting up to the given timeout.
+	 *
+	 * @return true if all writer threads finished within the timeout
+	 */
+	public boolean shutdown(long timeoutMs) {
+		lock.lock();
+		try {
+			isShutdown = true;
+			batchAvailable.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		executor.shutdown();
+		try {
+			if (executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		logger.error("Timed out while flushing state records");
+		executor.shutdownNow();
+		return false;
+	}
+
+	/** Return the current write-behind statistics. */
+	public StateRecordWriterStats getStats() {
+		StateRecordWriterStats stats = new StateRecordWriterStats();
+		lock.lock();
+		try {
+			stats.queuedRows = queuedRows;
+			stats.queueCapacity = queueCapacity;
+			stats.readyBatches = readyBatches.size();
+			stats.batchCount = batchCount;
+			stats.rowCount = rowCount;
+			if (batchCount > 0) {
+				stats.avgBatchSize = (double) rowCount / batchCount;
+				stats.avgFlushLatencyMs = totalFlushNs / 1e6 / batchCount;
+			}
+			stats.maxFlushLatencyMs = maxFlushNs / 1e6;
+			stats.blockedCount = blockedCount;
+			stats.droppedRowCount = droppedRowCount;
+			stats.failedRowCount = failedRowCount;
+		} finally {
+			lock.unlock();
+		}
+		return stats;
+	}
+
+	/**
+	 * Return whether adding the given number of rows would exceed the queue
+	 * capacity. An oversized batch is accepted when the queue is empty.
+	 * Must be called while holding the lock.
+	 */
+	private boolean isFull(int n) {
+		return queuedRows > 0 && queuedRows + n > queueCapacity;
+	}
+
+	/**
+	 * Return whether the given rows belong to the same state record, i.e. have
+	 * the same serial number and timestamp.
+	 */
+	private static boolean isSameRecord(
+		StateRecordBatch a,
+		int i,
+		StateRecordBatch b,
+		int j
+	) {
+		return a.getTimestamp(i) == b.getTimestamp(j) &&
+			a.getSerial(i).equals(b.getSerial(j));
+	}
+
+	/** Writer thread loop, returning once shut down with no queued rows. */
+	private void runWriter() {
+		while (true) {
+			StateRecordBatch batch;
+			try {
+				batch = takeBatch();
+			} catch (InterruptedException e) {
+				logger.debug("State record writer interrupted");
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (batch == null) {
+				return;
+			}
+
+			long startNs = System.nanoTime();
+			boolean success = false;
+			try {
+				dataStore.addStateRecords(batch);
+				success = true;
+			} catch (SQLException e) {
+				logger.error("Failed to insert state records into database", e);
+			} catch (Exception e) {
+				logger.error("Unexpected error inserting state records", e);
+			}
+			long elapsedNs = System.nanoTime() - startNs;
+
+			lock.lock();
+			try {
+				int n = batch.size();
+				queuedRows -= n;
+				if (success) {
+					batchCount++;
+					rowCount += n;
+					totalFlushNs += elapsedNs;
+					maxFlushNs = Math.max(maxFlushNs, elapsedNs);
+				} else {
+					failedRowCount += n;
+				}
+				batch.clear();
+				if (freeBatches.size() < maxFreeBatches) {
+					freeBatches.add(batch);
+				}
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Wait for the next batch to write: a full batch, or the pending batch
+	 * once it reaches the maximum delay (or immediately upon shutdown).
+	 *
+	 * @return the batch, or null if shut down with no queued rows
+	 */
+	private StateRecordBatch takeBatch() throws InterruptedException {
+		lock.lock();
+		try {
+			while (true) {
+				if (!readyBatches.isEmpty()) {
+					return readyBatches.poll();
+				}
+				if (pending != null) {
+					long waitNs =
+						pendingSinceNs + maxDelayNs - System.nanoTime();
+					if (waitNs <= 0 || isShutdown) {
+						StateRecordBatch batch = pending;
+						pending = null;
+						return batch;
+					}
+					batchAvailable.awaitNanos(waitNs);
+				} else if (isShutdown) {
+					return null;
+				} else {
+					batchAvailable.await();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+}
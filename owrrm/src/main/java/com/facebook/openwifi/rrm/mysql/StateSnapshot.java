@@ -0,0 +1,533 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.facebook.openwifi.rrm.Utils;
+
+/**
+ * A single device state snapshot, in the typed layout of the normalized state
+ * tables ("state_snapshot", "state_radio", "state_interface", "state_client",
+ * and "state_metric_value").
+ *
+ * Snapshots are converted from and to flattened metric rows (see
+ * {@link StateRecord}). Known radio, interface counter, and client metrics are
+ * stored as typed columns; any other metric is kept by its full name, which
+ * is stored through the "state_metric" dictionary.
+ */
+public class StateSnapshot {
+	/** A typed value column. */
+	public static class Column {
+		/** The metric name suffix (ex. "rx_rate.mcs"). */
+		public final String key;
+
+		/** The SQL column name. */
+		public final String name;
+
+		/** The SQL column type. */
+		public final String type;
+
+		/** Constructor. */
+		private Column(String key, String type) {
+			this.key = key;
+			this.name = key.replace('.', '_');
+			this.type = type;
+		}
+	}
+
+	/** Radio columns (from "radio.<index>.<key>"). */
+	public static final List<Column> RADIO_COLUMNS =
+		Collections.unmodifiableList(
+			Arrays.asList(
+				new Column("channel", "INT"),
+				new Column("channel_width", "INT"),
+				new Column("noise", "INT"),
+				new Column("tx_power", "INT")
+			)
+		);
+
+	/** Interface counter columns (from "interface.<name>.<key>"). */
+	public static final List<Column> INTERFACE_COLUMNS;
+
+	/**
+	 * Client columns
+	 * (from "interface.<name>.bssid.<bssid>.client.<client>.<key>").
+	 */
+	public static final List<Column> CLIENT_COLUMNS;
+
+	static {
+		List<Column> columns = new ArrayList<>();
+		for (
+			String key : new String[] {
+				"collisions",
+				"multicast",
+				"rx_bytes",
+				"rx_packets",
+				"rx_errors",
+				"rx_dropped",
+				"tx_bytes",
+				"tx_packets",
+				"tx_errors",
+				"tx_dropped" }
+		) {
+			columns.add(new Column(key, "BIGINT"));
+		}
+		INTERFACE_COLUMNS = Collections.unmodifiableList(columns);
+
+		columns = new ArrayList<>();
+		columns.add(new Column("connected", "BIGINT"));
+		columns.add(new Column("inactive", "BIGINT"));
+		columns.add(new Column("rssi", "INT"));
+		columns.add(new Column("rx_bytes", "BIGINT"));
+		columns.add(new Column("rx_packets", "BIGINT"));
+		columns.add(new Column("tx_bytes", "BIGINT"));
+		columns.add(new Column("tx_duration", "BIGINT"));
+		columns.add(new Column("tx_failed", "BIGINT"));
+		columns.add(new Column("tx_offset", "BIGINT"));
+		columns.add(new Column("tx_packets", "BIGINT"));
+		columns.add(new Column("tx_retries", "BIGINT"));
+		for (String rate : new String[] { "rx_rate", "tx_rate" }) {
+			columns.add(new Column(rate + ".bitrate", "BIGINT"));
+			columns.add(new Column(rate + ".chwidth", "INT"));
+			columns.add(new Column(rate + ".sgi", "TINYINT"));
+			columns.add(new Column(rate + ".ht", "TINYINT"));
+			columns.add(new Column(rate + ".vht", "TINYINT"));
+			columns.add(new Column(rate + ".he", "TINYINT"));
+			columns.add(new Column(rate + ".mcs", "INT"));
+			columns.add(new Column(rate + ".nss", "INT"));
+			columns.add(new Column(rate + ".he_gi", "INT"));
+			columns.add(new Column(rate + ".he_dcm", "INT"));
+		}
+		CLIENT_COLUMNS = Collections.unmodifiableList(columns);
+	}
+
+	/** Map of metric name suffix to column index, for each column list. */
+	private static final Map<String, Integer> RADIO_INDEX =
+		indexOf(RADIO_COLUMNS);
+	private static final Map<String, Integer> INTERFACE_INDEX =
+		indexOf(INTERFACE_COLUMNS);
+	private static final Map<String, Integer> CLIENT_INDEX =
+		indexOf(CLIENT_COLUMNS);
+
+	/** A client row. */
+	public static class Client {
+		/** The interface name. */
+		public final String iface;
+
+		/** The SSID BSSID. */
+		public final long bssid;
+
+		/** The client MAC address. */
+		public final long client;
+
+		/** The column values (null if absent), see {@link #CLIENT_COLUMNS}. */
+		public final Long[] values = new Long[CLIENT_COLUMNS.size()];
+
+		/** Constructor. */
+		public Client(String iface, long bssid, long client) {
+			this.iface = iface;
+			this.bssid = bssid;
+			this.client = client;
+		}
+	}
+
+	/** The device serial number. */
+	public final String serial;
+
+	/** The snapshot timestamp (Unix time, in seconds). */
+	public final long timestamp;
+
+	/** The device uptime, or null if absent. */
+	public Long uptime = null;
+
+	/** Radio column values (as in {@link #RADIO_COLUMNS}) by radio index. */
+	public final Map<Integer, Long[]> radios = new TreeMap<>();
+
+	/** Interface column values (as in {@link #INTERFACE_COLUMNS}) by name. */
+	public final Map<String, Long[]> interfaces = new TreeMap<>();
+
+	/** Client rows, keyed by interface, BSSID, and client MAC address. */
+	public final Map<List<Object>, Client> clients = new LinkedHashMap<>();
+
+	/** Any other metrics, by full metric name. */
+	public final Map<String, Long> metrics = new TreeMap<>();
+
+	/** Constructor. */
+	public StateSnapshot(String serial, long timestamp) {
+		this.serial = serial;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Group the given rows into snapshots by serial number and timestamp, in
+	 * order of first appearance.
+	 */
+	public static List<StateSnapshot> fromBatch(StateRecordBatch batch) {
+		Map<List<Object>, StateSnapshot> snapshots = new LinkedHashMap<>();
+		StateSnapshot snapshot = null;
+		for (int i = 0, n = batch.size(); i < n; i++) {
+			String serial = batch.getSerial(i);
+			long timestamp = batch.getTimestamp(i);
+			if (
+				snapshot == null || snapshot.timestamp != timestamp ||
+					!snapshot.serial.equals(serial)
+			) {
+				snapshot = snapshots.computeIfAbsent(
+					Arrays.asList(serial, timestamp),
+					k -> new StateSnapshot(serial, timestamp)
+				);
+			}
+			snapshot.add(batch.getMetric(i), batch.getValue(i));
+		}
+		return new ArrayList<>(snapshots.values());
+	}
+
+	/** Return the radio column values for the given index, adding if absent. */
+	public Long[] radio(int index) {
+		return radios.computeIfAbsent(
+			index,
+			k -> new Long[RADIO_COLUMNS.size()]
+		);
+	}
+
+	/** Return the interface column values by name, adding if absent. */
+	public Long[] iface(String name) {
+		return interfaces.computeIfAbsent(
+			name,
+			k -> new Long[INTERFACE_COLUMNS.size()]
+		);
+	}
+
+	/** Return the given client row, adding if absent. */
+	public Client client(String iface, long bssid, long client) {
+		return clients.computeIfAbsent(
+			Arrays.asList(iface, bssid, client),
+			k -> new Client(iface, bssid, client)
+		);
+	}
+
+	/**
+	 * Add a metric (as produced by the data collector), overwriting any
+	 * existing value.
+	 */
+	public void add(String metric, long value) {
+		if (!addTyped(metric, value)) {
+			metrics.put(metric, value);
+		}
+	}
+
+	/** Add a metric into a typed column, returning false if there is none. */
+	private boolean addTyped(String metric, long value) {
+		String[] tokens = metric.split("\\.", 8);
+		Integer col;
+		switch (tokens[0]) {
+		case "unit":
+			if (tokens.length == 2 && tokens[1].equals("uptime")) {
+				uptime = value;
+				return true;
+			}
+			return false;
+		case "radio":
+			if (
+				tokens.length != 3 ||
+					(col = RADIO_INDEX.get(tokens[2])) == null
+			) {
+				return false;
+			}
+			int index;
+			try {
+				index = Integer.parseInt(tokens[1]);
+			} catch (NumberFormatException e) {
+				return false;
+			}
+			if (index < 0 || !Integer.toString(index).equals(tokens[1])) {
+				return false;
+			}
+			radio(index)[col] = value;
+			return true;
+		case "interface":
+			if (tokens.length == 3) {
+				if ((col = INTERFACE_INDEX.get(tokens[2])) == null) {
+					return false;
+				}
+				iface(tokens[1])[col] = value;
+				return true;
+			}
+			if (
+				tokens.length < 7 || !tokens[2].equals("bssid") ||
+					!tokens[4].equals("client")
+			) {
+				return false;
+			}
+			String key =
+				tokens.length == 7 ? tokens[6] : tokens[6] + "." + tokens[7];
+			if ((col = CLIENT_INDEX.get(key)) == null) {
+				return false;
+			}
+			Long bssid = parseMac(tokens[3]);
+			Long client = parseMac(tokens[5]);
+			if (bssid == null || client == null) {
+				return false;
+			}
+			client(tokens[1], bssid, client).values[col] = value;
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Convert this snapshot back into flattened metric rows. Rows are
+	 * identical to those added, up to ordering.
+	 */
+	public List<StateRecord> toStateRecords() {
+		List<StateRecord> records = new ArrayList<>();
+		for (Map.Entry<Integer, Long[]> e : radios.entrySet()) {
+			String prefix = "radio." + e.getKey() + ".";
+			addRecords(records, prefix, RADIO_COLUMNS, e.getValue());
+		}
+		for (Map.Entry<String, Long[]> e : interfaces.entrySet()) {
+			String prefix = "interface." + e.getKey() + ".";
+			addRecords(records, prefix, INTERFACE_COLUMNS, e.getValue());
+		}
+		for (Client c : clients.values()) {
+			String prefix = String.format(
+				"interface.%s.bssid.%s.client.%s.",
+				c.iface,
+				Utils.longToMac(c.bssid),
+				Utils.longToMac(c.client)
+			);
+			addRecords(records, prefix, CLIENT_COLUMNS, c.values);
+		}
+		if (uptime != null) {
+			records.add(
+				new StateRecord(timestamp, "unit.uptime", uptime, serial)
+			);
+		}
+		for (Map.Entry<String, Long> e : metrics.entrySet()) {
+			records.add(
+				new StateRecord(timestamp, e.getKey(), e.getValue(), serial)
+			);
+		}
+		return records;
+	}
+
+	/**
+	 * Convert this snapshot directly into a State object. The result is
+	 * equivalent to parsing {@link #toStateRecords()}, but ignores
+	 * {@link #metrics}.
+	 */
+	public State toState() {
+		State state = new State();
+		state.unit = new State.Unit();
+		state.unit.localtime = timestamp;
+		if (uptime != null) {
+			state.unit.uptime = uptime;
+		}
+
+		// Radios (by index, with gaps left null)
+		int radioCount = 0;
+		for (int index : radios.keySet()) {
+			radioCount = Math.max(radioCount, index + 1);
+		}
+		state.radios = new State.Radio[radioCount];
+		for (Map.Entry<Integer, Long[]> e : radios.entrySet()) {
+			Long[] values = e.getValue();
+			State.Radio radio = new State.Radio();
+			radio.channel = (int) get(values, RADIO_INDEX, "channel");
+			Long channelWidth = values[RADIO_INDEX.get("channel_width")];
+			if (channelWidth != null) {
+				radio.channel_width = Long.toString(channelWidth);
+			}
+			radio.noise = get(values, RADIO_INDEX, "noise");
+			radio.tx_power = (int) get(values, RADIO_INDEX, "tx_power");
+			state.radios[e.getKey()] = radio;
+		}
+
+		// Interfaces (by name), with counters and SSIDs
+		Map<String, State.Interface> interfaceMap = new TreeMap<>();
+		for (Map.Entry<String, Long[]> e : interfaces.entrySet()) {
+			Long[] values = e.getValue();
+			State.Interface.Counters counters = new State.Interface.Counters();
+			counters.collisions = get(values, INTERFACE_INDEX, "collisions");
+			counters.multicast = get(values, INTERFACE_INDEX, "multicast");
+			counters.rx_bytes = get(values, INTERFACE_INDEX, "rx_bytes");
+			counters.rx_packets = get(values, INTERFACE_INDEX, "rx_packets");
+			counters.rx_errors = get(values, INTERFACE_INDEX, "rx_errors");
+			counters.rx_dropped = get(values, INTERFACE_INDEX, "rx_dropped");
+			counters.tx_bytes = get(values, INTERFACE_INDEX, "tx_bytes");
+			counters.tx_packets = get(values, INTERFACE_INDEX, "tx_packets");
+			counters.tx_errors = get(values, INTERFACE_INDEX, "tx_errors");
+			counters.tx_dropped = get(values, INTERFACE_INDEX, "tx_dropped");
+			newInterface(interfaceMap, e.getKey()).counters = counters;
+		}
+		Map<List<Object>, List<State.Interface.SSID.Association>> groups =
+			new LinkedHashMap<>();
+		for (Client c : clients.values()) {
+			if (!interfaceMap.containsKey(c.iface)) {
+				newInterface(interfaceMap, c.iface);
+			}
+			groups.computeIfAbsent(
+				Arrays.asList(c.iface, c.bssid),
+				k -> new ArrayList<>()
+			).add(toAssociation(c));
+		}
+		Map<String, List<State.Interface.SSID>> ssids = new HashMap<>();
+		for (
+			Map.Entry<List<Object>, List<State.Interface.SSID.Association>> e :
+				groups.entrySet()
+		) {
+			State.Interface.SSID ssid = new State.Interface.SSID();
+			ssid.bssid = Utils.longToMac((Long) e.getKey().get(1));
+			ssid.associations = e.getValue()
+				.toArray(new State.Interface.SSID.Association[0]);
+			ssids.computeIfAbsent(
+				(String) e.getKey().get(0),
+				k -> new ArrayList<>()
+			).add(ssid);
+		}
+		for (Map.Entry<String, List<State.Interface.SSID>> e : ssids
+			.entrySet()) {
+			interfaceMap.get(e.getKey()).ssids =
+				e.getValue().toArray(new State.Interface.SSID[0]);
+		}
+		state.interfaces =
+			interfaceMap.values().toArray(new State.Interface[0]);
+		return state;
+	}
+
+	/** Add a new interface with the given name. */
+	private static State.Interface newInterface(
+		Map<String, State.Interface> interfaceMap,
+		String name
+	) {
+		State.Interface iface = new State.Interface();
+		iface.name = name;
+		interfaceMap.put(name, iface);
+		return iface;
+	}
+
+	/** Convert a client row into an association. */
+	private static State.Interface.SSID.Association toAssociation(Client c) {
+		State.Interface.SSID.Association association =
+			new State.Interface.SSID.Association();
+		Long[] values = c.values;
+		association.bssid = Utils.longToMac(c.client);
+		association.connected = get(values, CLIENT_INDEX, "connected");
+		association.inactive = get(values, CLIENT_INDEX, "inactive");
+		association.rssi = (int) get(values, CLIENT_INDEX, "rssi");
+		association.rx_bytes = get(values, CLIENT_INDEX, "rx_bytes");
+		association.rx_packets = get(values, CLIENT_INDEX, "rx_packets");
+		association.tx_bytes = get(values, CLIENT_INDEX, "tx_bytes");
+		association.tx_duration = get(values, CLIENT_INDEX, "tx_duration");
+		association.tx_failed = get(values, CLIENT_INDEX, "tx_failed");
+		association.tx_offset = get(values, CLIENT_INDEX, "tx_offset");
+		association.tx_packets = get(values, CLIENT_INDEX, "tx_packets");
+		association.tx_retries = get(values, CLIENT_INDEX, "tx_retries");
+		association.rx_rate = toRate(values, "rx_rate.");
+		association.tx_rate = toRate(values, "tx_rate.");
+		return association;
+	}
+
+	/**
+	 * Convert the client rate columns with the given key prefix into a rate,
+	 * or return null if all are absent.
+	 */
+	private static State.Interface.SSID.Association.Rate toRate(
+		Long[] values,
+		String prefix
+	) {
+		boolean present = false;
+		for (Map.Entry<String, Integer> e : CLIENT_INDEX.entrySet()) {
+			if (e.getKey().startsWith(prefix) && values[e.getValue()] != null) {
+				present = true;
+				break;
+			}
+		}
+		if (!present) {
+			return null;
+		}
+		State.Interface.SSID.Association.Rate rate =
+			new State.Interface.SSID.Association.Rate();
+		rate.bitrate = get(values, CLIENT_INDEX, prefix + "bitrate");
+		rate.chwidth = (int) get(values, CLIENT_INDEX, prefix + "chwidth");
+		rate.sgi = get(values, CLIENT_INDEX, prefix + "sgi") != 0;
+		rate.ht = get(values, CLIENT_INDEX, prefix + "ht") != 0;
+		rate.vht = get(values, CLIENT_INDEX, prefix + "vht") != 0;
+		rate.he = get(values, CLIENT_INDEX, prefix + "he") != 0;
+		rate.mcs = (int) get(values, CLIENT_INDEX, prefix + "mcs");
+		rate.nss = (int) get(values, CLIENT_INDEX, prefix + "nss");
+		rate.he_gi = (int) get(values, CLIENT_INDEX, prefix + "he_gi");
+		rate.he_dcm = (int) get(values, CLIENT_INDEX, prefix + "he_dcm");
+		return rate;
+	}
+
+	/** Return a column value by key, or 0 if absent. */
+	private static long get(
+		Long[] values,
+		Map<String, Integer> index,
+		String key
+	) {
+		Long value = values[index.get(key)];
+		return value != null ? value : 0;
+	}
+
+	/** Append a record for each non-null column value. */
+	private void addRecords(
+		List<StateRecord> records,
+		String prefix,
+		List<Column> columns,
+		Long[] values
+	) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				records.add(
+					new StateRecord(
+						timestamp,
+						prefix + columns.get(i).key,
+						values[i],
+						serial
+					)
+				);
+			}
+		}
+	}
+
+	/**
+	 * Parse a MAC address, returning null unless it is in canonical form
+	 * (i.e. it is restored exactly by {@link Utils#longToMac(long)}).
+	 */
+	private static Long parseMac(String s) {
+		long mac;
+		try {
+			mac = Utils.macToLong(s);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		return Utils.longToMac(mac).equals(s) ? mac : null;
+	}
+
+	/** Return a map of column key to index. */
+	private static Map<String, Integer> indexOf(List<Column> columns) {
+		Map<String, Integer> index = new HashMap<>();
+		for (int i = 0; i < columns.size(); i++) {
+			index.put(columns.get(i).key, i);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of unique, time-ordered 64-bit IDs, assigned by the client rather
+ * than by the database (so that rows referencing an ID can be inserted in the
+ * same batch as the row defining it).
+ *
+ * Each ID consists of (from high to low bits):
+ * <ul>
+ *   <li>41 bits: time in ms since {@link #EPOCH_MS}</li>
+ *   <li>10 bits: generator node ID (random by default)</li>
+ *   <li>12 bits: sequence number within the same ms</li>
+ * </ul>
+ *
+ * IDs from one generator are strictly increasing, even if the clock moves
+ * backwards or more than 4096 IDs are requested within one ms (in which case
+ * the time component runs ahead of the clock until it catches up). All IDs
+ * are positive.
+ */
+public class TimeOrderedIdGenerator {
+	/** The time origin (2022-01-01T00:00:00Z, as Unix time in ms). */
+	public static final long EPOCH_MS = 1640995200000L;
+
+	/** The number of node ID bits. */
+	private static final int NODE_BITS = 10;
+
+	/** The number of sequence bits. */
+	private static final int SEQUENCE_BITS = 12;
+
+	/** The node ID. */
+	private final long nodeId;
+
+	/** The last issued time and sequence number, as (time << 12) | seq. */
+	private final AtomicLong last = new AtomicLong();
+
+	/** Constructor with a random node ID. */
+	public TimeOrderedIdGenerator() {
+		this(ThreadLocalRandom.current().nextInt(1 << NODE_BITS));
+	}
+
+	/** Constructor with the given node ID (must fit in 10 bits). */
+	public TimeOrderedIdGenerator(int nodeId) {
+		if (nodeId < 0 || nodeId >= (1 << NODE_BITS)) {
+			throw new IllegalArgumentException("Invalid nodeId");
+		}
+		this.nodeId = nodeId;
+	}
+
+	/** Return the next ID. */
+	public long next() {
+		long now = (System.currentTimeMillis() - EPOCH_MS) << SEQUENCE_BITS;
+		long prev, value;
+		do {
+			prev = last.get();
+			value = Math.max(prev + 1, now);
+		} while (!last.compareAndSet(prev, value));
+		return ((value >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) |
+			(nodeId << SEQUENCE_BITS) |
+			(value & ((1L << SEQUENCE_BITS) - 1));
+	}
+
+	/** Return the time component of the given ID (Unix time, in ms). */
+	public static long getTimeMs(long id) {
+		return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MS;
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.rrm.Utils;
+
+/**
+ * Compact binary encoding of a wifi scan's results, stored as a single blob
+ * per scan instead of one "wifiscan_results" row per entry.
+ *
+ * The encoding is a format version byte followed by a deflated payload:
+ * <ul>
+ *   <li>the entry count, and a dictionary of the distinct SSIDs</li>
+ *   <li>per entry: the BSSID (6 bytes), the SSID's dictionary index,
+ *       last_seen and signal (as deltas from the previous entry), channel,
+ *       frequency, and ht_oper/vht_oper (as raw bytes if base64)</li>
+ * </ul>
+ * All integers are zigzag-encoded varints. Only the fields stored in the
+ * row-per-entry layout are encoded, and entry order is preserved.
+ */
+public class WifiScanCodec {
+	/** The current format version. */
+	private static final byte FORMAT_VERSION = 1;
+
+	/** Optional string tag: UTF-8 bytes (else base64-decoded bytes). */
+	private static final int STRING_UTF8 = 1;
+
+	/** The minimum encoded size of an entry (BSSID and 7 varints). */
+	private static final int MIN_ENTRY_BYTES = 6 + 7;
+
+	// This class should not be instantiated.
+	private WifiScanCodec() {}
+
+	/** Encode the given scan results. */
+	public static byte[] encode(List<WifiScanEntry> entries) {
+		Writer w = new Writer();
+
+		// SSID dictionary (index 0 is null)
+		Map<String, Integer> ssids = new HashMap<>();
+		List<String> dictionary = new ArrayList<>();
+		for (WifiScanEntry entry : entries) {
+			if (entry.ssid != null && !ssids.containsKey(entry.ssid)) {
+				ssids.put(entry.ssid, ssids.size() + 1);
+				dictionary.add(entry.ssid);
+			}
+		}
+		w.writeVarLong(entries.size());
+		w.writeVarLong(dictionary.size());
+		for (String ssid : dictionary) {
+			w.writeBytes(ssid.getBytes(StandardCharsets.UTF_8));
+		}
+
+		// Entries
+		long lastSeen = 0;
+		long signal = 0;
+		for (WifiScanEntry entry : entries) {
+			long bssid = 0;
+			try {
+				bssid = Utils.macToLong(entry.bssid);
+			} catch (IllegalArgumentException e) { /* ignore */ }
+			for (int shift = 40; shift >= 0; shift -= 8) {
+				w.out.write((int) (bssid >>> shift));
+			}
+			w.writeVarLong(entry.ssid == null ? 0 : ssids.get(entry.ssid));
+			w.writeVarLong(entry.last_seen - lastSeen);
+			w.writeVarLong(entry.signal - signal);
+			w.writeVarLong(entry.channel);
+			w.writeVarLong(entry.frequency);
+			w.writeOptionalString(entry.ht_oper);
+			w.writeOptionalString(entry.vht_oper);
+			lastSeen = entry.last_seen;
+			signal = entry.signal;
+		}
+
+		// Compress
+		byte[] payload = w.out.toByteArray();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(payload);
+			deflater.finish();
+			ByteArrayOutputStream out =
+				new ByteArrayOutputStream(payload.length / 2 + 16);
+			out.write(FORMAT_VERSION);
+			byte[] buf = new byte[4096];
+			while (!deflater.finished()) {
+				out.write(buf, 0, deflater.deflate(buf));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Decode scan results, setting each entry's {@code unixTimeMs} to the
+	 * given scan time.
+	 *
+	 * @throws IllegalArgumentException if the data is malformed
+	 */
+	public static List<WifiScanEntry> decode(byte[] data, long unixTimeMs) {
+		if (data.length == 0 || data[0] != FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported format");
+		}
+
+		// Decompress
+		Inflater inflater = new Inflater();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+		try {
+			inflater.setInput(data, 1, data.length - 1);
+			byte[] buf = new byte[4096];
+			while (!inflater.finished()) {
+				int n = inflater.inflate(buf);
+				if (
+					n == 0 &&
+						(inflater.needsInput() || inflater.needsDictionary())
+				) {
+					throw new IllegalArgumentException("Truncated data");
+				}
+				out.write(buf, 0, n);
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalArgumentException("Malformed data", e);
+		} finally {
+			inflater.end();
+		}
+		Reader r = new Reader(out.toByteArray());
+
+		// SSID dictionary
+		int count = r.readCount(MIN_ENTRY_BYTES);
+		int dictionarySize = r.readCount(1);
+		String[] dictionary = new String[dictionarySize + 1];
+		for (int i = 1; i <= dictionarySize; i++) {
+			dictionary[i] = new String(r.readBytes(), StandardCharsets.UTF_8);
+		}
+
+		// Entries
+		List<WifiScanEntry> entries = new ArrayList<>(count);
+		long lastSeen = 0;
+		long signal = 0;
+		for (int i = 0; i < count; i++) {
+			long bssid = 0;
+			for (int j = 0; j < 6; j++) {
+				bssid = (bssid << 8) | r.readByte();
+			}
+			WifiScanEntry entry = new WifiScanEntry();
+			entry.bssid = Utils.longToMac(bssid);
+			long ssidIndex = r.readVarLong();
+			if (ssidIndex < 0 || ssidIndex > dictionarySize) {
+				throw new IllegalArgumentException("Invalid SSID index");
+			}
+			entry.ssid = dictionary[(int) ssidIndex];
+			lastSeen += r.readVarLong();
+			signal += r.readVarLong();
+			entry.last_seen = lastSeen;
+			entry.signal = (int) signal;
+			entry.channel = (int) r.readVarLong();
+			entry.frequency = (int) r.readVarLong();
+			entry.ht_oper = r.readOptionalString();
+			entry.vht_oper = r.readOptionalString();
+			entry.unixTimeMs = unixTimeMs;
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	/** Payload writer. */
+	private static class Writer {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+		/** Write a zigzag-encoded varint. */
+		void writeVarLong(long value) {
+			long v = (value << 1) ^ (value >> 63);
+			while ((v & ~0x7FL) != 0) {
+				out.write((int) ((v & 0x7F) | 0x80));
+				v >>>= 7;
+			}
+			out.write((int) v);
+		}
+
+		/** Write length-prefixed bytes. */
+		void writeBytes(byte[] b) {
+			writeVarLong(b.length);
+			out.write(b, 0, b.length);
+		}
+
+		/**
+		 * Write a nullable string, as raw bytes if it is canonical base64
+		 * (i.e. restored exactly by re-encoding).
+		 */
+		void writeOptionalString(String s) {
+			if (s == null) {
+				writeVarLong(0);
+				return;
+			}
+			byte[] b = null;
+			try {
+				b = Base64.getDecoder().decode(s);
+				if (!Base64.getEncoder().encodeToString(b).equals(s)) {
+					b = null;
+				}
+			} catch (IllegalArgumentException e) { /* not base64 */ }
+			if (b != null) {
+				writeVarLong(((long) b.length << 1) + 1);
+			} else {
+				b = s.getBytes(StandardCharsets.UTF_8);
+				writeVarLong((((long) b.length << 1) | STRING_UTF8) + 1);
+			}
+			out.write(b, 0, b.length);
+		}
+	}
+
+	/** Payload reader. */
+	private static class Reader {
+		final byte[] data;
+		int pos = 0;
+
+		Reader(byte[] data) {
+			this.data = data;
+		}
+
+		/** Read an unsigned byte. */
+		int readByte() {
+			if (pos >= data.length) {
+				throw new IllegalArgumentException("Truncated data");
+			}
+			return data[pos++] & 0xFF;
+		}
+
+		/** Read a zigzag-encoded varint. */
+		long readVarLong() {
+			long v = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				v |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return (v >>> 1) ^ -(v & 1);
+				}
+			}
+			throw new IllegalArgumentException("Malformed varint");
+		}
+
+		/**
+		 * Read an item count, checking it against the remaining data given
+		 * the minimum encoded size of each item.
+		 */
+		int readCount(int minItemBytes) {
+			long n = readVarLong();
+			if (n < 0 || n > (data.length - pos) / minItemBytes) {
+				throw new IllegalArgumentException("Invalid count");
+			}
+			return (int) n;
+		}
+
+		/** Read length-prefixed bytes. */
+		byte[] readBytes() {
+			return readBytes(readVarLong());
+		}
+
+		/** Read the given number of bytes. */
+		byte[] readBytes(long n) {
+			if (n < 0 || n > data.length - pos) {
+				throw new IllegalArgumentException("Truncated data");
+			}
+			byte[] b = new byte[(int) n];
+			System.arraycopy(data, pos, b, 0, b.length);
+			pos += b.length;
+			return b;
+		}
+
+		/** Read a nullable string (see {@link Writer#writeOptionalString}). */
+		String readOptionalString() {
+			long tag = readVarLong();
+			if (tag == 0) {
+				return null;
+			}
+			tag--;
+			byte[] b = readBytes(tag >>> 1);
+			return (tag & STRING_UTF8) != 0
+				? new String(b, StandardCharsets.UTF_8)
+				: Base64.getEncoder().encodeToString(b);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.util.List;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+
+/**
+ * Representation of a wifi scan in the "wifiscan" table, with its results in
+ * the "wifiscan_results" table.
+ */
+public class WifiScanRecord {
+	/** The scan ID (see {@link TimeOrderedIdGenerator}). */
+	public final long id;
+
+	/** The device serial number. */
+	public final String serial;
+
+	/** The scan time (Unix time, in seconds). */
+	public final long timestamp;
+
+	/** The scan results. */
+	public final List<WifiScanEntry> entries;
+
+	/** Constructor. */
+	public WifiScanRecord(
+		long id,
+		String serial,
+		long timestamp,
+		List<WifiScanEntry> entries
+	) {
+		this.id = id;
+		this.serial = serial;
+		this.timestamp = timestamp;
+		this.entries = entries;
+	}
+}
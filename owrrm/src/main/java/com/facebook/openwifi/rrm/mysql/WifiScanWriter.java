@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.rrm.Utils;
+import com.facebook.openwifi.rrm.store.DataStore;
+
+/**
+ * Asynchronous write-behind stage for the "wifiscan" tables.
+ *
+ * Scans passed to {@link #enqueue(String, long, List)} are assigned an ID
+ * immediately and collected into a pending batch, which a single writer thread
+ * inserts via {@link DataStore#addWifiScans(List)} once it reaches the
+ * maximum batch size or its oldest scan reaches the maximum delay.
+ *
+ * Memory is bounded by the queue capacity, counted in scans (including scans
+ * being written). Scans are dropped when the queue is full, as are batches
+ * which fail to insert. Callers never block.
+ */
+public class WifiScanWriter {
+	private static final Logger logger =
+		LoggerFactory.getLogger(WifiScanWriter.class);
+
+	/** Write-behind statistics. */
+	public static class WifiScanWriterStats {
+		/** The number of scans queued or being written. */
+		public long queuedScans;
+
+		/** The maximum number of scans queued or being written. */
+		public long queueCapacity;
+
+		/** The number of batches written. */
+		public long batchCount;
+
+		/** The number of scans written. */
+		public long scanCount;
+
+		/** The number of scan results written. */
+		public long resultCount;
+
+		/** The average number of scans per written batch. */
+		public double avgBatchSize;
+
+		/** The average batch insert latency, in ms. */
+		public double avgFlushLatencyMs;
+
+		/** The maximum batch insert latency, in ms. */
+		public double maxFlushLatencyMs;
+
+		/** The number of scans dropped because the queue was full. */
+		public long droppedScanCount;
+
+		/** The number of scans dropped because their insert failed. */
+		public long failedScanCount;
+	}
+
+	/** The data store. */
+	private final DataStore dataStore;
+
+	/** The scan ID generator. */
+	private final TimeOrderedIdGenerator idGenerator =
+		new TimeOrderedIdGenerator();
+
+	/** The maximum number of scans per batch. */
+	private final int maxBatchSize;
+
+	/** The maximum time a scan waits before its batch is written (in ns). */
+	private final long maxDelayNs;
+
+	/** The maximum number of scans queued or being written. */
+	private final int queueCapacity;
+
+	/** The writer thread. */
+	private final ExecutorService executor;
+
+	/** Lock guarding all state below. */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** Signaled when a scan is queued, or on shutdown. */
+	private final Condition scanAvailable = lock.newCondition();
+
+	/** Queued scans, oldest first. */
+	private List<WifiScanRecord> pending = new ArrayList<>();
+
+	/** The time the oldest queued scan was added (in ns). */
+	private long pendingSinceNs;
+
+	/** The number of scans being written. */
+	private int writingScans = 0;
+
+	/** Whether {@link #shutdown(long)} was called. */
+	private boolean isShutdown = false;
+
+	// Statistics
+	private long batchCount = 0;
+	private long scanCount = 0;
+	private long resultCount = 0;
+	private long totalFlushNs = 0;
+	private long maxFlushNs = 0;
+	private long droppedScanCount = 0;
+	private long failedScanCount = 0;
+
+	/**
+	 * Constructor. The writer thread is started immediately.
+	 *
+	 * @param dataStore the data store
+	 * @param maxBatchSize the maximum number of scans per batch
+	 * @param maxDelayMs the maximum time a scan waits before its batch is
+	 *                   written, in ms
+	 * @param queueCapacity the maximum number of scans queued or being written
+	 */
+	public WifiScanWriter(
+		DataStore dataStore,
+		int maxBatchSize,
+		int maxDelayMs,
+		int queueCapacity
+	) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be positive");
+		}
+		if (queueCapacity < maxBatchSize) {
+			throw new IllegalArgumentException(
+				"queueCapacity must be at least maxBatchSize"
+			);
+		}
+		this.dataStore = dataStore;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNs =
+			TimeUnit.MILLISECONDS.toNanos(Math.max(maxDelayMs, 0));
+		this.queueCapacity = queueCapacity;
+		this.executor = Executors.newSingleThreadExecutor(
+			new Utils.NamedThreadFactory(
+				"RRM_" + this.getClass().getSimpleName()
+			)
+		);
+		executor.submit(this::runWriter);
+	}
+
+	/**
+	 * Queue a wifi scan for insertion. The given list must not be modified
+	 * afterwards.
+	 *
+	 * @param serialNumber the device serial number
+	 * @param timestampSeconds the scan time (Unix time, in seconds)
+	 * @param entries the scan results
+	 * @return true if the scan was queued, or false if it was dropped because
+	 *         the queue was full or the writer was shut down
+	 */
+	public boolean enqueue(
+		String serialNumber,
+		long timestampSeconds,
+		List<WifiScanEntry> entries
+	) {
+		WifiScanRecord scan = new WifiScanRecord(
+			idGenerator.next(),
+			serialNumber,
+			timestampSeconds,
+			entries
+		);
+		lock.lock();
+		try {
+			if (isShutdown || pending.size() + writingScans >= queueCapacity) {
+				droppedScanCount++;
+				return false;
+			}
+			if (pending.isEmpty()) {
+				pendingSinceNs = System.nanoTime();
+			}
+			pending.add(scan);
+			if (pending.size() == 1 || pending.size() >= maxBatchSize) {
+				scanAvailable.signal();
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stop accepting scans, write all queued scans, and stop the writer
+	 * thread, waiting up to the given timeout.
+	 *
+	 * @return true if the writer thread finished within the timeout
+	 */
+	public boolean shutdown(long timeoutMs) {
+		lock.lock();
+		try {
+			isShutdown = true;
+			scanAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		executor.shutdown();
+		try {
+			if (executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		logger.error("Timed out while flushing wifi scans");
+		executor.shutdownNow();
+		return false;
+	}
+
+	/** Return the current write-behind statistics. */
+	public WifiScanWriterStats getStats() {
+		WifiScanWriterStats stats = new WifiScanWriterStats();
+		lock.lock();
+		try {
+			stats.queuedScans = pending.size() + writingScans;
+			stats.queueCapacity = queueCapacity;
+			stats.batchCount = batchCount;
+			stats.scanCount = scanCount;
+			stats.resultCount = resultCount;
+			if (batchCount > 0) {
+				stats.avgBatchSize = (double) scanCount / batchCount;
+				stats.avgFlushLatencyMs = totalFlushNs / 1e6 / batchCount;
+			}
+			stats.maxFlushLatencyMs = maxFlushNs / 1e6;
+			stats.droppedScanCount = droppedScanCount;
+			stats.failedScanCount = failedScanCount;
+		} finally {
+			lock.unlock();
+		}
+		return stats;
+	}
+
+	/** Writer thread loop, returning once shut down with no queued scans. */
+	private void runWriter() {
+		while (true) {
+			List<WifiScanRecord> batch;
+			try {
+				batch = takeBatch();
+			} catch (InterruptedException e) {
+				logger.debug("Wifi scan writer interrupted");
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (batch == null) {
+				return;
+			}
+
+			long startNs = System.nanoTime();
+			boolean success = false;
+			try {
+				dataStore.addWifiScans(batch);
+				success = true;
+			} catch (SQLException e) {
+				logger.error("Failed to insert wifi scans into database", e);
+			} catch (Exception e) {
+				logger.error("Unexpected error inserting wifi scans", e);
+			}
+			long elapsedNs = System.nanoTime() - startNs;
+
+			lock.lock();
+			try {
+				writingScans -= batch.size();
+				if (success) {
+					batchCount++;
+					scanCount += batch.size();
+					for (WifiScanRecord scan : batch) {
+						resultCount += scan.entries.size();
+					}
+					totalFlushNs += elapsedNs;
+					maxFlushNs = Math.max(maxFlushNs, elapsedNs);
+				} else {
+					failedScanCount += batch.size();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Wait for the next batch to write: up to the maximum batch size of the
+	 * oldest queued scans, once that many are queued or the oldest reaches
+	 * the maximum delay (or immediately upon shutdown).
+	 *
+	 * @return the batch, or null if shut down with no queued scans
+	 */
+	private List<WifiScanRecord> takeBatch() throws InterruptedException {
+		lock.lock();
+		try {
+			while (true) {
+				if (!pending.isEmpty()) {
+					long waitNs =
+						pendingSinceNs + maxDelayNs - System.nanoTime();
+					if (
+						pending.size() >= maxBatchSize || waitNs <= 0 ||
+							isShutdown
+					) {
+						List<WifiScanRecord> batch;
+						if (pending.size() <= maxBatchSize) {
+							batch = pending;
+							pending = new ArrayList<>();
+						} else {
+							List<WifiScanRecord> head =
+								pending.subList(0, maxBatchSize);
+							batch = new ArrayList<>(head);
+							head.clear();
+						}
+						writingScans += batch.size();
+						return batch;
+					}
+					scanAvailable.awaitNanos(waitNs);
+				} else if (isShutdown) {
+					return null;
+				} else {
+					scanAvailable.await();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+}
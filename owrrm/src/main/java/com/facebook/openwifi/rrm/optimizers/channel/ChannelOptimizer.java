@@ -30,6 +30,7 @@ import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.ConfigManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
 import com.facebook.openwifi.rrm.modules.ModelerUtils;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 
 /**
  * Channel optimizer base class.
@@ -131,19 +132,12 @@ public abstract class ChannelOptimizer {
 		String zone,
 		DeviceDataManager deviceDataManager
 	) {
-		this.model = model;
 		this.zone = zone;
 		this.deviceConfigs = deviceDataManager.getAllDeviceConfigs(zone);
 
-		// Remove model entries not in the given zone
-		this.model.latestWifiScans.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber));
-		this.model.latestStates.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber));
-		this.model.latestDeviceStatusRadios.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber));
-		this.model.latestDeviceCapabilitiesPhy.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber));
+		// Exclude model entries not in the given zone
+		this.model =
+			ModelerUtils.restrictDataModel(model, deviceConfigs.keySet());
 	}
 
 	/**
@@ -261,13 +255,13 @@ public abstract class ChannelOptimizer {
 	 */
 	protected static Map<String, List<WifiScanEntry>> getDeviceToWiFiScans(
 		String band,
-		Map<String, List<List<WifiScanEntry>>> latestWifiScans,
+		Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans,
 		Map<String, List<String>> bandsMap
 	) {
 		Map<String, List<WifiScanEntry>> deviceToWifiScans = new HashMap<>();
 
 		for (
-			Map.Entry<String, List<List<WifiScanEntry>>> e : latestWifiScans
+			Map.Entry<String, RingBuffer<List<WifiScanEntry>>> e : latestWifiScans
 				.entrySet()
 		) {
 			String serialNumber = e.getKey();
@@ -282,8 +276,8 @@ public abstract class ChannelOptimizer {
 				continue;
 			}
 
-			List<List<WifiScanEntry>> wifiScanList = e.getValue();
-			if (wifiScanList.isEmpty()) {
+			List<WifiScanEntry> scanResps = e.getValue().latest();
+			if (scanResps == null) {
 				// 2. Filter out APs with empty scan results
 				logger.debug(
 					"Device {}: Empty wifi scan results, skipping...",
@@ -295,8 +289,6 @@ public abstract class ChannelOptimizer {
 			// 1. Remove the wifi scan results on different bands
 			// 2. Duplicate the wifi scan result from a channel to multiple channels
 			//    if the neighboring AP is using a wider bandwidth (> 20 MHz)
-			List<WifiScanEntry> scanResps =
-				wifiScanList.get(wifiScanList.size() - 1);
 			List<WifiScanEntry> scanRespsFiltered =
 				new ArrayList<WifiScanEntry>();
 			for (WifiScanEntry entry : scanResps) {
@@ -13,6 +13,7 @@ import java.util.Map;
 import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.ModelerUtils;
 
 /** Client steering base class */
 public abstract class ClientSteeringOptimizer {
@@ -44,21 +45,14 @@ public abstract class ClientSteeringOptimizer {
 		DeviceDataManager deviceDataManager,
 		ClientSteeringState clientSteeringState
 	) {
-		this.model = model;
 		this.zone = zone;
 		this.deviceConfigs = deviceDataManager.getAllDeviceConfigs(zone);
 
 		this.clientSteeringState = clientSteeringState;
 
-		// Remove model entries not in the given zone
-		this.model.latestWifiScans.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber));
-		this.model.latestStates.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber));
-		this.model.latestDeviceStatusRadios.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber));
-		this.model.latestDeviceCapabilitiesPhy.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber));
+		// Exclude model entries not in the given zone
+		this.model =
+			ModelerUtils.restrictDataModel(model, deviceConfigs.keySet());
 	}
 
 	/**
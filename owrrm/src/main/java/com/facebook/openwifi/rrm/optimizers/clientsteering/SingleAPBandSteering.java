@@ -9,7 +9,6 @@
 package com.facebook.openwifi.rrm.optimizers.clientsteering;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -21,6 +20,7 @@ import com.facebook.openwifi.cloudsdk.models.ap.State;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
 import com.facebook.openwifi.rrm.modules.ModelerUtils;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.google.gson.Gson;
 
 /**
@@ -132,18 +132,17 @@ public class SingleAPBandSteering extends ClientSteeringOptimizer {
 		Map<String, Map<String, String>> apClientActionMap = new HashMap<>();
 		// iterate through every AP
 		for (
-			Map.Entry<String, List<State>> entry : model.latestStates
+			Map.Entry<String, RingBuffer<State>> entry : model.latestStates
 				.entrySet()
 		) {
 			// get the latest state
 			// TODO window size (look at multiple states)
 			// TODO window percent (% of samples that must violate thresholds)
-			List<State> states = entry.getValue();
-			if (states == null || states.isEmpty()) {
+			final State state = entry.getValue().latest();
+			if (state == null) {
 				continue;
 			}
 			final String serialNumber = entry.getKey();
-			final State state = states.get(states.size() - 1);
 			// iterate through every radio and every connected client
 			if (state.interfaces == null || state.interfaces.length == 0) {
 				continue;
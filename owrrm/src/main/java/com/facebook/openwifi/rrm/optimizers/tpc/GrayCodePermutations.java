@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.optimizers.tpc;
+
+import java.util.Arrays;
+
+/**
+ * Lazy enumeration of all permutations with repetitions of {@code n} items
+ * from a number of choices, in reflected (mixed-radix) Gray code order.
+ * <p>
+ * Each permutation is an array of choice indices. Consecutive permutations
+ * differ in exactly one position, by one choice index, so callers can apply
+ * each step as a single-item update instead of rebuilding state (see
+ * {@link com.facebook.openwifi.rrm.modules.TxPowerCoverageModel#update}).
+ * Position 0 changes most often. Only O(n) memory is used, regardless of the
+ * number of permutations.
+ * <p>
+ * This is Knuth's loopless reflected mixed-radix Gray code generation
+ * (TAOCP Vol. 4A, 7.2.1.1, Algorithm H).
+ */
+public class GrayCodePermutations {
+	/** The number of choices. */
+	private final int choiceCount;
+
+	/** The number of items in a permutation. */
+	private final int n;
+
+	/** The choice index at each position of the current permutation. */
+	private final int[] indices;
+
+	/** The direction (+1 or -1) in which each position is moving. */
+	private final int[] directions;
+
+	/** Focus pointers, selecting the next position to change. */
+	private final int[] focus;
+
+	/** Whether all permutations have been visited. */
+	private boolean done;
+
+	/**
+	 * Constructor. The first permutation (all choice indices 0) is current.
+	 *
+	 * @param choiceCount the number of choices
+	 * @param n the number of items in a permutation
+	 * @throws IllegalArgumentException if there are no choices or {@code n}
+	 *                                  is negative
+	 */
+	public GrayCodePermutations(int choiceCount, int n) {
+		if (choiceCount <= 0 || n < 0) {
+			throw new IllegalArgumentException("Invalid input data");
+		}
+		this.choiceCount = choiceCount;
+		this.n = n;
+		this.indices = new int[n];
+		this.directions = new int[n];
+		Arrays.fill(directions, 1);
+		this.focus = new int[n + 1];
+		for (int j = 0; j <= n; j++) {
+			focus[j] = j;
+		}
+		// With one choice, the first permutation is the only one
+		this.done = choiceCount == 1;
+	}
+
+	/**
+	 * Return the choice index at each position of the current permutation.
+	 * The array is updated in place by {@link #next()} and must not be
+	 * modified.
+	 */
+	public int[] current() {
+		return indices;
+	}
+
+	/**
+	 * Advance to the next permutation.
+	 *
+	 * @return the position which changed (by one choice index), or -1 if all
+	 *         permutations have been visited
+	 */
+	public int next() {
+		if (done) {
+			return -1;
+		}
+		int j = focus[0];
+		focus[0] = 0;
+		if (j == n) {
+			done = true;
+			return -1;
+		}
+		indices[j] += directions[j];
+		if (indices[j] == 0 || indices[j] == choiceCount - 1) {
+			directions[j] = -directions[j];
+			focus[j] = focus[j + 1];
+			focus[j + 1] = j + 1;
+		}
+		return j;
+	}
+}
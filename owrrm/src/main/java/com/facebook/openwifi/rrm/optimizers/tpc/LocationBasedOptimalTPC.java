@@ -9,11 +9,11 @@
 package com.facebook.openwifi.rrm.optimizers.tpc;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,12 +22,15 @@ import com.facebook.openwifi.cloudsdk.models.ap.State;
 import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
-import com.facebook.openwifi.rrm.modules.ModelerUtils;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
+import com.facebook.openwifi.rrm.modules.TxPowerCoverageModel;
 
 /**
  * Location-based optimal TPC algorithm.
  * <p>
  * Assign tx power based on an exhaustive search algorithm given the AP location.
+ * If there are too many tx power combinations, a time-bounded search strategy
+ * is used instead (see {@link TxPowerSearch}).
  */
 public class LocationBasedOptimalTPC extends TPC {
 	private static final Logger logger =
@@ -36,6 +39,31 @@ public class LocationBasedOptimalTPC extends TPC {
 	/** The RRM algorithm ID. */
 	public static final String ALGORITHM_ID = "location_optimal";
 
+	/**
+	 * Search strategy which uses an exhaustive search if the number of
+	 * combinations is at most {@link #MAX_EXHAUSTIVE_COMBINATIONS}, and
+	 * branch and bound otherwise.
+	 */
+	public static final String SEARCH_STRATEGY_AUTO = "auto";
+
+	/** Exhaustive search strategy. */
+	public static final String SEARCH_STRATEGY_EXHAUSTIVE = "exhaustive";
+
+	/** Default search strategy. */
+	public static final String DEFAULT_SEARCH_STRATEGY = SEARCH_STRATEGY_AUTO;
+
+	/** Default time budget for non-exhaustive search strategies, in ms. */
+	public static final long DEFAULT_TIME_BUDGET_MS = 5000;
+
+	/** The maximum number of combinations for an exhaustive search. */
+	public static final int MAX_EXHAUSTIVE_COMBINATIONS = 1000;
+
+	/** The search strategy. */
+	private final String searchStrategy;
+
+	/** The time budget for non-exhaustive search strategies, in ms. */
+	private final long timeBudgetMs;
+
 	/** Factory method to parse generic args map into the proper constructor */
 	public static LocationBasedOptimalTPC makeWithArgs(
 		DataModel model,
@@ -43,7 +71,49 @@ public class LocationBasedOptimalTPC extends TPC {
 		DeviceDataManager deviceDataManager,
 		Map<String, String> args
 	) {
-		return new LocationBasedOptimalTPC(model, zone, deviceDataManager);
+		String searchStrategy = DEFAULT_SEARCH_STRATEGY;
+		long timeBudgetMs = DEFAULT_TIME_BUDGET_MS;
+
+		String arg;
+		if ((arg = args.get("searchStrategy")) != null) {
+			if (
+				arg.equals(SEARCH_STRATEGY_AUTO) ||
+					arg.equals(SEARCH_STRATEGY_EXHAUSTIVE) ||
+					TxPowerSearch.create(arg, 0) != null
+			) {
+				searchStrategy = arg;
+			} else {
+				logger.error(
+					"Invalid value passed for searchStrategy, using default value"
+				);
+			}
+		}
+
+		if ((arg = args.get("timeBudgetMs")) != null) {
+			try {
+				long parsedTimeBudgetMs = Long.parseLong(arg);
+				if (parsedTimeBudgetMs <= 0) {
+					logger.error(
+						"Invalid value passed for timeBudgetMs - must be greater than 0. Using default value."
+					);
+				} else {
+					timeBudgetMs = parsedTimeBudgetMs;
+				}
+			} catch (NumberFormatException e) {
+				logger.error(
+					"Invalid integer passed to parameter timeBudgetMs, using default value",
+					e
+				);
+			}
+		}
+
+		return new LocationBasedOptimalTPC(
+			model,
+			zone,
+			deviceDataManager,
+			searchStrategy,
+			timeBudgetMs
+		);
 	}
 
 	/** Constructor. */
@@ -51,12 +121,34 @@ public class LocationBasedOptimalTPC extends TPC {
 		DataModel model,
 		String zone,
 		DeviceDataManager deviceDataManager
+	) {
+		this(
+			model,
+			zone,
+			deviceDataManager,
+			DEFAULT_SEARCH_STRATEGY,
+			DEFAULT_TIME_BUDGET_MS
+		);
+	}
+
+	/** Constructor. */
+	public LocationBasedOptimalTPC(
+		DataModel model,
+		String zone,
+		DeviceDataManager deviceDataManager,
+		String searchStrategy,
+		long timeBudgetMs
 	) {
 		super(model, zone, deviceDataManager);
+		this.searchStrategy = searchStrategy;
+		this.timeBudgetMs = timeBudgetMs;
 	}
 
 	/**
 	 * Iterative way to generate permutations with repetitions.
+	 * <p>
+	 * This materializes every permutation; see {@link GrayCodePermutations}
+	 * for a lazy enumeration.
 	 *
 	 * @param choices all the choices to be considered
 	 * @param n the number of items in a permutation
@@ -103,50 +195,89 @@ public class LocationBasedOptimalTPC extends TPC {
 		List<Double> apLocY,
 		List<Integer> txPowerChoices
 	) {
-		// Get all the permutations with repetition
-		List<List<Integer>> permutations =
-			getPermutationsWithRepetitions(txPowerChoices, numOfAPs);
-		int optimalIndex = permutations.size();
-		double optimalMetric = Double.POSITIVE_INFINITY;
 		logger.info(
 			"Number of tx power combinations: {}",
-			permutations.size()
+			(long) Math.pow(txPowerChoices.size(), numOfAPs)
 		);
 
-		// Iterate all the combinations and get the metrics
-		// Record the combination yielding the minimum metric (optimal)
-		for (int pIndex = 0; pIndex < permutations.size(); pIndex++) {
-			List<Double> txPowerTemp = permutations
-				.get(pIndex)
-				.stream()
-				.mapToDouble(i -> i)
-				.boxed()
-				.collect(Collectors.toList());
-			double[][][] rxPower = ModelerUtils
-				.generateRxPower(
-					sampleSpace,
-					numOfAPs,
-					apLocX,
-					apLocY,
-					txPowerTemp
-				);
-			double[][] heatMap = ModelerUtils
-				.generateHeatMap(sampleSpace, numOfAPs, rxPower);
-			double[][] sinr = ModelerUtils
-				.generateSinr(sampleSpace, numOfAPs, rxPower);
-			double metric = ModelerUtils
-				.calculateTPCMetrics(sampleSpace, heatMap, sinr);
-			if (metric < optimalMetric) {
+		// Iterate all the combinations in Gray code order, so that each one
+		// only changes the tx power of one AP from the previous one
+		// Record the combination yielding the minimum metric (optimal), or the
+		// first such combination in lexicographic order if there are ties
+		TxPowerCoverageModel coverageModel =
+			new TxPowerCoverageModel(sampleSpace, apLocX, apLocY);
+		int[] choices = txPowerChoices.stream().mapToInt(i -> i).toArray();
+		GrayCodePermutations permutations =
+			new GrayCodePermutations(choices.length, numOfAPs);
+		int[] indices = permutations.current();
+		int[] txPower = new int[numOfAPs];
+		for (int apIndex = 0; apIndex < numOfAPs; apIndex++) {
+			txPower[apIndex] = choices[indices[apIndex]];
+		}
+		double metric = coverageModel.evaluate(txPower);
+		int[] optimalIndices = null;
+		double optimalMetric = Double.POSITIVE_INFINITY;
+		while (true) {
+			if (
+				metric < optimalMetric ||
+					(optimalIndices != null && metric == optimalMetric &&
+						Arrays.compare(indices, optimalIndices) < 0)
+			) {
 				optimalMetric = metric;
-				optimalIndex = pIndex;
+				optimalIndices = indices.clone();
+			}
+			int apIndex = permutations.next();
+			if (apIndex == -1) {
+				break;
 			}
+			metric =
+				coverageModel.update(apIndex, choices[indices[apIndex]]);
 		}
-		if (optimalIndex == permutations.size()) {
+		if (optimalIndices == null) {
 			return Collections
 				.nCopies(numOfAPs, Collections.max(txPowerChoices));
 		} else {
-			return permutations.get(optimalIndex);
+			List<Integer> txPowerList = new ArrayList<>(numOfAPs);
+			for (int choiceIndex : optimalIndices) {
+				txPowerList.add(choices[choiceIndex]);
+			}
+			return txPowerList;
+		}
+	}
+
+	/**
+	 * Get the tx power for all the participant APs using the given search
+	 * strategy.
+	 *
+	 * @param sampleSpace the boundary of the space
+	 * @param apLocX the location x of the APs
+	 * @param apLocY the location y of the APs
+	 * @param txPowerChoices the tx power options in consideration
+	 * @param search the search strategy
+	 * @return the tx power of each device
+	 */
+	public static List<Integer> runLocationBasedTPCSearch(
+		int sampleSpace,
+		List<Double> apLocX,
+		List<Double> apLocY,
+		List<Integer> txPowerChoices,
+		TxPowerSearch search
+	) {
+		TxPowerCoverageModel coverageModel =
+			new TxPowerCoverageModel(sampleSpace, apLocX, apLocY);
+		int[] choices = txPowerChoices.stream().mapToInt(i -> i).toArray();
+		TxPowerSearch.Result result = search.search(coverageModel, choices);
+		logger.info(
+			"Tx power search: metric {} after {} evaluations ({})",
+			result.metric,
+			result.evaluationCount,
+			result.complete ? "complete" : "time budget exceeded"
+		);
+		List<Integer> txPowerList = new ArrayList<>(result.txPower.length);
+		for (int txPower : result.txPower) {
+			txPowerList.add(txPower);
 		}
+		return txPowerList;
 	}
 
 	/**
@@ -175,11 +306,14 @@ public class LocationBasedOptimalTPC extends TPC {
 		// Filter out the invalid APs (e.g., no radio, no location data)
 		// Update txPowerChoices, boundary, apLocX, apLocY for the optimization
 		for (String serialNumber : serialNumbers) {
-			List<State> states = model.latestStates.get(serialNumber);
-			State state = states.get(states.size() - 1);
+			RingBuffer<State> states = model.latestStates.get(serialNumber);
+			State state = (states != null) ? states.latest() : null;
 
 			// Ignore the device if its radio is not active
-			if (state.radios == null || state.radios.length == 0) {
+			if (
+				state == null || state.radios == null ||
+					state.radios.length == 0
+			) {
 				logger.debug(
 					"Device {}: No radios found, skipping...",
 					serialNumber
@@ -246,24 +380,43 @@ public class LocationBasedOptimalTPC extends TPC {
 			return;
 		}
 
-		// Report error if the number of combinations is too high (>1000).
-		if (Math.pow(txPowerChoices.size(), numOfAPs) > 1000) {
-			logger.error(
-				"Invalid operation: complexity issue!! Number of combinations: {}",
-				(int) Math.pow(txPowerChoices.size(), numOfAPs)
-			);
-			return;
+		// Use an exhaustive search only if the number of combinations is
+		// small enough (<=1000), unless otherwise requested
+		double combinations = Math.pow(txPowerChoices.size(), numOfAPs);
+		String strategy = searchStrategy;
+		if (strategy.equals(SEARCH_STRATEGY_AUTO)) {
+			strategy = combinations > MAX_EXHAUSTIVE_COMBINATIONS
+				? TxPowerSearch.BRANCH_AND_BOUND
+				: SEARCH_STRATEGY_EXHAUSTIVE;
 		}
 
 		// Run the optimal TPC algorithm
-		List<Integer> txPowerList =
-			LocationBasedOptimalTPC.runLocationBasedOptimalTPC(
+		List<Integer> txPowerList;
+		if (strategy.equals(SEARCH_STRATEGY_EXHAUSTIVE)) {
+			// Report error if the number of combinations is too high (>1000).
+			if (combinations > MAX_EXHAUSTIVE_COMBINATIONS) {
+				logger.error(
+					"Invalid operation: complexity issue!! Number of combinations: {}",
+					(int) combinations
+				);
+				return;
+			}
+			txPowerList = LocationBasedOptimalTPC.runLocationBasedOptimalTPC(
 				boundary,
 				numOfAPs,
 				apLocX,
 				apLocY,
 				txPowerChoices
 			);
+		} else {
+			txPowerList = LocationBasedOptimalTPC.runLocationBasedTPCSearch(
+				boundary,
+				apLocX,
+				apLocY,
+				txPowerChoices,
+				TxPowerSearch.create(strategy, timeBudgetMs)
+			);
+		}
 
 		// Apply the results from the optimal TPC algorithm to the config
 		for (Map.Entry<String, Integer> e : validAPs.entrySet()) {
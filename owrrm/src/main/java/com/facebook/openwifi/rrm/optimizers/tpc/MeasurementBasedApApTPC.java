@@ -27,6 +27,7 @@ import com.facebook.openwifi.cloudsdk.models.ap.State;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
 import com.facebook.openwifi.rrm.modules.ModelerUtils;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 
 /**
  * Measurement-based AP-AP TPC algorithm.
@@ -156,10 +157,9 @@ public class MeasurementBasedApApTPC extends TPC {
 	 */
 	protected static Set<String> getManagedBSSIDs(DataModel model) {
 		Set<String> managedBSSIDs = new HashSet<>();
-		for (Map.Entry<String, List<State>> e : model.latestStates.entrySet()) {
-			List<State> states = e.getValue();
-			State state = states.get(states.size() - 1);
-			if (state.interfaces == null) {
+		for (RingBuffer<State> states : model.latestStates.values()) {
+			State state = states.latest();
+			if (state == null || state.interfaces == null) {
 				continue;
 			}
 			for (State.Interface iface : state.interfaces) {
@@ -202,7 +202,7 @@ public class MeasurementBasedApApTPC extends TPC {
 	 */
 	protected static Map<String, List<Integer>> buildRssiMap(
 		Set<String> managedBSSIDs,
-		Map<String, List<List<WifiScanEntry>>> latestWifiScans,
+		Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans,
 		String band
 	) {
 		Map<String, List<Integer>> bssidToRssiValues = new HashMap<>();
@@ -210,12 +210,13 @@ public class MeasurementBasedApApTPC extends TPC {
 			.forEach(bssid -> bssidToRssiValues.put(bssid, new ArrayList<>()));
 
 		for (
-			Map.Entry<String, List<List<WifiScanEntry>>> e : latestWifiScans
-				.entrySet()
+			RingBuffer<List<WifiScanEntry>> bufferedScans : latestWifiScans
+				.values()
 		) {
-			List<List<WifiScanEntry>> bufferedScans = e.getValue();
-			List<WifiScanEntry> latestScan =
-				bufferedScans.get(bufferedScans.size() - 1);
+			List<WifiScanEntry> latestScan = bufferedScans.latest();
+			if (latestScan == null) {
+				continue;
+			}
 
 			// At a given AP, if we receive a signal from ap_2, then it gets added to the rssi list for ap_2
 			latestScan.stream()
@@ -322,8 +323,8 @@ public class MeasurementBasedApApTPC extends TPC {
 			buildRssiMap(managedBSSIDs, model.latestWifiScans, band);
 		logger.debug("Starting TPC for the {} band", band);
 		for (String serialNumber : serialNumbers) {
-			List<State> states = model.latestStates.get(serialNumber);
-			State state = states.get(states.size() - 1);
+			RingBuffer<State> states = model.latestStates.get(serialNumber);
+			State state = (states != null) ? states.latest() : null;
 			if (
 				state == null || state.radios == null ||
 					state.radios.length == 0
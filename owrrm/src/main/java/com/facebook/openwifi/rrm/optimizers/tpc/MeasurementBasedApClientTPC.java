@@ -24,6 +24,7 @@ import com.facebook.openwifi.cloudsdk.models.ap.State;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
 import com.facebook.openwifi.rrm.modules.ModelerUtils;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 
 /**
  * Measurement-based AP-client algorithm.
@@ -293,11 +294,16 @@ public class MeasurementBasedApClientTPC extends TPC {
 	public Map<String, Map<String, Integer>> computeTxPowerMap() {
 		Map<String, Map<String, Integer>> txPowerMap = new TreeMap<>();
 
-		for (Map.Entry<String, List<State>> e : model.latestStates.entrySet()) {
+		for (
+			Map.Entry<String, RingBuffer<State>> e : model.latestStates
+				.entrySet()
+		) {
 			String serialNumber = e.getKey();
-			List<State> states = e.getValue();
-			State state = states.get(states.size() - 1);
-			if (state.radios == null || state.radios.length == 0) {
+			State state = e.getValue().latest();
+			if (
+				state == null || state.radios == null ||
+					state.radios.length == 0
+			) {
 				logger.debug(
 					"Device {}: No radios found, skipping...",
 					serialNumber
@@ -27,6 +27,7 @@ import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.ConfigManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
 import com.facebook.openwifi.rrm.modules.ModelerUtils;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 
 /**
  * TPC (Transmit Power Control) base class.
@@ -64,23 +65,12 @@ public abstract class TPC {
 		String zone,
 		DeviceDataManager deviceDataManager
 	) {
-		this.model = model;
 		this.zone = zone;
 		this.deviceConfigs = deviceDataManager.getAllDeviceConfigs(zone);
 
-		// Remove model entries not in the given zone
-		this.model.latestWifiScans.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber)
-			);
-		this.model.latestStates.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber)
-			);
-		this.model.latestDeviceStatusRadios.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber)
-			);
-		this.model.latestDeviceCapabilitiesPhy.keySet()
-			.removeIf(serialNumber -> !deviceConfigs.containsKey(serialNumber)
-			);
+		// Exclude model entries not in the given zone
+		this.model =
+			ModelerUtils.restrictDataModel(model, deviceConfigs.keySet());
 	}
 
 	/**
@@ -186,12 +176,17 @@ public abstract class TPC {
 	 */
 	protected Map<String, Map<Integer, List<String>>> getApsPerChannel() {
 		Map<String, Map<Integer, List<String>>> apsPerChannel = new TreeMap<>();
-		for (Map.Entry<String, List<State>> e : model.latestStates.entrySet()) {
+		for (
+			Map.Entry<String, RingBuffer<State>> e : model.latestStates
+				.entrySet()
+		) {
 			String serialNumber = e.getKey();
-			List<State> states = e.getValue();
-			State state = states.get(states.size() - 1);
+			State state = e.getValue().latest();
 
-			if (state.radios == null || state.radios.length == 0) {
+			if (
+				state == null || state.radios == null ||
+					state.radios.length == 0
+			) {
 				logger.debug(
 					"Device {}: No radios found, skipping...",
 					serialNumber
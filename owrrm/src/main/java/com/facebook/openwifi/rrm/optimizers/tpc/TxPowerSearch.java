@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.optimizers.tpc;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.facebook.openwifi.rrm.modules.TxPowerCoverageModel;
+
+/**
+ * Search strategy for the tx power of each AP minimizing the
+ * {@link TxPowerCoverageModel} metric, for use when there are too many
+ * combinations for an exhaustive search.
+ * <p>
+ * Every strategy stops once its time budget is spent, and then returns the
+ * best solution found so far. Instances are not thread-safe.
+ */
+public abstract class TxPowerSearch {
+	/** Branch-and-bound strategy name. */
+	public static final String BRANCH_AND_BOUND = "branch_and_bound";
+
+	/** Coordinate descent strategy name. */
+	public static final String COORDINATE_DESCENT = "coordinate_descent";
+
+	/** Simulated annealing strategy name. */
+	public static final String SIMULATED_ANNEALING = "simulated_annealing";
+
+	/** Search result. */
+	public static class Result {
+		/** The tx power (dBm) of each AP. */
+		public final int[] txPower;
+
+		/** The metric of these tx powers (lower is better). */
+		public final double metric;
+
+		/** The number of evaluated combinations and bounds. */
+		public final long evaluationCount;
+
+		/**
+		 * Whether the search finished within its time budget (i.e. the
+		 * search space was exhausted, or the search converged).
+		 */
+		public final boolean complete;
+
+		/** Constructor. */
+		public Result(
+			int[] txPower,
+			double metric,
+			long evaluationCount,
+			boolean complete
+		) {
+			this.txPower = txPower;
+			this.metric = metric;
+			this.evaluationCount = evaluationCount;
+			this.complete = complete;
+		}
+	}
+
+	/** The time budget, in ms. */
+	protected final long timeBudgetMs;
+
+	/** Constructor. */
+	protected TxPowerSearch(long timeBudgetMs) {
+		this.timeBudgetMs = timeBudgetMs;
+	}
+
+	/**
+	 * Return a search strategy by name, or null if the name is unknown.
+	 *
+	 * @param name the strategy name
+	 * @param timeBudgetMs the time budget, in ms
+	 */
+	public static TxPowerSearch create(String name, long timeBudgetMs) {
+		switch (name) {
+		case BRANCH_AND_BOUND:
+			return new BranchAndBound(timeBudgetMs);
+		case COORDINATE_DESCENT:
+			return new CoordinateDescent(timeBudgetMs);
+		case SIMULATED_ANNEALING:
+			return new SimulatedAnnealing(timeBudgetMs);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Search for the tx power of each AP.
+	 *
+	 * @param model the coverage model
+	 * @param choices the tx power choices (dBm), shared by all APs
+	 */
+	public Result search(TxPowerCoverageModel model, int[] choices) {
+		if (choices.length == 0) {
+			throw new IllegalArgumentException("Invalid tx power choices");
+		}
+		long deadlineNs =
+			System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+		return search(model, choices, deadlineNs);
+	}
+
+	/** Search until the given deadline (in {@link System#nanoTime()}). */
+	protected abstract Result search(
+		TxPowerCoverageModel model,
+		int[] choices,
+		long deadlineNs
+	);
+
+	/**
+	 * Return every AP at the same tx power choice, picking the choice with the
+	 * best metric (the highest choice in case of a tie).
+	 */
+	protected static int[] uniformTxPower(
+		TxPowerCoverageModel model,
+		int[] choices
+	) {
+		int[] txPower = new int[model.getNumOfAPs()];
+		int bestChoice = Arrays.stream(choices).max().getAsInt();
+		Arrays.fill(txPower, bestChoice);
+		double bestMetric = model.evaluate(txPower);
+		for (int choice : choices) {
+			Arrays.fill(txPower, choice);
+			double metric = model.evaluate(txPower);
+			if (metric < bestMetric) {
+				bestMetric = metric;
+				bestChoice = choice;
+			}
+		}
+		Arrays.fill(txPower, bestChoice);
+		return txPower;
+	}
+
+	/**
+	 * Coordinate descent: starting from a uniform tx power, repeatedly set
+	 * each AP to its best choice given the others, until no single change
+	 * improves the metric. This converges to a local minimum quickly, so it
+	 * is repeated from every uniform tx power (best first) while time allows.
+	 */
+	public static class CoordinateDescent extends TxPowerSearch {
+		/** Constructor. */
+		public CoordinateDescent(long timeBudgetMs) {
+			super(timeBudgetMs);
+		}
+
+		@Override
+		protected Result search(
+			TxPowerCoverageModel model,
+			int[] choices,
+			long deadlineNs
+		) {
+			// Descend from every uniform tx power, most promising first
+			int numOfAPs = model.getNumOfAPs();
+			double[] uniformMetric = new double[choices.length];
+			Integer[] order = new Integer[choices.length];
+			for (int i = 0; i < choices.length; i++) {
+				int[] txPower = new int[numOfAPs];
+				Arrays.fill(txPower, choices[i]);
+				uniformMetric[i] = model.evaluate(txPower);
+				order[i] = i;
+			}
+			Arrays.sort(
+				order,
+				(a, b) -> Double.compare(uniformMetric[a], uniformMetric[b])
+			);
+			Result best = null;
+			long evaluationCount = choices.length;
+			boolean complete = true;
+			for (int i : order) {
+				int[] txPower = new int[numOfAPs];
+				Arrays.fill(txPower, choices[i]);
+				Result result = descend(model, choices, txPower, deadlineNs);
+				evaluationCount += result.evaluationCount;
+				if (best == null || result.metric < best.metric) {
+					best = result;
+				}
+				if (!result.complete) {
+					complete = false;
+					break;
+				}
+			}
+			return new Result(
+				best.txPower,
+				best.metric,
+				evaluationCount,
+				complete
+			);
+		}
+
+		/** Run coordinate descent from the given tx powers (modified). */
+		static Result descend(
+			TxPowerCoverageModel model,
+			int[] choices,
+			int[] txPower,
+			long deadlineNs
+		) {
+			double metric = model.evaluate(txPower);
+			long evaluationCount = 1;
+			boolean improved = true;
+			while (improved) {
+				improved = false;
+				for (int apIndex = 0; apIndex < txPower.length; apIndex++) {
+					int bestChoice = txPower[apIndex];
+					for (int choice : choices) {
+						if (choice == bestChoice) {
+							continue;
+						}
+						if (System.nanoTime() >= deadlineNs) {
+							txPower[apIndex] = bestChoice;
+							return new Result(
+								txPower,
+								metric,
+								evaluationCount,
+								false
+							);
+						}
+						txPower[apIndex] = choice;
+						double newMetric = model.update(apIndex, choice);
+						evaluationCount++;
+						if (newMetric < metric) {
+							metric = newMetric;
+							bestChoice = choice;
+							improved = true;
+						}
+					}
+					if (txPower[apIndex] != bestChoice) {
+						txPower[apIndex] = bestChoice;
+						model.update(apIndex, bestChoice);
+					}
+				}
+			}
+			return new Result(txPower, metric, evaluationCount, true);
+		}
+	}
+
+	/**
+	 * Branch and bound: a depth-first search over the tx power of each AP in
+	 * order, skipping every subtree whose lower bound (see
+	 * {@link TxPowerCoverageModel#lowerBound}) cannot beat the best solution
+	 * found so far. The search starts from the coordinate descent solution,
+	 * and is complete (i.e. optimal) if it finishes within the time budget.
+	 */
+	public static class BranchAndBound extends TxPowerSearch {
+		/** The coverage model. */
+		private TxPowerCoverageModel model;
+
+		/** The tx power choices. */
+		private int[] choices;
+
+		/** The search deadline. */
+		private long deadlineNs;
+
+		/** The minimum tx power of each AP in the current subtree. */
+		private int[] minTxPower;
+
+		/** The maximum tx power of each AP in the current subtree. */
+		private int[] maxTxPower;
+
+		/** The best tx powers found so far. */
+		private int[] bestTxPower;
+
+		/** The metric of the best tx powers. */
+		private double bestMetric;
+
+		/** The number of evaluated combinations and bounds. */
+		private long evaluationCount;
+
+		/** Constructor. */
+		public BranchAndBound(long timeBudgetMs) {
+			super(timeBudgetMs);
+		}
+
+		@Override
+		protected Result search(
+			TxPowerCoverageModel model,
+			int[] choices,
+			long deadlineNs
+		) {
+			int[] initialTxPower = uniformTxPower(model, choices);
+			Result initial = CoordinateDescent
+				.descend(model, choices, initialTxPower, deadlineNs);
+			this.model = model;
+			this.choices = choices;
+			this.deadlineNs = deadlineNs;
+			this.bestTxPower = initial.txPower;
+			this.bestMetric = initial.metric;
+			this.evaluationCount = initial.evaluationCount;
+			int numOfAPs = model.getNumOfAPs();
+			this.minTxPower = new int[numOfAPs];
+			this.maxTxPower = new int[numOfAPs];
+			Arrays.fill(minTxPower, Arrays.stream(choices).min().getAsInt());
+			Arrays.fill(maxTxPower, Arrays.stream(choices).max().getAsInt());
+
+			boolean complete = numOfAPs == 0 || branch(0);
+			Result result =
+				new Result(bestTxPower, bestMetric, evaluationCount, complete);
+			this.model = null;
+			return result;
+		}
+
+		/**
+		 * Search every tx power of the given AP (and all later APs), given
+		 * the tx powers of all earlier APs. Returns false if the search ran
+		 * out of time.
+		 */
+		private boolean branch(int apIndex) {
+			int min = minTxPower[apIndex];
+			int max = maxTxPower[apIndex];
+			boolean leaf = apIndex == minTxPower.length - 1;
+			boolean evaluated = false;
+			for (int choice : choices) {
+				if (System.nanoTime() >= deadlineNs) {
+					return false;
+				}
+				minTxPower[apIndex] = choice;
+				maxTxPower[apIndex] = choice;
+				evaluationCount++;
+				if (leaf) {
+					// Leaves only differ in the tx power of this AP
+					double metric = evaluated
+						? model.update(apIndex, choice)
+						: model.evaluate(minTxPower);
+					evaluated = true;
+					if (metric < bestMetric) {
+						bestMetric = metric;
+						bestTxPower = minTxPower.clone();
+					}
+				} else {
+					double bound = model.lowerBound(minTxPower, maxTxPower);
+					if (bound < bestMetric && !branch(apIndex + 1)) {
+						return false;
+					}
+				}
+			}
+			minTxPower[apIndex] = min;
+			maxTxPower[apIndex] = max;
+			return true;
+		}
+	}
+
+	/**
+	 * Simulated annealing: starting from the best uniform tx power, randomly
+	 * change the tx power of one AP at a time, accepting worse solutions with
+	 * a probability that decreases as the temperature is lowered over the
+	 * time budget (or iteration limit). This can escape the local minima found
+	 * by coordinate descent given enough time.
+	 */
+	public static class SimulatedAnnealing extends TxPowerSearch {
+		/** The initial temperature (in units of the metric). */
+		private static final double INITIAL_TEMPERATURE = 0.2;
+
+		/** The final temperature (in units of the metric). */
+		private static final double FINAL_TEMPERATURE = 1e-3;
+
+		/** The maximum number of iterations. */
+		private final long maxIterations;
+
+		/** The random number generator. */
+		private final Random random;
+
+		/** Constructor (limited only by time). */
+		public SimulatedAnnealing(long timeBudgetMs) {
+			this(timeBudgetMs, Long.MAX_VALUE, new Random());
+		}
+
+		/** Constructor. */
+		public SimulatedAnnealing(
+			long timeBudgetMs,
+			long maxIterations,
+			Random random
+		) {
+			super(timeBudgetMs);
+			this.maxIterations = maxIterations;
+			this.random = random;
+		}
+
+		@Override
+		protected Result search(
+			TxPowerCoverageModel model,
+			int[] choices,
+			long deadlineNs
+		) {
+			long startNs = System.nanoTime();
+			int[] txPower = uniformTxPower(model, choices);
+			double metric = model.evaluate(txPower);
+			int[] bestTxPower = txPower.clone();
+			double bestMetric = metric;
+			long evaluationCount = 1;
+			if (txPower.length == 0) {
+				return new Result(txPower, metric, evaluationCount, true);
+			}
+			for (long i = 0; i < maxIterations; i++) {
+				long now = System.nanoTime();
+				if (now >= deadlineNs) {
+					return new Result(
+						bestTxPower,
+						bestMetric,
+						evaluationCount,
+						false
+					);
+				}
+				double progress = Math.max(
+					(double) i / maxIterations,
+					(double) (now - startNs) / (deadlineNs - startNs)
+				);
+				double temperature = INITIAL_TEMPERATURE *
+					Math.pow(FINAL_TEMPERATURE / INITIAL_TEMPERATURE, progress);
+
+				int apIndex = random.nextInt(txPower.length);
+				int oldChoice = txPower[apIndex];
+				int choice = choices[random.nextInt(choices.length)];
+				if (choice == oldChoice) {
+					continue;
+				}
+				txPower[apIndex] = choice;
+				double newMetric = model.update(apIndex, choice);
+				evaluationCount++;
+				if (
+					newMetric <= metric ||
+						random.nextDouble() <
+							Math.exp((metric - newMetric) / temperature)
+				) {
+					metric = newMetric;
+					if (metric < bestMetric) {
+						bestMetric = metric;
+						bestTxPower = txPower.clone();
+					}
+				} else {
+					txPower[apIndex] = oldChoice;
+					model.update(apIndex, oldChoice);
+				}
+			}
+			return new Result(bestTxPower, bestMetric, evaluationCount, true);
+		}
+	}
+}
@@ -27,9 +27,6 @@ import com.facebook.openwifi.rrm.Utils;
 import com.facebook.openwifi.rrm.rca.RCAConfig.StationPingerParams;
 import com.facebook.openwifi.rrm.rca.RCAUtils;
 import com.facebook.openwifi.rrm.rca.RCAUtils.PingResult;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
 
 /**
  * Ping service to measure latency/jitter between Wi-Fi APs and clients
@@ -53,9 +50,6 @@ public class StationPinger {
 	/** The executor service instance. */
 	private final ExecutorService executor;
 
-	/** The Gson instance. */
-	private final Gson gson = new Gson();
-
 	/**
 	 * Map from device (serial number) to the latest map of STAs
 	 * (i.e. client MAC address to Client structure).
@@ -100,6 +94,11 @@ public class StationPinger {
 						handleKafkaStateRecords(records);
 					}
 
+					@Override
+					public boolean acceptsWifiScanRecord(String serialNumber) {
+						return false;
+					}
+
 					@Override
 					public void handleWifiScanRecords(
 						List<KafkaRecord> records
@@ -128,31 +127,15 @@ public class StationPinger {
 				continue;
 			}
 
-			// Deserialize State
-			JsonObject state = record.payload.getAsJsonObject("state");
-			if (state == null) {
+			if (record.state == null) {
 				continue;
 			}
-			try {
-				State stateModel = gson.fromJson(state, State.class);
-				Map<String, State.Interface.Client> clientMap =
-					UCentralUtils.getWifiClientInfo(stateModel);
-				if (
-					deviceToClients.put(record.serialNumber, clientMap) == null
-				) {
-					// Enqueue this device
-					final String serialNumber = record.serialNumber;
-					executor.submit(() -> pingDevices(serialNumber));
-				}
-			} catch (JsonSyntaxException e) {
-				logger.error(
-					String.format(
-						"Device %s: failed to deserialize state: %s",
-						record.serialNumber,
-						state
-					),
-					e
-				);
+			Map<String, State.Interface.Client> clientMap =
+				UCentralUtils.getWifiClientInfo(record.state);
+			if (deviceToClients.put(record.serialNumber, clientMap) == null) {
+				// Enqueue this device
+				final String serialNumber = record.serialNumber;
+				executor.submit(() -> pingDevices(serialNumber));
 			}
 		}
 	}
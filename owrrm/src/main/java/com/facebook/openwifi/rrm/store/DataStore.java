@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.store;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.facebook.openwifi.rrm.mysql.MetricBucket;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.facebook.openwifi.rrm.mysql.WifiScanRecord;
+
+/**
+ * Storage backend for device state and wifi scan history.
+ *
+ * Storage errors are reported as {@link SQLException} by every backend, so
+ * callers handle all backends the same way. Query methods return null if the
+ * store is not open.
+ */
+public interface DataStore {
+	/** Consumer of rows streamed from a query. */
+	@FunctionalInterface
+	interface RowConsumer<T> {
+		/** Handle the next row. The row object may be reused afterwards. */
+		void accept(T row) throws IOException;
+	}
+
+	/** Close all resources. */
+	void close() throws SQLException;
+
+	/**
+	 * Insert a batch of state records.
+	 *
+	 * Rows are grouped into snapshots by serial number and timestamp, so all
+	 * rows of a state record should be inserted in the same batch.
+	 */
+	void addStateRecords(StateRecordBatch batch) throws SQLException;
+
+	/**
+	 * Insert wifi scan results.
+	 *
+	 * @param serialNumber     serial number
+	 * @param timestampSeconds timestamp (Unix time in seconds).
+	 * @param entries          list of wifiscan entries
+	 */
+	void addWifiScan(
+		String serialNumber,
+		long timestampSeconds,
+		List<WifiScanEntry> entries
+	) throws SQLException;
+
+	/** Insert multiple wifi scans and their results. */
+	void addWifiScans(List<WifiScanRecord> scans) throws SQLException;
+
+	/** Return the latest state for each unique device. */
+	default Map<String, State> getLatestState() throws SQLException {
+		return getLatestState(null);
+	}
+
+	/**
+	 * Return the latest state for each of the given devices (if any).
+	 *
+	 * @param serialNumbers the device serial numbers, or null for all devices
+	 */
+	Map<String, State> getLatestState(Collection<String> serialNumbers)
+		throws SQLException;
+
+	/**
+	 * Return up to the N latest wifiscan results for the given device as a map
+	 * of timestamp (Unix time, in ms) to scan results.
+	 */
+	default Map<Long, List<WifiScanEntry>> getLatestWifiScans(
+		String serialNumber,
+		int count
+	) throws SQLException {
+		if (serialNumber == null || serialNumber.isEmpty()) {
+			throw new IllegalArgumentException("Invalid serialNumber");
+		}
+
+		Map<String, List<List<WifiScanEntry>>> scans = getLatestWifiScans(
+			Collections.singletonList(serialNumber),
+			count,
+			0
+		);
+		if (scans == null) {
+			return null;
+		}
+		Map<Long, List<WifiScanEntry>> ret = new TreeMap<>();
+		for (List<WifiScanEntry> scan : scans.getOrDefault(
+			serialNumber,
+			Collections.emptyList()
+		)) {
+			ret.put(scan.get(0).unixTimeMs, scan);
+		}
+		return ret;
+	}
+
+	/**
+	 * Return up to the N latest wifiscan results recorded at or after the
+	 * given time for each of the given devices, as a map of device serial
+	 * number to scans (oldest first). Each entry's {@code unixTimeMs} is set
+	 * to its scan time. Scans without any results are omitted.
+	 *
+	 * @param serialNumbers the device serial numbers
+	 * @param count         the maximum number of scans per device
+	 * @param minTimeMs     the minimum scan time (Unix time, in ms)
+	 */
+	Map<String, List<List<WifiScanEntry>>> getLatestWifiScans(
+		Collection<String> serialNumbers,
+		int count,
+		long minTimeMs
+	) throws SQLException;
+
+	/**
+	 * Stream a downsampled time series of every metric of the given device
+	 * with the given name prefix, ordered by metric name and time. Buckets
+	 * without any values are omitted.
+	 *
+	 * @param serialNumber the device serial number
+	 * @param metricPrefix the metric name prefix (ex. "radio.0.")
+	 * @param fromMs the start time (Unix time, in ms, inclusive)
+	 * @param toMs the end time (Unix time, in ms, exclusive)
+	 * @param stepMs the bucket size, in ms
+	 * @param consumer the consumer of each bucket (one instance is reused)
+	 */
+	void getMetricSeries(
+		String serialNumber,
+		String metricPrefix,
+		long fromMs,
+		long toMs,
+		long stepMs,
+		RowConsumer<MetricBucket> consumer
+	) throws SQLException, IOException;
+}
@@ -0,0 +1,985 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.facebook.openwifi.rrm.Utils;
+import com.facebook.openwifi.rrm.mysql.DatabaseManager;
+import com.facebook.openwifi.rrm.mysql.MetricBucket;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.facebook.openwifi.rrm.mysql.StateSnapshot;
+import com.facebook.openwifi.rrm.mysql.TimeOrderedIdGenerator;
+import com.facebook.openwifi.rrm.mysql.WifiScanCodec;
+import com.facebook.openwifi.rrm.mysql.WifiScanRecord;
+
+/**
+ * Embedded {@link DataStore} backed by append-only, memory-mapped segment
+ * files in a local directory, for deployments without a MySQL server.
+ *
+ * Each segment file ("segment-N.seg") holds records appended over a fixed
+ * time interval, after which (or once full) a new segment is started. A
+ * record is a state snapshot (one serial number and timestamp, with metric
+ * names stored once per segment), a wifi scan (with results encoded by
+ * {@link WifiScanCodec}), or a metric name. Every record is prefixed with its
+ * length and CRC32, so a torn write at the end of a segment is detected and
+ * discarded on startup.
+ *
+ * Per-serial indexes of record offsets and timestamps, as well as a pointer
+ * to each device's latest state, are kept in memory and rebuilt by scanning
+ * all segments on startup. Retention deletes whole segments whose records are
+ * all older than the retention interval.
+ */
+public class SegmentFileStore implements DataStore {
+	private static final Logger logger =
+		LoggerFactory.getLogger(SegmentFileStore.class);
+
+	/** The segment file magic number ("RRMS"). */
+	private static final int MAGIC = 0x52524d53;
+
+	/** The segment file format version. */
+	private static final int VERSION = 1;
+
+	/** The segment header size: magic, version, start time (ms). */
+	private static final int HEADER_SIZE = 16;
+
+	/** The record header size: payload length, payload CRC32. */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/** Record type: metric name (with the next ID in its segment). */
+	private static final byte TYPE_METRIC_NAME = 1;
+
+	/** Record type: state snapshot. */
+	private static final byte TYPE_STATE = 2;
+
+	/** Record type: wifi scan. */
+	private static final byte TYPE_WIFISCAN = 3;
+
+	/** The segment file name pattern. */
+	private static final Pattern SEGMENT_NAME =
+		Pattern.compile("segment-(\\d+)\\.seg");
+
+	/** The retention interval, in minutes. */
+	private static final long RETENTION_INTERVAL_MINUTES = 60;
+
+	/** Record offsets and timestamps (Unix time, in seconds), in order. */
+	private static class Index {
+		int[] offsets = new int[8];
+		long[] times = new long[8];
+		int size = 0;
+
+		void add(int offset, long time) {
+			if (size == offsets.length) {
+				offsets = Arrays.copyOf(offsets, size * 2);
+				times = Arrays.copyOf(times, size * 2);
+			}
+			offsets[size] = offset;
+			times[size] = time;
+			size++;
+		}
+	}
+
+	/** A segment file, mapped into memory. */
+	private static class Segment {
+		/** The segment sequence number. */
+		final long seq;
+
+		/** The file path. */
+		final Path path;
+
+		/** The time the segment was started (Unix time, in ms). */
+		final long startMs;
+
+		/** The mapped file contents. */
+		final MappedByteBuffer buf;
+
+		/** The end of the last valid record. */
+		int position = HEADER_SIZE;
+
+		/** The metric names (by ID). */
+		final List<String> metricNames = new ArrayList<>();
+
+		/** The metric IDs (by name). */
+		final Map<String, Integer> metricIds = new HashMap<>();
+
+		/** The state records, by serial number. */
+		final Map<String, Index> states = new HashMap<>();
+
+		/** The wifi scan records, by serial number. */
+		final Map<String, Index> scans = new HashMap<>();
+
+		/** The range of record timestamps (Unix time, in seconds). */
+		long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+
+		Segment(long seq, Path path, long startMs, MappedByteBuffer buf) {
+			this.seq = seq;
+			this.path = path;
+			this.startMs = startMs;
+			this.buf = buf;
+		}
+
+		/** Return a view of the given record's payload. */
+		ByteBuffer payload(int offset) {
+			ByteBuffer b = buf.duplicate();
+			int length = b.getInt(offset);
+			b.position(offset + RECORD_HEADER_SIZE);
+			b.limit(offset + RECORD_HEADER_SIZE + length);
+			return b;
+		}
+	}
+
+	/** The location of a device's latest state record. */
+	private static class Location {
+		final Segment segment;
+		final int offset;
+		final long time;
+
+		Location(Segment segment, int offset, long time) {
+			this.segment = segment;
+			this.offset = offset;
+			this.time = time;
+		}
+	}
+
+	/** The data directory. */
+	private final Path dir;
+
+	/** The segment rolling interval, in ms. */
+	private final long segmentIntervalMs;
+
+	/** The segment file size, in bytes (larger for oversized records). */
+	private final int segmentSizeBytes;
+
+	/** The data retention interval in days (0 to disable). */
+	private final int dataRetentionIntervalDays;
+
+	/** Lock guarding all segments and indexes. */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** All segments, by sequence number, or null if not open. */
+	private TreeMap<Long, Segment> segments;
+
+	/** The segment being appended to, or null to start a new one. */
+	private Segment activeSegment;
+
+	/** The latest state record of each device. */
+	private final Map<String, Location> latestStates = new HashMap<>();
+
+	/** The generator of wifi scan IDs for {@link #addWifiScan}. */
+	private final TimeOrderedIdGenerator scanIdGenerator =
+		new TimeOrderedIdGenerator();
+
+	/** The retention executor, or null if not running. */
+	private ScheduledExecutorService retentionExecutor;
+
+	/**
+	 * Constructor.
+	 * @param dir the data directory (created if needed)
+	 * @param segmentIntervalMs the segment rolling interval, in ms
+	 * @param segmentSizeBytes the segment file size, in bytes
+	 * @param dataRetentionIntervalDays the data retention interval in days
+	 *                                  (0 to disable)
+	 */
+	public SegmentFileStore(
+		Path dir,
+		long segmentIntervalMs,
+		int segmentSizeBytes,
+		int dataRetentionIntervalDays
+	) {
+		if (segmentIntervalMs <= 0) {
+			throw new IllegalArgumentException("Invalid segmentIntervalMs");
+		}
+		if (segmentSizeBytes <= HEADER_SIZE) {
+			throw new IllegalArgumentException("Invalid segmentSizeBytes");
+		}
+		this.dir = dir;
+		this.segmentIntervalMs = segmentIntervalMs;
+		this.segmentSizeBytes = segmentSizeBytes;
+		this.dataRetentionIntervalDays = dataRetentionIntervalDays;
+	}
+
+	/** Open all existing segments and start retention. */
+	public void init() throws IOException {
+		lock.writeLock().lock();
+		try {
+			Files.createDirectories(dir);
+			segments = new TreeMap<>();
+			TreeMap<Long, Path> paths = new TreeMap<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path path : stream) {
+					Matcher m =
+						SEGMENT_NAME.matcher(path.getFileName().toString());
+					if (m.matches()) {
+						paths.put(Long.parseLong(m.group(1)), path);
+					}
+				}
+			}
+			int recordCount = 0;
+			for (Map.Entry<Long, Path> e : paths.entrySet()) {
+				boolean last = e.getKey().equals(paths.lastKey());
+				Segment segment = openSegment(e.getKey(), e.getValue(), last);
+				if (segment != null) {
+					segments.put(segment.seq, segment);
+					recordCount += recover(segment);
+				}
+			}
+			if (!segments.isEmpty()) {
+				Segment last = segments.lastEntry().getValue();
+				if (last.buf.isReadOnly()) {
+					activeSegment = null;
+				} else {
+					activeSegment = last;
+				}
+			}
+			logger.info(
+				"Opened {} segment(s) with {} record(s) in {}",
+				segments.size(),
+				recordCount,
+				dir
+			);
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		retentionExecutor = Executors.newSingleThreadScheduledExecutor(
+			new Utils.NamedThreadFactory("RRM_SegmentRetention")
+		);
+		retentionExecutor.scheduleWithFixedDelay(
+			() -> {
+				try {
+					enforceRetention(System.currentTimeMillis());
+				} catch (Exception e) {
+					logger.error("Segment retention failed", e);
+				}
+			},
+			0,
+			RETENTION_INTERVAL_MINUTES,
+			TimeUnit.MINUTES
+		);
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (retentionExecutor != null) {
+			retentionExecutor.shutdownNow();
+			retentionExecutor = null;
+		}
+		lock.writeLock().lock();
+		try {
+			if (activeSegment != null) {
+				activeSegment.buf.force();
+				activeSegment = null;
+			}
+			segments = null;
+			latestStates.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Map an existing segment file (writable only if it is the last one), or
+	 * return null if it is not a valid segment.
+	 */
+	private Segment openSegment(long seq, Path path, boolean writable)
+		throws IOException {
+		try (
+			FileChannel channel = writable
+				? FileChannel.open(
+					path,
+					StandardOpenOption.READ,
+					StandardOpenOption.WRITE
+				)
+				: FileChannel.open(path, StandardOpenOption.READ)
+		) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				logger.warn("Ignoring invalid segment file {}", path);
+				return null;
+			}
+			MappedByteBuffer buf = channel.map(
+				writable
+					? FileChannel.MapMode.READ_WRITE
+					: FileChannel.MapMode.READ_ONLY,
+				0,
+				size
+			);
+			if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+				logger.warn("Ignoring invalid segment file {}", path);
+				return null;
+			}
+			return new Segment(seq, path, buf.getLong(8), buf);
+		}
+	}
+
+	/** Start a new segment with at least the given capacity. */
+	private Segment newSegment(long nowMs, int minCapacity)
+		throws IOException {
+		long seq = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+		Path path = dir.resolve(String.format("segment-%016d.seg", seq));
+		int capacity = Math.max(segmentSizeBytes, HEADER_SIZE + minCapacity);
+		MappedByteBuffer buf;
+		try (
+			FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE
+			)
+		) {
+			buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+		buf.putInt(0, MAGIC);
+		buf.putInt(4, VERSION);
+		buf.putLong(8, nowMs);
+		Segment segment = new Segment(seq, path, nowMs, buf);
+		segments.put(seq, segment);
+		if (activeSegment != null) {
+			activeSegment.buf.force();
+		}
+		activeSegment = segment;
+		return segment;
+	}
+
+	/**
+	 * Rebuild the indexes of a segment by scanning its records, stopping at
+	 * the first invalid record (which is zeroed if writable). Returns the
+	 * number of records.
+	 */
+	private int recover(Segment segment) {
+		ByteBuffer buf = segment.buf;
+		CRC32 crc = new CRC32();
+		int count = 0;
+		int offset = HEADER_SIZE;
+		while (offset + RECORD_HEADER_SIZE <= buf.capacity()) {
+			int length = buf.getInt(offset);
+			if (
+				length <= 0 ||
+					length > buf.capacity() - offset - RECORD_HEADER_SIZE
+			) {
+				break;
+			}
+			ByteBuffer payload = segment.payload(offset);
+			crc.reset();
+			crc.update(payload.duplicate());
+			if ((int) crc.getValue() != buf.getInt(offset + 4)) {
+				break;
+			}
+			index(segment, offset, payload);
+			offset += RECORD_HEADER_SIZE + length;
+			count++;
+		}
+		segment.position = offset;
+		boolean writable = !buf.isReadOnly();
+		if (writable && offset + RECORD_HEADER_SIZE <= buf.capacity()) {
+			// Clear any torn record (stale bytes past it fail the CRC check)
+			int length = buf.getInt(offset);
+			int end = offset + RECORD_HEADER_SIZE;
+			if (length > 0 && length <= buf.capacity() - end) {
+				end += length;
+			}
+			for (int i = offset; i < end; i++) {
+				buf.put(i, (byte) 0);
+			}
+		}
+		return count;
+	}
+
+	/** Add a record to the indexes. */
+	private void index(Segment segment, int offset, ByteBuffer payload) {
+		byte type = payload.get();
+		if (type == TYPE_METRIC_NAME) {
+			String name = getString(payload);
+			segment.metricIds.put(name, segment.metricNames.size());
+			segment.metricNames.add(name);
+			return;
+		}
+		Map<String, Index> indexes;
+		if (type == TYPE_STATE) {
+			indexes = segment.states;
+		} else if (type == TYPE_WIFISCAN) {
+			payload.getLong(); // scan ID
+			indexes = segment.scans;
+		} else {
+			return;
+		}
+		String serial = getString(payload);
+		long time = payload.getLong();
+		indexes.computeIfAbsent(serial, k -> new Index()).add(offset, time);
+		segment.minTime = Math.min(segment.minTime, time);
+		segment.maxTime = Math.max(segment.maxTime, time);
+		if (type == TYPE_STATE) {
+			Location latest = latestStates.get(serial);
+			if (latest == null || time >= latest.time) {
+				latestStates.put(serial, new Location(segment, offset, time));
+			}
+		}
+	}
+
+	/**
+	 * Append the given record payloads to one segment, starting a new segment
+	 * if the current one has expired or does not have enough space. The
+	 * payloads are built by the given function for the target segment.
+	 */
+	private void append(
+		long nowMs,
+		Function<Segment, List<byte[]>> build
+	) throws IOException {
+		Segment segment = activeSegment;
+		if (segment != null && nowMs - segment.startMs >= segmentIntervalMs) {
+			segment = null;
+		}
+		if (segment == null) {
+			segment = newSegment(nowMs, 0);
+		}
+		List<byte[]> payloads = build.apply(segment);
+		int size = recordsSize(payloads);
+		if (size > segment.buf.capacity() - segment.position) {
+			// Metric names must be written again in a new segment, so the
+			// records are rebuilt for it
+			if (segment.position > HEADER_SIZE) {
+				segment = newSegment(nowMs, 0);
+				payloads = build.apply(segment);
+				size = recordsSize(payloads);
+			}
+			if (size > segment.buf.capacity() - segment.position) {
+				// Replace the empty segment with one large enough
+				segments.remove(segment.seq);
+				Files.delete(segment.path);
+				activeSegment = null;
+				segment = newSegment(nowMs, size);
+				payloads = build.apply(segment);
+			}
+		}
+
+		CRC32 crc = new CRC32();
+		for (byte[] payload : payloads) {
+			int offset = segment.position;
+			crc.reset();
+			crc.update(payload);
+			ByteBuffer b = segment.buf.duplicate();
+			b.position(offset + RECORD_HEADER_SIZE);
+			b.put(payload);
+			b.putInt(offset + 4, (int) crc.getValue());
+			b.putInt(offset, payload.length);
+			segment.position = offset + RECORD_HEADER_SIZE + payload.length;
+			index(segment, offset, ByteBuffer.wrap(payload));
+		}
+	}
+
+	/** Return the total size of the given records. */
+	private static int recordsSize(List<byte[]> payloads) {
+		int size = 0;
+		for (byte[] payload : payloads) {
+			size += RECORD_HEADER_SIZE + payload.length;
+		}
+		return size;
+	}
+
+	@Override
+	public void addStateRecords(StateRecordBatch batch) throws SQLException {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		// Group rows by serial number and timestamp
+		Map<List<Object>, List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < batch.size(); i++) {
+			groups.computeIfAbsent(
+				Arrays.asList(batch.getSerial(i), batch.getTimestamp(i)),
+				k -> new ArrayList<>()
+			).add(i);
+		}
+
+		long nowMs = System.currentTimeMillis();
+		lock.writeLock().lock();
+		try {
+			if (segments == null) {
+				return;
+			}
+			for (List<Integer> rows : groups.values()) {
+				append(nowMs, segment -> encodeState(segment, batch, rows));
+			}
+		} catch (IOException e) {
+			throw new SQLException("Failed to append state records", e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Encode a state record for the given rows (of one serial number and
+	 * timestamp), preceded by records for any metric names not yet in the
+	 * segment.
+	 */
+	private static List<byte[]> encodeState(
+		Segment segment,
+		StateRecordBatch batch,
+		List<Integer> rows
+	) {
+		List<byte[]> ret = new ArrayList<>();
+		Map<String, Integer> newIds = new HashMap<>();
+		int[] ids = new int[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			String metric = batch.getMetric(rows.get(i));
+			Integer id = segment.metricIds.get(metric);
+			if (id == null) {
+				id = newIds.get(metric);
+			}
+			if (id == null) {
+				id = segment.metricNames.size() + newIds.size();
+				newIds.put(metric, id);
+				byte[] name = metric.getBytes(StandardCharsets.UTF_8);
+				ByteBuffer b = ByteBuffer.allocate(3 + name.length);
+				b.put(TYPE_METRIC_NAME);
+				putString(b, name);
+				ret.add(b.array());
+			}
+			ids[i] = id;
+		}
+
+		int first = rows.get(0);
+		byte[] serial =
+			batch.getSerial(first).getBytes(StandardCharsets.UTF_8);
+		ByteBuffer b = ByteBuffer
+			.allocate(1 + 2 + serial.length + 8 + 4 + 12 * ids.length);
+		b.put(TYPE_STATE);
+		putString(b, serial);
+		b.putLong(batch.getTimestamp(first));
+		b.putInt(ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			b.putInt(ids[i]);
+			b.putLong(batch.getValue(rows.get(i)));
+		}
+		ret.add(b.array());
+		return ret;
+	}
+
+	/** Decode a state record into a snapshot. */
+	private static StateSnapshot decodeState(Segment segment, int offset) {
+		ByteBuffer b = segment.payload(offset);
+		b.get(); // type
+		String serial = getString(b);
+		long time = b.getLong();
+		int count = b.getInt();
+		StateRecordBatch batch = new StateRecordBatch(count);
+		for (int i = 0; i < count; i++) {
+			String metric = segment.metricNames.get(b.getInt());
+			batch.add(time, metric, b.getLong(), serial);
+		}
+		List<StateSnapshot> snapshots = StateSnapshot.fromBatch(batch);
+		return snapshots.isEmpty()
+			? new StateSnapshot(serial, time)
+			: snapshots.get(0);
+	}
+
+	@Override
+	public void addWifiScan(
+		String serialNumber,
+		long timestampSeconds,
+		List<WifiScanEntry> entries
+	) throws SQLException {
+		addWifiScans(
+			Collections.singletonList(
+				new WifiScanRecord(
+					scanIdGenerator.next(),
+					serialNumber,
+					timestampSeconds,
+					entries
+				)
+			)
+		);
+	}
+
+	@Override
+	public void addWifiScans(List<WifiScanRecord> scans) throws SQLException {
+		if (scans.isEmpty()) {
+			return;
+		}
+
+		// Encode outside of the lock
+		List<byte[]> payloads = new ArrayList<>(scans.size());
+		for (WifiScanRecord scan : scans) {
+			byte[] serial = scan.serial.getBytes(StandardCharsets.UTF_8);
+			byte[] results = WifiScanCodec.encode(scan.entries);
+			ByteBuffer b = ByteBuffer
+				.allocate(1 + 8 + 2 + serial.length + 8 + 4 + results.length);
+			b.put(TYPE_WIFISCAN);
+			b.putLong(scan.id);
+			putString(b, serial);
+			b.putLong(scan.timestamp);
+			b.putInt(results.length);
+			b.put(results);
+			payloads.add(b.array());
+		}
+
+		long nowMs = System.currentTimeMillis();
+		lock.writeLock().lock();
+		try {
+			if (segments == null) {
+				return;
+			}
+			for (byte[] payload : payloads) {
+				List<byte[]> record = Collections.singletonList(payload);
+				append(nowMs, segment -> record);
+			}
+		} catch (IOException e) {
+			throw new SQLException("Failed to append wifi scans", e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public Map<String, State> getLatestState(Collection<String> serialNumbers)
+		throws SQLException {
+		// Decode records under the lock (segments may be dropped otherwise),
+		// but convert them to State objects outside of it
+		Map<String, StateSnapshot> snapshots = new HashMap<>();
+		lock.readLock().lock();
+		try {
+			if (segments == null) {
+				return null;
+			}
+			Collection<String> serials =
+				serialNumbers == null ? latestStates.keySet() : serialNumbers;
+			for (String serial : serials) {
+				Location latest = latestStates.get(serial);
+				if (latest != null) {
+					snapshots.put(
+						serial,
+						decodeState(latest.segment, latest.offset)
+					);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		Map<String, State> ret = new HashMap<>(snapshots.size());
+		for (Map.Entry<String, StateSnapshot> e : snapshots.entrySet()) {
+			ret.put(e.getKey(), DatabaseManager.toState(e.getValue()));
+		}
+		return ret;
+	}
+
+	@Override
+	public Map<String, List<List<WifiScanEntry>>> getLatestWifiScans(
+		Collection<String> serialNumbers,
+		int count,
+		long minTimeMs
+	) throws SQLException {
+		if (serialNumbers == null) {
+			throw new IllegalArgumentException("Invalid serialNumbers");
+		}
+		if (count < 1) {
+			throw new IllegalArgumentException("Invalid count");
+		}
+
+		lock.readLock().lock();
+		try {
+			if (segments == null) {
+				return null;
+			}
+			Map<String, List<List<WifiScanEntry>>> ret = new HashMap<>();
+			for (String serial : serialNumbers) {
+				List<List<WifiScanEntry>> scans =
+					latestWifiScans(serial, count, minTimeMs);
+				if (!scans.isEmpty()) {
+					ret.put(serial, scans);
+				}
+			}
+			return ret;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Return the latest wifi scans of one device (oldest first), ordered by
+	 * scan time and then by append order.
+	 */
+	private List<List<WifiScanEntry>> latestWifiScans(
+		String serial,
+		int count,
+		long minTimeMs
+	) {
+		// Keep the newest N records in a min-heap of {time, seq, offset},
+		// visiting segments newest first until none can contain newer ones
+		PriorityQueue<long[]> heap = new PriorityQueue<>(
+			(a, b) -> a[0] != b[0]
+				? Long.compare(a[0], b[0])
+				: a[1] != b[1]
+					? Long.compare(a[1], b[1])
+					: Long.compare(a[2], b[2])
+		);
+		for (Segment segment : segments.descendingMap().values()) {
+			if (
+				(heap.size() == count && segment.maxTime < heap.peek()[0]) ||
+					segment.maxTime * 1000 < minTimeMs
+			) {
+				continue;
+			}
+			Index index = segment.scans.get(serial);
+			if (index == null) {
+				continue;
+			}
+			for (int i = 0; i < index.size; i++) {
+				long time = index.times[i];
+				if (time * 1000 < minTimeMs) {
+					continue;
+				}
+				heap.add(new long[] { time, segment.seq, index.offsets[i] });
+				if (heap.size() > count) {
+					heap.poll();
+				}
+			}
+		}
+
+		List<List<WifiScanEntry>> ret = new ArrayList<>(heap.size());
+		while (!heap.isEmpty()) {
+			long[] e = heap.poll();
+			ByteBuffer b = segments.get(e[1]).payload((int) e[2]);
+			b.position(b.position() + 1 + 8); // type, scan ID
+			getString(b); // serial
+			b.getLong(); // time
+			byte[] results = new byte[b.getInt()];
+			b.get(results);
+			List<WifiScanEntry> entries =
+				WifiScanCodec.decode(results, e[0] * 1000);
+			if (!entries.isEmpty()) {
+				ret.add(entries);
+			}
+		}
+		return ret;
+	}
+
+	/** Aggregated values of one metric series bucket. */
+	private static class Bucket {
+		long count, min, max, sum, last, lastTime;
+	}
+
+	@Override
+	public void getMetricSeries(
+		String serialNumber,
+		String metricPrefix,
+		long fromMs,
+		long toMs,
+		long stepMs,
+		RowConsumer<MetricBucket> consumer
+	) throws SQLException, IOException {
+		if (serialNumber == null || serialNumber.isEmpty()) {
+			throw new IllegalArgumentException("Invalid serialNumber");
+		}
+		if (metricPrefix == null) {
+			throw new IllegalArgumentException("Invalid metricPrefix");
+		}
+		if (toMs <= fromMs) {
+			throw new IllegalArgumentException("Invalid time range");
+		}
+		if (stepMs <= 0) {
+			throw new IllegalArgumentException("stepMs must be positive");
+		}
+
+		// Aggregate in memory, then stream the results
+		Map<String, TreeMap<Long, Bucket>> series = new TreeMap<>();
+		lock.readLock().lock();
+		try {
+			if (segments == null) {
+				return;
+			}
+			for (Segment segment : segments.values()) {
+				Index index = segment.states.get(serialNumber);
+				if (
+					index == null || segment.maxTime * 1000 < fromMs ||
+						segment.minTime * 1000 >= toMs
+				) {
+					continue;
+				}
+				for (int i = 0; i < index.size; i++) {
+					long timeMs = index.times[i] * 1000;
+					if (timeMs < fromMs || timeMs >= toMs) {
+						continue;
+					}
+					addBuckets(
+						segment,
+						index.offsets[i],
+						metricPrefix,
+						(timeMs - fromMs) / stepMs,
+						series
+					);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		MetricBucket row = new MetricBucket();
+		for (Map.Entry<String, TreeMap<Long, Bucket>> e : series.entrySet()) {
+			row.metric = e.getKey();
+			for (Map.Entry<Long, Bucket> b : e.getValue().entrySet()) {
+				Bucket bucket = b.getValue();
+				row.timestamp = fromMs + b.getKey() * stepMs;
+				row.count = bucket.count;
+				row.min = bucket.min;
+				row.max = bucket.max;
+				row.avg = (double) bucket.sum / bucket.count;
+				row.last = bucket.last;
+				consumer.accept(row);
+			}
+		}
+	}
+
+	/** Add the matching values of a state record to the given buckets. */
+	private static void addBuckets(
+		Segment segment,
+		int offset,
+		String metricPrefix,
+		long bucketIndex,
+		Map<String, TreeMap<Long, Bucket>> series
+	) {
+		ByteBuffer b = segment.payload(offset);
+		b.get(); // type
+		getString(b); // serial
+		long time = b.getLong();
+		int count = b.getInt();
+		for (int i = 0; i < count; i++) {
+			String metric = segment.metricNames.get(b.getInt());
+			long value = b.getLong();
+			if (!metric.startsWith(metricPrefix)) {
+				continue;
+			}
+			Bucket bucket = series
+				.computeIfAbsent(metric, k -> new TreeMap<>())
+				.get(bucketIndex);
+			if (bucket == null) {
+				bucket = new Bucket();
+				bucket.min = bucket.max = value;
+				bucket.lastTime = Long.MIN_VALUE;
+				series.get(metric).put(bucketIndex, bucket);
+			}
+			bucket.count++;
+			bucket.min = Math.min(bucket.min, value);
+			bucket.max = Math.max(bucket.max, value);
+			bucket.sum += value;
+			if (time >= bucket.lastTime) {
+				bucket.last = value;
+				bucket.lastTime = time;
+			}
+		}
+	}
+
+	/**
+	 * Delete all segments (except the one being appended to) whose records
+	 * are all older than the retention interval, or which are empty and
+	 * older than one segment interval.
+	 */
+	public void enforceRetention(long nowMs) throws IOException {
+		if (dataRetentionIntervalDays <= 0) {
+			return;
+		}
+		long cutoffMs =
+			nowMs - TimeUnit.DAYS.toMillis(dataRetentionIntervalDays);
+		List<Segment> expired = new ArrayList<>();
+		lock.writeLock().lock();
+		try {
+			if (segments == null) {
+				return;
+			}
+			Iterator<Segment> iter = segments.values().iterator();
+			while (iter.hasNext()) {
+				Segment segment = iter.next();
+				if (segment == activeSegment) {
+					continue;
+				}
+				boolean empty = segment.maxTime == Long.MIN_VALUE;
+				if (
+					empty
+						? segment.startMs + segmentIntervalMs < nowMs
+						: segment.maxTime * 1000 < cutoffMs
+				) {
+					iter.remove();
+					expired.add(segment);
+				}
+			}
+			if (!expired.isEmpty()) {
+				latestStates.values()
+					.removeIf(latest -> expired.contains(latest.segment));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		// Mappings are released once unreachable, which does not prevent
+		// deleting the files
+		for (Segment segment : expired) {
+			Files.deleteIfExists(segment.path);
+		}
+		if (!expired.isEmpty()) {
+			logger.info("Deleted {} expired segment(s)", expired.size());
+		}
+	}
+
+	/** Return the number of segments. */
+	public int getSegmentCount() {
+		lock.readLock().lock();
+		try {
+			return segments == null ? 0 : segments.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/** Write a string (as a length-prefixed UTF-8 byte array). */
+	private static void putString(ByteBuffer b, byte[] s) {
+		b.putShort((short) s.length);
+		b.put(s);
+	}
+
+	/** Read a string written by {@link #putString(ByteBuffer, byte[])}. */
+	private static String getString(ByteBuffer b) {
+		byte[] s = new byte[Short.toUnsignedInt(b.getShort())];
+		b.get(s);
+		return new String(s, StandardCharsets.UTF_8);
+	}
+}
@@ -12,11 +12,14 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Set;
 import java.util.TreeSet;
 
 import org.junit.jupiter.api.Assertions;
@@ -47,6 +50,7 @@ public class DeviceDataManagerTest {
 		assertFalse(deviceDataManager.isDeviceInTopology(deviceA1));
 		assertNull(deviceDataManager.getDeviceZone(deviceA1));
 		assertFalse(deviceDataManager.isZoneInTopology(zoneA));
+		long topologyVersion = deviceDataManager.getTopologyVersion();
 
 		// Create topology with zones [A, B]
 		DeviceTopology topology = new DeviceTopology();
@@ -67,6 +71,7 @@ public class DeviceDataManagerTest {
 		assertTrue(deviceDataManager.isZoneInTopology(zoneB));
 		assertFalse(deviceDataManager.isZoneInTopology(zoneUnknown));
 		assertEquals(Arrays.asList(zoneA, zoneB), deviceDataManager.getZones());
+		assertTrue(deviceDataManager.getTopologyVersion() > topologyVersion);
 
 		// Minimal JSON sanity check
 		assertFalse(deviceDataManager.getTopologyJson().isEmpty());
@@ -199,6 +204,16 @@ public class DeviceDataManagerTest {
 		assertNotNull(actualZoneCfgA);
 		assertTrue(actualZoneCfgA.enableRRM);
 
+		// Check RRM-enabled devices (cached until any config changes)
+		long configVersion = deviceDataManager.getDeviceConfigVersion();
+		Set<String> rrmEnabledDevices =
+			deviceDataManager.getRRMEnabledDevices();
+		assertEquals(Collections.singleton(deviceA), rrmEnabledDevices);
+		assertTrue(deviceDataManager.isRRMEnabled(deviceA));
+		assertFalse(deviceDataManager.isRRMEnabled(deviceB));
+		assertFalse(deviceDataManager.isRRMEnabled(deviceUnknown));
+		assertSame(rrmEnabledDevices, deviceDataManager.getRRMEnabledDevices());
+
 		// Minimal JSON sanity check
 		assertFalse(deviceDataManager.getDeviceLayeredConfigJson().isEmpty());
 
@@ -206,6 +221,11 @@ public class DeviceDataManagerTest {
 		deviceDataManager.setDeviceNetworkConfig(null);
 		deviceDataManager.setDeviceZoneConfig(zoneA, null);
 		deviceDataManager.setDeviceApConfig(deviceA, null);
+		assertTrue(deviceDataManager.getDeviceConfigVersion() > configVersion);
+		assertEquals(
+			new TreeSet<>(Arrays.asList(deviceA, deviceB)),
+			deviceDataManager.getRRMEnabledDevices()
+		);
 
 		// Setting whole layered config works (even with null fields)
 		DeviceLayeredConfig nullLayeredCfg = new DeviceLayeredConfig();
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.cloudsdk.AggregatedState;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.optimizers.TestUtils;
+import com.google.gson.Gson;
+
+public class AggregatedStateIndexTest {
+	/** The Gson instance. */
+	private static final Gson gson = new Gson();
+
+	/** Serialize aggregated states (with sorted keys) for comparison. */
+	private static String toJson(
+		Map<String, Map<String, List<AggregatedState>>> aggregatedStates
+	) {
+		Map<String, Map<String, List<AggregatedState>>> sorted =
+			new TreeMap<>();
+		for (
+			Map.Entry<String, Map<String, List<AggregatedState>>> e : aggregatedStates
+				.entrySet()
+		) {
+			sorted.put(e.getKey(), new TreeMap<>(e.getValue()));
+		}
+		return gson.toJson(sorted);
+	}
+
+	@Test
+	void test_incrementalMatchesRebuild() throws Exception {
+		final String[] aps = { "aaaaaaaaaaaa", "bbbbbbbbbbbb" };
+		final String[] stations = { "stationA", "stationB", "stationC" };
+		final long obsoletionPeriodMs = 300000;
+
+		// Apply random states (with occasional out-of-order timestamps and
+		// radio changes), and compare against a full rebuild at every step
+		Random random = new Random(0);
+		DataModel dataModel = new DataModel();
+		AggregatedStateIndex index = new AggregatedStateIndex();
+		long time = TestUtils.DEFAULT_LOCAL_TIME;
+		for (int i = 0; i < 200; i++) {
+			String ap = aps[random.nextInt(aps.length)];
+			time += 60;
+			String[] stateStations = new String[random.nextInt(3)];
+			int[] rssis = new int[stateStations.length];
+			for (int j = 0; j < stateStations.length; j++) {
+				stateStations[j] =
+					new String(stations[random.nextInt(stations.length)]);
+				rssis[j] = -50 - random.nextInt(40);
+			}
+			State state = TestUtils.createState(
+				random.nextInt(5) == 0 ? 1 : 6,
+				20,
+				20,
+				new String("bb:bb:bb:bb:bb:bb"),
+				stateStations,
+				rssis,
+				time - 60 * random.nextInt(3)
+			);
+
+			RingBuffer<State> buf = dataModel.latestStates
+				.computeIfAbsent(ap, k -> new RingBuffer<>(4));
+			State evictedState =
+				(buf.size() == buf.capacity()) ? buf.get(0) : null;
+			buf.add(state);
+			index.addState(ap, state, evictedState);
+
+			long refTimeMs = time * 1000;
+			assertEquals(
+				toJson(
+					AggregatedStateIndex.of(dataModel.latestStates)
+						.getAggregatedStates(obsoletionPeriodMs, refTimeMs)
+				),
+				toJson(index.getAggregatedStates(obsoletionPeriodMs, refTimeMs))
+			);
+		}
+
+		// Remove devices
+		index.removeIf(aps[1]::equals);
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void test_queriesDoNotModifyData() throws Exception {
+		final String serialNumber = "aaaaaaaaaaaa";
+		final String bssid = "bb:bb:bb:bb:bb:bb";
+		final String station = "stationA";
+		final String key = ModelerUtils.getBssidStationKeyPair(bssid, station);
+		final long time = TestUtils.DEFAULT_LOCAL_TIME;
+
+		// States are parsed separately, so strings are not identical
+		State state1 = TestUtils.createState(
+			6,
+			20,
+			20,
+			new String(bssid),
+			new String[] { new String(station) },
+			new int[] { -60 },
+			time - 60
+		);
+		State state2 = TestUtils.createState(
+			6,
+			20,
+			20,
+			new String(bssid),
+			new String[] { new String(station) },
+			new int[] { -70 },
+			time
+		);
+		DataModel dataModel = new DataModel();
+		dataModel.latestStates.put(serialNumber, RingBuffer.of(state2, state1));
+		String json = gson.toJson(dataModel);
+
+		AggregatedStateIndex index =
+			AggregatedStateIndex.of(dataModel.latestStates);
+		List<AggregatedState> aggregatedStates = index
+			.getAggregatedStates(Long.MAX_VALUE, time * 1000)
+			.get(serialNumber)
+			.get(key);
+		assertEquals(1, aggregatedStates.size());
+		assertEquals(Arrays.asList(-70, -60), aggregatedStates.get(0).rssi);
+
+		// Modifying the result must not affect later queries or the model
+		aggregatedStates.get(0).rssi.add(0);
+		assertEquals(
+			Arrays.asList(-70, -60),
+			index.getAggregatedStates(Long.MAX_VALUE, time * 1000)
+				.get(serialNumber)
+				.get(key)
+				.get(0).rssi
+		);
+		assertEquals(json, gson.toJson(dataModel));
+
+		// Obsolete states are excluded
+		assertEquals(
+			Arrays.asList(-70),
+			index.getAggregatedStates(0, time * 1000)
+				.get(serialNumber)
+				.get(key)
+				.get(0).rssi
+		);
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.rrm.aggregators.MeanAggregator;
+import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.optimizers.TestUtils;
+
+public class AggregatedWifiScanIndexTest {
+	@Test
+	void test_incrementalMatchesRebuild() throws Exception {
+		final String[] aps = { "aaaaaaaaaaaa", "bbbbbbbbbbbb" };
+		final String[] bssids =
+			{ "aa:aa:aa:aa:aa:aa", "bb:bb:bb:bb:bb:bb", "cc:cc:cc:cc:cc:cc" };
+		final long obsoletionPeriodMs = 300000;
+		final long startTimeMs =
+			TestUtils.DEFAULT_WIFISCANENTRY_TIME.toEpochMilli();
+
+		// Apply random scans (with occasional out-of-order timestamps and
+		// channel changes), and compare against a full rebuild at every step
+		Random random = new Random(0);
+		DataModel dataModel = new DataModel();
+		AggregatedWifiScanIndex index = new AggregatedWifiScanIndex();
+		long timeMs = startTimeMs;
+		for (int i = 0; i < 200; i++) {
+			String ap = aps[random.nextInt(aps.length)];
+			timeMs += 60000;
+			long scanTimeMs = timeMs - 60000 * random.nextInt(3);
+			List<WifiScanEntry> scan = new ArrayList<>();
+			for (String bssid : bssids) {
+				if (random.nextInt(4) == 0) {
+					continue;
+				}
+				WifiScanEntry entry = TestUtils.createWifiScanEntryWithBssid(
+					bssid,
+					-50 - random.nextInt(40),
+					random.nextInt(5) == 0 ? 1 : 6
+				);
+				entry.unixTimeMs = scanTimeMs;
+				scan.add(entry);
+			}
+
+			RingBuffer<List<WifiScanEntry>> buf = dataModel.latestWifiScans
+				.computeIfAbsent(ap, k -> new RingBuffer<>(4));
+			List<WifiScanEntry> evictedScan =
+				(buf.size() == buf.capacity()) ? buf.get(0) : null;
+			buf.add(scan);
+			index.addScan(ap, scan, evictedScan);
+
+			assertEquals(
+				AggregatedWifiScanIndex.of(dataModel.latestWifiScans)
+					.getAggregatedWifiScans(
+						obsoletionPeriodMs,
+						new MeanAggregator(),
+						timeMs
+					),
+				index.getAggregatedWifiScans(
+					obsoletionPeriodMs,
+					new MeanAggregator(),
+					timeMs
+				)
+			);
+		}
+
+		// Restrict to some APs
+		assertEquals(
+			Arrays.asList(aps[0]),
+			new ArrayList<>(
+				index.getAggregatedWifiScans(
+					Arrays.asList(aps[0], "unknown"),
+					obsoletionPeriodMs,
+					new MeanAggregator(),
+					timeMs
+				).keySet()
+			)
+		);
+
+		// Remove APs
+		index.removeIf(aps[1]::equals);
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void test_timeBucketExpiry() throws Exception {
+		final String ap = "aaaaaaaaaaaa";
+		final String bssidA = "aa:aa:aa:aa:aa:aa";
+		final String bssidB = "bb:bb:bb:bb:bb:bb";
+		final long startTimeMs =
+			TestUtils.DEFAULT_WIFISCANENTRY_TIME.toEpochMilli();
+
+		// Keep 10 minutes of entries, in 1-minute buckets
+		AggregatedWifiScanIndex index =
+			new AggregatedWifiScanIndex(600000, 60000);
+		WifiScanEntry entryA1 =
+			TestUtils.createWifiScanEntryWithBssid(bssidA, -60, 6);
+		WifiScanEntry entryB1 =
+			TestUtils.createWifiScanEntryWithBssid(bssidB, -70, 6);
+		index.addScan(ap, Arrays.asList(entryA1, entryB1), null);
+
+		// Both entries are within the retention period
+		WifiScanEntry entryA2 =
+			TestUtils.createWifiScanEntryWithBssid(bssidA, -80, 6);
+		entryA2.unixTimeMs = startTimeMs + 300000;
+		index.addScan(ap, Arrays.asList(entryA2), null);
+		Map<String, WifiScanEntry> aggregates = index
+			.getAggregatedWifiScans(
+				Long.MAX_VALUE,
+				new MeanAggregator(),
+				entryA2.unixTimeMs
+			)
+			.get(ap);
+		assertEquals(-70, aggregates.get(bssidA).signal);
+		assertEquals(-70, aggregates.get(bssidB).signal);
+
+		// The first bucket expires, but the latest entry per BSSID is kept
+		WifiScanEntry entryA3 =
+			TestUtils.createWifiScanEntryWithBssid(bssidA, -90, 6);
+		entryA3.unixTimeMs = startTimeMs + 660000;
+		index.addScan(ap, Arrays.asList(entryA3), null);
+		aggregates = index
+			.getAggregatedWifiScans(
+				Long.MAX_VALUE,
+				new MeanAggregator(),
+				entryA3.unixTimeMs
+			)
+			.get(ap);
+		assertEquals(-85, aggregates.get(bssidA).signal);
+		assertEquals(-70, aggregates.get(bssidB).signal);
+
+		// Obsolete entries fall back to the latest entry (not a copy)
+		aggregates = index
+			.getAggregatedWifiScans(0, new MeanAggregator(), Long.MAX_VALUE)
+			.get(ap);
+		assertSame(entryA3, aggregates.get(bssidA));
+
+		// Evicting scans removes their entries
+		index.addScan(ap, new ArrayList<>(), Arrays.asList(entryA1, entryB1));
+		aggregates = index
+			.getAggregatedWifiScans(
+				Long.MAX_VALUE,
+				new MeanAggregator(),
+				entryA3.unixTimeMs
+			)
+			.get(ap);
+		assertFalse(aggregates.containsKey(bssidB));
+		index.addScan(ap, new ArrayList<>(), Arrays.asList(entryA2, entryA3));
+		assertTrue(
+			index.getAggregatedWifiScans(0, new MeanAggregator(), 0).isEmpty()
+		);
+	}
+}
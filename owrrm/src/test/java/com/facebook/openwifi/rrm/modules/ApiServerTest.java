@@ -11,14 +11,24 @@ package com.facebook.openwifi.rrm.modules;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.File;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -41,7 +51,9 @@ import com.facebook.openwifi.rrm.RRMAlgorithm;
 import com.facebook.openwifi.rrm.RRMConfig;
 import com.facebook.openwifi.rrm.VersionProvider;
 import com.facebook.openwifi.rrm.mysql.DatabaseManager;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
 import com.facebook.openwifi.rrm.services.MockOWSecService;
+import com.facebook.openwifi.rrm.store.SegmentFileStore;
 import com.facebook.openwifi.rrm.Utils;
 import com.google.gson.Gson;
 
@@ -53,7 +65,8 @@ import kong.unirest.json.JSONObject;
 /**
  * A class for testing ApiServer. In order to test auth logic, you must tag
  * the test "auth". Doing so will spin up a mock ow security service and
- * enable auth on the server.
+ * enable auth on the server. Tests tagged "store" are given a local data
+ * store in a temporary directory.
  */
 @TestMethodOrder(OrderAnnotation.class)
 public class ApiServerTest {
@@ -81,6 +94,12 @@ public class ApiServerTest {
 	/** Mock OW sec service */
 	private MockOWSecService owSecService;
 
+	/** Test data store (only for tests tagged "store"). */
+	private SegmentFileStore dataStore;
+
+	/** Test data store directory. */
+	private Path dataStoreDir;
+
 	/** Test modeler instance. */
 	private Modeler modeler;
 
@@ -147,6 +166,18 @@ public class ApiServerTest {
 		UCentralKafkaConsumer consumer = null;
 		DatabaseManager dbManager = null;
 
+		// Create data store (if requested)
+		if (testInfo.getTags().contains("store")) {
+			try {
+				dataStoreDir = Files.createTempDirectory("rrm-api");
+				dataStore =
+					new SegmentFileStore(dataStoreDir, 3600000, 1 << 20, 0);
+				dataStore.init();
+			} catch (Exception e) {
+				fail("Could not instantiate data store.", e);
+			}
+		}
+
 		// Create scheduler
 		RRMScheduler scheduler = new RRMScheduler(
 			rrmConfig.moduleConfig.schedulerParams,
@@ -173,7 +204,8 @@ public class ApiServerTest {
 			consumer,
 			client,
 			dataCollector,
-			configManager
+			configManager,
+			dbManager
 		);
 
 		// Instantiate ApiServer
@@ -183,6 +215,7 @@ public class ApiServerTest {
 			deviceDataManager,
 			configManager,
 			modeler,
+			dataStore,
 			client,
 			scheduler
 		);
@@ -209,6 +242,18 @@ public class ApiServerTest {
 		}
 		owSecService = null;
 
+		// Delete data store
+		if (dataStore != null) {
+			try {
+				dataStore.close();
+			} catch (SQLException e) { /* ignore */ }
+			for (File f : dataStoreDir.toFile().listFiles()) {
+				f.delete();
+			}
+			dataStoreDir.toFile().delete();
+		}
+		dataStore = null;
+
 		// Reset Unirest client
 		// Without this, Unirest randomly throws:
 		// kong.unirest.UnirestException: java.net.SocketException: Software caused connection abort: recv failed
@@ -575,6 +620,139 @@ public class ApiServerTest {
 		);
 	}
 
+	@Test
+	@Order(103)
+	void test_currentModelStats() throws Exception {
+		// Fetch RRM model stats
+		HttpResponse<String> resp =
+			Unirest.get(endpoint("/api/v1/currentModelStats")).asString();
+		assertEquals(200, resp.getStatus());
+		Modeler.ModelerStats stats =
+			gson.fromJson(resp.getBody(), Modeler.ModelerStats.class);
+		assertEquals(
+			rrmConfig.moduleConfig.modelerParams.ingestShardCount,
+			stats.ingestShards.size()
+		);
+		for (Modeler.IngestShardStats shardStats : stats.ingestShards) {
+			assertEquals(0, shardStats.queuedRecords);
+			assertEquals(0, shardStats.droppedRecordCount);
+		}
+		assertFalse(stats.ingestPaused);
+		assertEquals(0, stats.ingestPauseCount);
+
+		// The modeler is never run here, so initial data is never fetched
+		assertFalse(stats.ready);
+		assertTrue(stats.timeToReadyMs > 0);
+		assertEquals(0, stats.initialWifiScansFromDatabase);
+		assertEquals(0, stats.initialStatesFromGateway);
+
+		// The data collector is never run here, so no scans are dispatched
+		assertNotNull(stats.wifiScans);
+		assertEquals(0, stats.wifiScans.inFlight);
+		assertEquals(0, stats.wifiScans.backlog);
+
+		// There is no database here, so state records are not written
+		assertNull(stats.stateWrites);
+		assertNull(stats.wifiScanWrites);
+	}
+
+	@Test
+	@Order(104)
+	void test_getMetricSeries() throws Exception {
+		String url = endpoint("/api/v1/getMetricSeries");
+
+		// Missing/wrong parameters
+		assertEquals(400, Unirest.get(url).asString().getStatus());
+		assertEquals(
+			400,
+			Unirest.get(url + "?serial=aaaaaaaaaaaa&from=0&step=0")
+				.asString()
+				.getStatus()
+		);
+		assertEquals(
+			400,
+			Unirest.get(url + "?serial=aaaaaaaaaaaa&from=1000&to=0&step=1")
+				.asString()
+				.getStatus()
+		);
+		assertEquals(
+			400,
+			Unirest.get(url + "?serial=aaaaaaaaaaaa&from=0&to=1000000&step=1")
+				.asString()
+				.getStatus()
+		);
+		assertEquals(
+			400,
+			Unirest.get(url + "?serial=aaaaaaaaaaaa&from=x&step=1000")
+				.asString()
+				.getStatus()
+		);
+
+		// There is no database here
+		assertEquals(
+			503,
+			Unirest
+				.get(url + "?serial=aaaaaaaaaaaa&from=0&to=3600000&step=60000")
+				.asString()
+				.getStatus()
+		);
+	}
+
+	@Test
+	@Tag("store")
+	@Order(105)
+	void test_getMetricSeriesStreamed() throws Exception {
+		final String serialNumber = "aaaaaaaaaaaa";
+		final long ts = 1649306810L;
+		for (int i = 0; i < 3; i++) {
+			StateRecordBatch batch = new StateRecordBatch();
+			batch.add(ts + 30 * i, "radio.0.noise", -100 + i, serialNumber);
+			batch.add(ts + 30 * i, "radio.0.tx_power", 20, serialNumber);
+			dataStore.addStateRecords(batch);
+		}
+		String url = endpoint(
+			String.format(
+				"/api/v1/getMetricSeries?serial=%s&metric=radio.0.noise" +
+					"&from=%d&to=%d&step=60000",
+				serialNumber,
+				ts * 1000,
+				(ts + 120) * 1000
+			)
+		);
+		String expected = "{\"data\":{\"radio.0.noise\":[" +
+			"{\"timestamp\":1649306810000,\"count\":2,\"min\":-100," +
+			"\"max\":-99,\"avg\":-99.5,\"last\":-99}," +
+			"{\"timestamp\":1649306870000,\"count\":1,\"min\":-98," +
+			"\"max\":-98,\"avg\":-98.0,\"last\":-98}]}}";
+
+		// Response is streamed as plain JSON, or gzipped only if accepted
+		for (boolean gzip : new boolean[] { false, true }) {
+			HttpURLConnection conn =
+				(HttpURLConnection) new URL(url).openConnection();
+			if (gzip) {
+				conn.setRequestProperty("Accept-Encoding", "gzip");
+			}
+			assertEquals(200, conn.getResponseCode());
+			assertTrue(conn.getContentType().startsWith("application/json"));
+			InputStream in = conn.getInputStream();
+			if (gzip) {
+				assertEquals("gzip", conn.getContentEncoding());
+				in = new GZIPInputStream(in);
+			} else {
+				assertNull(conn.getContentEncoding());
+			}
+			try {
+				assertEquals(
+					expected,
+					new String(in.readAllBytes(), StandardCharsets.UTF_8)
+				);
+			} finally {
+				in.close();
+				conn.disconnect();
+			}
+		}
+	}
+
 	@Test
 	@Order(1000)
 	void testDocs() throws Exception {
@@ -746,7 +924,8 @@ public class ApiServerTest {
 			HttpResponse<JsonNode> resp = Unirest.put(endpoint).asJson();
 			assertEquals(200, resp.getStatus());
 			assertFalse(resp.getBody().getObject().has("error"));
-			assertEquals(1, resp.getBody().getObject().keySet().size());
+			assertTrue(resp.getBody().getObject().has("modelVersion"));
+			assertEquals(2, resp.getBody().getObject().keySet().size());
 		}
 
 		// Missing/wrong parameters
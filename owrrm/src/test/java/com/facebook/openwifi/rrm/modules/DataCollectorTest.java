@@ -9,18 +9,30 @@
 package com.facebook.openwifi.rrm.modules;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.junit.jupiter.api.Test;
 
+import com.facebook.openwifi.rrm.DeviceDataManager;
+import com.facebook.openwifi.rrm.DeviceTopology;
+import com.facebook.openwifi.rrm.RRMConfig;
+import com.facebook.openwifi.rrm.RRMConfig.ModuleConfig.DataCollectorParams;
 import com.facebook.openwifi.rrm.mysql.StateRecord;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.google.gson.stream.JsonReader;
 
 public class DataCollectorTest {
 	@Test
@@ -56,7 +68,7 @@ public class DataCollectorTest {
 			"\"rx_bytes\":202281,\"rx_dropped\":0,\"rx_errors\":0," +
 			"\"rx_packets\":1123,\"tx_bytes\":352404,\"tx_dropped\":0," +
 			"\"tx_errors\":0,\"tx_packets\":1442},\"iface\":\"wlan0\"," +
-			"\"mode\":\"ap\",\"phy\":\"platform/soc/c000000.wifi\"," +
+			"\"mode\":\"ap\",\"phy\":\"phy0\"," +
 			"\"radio\":{\"$ref\":\"#/radios/0\"},\"ssid\":\"test1\"}," +
 			"{\"bssid\":\"cc:00:00:00:00:01\",\"counters\":{\"collisions\":0," +
 			"\"multicast\":0,\"rx_bytes\":0,\"rx_dropped\":0,\"rx_errors\":0," +
@@ -74,7 +86,7 @@ public class DataCollectorTest {
 			"\"wan\":{\"eth0\":{\"carrier\":1,\"duplex\":\"full\"," +
 			"\"speed\":1000}}},\"radios\":[{\"active_ms\":72987829," +
 			"\"busy_ms\":1881608,\"channel\":52,\"channel_width\":\"80\"," +
-			"\"noise\":-105,\"phy\":\"platform/soc/c000000.wifi\"," +
+			"\"noise\":-105,\"phy\":\"phy0\"," +
 			"\"receive_ms\":28277,\"temperature\":61,\"transmit_ms\":381608," +
 			"\"tx_power\":24},{\"active_ms\":73049815,\"busy_ms\":7237038," +
 			"\"channel\":11,\"channel_width\":\"20\",\"noise\":-101," +
@@ -84,11 +96,14 @@ public class DataCollectorTest {
 			"{\"buffered\":9961472,\"cached\":27217920,\"free\":757035008," +
 			"\"total\":973139968},\"uptime\":73107}},\"uuid\":1648808043}";
 		// @formatter:on
-		JsonObject payload = new Gson().fromJson(payloadJson, JsonObject.class);
+		JsonReader payload = new JsonReader(new StringReader(payloadJson));
+		payload.beginObject();
 
 		// Parse into records
-		List<StateRecord> results = new ArrayList<>();
-		DataCollector.parseStateRecord(serialNumber, payload, results);
+		StateRecordBatch batch = new StateRecordBatch();
+		new StateRecordFlattener(new MetricNameCache(1000))
+			.flatten(serialNumber, payload, batch);
+		List<StateRecord> results = batch.toStateRecords();
 		assertEquals(51, results.size());
 		assertEquals(1649306810L, results.get(0).timestamp);
 		assertEquals(serialNumber, results.get(0).serial);
@@ -134,4 +149,148 @@ public class DataCollectorTest {
 		assertNotNull(record);
 		assertEquals(73107L, record.value);
 	}
+
+	@Test
+	void test_wifiScanMaxInFlightPerZone() throws Exception {
+		DeviceDataManager deviceDataManager = new DeviceDataManager();
+		DeviceTopology topology = new DeviceTopology();
+		Set<String> largeZone = new TreeSet<>();
+		for (int i = 0; i < 50; i++) {
+			largeZone.add(String.format("%012d", i));
+		}
+		topology.put("small", new TreeSet<>(Arrays.asList("aaaaaaaaaaaa")));
+		topology.put("large", largeZone);
+		deviceDataManager.setTopology(topology);
+
+		RRMConfig rrmConfig = new RRMConfig();
+		DataCollectorParams params =
+			rrmConfig.moduleConfig.dataCollectorParams;
+		params.wifiScanIntervalSec = 900;
+		params.wifiScanDurationSec = 45;
+		ConfigManager configManager = new ConfigManager(
+			rrmConfig.moduleConfig.configManagerParams,
+			deviceDataManager,
+			null
+		);
+		DataCollector dataCollector = new DataCollector(
+			params,
+			deviceDataManager,
+			null,
+			null,
+			configManager,
+			null
+		);
+
+		// By default, the limit scales with the zone size: 20 devices can
+		// each scan for 45s within a 900s interval per concurrent scan
+		assertEquals(1, dataCollector.getWifiScanMaxInFlightPerZone("small"));
+		assertEquals(3, dataCollector.getWifiScanMaxInFlightPerZone("large"));
+		assertEquals(1, dataCollector.getWifiScanMaxInFlightPerZone("none"));
+
+		// The total limit still applies
+		params.wifiScanMaxInFlight = 2;
+		assertEquals(2, dataCollector.getWifiScanMaxInFlightPerZone("large"));
+
+		// Explicit limits are used as-is
+		params.wifiScanMaxInFlightPerZone = 5;
+		assertEquals(5, dataCollector.getWifiScanMaxInFlightPerZone("small"));
+	}
+
+	@Test
+	void test_flattenStateRecord() throws Exception {
+		final String serialNumber = "aaaaaaaaaaaa";
+		// Keys are sorted (as sent by devices), so names follow the values.
+		// The second client and SSID have no "bssid" and are skipped.
+		// @formatter:off
+		final String payloadJson =
+			"{\"serial\":\"aaaaaaaaaaaa\",\"state\":{\"interfaces\":[" +
+			"{\"counters\":{\"rx_bytes\":10,\"tx_bytes\":20}," +
+			"\"name\":\"up0v0\",\"ssids\":[{\"associations\":[" +
+			"{\"bssid\":\"aa:00:00:00:00:01\",\"rssi\":-70," +
+			"\"rx_rate\":{\"bitrate\":1000,\"sgi\":false}," +
+			"\"station\":\"cc:00:00:00:00:01\"},{\"rssi\":-80}]," +
+			"\"bssid\":\"bb:00:00:00:00:01\"},{\"associations\":[" +
+			"{\"bssid\":\"aa:00:00:00:00:02\",\"rssi\":-60}]}]}]," +
+			"\"radios\":[{\"channel\":36,\"phy\":\"phy0\"," +
+			"\"tx_power\":\"24\"},{\"noise\":-100.5}]," +
+			"\"unit\":{\"localtime\":1649306810,\"uptime\":73107}}}";
+		// @formatter:on
+		final String clientPrefix =
+			"interface.up0v0.bssid.bb:00:00:00:00:01.client.aa:00:00:00:00:01";
+		final List<String> expected = Arrays.asList(
+			"interface.up0v0.rx_bytes = 10",
+			"interface.up0v0.tx_bytes = 20",
+			clientPrefix + ".rssi = -70",
+			clientPrefix + ".rx_rate.bitrate = 1000",
+			clientPrefix + ".rx_rate.sgi = 0",
+			"radio.0.channel = 36",
+			"radio.0.tx_power = 24",
+			"radio.1.noise = -100",
+			"unit.uptime = 73107"
+		);
+
+		MetricNameCache cache = new MetricNameCache(1000);
+		StateRecordFlattener flattener = new StateRecordFlattener(cache);
+		StateRecordBatch batch = new StateRecordBatch(4);
+		flattener.flatten(serialNumber, newReader(payloadJson), batch);
+		assertEquals(expected, toStrings(batch, serialNumber));
+
+		// Metric names are shared across records
+		int cacheSize = cache.size();
+		String metric = batch.getMetric(0);
+		batch.clear();
+		assertEquals(0, batch.size());
+		flattener.flatten(serialNumber, newReader(payloadJson), batch);
+		assertEquals(expected, toStrings(batch, serialNumber));
+		assertEquals(cacheSize, cache.size());
+		assertSame(metric, batch.getMetric(0));
+
+		// Nothing is appended for incomplete records
+		batch.clear();
+		JsonReader noUnit = newReader(
+			"{\"state\":{\"interfaces\":[{\"counters\":" +
+				"{\"rx_bytes\":1},\"name\":\"up0v0\"}]}}"
+		);
+		assertThrows(
+			IllegalStateException.class,
+			() -> flattener.flatten(serialNumber, noUnit, batch)
+		);
+		assertEquals(0, batch.size());
+		flattener.flatten(serialNumber, newReader(payloadJson), batch);
+		assertEquals(expected, toStrings(batch, serialNumber));
+
+		// The cache is cleared once full, but results are unchanged
+		MetricNameCache smallCache = new MetricNameCache(10);
+		assertFalse(smallCache.clearIfFull());
+		batch.clear();
+		new StateRecordFlattener(smallCache)
+			.flatten(serialNumber, newReader(payloadJson), batch);
+		assertTrue(smallCache.clearIfFull());
+		assertEquals(0, smallCache.size());
+		assertEquals(expected, toStrings(batch, serialNumber));
+	}
+
+	/** Return a reader positioned inside the given payload object. */
+	private static JsonReader newReader(String payloadJson) throws Exception {
+		JsonReader reader = new JsonReader(new StringReader(payloadJson));
+		reader.beginObject();
+		return reader;
+	}
+
+	/**
+	 * Convert flattened rows to "metric = value" strings, checking that all
+	 * rows have the expected serial number and timestamp.
+	 */
+	private static List<String> toStrings(
+		StateRecordBatch batch,
+		String serialNumber
+	) {
+		List<String> results = new ArrayList<>();
+		for (StateRecord record : batch.toStateRecords()) {
+			assertEquals(serialNumber, record.serial);
+			assertEquals(1649306810L, record.timestamp);
+			results.add(String.format("%s = %d", record.metric, record.value));
+		}
+		return results;
+	}
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class HashedTimingWheelTest {
+	@Test
+	void test_scheduleAndAdvance() throws Exception {
+		HashedTimingWheel<String> wheel = new HashedTimingWheel<>(4, 0);
+		wheel.schedule("a", 1);
+		wheel.schedule("b", 3);
+		wheel.schedule("c", 5); // same slot as "a", next rotation
+		wheel.schedule("d", 0); // already passed, due on next tick
+		assertEquals(4, wheel.size());
+		assertEquals(1, wheel.getDeadline("d"));
+
+		assertEquals(Arrays.asList("a", "d"), wheel.advance(1));
+		assertEquals(Collections.emptyList(), wheel.advance(1));
+		assertEquals(Collections.emptyList(), wheel.advance(2));
+		assertEquals(Arrays.asList("b"), wheel.advance(3));
+		assertEquals(Collections.emptyList(), wheel.advance(4));
+		assertEquals(Arrays.asList("c"), wheel.advance(5));
+		assertEquals(0, wheel.size());
+		assertEquals(5, wheel.getCurrentTick());
+	}
+
+	@Test
+	void test_rescheduleAndCancel() throws Exception {
+		HashedTimingWheel<String> wheel = new HashedTimingWheel<>(8, 100);
+		wheel.schedule("a", 102);
+		wheel.schedule("b", 102);
+
+		// Rescheduling replaces the previous deadline
+		wheel.schedule("a", 104);
+		assertEquals(2, wheel.size());
+		assertEquals(104, wheel.getDeadline("a"));
+
+		// Cancel
+		assertTrue(wheel.cancel("b"));
+		assertFalse(wheel.cancel("b"));
+		assertFalse(wheel.contains("b"));
+		assertNull(wheel.getDeadline("b"));
+		assertEquals(Collections.emptyList(), wheel.advance(103));
+		assertEquals(Arrays.asList("a"), wheel.advance(104));
+	}
+
+	@Test
+	void test_longPause() throws Exception {
+		// Advancing past several rotations returns every overdue key once
+		HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>(16, 0);
+		Random random = new Random(0);
+		Map<Integer, Long> deadlines = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			long deadline = 1 + random.nextInt(200);
+			wheel.schedule(i, deadline);
+			deadlines.put(i, deadline);
+		}
+		List<Integer> due = new ArrayList<>(wheel.advance(100));
+		for (int i : due) {
+			assertTrue(deadlines.get(i) <= 100);
+		}
+		assertEquals(
+			deadlines.values().stream().filter(t -> t <= 100).count(),
+			due.size()
+		);
+		due.addAll(wheel.advance(1000));
+		Collections.sort(due);
+		assertEquals(1000, due.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, due.get(i));
+		}
+		assertEquals(0, wheel.size());
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import com.facebook.openwifi.cloudsdk.AggregatedState;
+import com.facebook.openwifi.cloudsdk.UCentralClient;
+import com.facebook.openwifi.cloudsdk.UCentralConstants;
+import com.facebook.openwifi.cloudsdk.UCentralUtils;
+import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaConsumer;
+import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaConsumer.KafkaRecord;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.facebook.openwifi.rrm.DeviceDataManager;
+import com.facebook.openwifi.rrm.DeviceTopology;
+import com.facebook.openwifi.rrm.RRMConfig;
+import com.facebook.openwifi.rrm.RRMConfig.ModuleConfig.ModelerParams;
+import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.Modeler.IngestShardStats;
+import com.facebook.openwifi.rrm.modules.Modeler.InputDataType;
+import com.facebook.openwifi.rrm.modules.Modeler.ModelerStats;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.facebook.openwifi.rrm.optimizers.TestUtils;
+import com.facebook.openwifi.rrm.optimizers.tpc.MeasurementBasedApApTPC;
+import com.facebook.openwifi.rrm.store.DataStore;
+import com.facebook.openwifi.rrm.store.SegmentFileStore;
+
+public class ModelerTest {
+	/** Test zone name. */
+	private static final String TEST_ZONE = "test-zone";
+
+	/** Test device data manager. */
+	private DeviceDataManager deviceDataManager;
+
+	/** Test modeler (without a data store). */
+	private Modeler modeler;
+
+	@BeforeEach
+	void setup(TestInfo testInfo) {
+		this.deviceDataManager = new DeviceDataManager();
+		this.modeler = createModeler(null);
+	}
+
+	/** Create a modeler using the given data store (or none if null). */
+	private Modeler createModeler(DataStore dataStore) {
+		return createModeler(new RRMConfig(), dataStore);
+	}
+
+	/**
+	 * Create a modeler using the given config and data store (or none if
+	 * null).
+	 */
+	private Modeler createModeler(RRMConfig rrmConfig, DataStore dataStore) {
+		// Create clients (null for now)
+		UCentralClient client = null;
+		UCentralKafkaConsumer consumer = null;
+
+		// Instantiate dependent instances
+		ConfigManager configManager = new ConfigManager(
+			rrmConfig.moduleConfig.configManagerParams,
+			deviceDataManager,
+			client
+		);
+		DataCollector dataCollector = new DataCollector(
+			rrmConfig.moduleConfig.dataCollectorParams,
+			deviceDataManager,
+			client,
+			consumer,
+			configManager,
+			null
+		);
+
+		// Instantiate Modeler
+		return new Modeler(
+			rrmConfig.moduleConfig.modelerParams,
+			deviceDataManager,
+			consumer,
+			client,
+			dataCollector,
+			configManager,
+			dataStore
+		);
+	}
+
+	@Test
+	void test_getAggregatedStates() throws Exception {
+		final String device = "aaaaaaaaaaaa";
+		final String bssid = "bb:bb:bb:bb:bb:bb";
+		final String station = "stationA";
+		final String key = ModelerUtils.getBssidStationKeyPair(bssid, station);
+
+		DeviceTopology topology = new DeviceTopology();
+		topology.put(TEST_ZONE, new TreeSet<>(Arrays.asList(device)));
+		deviceDataManager.setTopology(topology);
+
+		// Device states carry "unit.localtime" in seconds
+		long now = System.currentTimeMillis() / 1000;
+		State oldState = TestUtils.createState(
+			6,
+			20,
+			20,
+			bssid,
+			new String[] { station },
+			new int[] { -80 },
+			now - 7200
+		);
+		State recentState = TestUtils.createState(
+			6,
+			20,
+			20,
+			bssid,
+			new String[] { station },
+			new int[] { -60 },
+			now - 60
+		);
+		modeler.dataModel.latestStates
+			.put(device, RingBuffer.of(oldState, recentState));
+
+		// Only the state within the last hour is aggregated
+		Map<String, Map<String, List<AggregatedState>>> aggregatedStates =
+			modeler.getAggregatedStates(TEST_ZONE, 3600000);
+		assertEquals(1, aggregatedStates.size());
+		List<AggregatedState> stationStates =
+			aggregatedStates.get(device).get(key);
+		assertEquals(1, stationStates.size());
+		assertEquals(Arrays.asList(-60), stationStates.get(0).rssi);
+
+		// Nothing is aggregated for other zones
+		assertTrue(
+			modeler.getAggregatedStates("other-zone", 3600000).isEmpty()
+		);
+	}
+
+	@Test
+	void test_ingestBackpressure() throws Exception {
+		RRMConfig rrmConfig = new RRMConfig();
+		ModelerParams params = rrmConfig.moduleConfig.modelerParams;
+		params.ingestShardCount = 2;
+		params.ingestQueueCapacity = 100;
+		params.ingestQueueHighWatermark = 50;
+		params.ingestQueueLowWatermark = 10;
+		Modeler modeler = createModeler(rrmConfig, null);
+
+		// Find a device on each shard
+		String[] devices = new String[2];
+		for (int i = 0; devices[0] == null || devices[1] == null; i++) {
+			String serialNumber = String.format("%012x", i);
+			devices[modeler.getShardIndex(serialNumber)] = serialNumber;
+		}
+
+		// Below the high watermark, consumption continues
+		enqueueStateRecords(modeler, devices[0], 4, 10);
+		enqueueStateRecords(modeler, devices[1], 1, 10);
+		assertFalse(modeler.isIngestSaturated());
+
+		// A single shard reaching the high watermark pauses consumption
+		enqueueStateRecords(modeler, devices[0], 1, 10);
+		assertTrue(modeler.isIngestSaturated());
+		ModelerStats stats = modeler.getStats();
+		assertTrue(stats.ingestPaused);
+		assertEquals(1, stats.ingestPauseCount);
+
+		// Consumption stays paused until all shards drain to the low watermark
+		assertEquals(1, modeler.processQueuedBatches(1, 10));
+		assertEquals(3, modeler.processQueuedBatches(0, 3));
+		assertEquals(20, modeler.getStats().ingestShards.get(0).queuedRecords);
+		assertTrue(modeler.isIngestSaturated());
+		assertEquals(1, modeler.processQueuedBatches(0, 1));
+		assertFalse(modeler.isIngestSaturated());
+		assertFalse(modeler.getStats().ingestPaused);
+
+		// ...and is not paused again until reaching the high watermark
+		enqueueStateRecords(modeler, devices[0], 3, 10);
+		assertFalse(modeler.isIngestSaturated());
+		enqueueStateRecords(modeler, devices[0], 1, 10);
+		assertTrue(modeler.isIngestSaturated());
+		assertEquals(2, modeler.getStats().ingestPauseCount);
+
+		// Records which would exceed a shard's capacity are dropped
+		enqueueStateRecords(modeler, devices[0], 6, 10);
+		IngestShardStats shardStats = modeler.getStats().ingestShards.get(0);
+		assertEquals(100, shardStats.queuedRecords);
+		assertEquals(10, shardStats.droppedRecordCount);
+	}
+
+	/**
+	 * Enqueue the given number of batches of (empty) state records for the
+	 * given device.
+	 */
+	private static void enqueueStateRecords(
+		Modeler modeler,
+		String serialNumber,
+		int batchCount,
+		int batchSize
+	) {
+		for (int i = 0; i < batchCount; i++) {
+			List<KafkaRecord> records = new ArrayList<>();
+			for (int j = 0; j < batchSize; j++) {
+				records.add(
+					new KafkaRecord(serialNumber, 0, null, null, "{}")
+				);
+			}
+			modeler.enqueueRecords(InputDataType.STATE, records);
+		}
+	}
+
+	@Test
+	void test_backfillFromDatabase() throws Exception {
+		final String deviceA = "aaaaaaaaaaaa";
+		final String deviceB = "bbbbbbbbbbbb";
+		final String bssidA = "aa:aa:aa:aa:aa:aa";
+		final String bssidB = "bb:bb:bb:bb:bb:bb";
+		final String band = UCentralConstants.BAND_5G;
+		final int channel = UCentralUtils.getLowerChannelLimit(band);
+		final int txPower = 20;
+
+		deviceDataManager.setTopology(
+			TestUtils.createTopology(TEST_ZONE, deviceA, deviceB)
+		);
+
+		Path dir = Files.createTempDirectory("rrm-modeler");
+		SegmentFileStore store =
+			new SegmentFileStore(dir, 3600000, 1 << 20, 0);
+		try {
+			store.init();
+
+			// Store a state and a wifi scan for each device
+			long now = System.currentTimeMillis() / 1000;
+			String[] devices = { deviceA, deviceB };
+			String[] bssids = { bssidA, bssidB };
+			for (int i = 0; i < devices.length; i++) {
+				StateRecordBatch batch = new StateRecordBatch();
+				batch.add(now, "radio.0.channel", channel, devices[i]);
+				batch.add(now, "radio.0.tx_power", txPower, devices[i]);
+				store.addStateRecords(batch);
+				store.addWifiScan(
+					devices[i],
+					now,
+					Arrays.asList(
+						TestUtils.createWifiScanEntryWithBssid(
+							bssids[1 - i],
+							-70,
+							channel
+						)
+					)
+				);
+			}
+
+			// Only wifi scans are backfilled (states come from uCentralGw)
+			Modeler backfilledModeler = createModeler(store);
+			backfilledModeler.backfillFromDatabase();
+			DataModel dataModel = backfilledModeler.dataModel;
+			assertTrue(dataModel.latestStates.isEmpty());
+			assertEquals(1, dataModel.latestWifiScans.get(deviceA).size());
+			assertEquals(1, dataModel.latestWifiScans.get(deviceB).size());
+
+			// Add device states as fetched from uCentralGw
+			for (int i = 0; i < devices.length; i++) {
+				dataModel.latestStates.put(
+					devices[i],
+					RingBuffer.of(
+						TestUtils.createState(channel, 20, txPower, bssids[i])
+					)
+				);
+				dataModel.latestDeviceStatusRadios.put(
+					devices[i],
+					TestUtils.createDeviceStatusSingleBand(channel, txPower)
+				);
+				dataModel.latestDeviceCapabilitiesPhy.put(
+					devices[i],
+					TestUtils.createDeviceCapabilityPhy(band)
+				);
+			}
+
+			// Optimizers can run on the backfilled model
+			MeasurementBasedApApTPC optimizer = new MeasurementBasedApApTPC(
+				backfilledModeler.getDataModelSnapshot(TEST_ZONE),
+				TEST_ZONE,
+				deviceDataManager,
+				-80,
+				0
+			);
+			Map<String, Map<String, Integer>> txPowerMap =
+				optimizer.computeTxPowerMap();
+			assertEquals(2, txPowerMap.size());
+			assertNotNull(txPowerMap.get(deviceA).get(band));
+			assertNotNull(txPowerMap.get(deviceB).get(band));
+		} finally {
+			store.close();
+			for (File f : dir.toFile().listFiles()) {
+				f.delete();
+			}
+			dir.toFile().delete();
+		}
+	}
+}
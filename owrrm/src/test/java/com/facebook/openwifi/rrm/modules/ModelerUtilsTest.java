@@ -16,7 +16,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -118,8 +118,8 @@ public class ModelerUtilsTest {
 		long refTimeMs = TestUtils.DEFAULT_WIFISCANENTRY_TIME.toEpochMilli();
 
 		// if there are no scan entries, there should be no aggregates
-		dataModel.latestWifiScans.put(apB, new LinkedList<>());
-		dataModel.latestWifiScans.put(apC, new LinkedList<>());
+		dataModel.latestWifiScans.put(apB, new RingBuffer<>(10));
+		dataModel.latestWifiScans.put(apC, new RingBuffer<>(10));
 		dataModel.latestWifiScans.get(apC).add(new ArrayList<>());
 		assertTrue(
 			ModelerUtils.getAggregatedWifiScans(
@@ -271,7 +271,7 @@ public class ModelerUtilsTest {
 		refTimeMs = entryCToA1.unixTimeMs;
 		dataModel.latestWifiScans.get(apB)
 			.add(Arrays.asList(entryCToB2, entryAToB4));
-		dataModel.latestWifiScans.put(apA, new LinkedList<>());
+		dataModel.latestWifiScans.put(apA, new RingBuffer<>(10));
 		dataModel.latestWifiScans.get(apA)
 			.add(Arrays.asList(entryBToA1, entryCToA1));
 		aggregateMap = ModelerUtils.getAggregatedWifiScans(
@@ -363,7 +363,7 @@ public class ModelerUtilsTest {
 		WifiScanEntry entryAToB1 = TestUtils
 			.createWifiScanEntryWithWidth(bssidA, primaryChannel, htOper, null);
 		entryAToB1.signal = -60;
-		dataModel.latestWifiScans.put(apB, new LinkedList<>());
+		dataModel.latestWifiScans.put(apB, new RingBuffer<>(10));
 		dataModel.latestWifiScans.get(apB).add(Arrays.asList(entryAToB1));
 		Map<String, Map<String, WifiScanEntry>> aggregateMap =
 			ModelerUtils.getAggregatedWifiScans(
@@ -683,7 +683,7 @@ public class ModelerUtilsTest {
 		final String stationB = "stationB";
 		final String stationC = "stationC";
 
-		final long refTimeMs = TestUtils.DEFAULT_LOCAL_TIME;
+		final long refTimeMs = TestUtils.DEFAULT_LOCAL_TIME * 1000;
 
 		DataModel dataModel = new DataModel();
 
@@ -734,19 +734,13 @@ public class ModelerUtilsTest {
 			bssidA,
 			new String[] { stationA1, stationA2 },
 			new int[] { 180, 180 },
-			// Set the localtime exactly obsolete
-			TestUtils.DEFAULT_LOCAL_TIME - obsoletionPeriodMs - 1
+			// Set the localtime (in seconds) just obsolete
+			TestUtils.DEFAULT_LOCAL_TIME - obsoletionPeriodMs / 1000 - 1
 		);
 
 		dataModel.latestStates.put(
 			serialNumberA,
-			new ArrayList<>(
-				Arrays.asList(
-					time1StateA,
-					time2StateA,
-					time3StateA
-				)
-			)
+			RingBuffer.of(time1StateA, time2StateA, time3StateA)
 		);
 
 		Map<String, Map<String, List<AggregatedState>>> aggregatedMap =
@@ -809,7 +803,7 @@ public class ModelerUtilsTest {
 			TestUtils.DEFAULT_LOCAL_TIME
 		);
 		dataModel.latestStates
-			.computeIfAbsent(serialNumberB, k -> new ArrayList<>())
+			.computeIfAbsent(serialNumberB, k -> new RingBuffer<>(10))
 			.add(time1StateB);
 
 		State time1StateC = TestUtils.createState(
@@ -822,7 +816,7 @@ public class ModelerUtilsTest {
 			TestUtils.DEFAULT_LOCAL_TIME
 		);
 		dataModel.latestStates
-			.computeIfAbsent(serialNumberC, k -> new ArrayList<>())
+			.computeIfAbsent(serialNumberC, k -> new RingBuffer<>(10))
 			.add(time1StateC);
 
 		Map<String, Map<String, List<AggregatedState>>> aggregatedMap2 =
@@ -842,4 +836,28 @@ public class ModelerUtilsTest {
 			aggregatedMap.get(serialNumberA).get(ModelerUtils.getBssidStationKeyPair(bssidA, stationA1)).size()
 		);
 	}
+
+	@Test
+	void testRestrictDataModel() {
+		final String serialNumberA = "aaaaaaaaaaaa";
+		final String serialNumberB = "bbbbbbbbbbbb";
+		DataModel dataModel = new DataModel();
+		dataModel.version = 5;
+		dataModel.latestStates.put(serialNumberA, new RingBuffer<>(10));
+		dataModel.latestStates.put(serialNumberB, new RingBuffer<>(10));
+		dataModel.latestWifiScans.put(serialNumberB, new RingBuffer<>(10));
+
+		DataModel restricted = ModelerUtils.restrictDataModel(
+			dataModel,
+			new HashSet<>(Arrays.asList(serialNumberA))
+		);
+		assertEquals(5, restricted.version);
+		assertEquals(1, restricted.latestStates.size());
+		assertTrue(restricted.latestStates.containsKey(serialNumberA));
+		assertTrue(restricted.latestWifiScans.isEmpty());
+
+		// The input model is not modified
+		assertEquals(2, dataModel.latestStates.size());
+		assertEquals(1, dataModel.latestWifiScans.size());
+	}
 }
@@ -58,7 +58,8 @@ public class ProvMonitorTest {
 			consumer,
 			client,
 			dataCollector,
-			configManager
+			configManager,
+			dbManager
 		);
 
 		// Instantiate ProvMonitor
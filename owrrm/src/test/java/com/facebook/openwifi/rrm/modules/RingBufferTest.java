@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+public class RingBufferTest {
+	@Test
+	void test_appendAndEvict() throws Exception {
+		RingBuffer<Integer> buf = new RingBuffer<>(3);
+		assertTrue(buf.isEmpty());
+		assertEquals(0, buf.size());
+		assertNull(buf.latest());
+		assertTrue(buf.snapshot().isEmpty());
+
+		buf.add(1);
+		buf.add(2);
+		assertEquals(2, buf.size());
+		assertEquals(2, buf.latest());
+		assertEquals(Arrays.asList(1, 2), buf.snapshot());
+
+		// Oldest elements are evicted once full
+		buf.add(3);
+		buf.add(4);
+		buf.add(5);
+		assertEquals(3, buf.size());
+		assertEquals(3, buf.capacity());
+		assertEquals(5, buf.latest());
+		assertEquals(Arrays.asList(3, 4, 5), buf.snapshot());
+		assertEquals(3, buf.get(0));
+		assertEquals(5, buf.get(2));
+		assertThrows(IndexOutOfBoundsException.class, () -> buf.get(3));
+	}
+
+	@Test
+	void test_latestN() throws Exception {
+		RingBuffer<Integer> buf =
+			RingBuffer.copyOf(Arrays.asList(1, 2, 3, 4), 3);
+		assertEquals(Arrays.asList(2, 3, 4), buf.snapshot());
+		assertEquals(Arrays.asList(3, 4), buf.latest(2));
+		assertEquals(Arrays.asList(2, 3, 4), buf.latest(10));
+		assertTrue(buf.latest(0).isEmpty());
+
+		// Snapshots are immutable and unaffected by later appends
+		List<Integer> snapshot = buf.snapshot();
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.add(0));
+		buf.add(5);
+		assertEquals(Arrays.asList(2, 3, 4), snapshot);
+		assertEquals(Arrays.asList(3, 4, 5), buf.snapshot());
+	}
+
+	@Test
+	void test_readOnlyCopy() throws Exception {
+		RingBuffer<Integer> buf = RingBuffer.copyOf(Arrays.asList(1, 2, 3), 3);
+		RingBuffer<Integer> copy = buf.readOnlyCopy();
+		assertTrue(copy.isReadOnly());
+		assertEquals(3, copy.capacity());
+		assertEquals(Arrays.asList(1, 2, 3), copy.snapshot());
+		assertThrows(UnsupportedOperationException.class, () -> copy.add(4));
+
+		// Copies are unaffected by later appends to the original buffer
+		buf.add(4);
+		assertEquals(Arrays.asList(1, 2, 3), copy.snapshot());
+		assertEquals(3, copy.latest());
+	}
+
+	@Test
+	void test_readOnlyCopyAtPosition() throws Exception {
+		RingBuffer<Integer> buf = RingBuffer.copyOf(Arrays.asList(1, 2, 3), 3);
+		long position = buf.position();
+		assertEquals(3, position);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> buf.readOnlyCopy(position + 1)
+		);
+
+		// Later appends are excluded from copies at an earlier position, and
+		// elements which may have been overwritten since are omitted
+		buf.add(4);
+		RingBuffer<Integer> copy = buf.readOnlyCopy(position);
+		assertTrue(copy.isReadOnly());
+		assertEquals(3, copy.capacity());
+		assertEquals(Arrays.asList(2, 3), copy.snapshot());
+		buf.add(5);
+		assertEquals(Arrays.asList(3), buf.readOnlyCopy(position).snapshot());
+		for (int i = 6; i < 10; i++) {
+			buf.add(i);
+		}
+		assertTrue(buf.readOnlyCopy(position).isEmpty());
+		assertEquals(
+			Arrays.asList(7, 8, 9),
+			buf.readOnlyCopy(buf.position()).snapshot()
+		);
+	}
+
+	@Test
+	void test_concurrentReaders() throws Exception {
+		final int capacity = 8;
+		final long count = 200000;
+		RingBuffer<Long> buf = new RingBuffer<>(capacity);
+		Thread writer = new Thread(() -> {
+			for (long i = 0; i < count; i++) {
+				buf.add(i);
+			}
+		});
+		writer.start();
+
+		// Every snapshot must be a contiguous run of appended values
+		while (writer.isAlive()) {
+			List<Long> snapshot = buf.snapshot();
+			assertTrue(snapshot.size() <= capacity);
+			for (int i = 1; i < snapshot.size(); i++) {
+				assertEquals(snapshot.get(i - 1) + 1, snapshot.get(i));
+			}
+		}
+		writer.join();
+		assertEquals(count - 1, buf.latest());
+		assertEquals(capacity, buf.snapshot().size());
+	}
+
+	@Test
+	void test_gson() throws Exception {
+		Gson gson = new Gson();
+		RingBuffer<List<Integer>> buf = new RingBuffer<>(2);
+		buf.add(Arrays.asList(1, 2));
+		buf.add(Arrays.asList(3));
+		buf.add(Arrays.asList(4, 5, 6));
+		String json = gson.toJson(Map.of("a", buf));
+		assertEquals("{\"a\":[[3],[4,5,6]]}", json);
+
+		Type type =
+			new TypeToken<Map<String, RingBuffer<List<Integer>>>>() {}.getType();
+		Map<String, RingBuffer<List<Integer>>> parsed =
+			gson.fromJson(json, type);
+		assertEquals(buf.snapshot(), parsed.get("a").snapshot());
+	}
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.facebook.openwifi.cloudsdk.kafka.KafkaRecordDecoder;
+import com.facebook.openwifi.cloudsdk.kafka.UCentralKafkaConsumer.KafkaRecord;
+import com.facebook.openwifi.rrm.mysql.StateRecord;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Compares the cost of flattening a state record value into database rows
+ * between the previous approach (parsing a JSON tree, formatting every metric
+ * name, and allocating a {@link StateRecord} per row) and
+ * {@link StateRecordFlattener} (streaming, with cached metric names and a
+ * reusable {@link StateRecordBatch}).
+ *
+ * Each benchmark operation flattens one state record, so the throughput is in
+ * records per second, and the GC profiler's "gc.alloc.rate.norm" metric is the
+ * number of bytes allocated per record. Parsing the record value is included.
+ * The "decodeAndFlatten" benchmark also includes the consumer's decoding step
+ * ({@link KafkaRecordDecoder#decodeStateRecord}), i.e. the total cost of a
+ * state record before it is written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StateRecordFlattenBenchmark {
+	/** Interface counter keys. */
+	private static final String[] COUNTER_KEYS = new String[] {
+		"collisions",
+		"multicast",
+		"rx_bytes",
+		"rx_packets",
+		"rx_errors",
+		"rx_dropped",
+		"tx_bytes",
+		"tx_packets",
+		"tx_errors",
+		"tx_dropped"
+	};
+
+	/** The device serial number. */
+	private static final String SERIAL_NUMBER = "aaaaaaaaaaaa";
+
+	/** The number of associated clients per record. */
+	@Param({ "1", "30" })
+	public int clientCount;
+
+	/** The state record value. */
+	private String value;
+
+	/** The metric name cache (shared across operations, as in production). */
+	private MetricNameCache cache;
+
+	/** The streaming flattener. */
+	private StateRecordFlattener flattener;
+
+	/** The reusable batch. */
+	private StateRecordBatch batch;
+
+	@Setup
+	public void setup() {
+		JsonArray associations = new JsonArray();
+		for (int i = 0; i < clientCount; i++) {
+			String mac = String.format("aa:00:00:00:00:%02x", i);
+			JsonObject rate = new JsonObject();
+			rate.addProperty("bitrate", 263300);
+			rate.addProperty("chwidth", 80);
+			rate.addProperty("mcs", 6);
+			rate.addProperty("nss", 2);
+			rate.addProperty("vht", true);
+			JsonObject association = new JsonObject();
+			association.addProperty("bssid", mac);
+			association.addProperty("station", mac);
+			association.addProperty("connected", 2061);
+			association.addProperty("inactive", 0);
+			association.addProperty("rssi", -73);
+			association.addProperty("rx_bytes", 225426);
+			association.addProperty("rx_packets", 1119);
+			association.add("rx_rate", rate);
+			association.addProperty("tx_bytes", 341611);
+			association.addProperty("tx_duration", 3243);
+			association.addProperty("tx_failed", 0);
+			association.addProperty("tx_offset", 0);
+			association.addProperty("tx_packets", 1304);
+			association.add("tx_rate", rate);
+			association.addProperty("tx_retries", 0);
+			associations.add(association);
+		}
+
+		JsonObject counters = new JsonObject();
+		for (String s : COUNTER_KEYS) {
+			counters.addProperty(s, 12345);
+		}
+		JsonObject ssid = new JsonObject();
+		ssid.addProperty("bssid", "bb:00:00:00:00:01");
+		ssid.addProperty("ssid", "test");
+		ssid.add("counters", counters);
+		ssid.add("associations", associations);
+		JsonArray ssids = new JsonArray();
+		ssids.add(ssid);
+		JsonObject iface = new JsonObject();
+		iface.addProperty("name", "up0v0");
+		iface.add("counters", counters);
+		iface.add("ssids", ssids);
+		JsonArray interfaces = new JsonArray();
+		interfaces.add(iface);
+		JsonArray radios = new JsonArray();
+		for (int i = 0; i < 2; i++) {
+			JsonObject radio = new JsonObject();
+			radio.addProperty("channel", 36);
+			radio.addProperty("channel_width", "80");
+			radio.addProperty("noise", -105);
+			radio.addProperty("tx_power", 24);
+			radios.add(radio);
+		}
+		JsonObject unit = new JsonObject();
+		unit.addProperty("localtime", 1649306810L);
+		unit.addProperty("uptime", 73107L);
+		JsonObject state = new JsonObject();
+		state.add("interfaces", interfaces);
+		state.add("radios", radios);
+		state.add("unit", unit);
+		JsonObject payload = new JsonObject();
+		payload.addProperty("serial", SERIAL_NUMBER);
+		payload.add("state", state);
+		JsonObject record = new JsonObject();
+		record.addProperty("system", "DeviceState");
+		record.add("payload", payload);
+		value = record.toString();
+
+		cache = new MetricNameCache(200000);
+		flattener = new StateRecordFlattener(cache);
+		batch = new StateRecordBatch();
+	}
+
+	/** Previous path: JSON tree, formatted metric names, and row objects. */
+	@Benchmark
+	public void parse(Blackhole bh) {
+		JsonObject payload = JsonParser.parseString(value)
+			.getAsJsonObject()
+			.getAsJsonObject("payload");
+		List<StateRecord> results = new ArrayList<>();
+		parseStateRecord(SERIAL_NUMBER, payload, results);
+		bh.consume(results);
+	}
+
+	/** Streaming, with cached metric names into a reusable batch. */
+	@Benchmark
+	public void flatten(Blackhole bh) throws IOException {
+		batch.clear();
+		KafkaRecord record =
+			new KafkaRecord(SERIAL_NUMBER, 0, null, null, value);
+		try (JsonReader payload = record.newPayloadReader()) {
+			flattener.flatten(SERIAL_NUMBER, payload, batch);
+		}
+		bh.consume(batch.size());
+	}
+
+	/** Consumer decoding followed by streaming flattening. */
+	@Benchmark
+	public void decodeAndFlatten(Blackhole bh) throws IOException {
+		batch.clear();
+		KafkaRecord record =
+			KafkaRecordDecoder.decodeStateRecord(SERIAL_NUMBER, value, 0);
+		try (JsonReader payload = record.newPayloadReader()) {
+			flattener.flatten(SERIAL_NUMBER, payload, batch);
+		}
+		bh.consume(record.state);
+		bh.consume(batch.size());
+	}
+
+	/**
+	 * Parse a single state record into individual metrics, as DataCollector
+	 * did before {@link StateRecordFlattener}. This builds every metric name
+	 * and record separately.
+	 */
+	private static void parseStateRecord(
+		String serialNumber,
+		JsonObject payload,
+		List<StateRecord> results
+	) {
+		JsonObject state = payload.getAsJsonObject("state");
+		JsonArray interfaces = state.getAsJsonArray("interfaces");
+		JsonArray radios = state.getAsJsonArray("radios");
+		JsonObject unit = state.getAsJsonObject("unit");
+		long localtime = unit.get("localtime").getAsLong();
+
+		// "interfaces"
+		// - store all entries from "counters" as
+		//   "interface.<interface_name>.<counter_name>"
+		// - store all entries from "ssids.<N>.associations.<M>" as
+		//   "interface.<interface_name>.bssid.<bssid>.client.<bssid>.<counter_name>"
+		for (JsonElement o1 : interfaces) {
+			JsonObject iface = o1.getAsJsonObject();
+			String ifname = iface.get("name").getAsString();
+
+			JsonObject counters = iface.getAsJsonObject("counters");
+			if (counters != null) {
+				for (
+					Map.Entry<String, JsonElement> entry : counters.entrySet()
+				) {
+					String metric = String.format(
+						"interface.%s.%s",
+						ifname,
+						entry.getKey()
+					);
+					long value = entry.getValue().getAsLong();
+					results.add(
+						new StateRecord(
+							localtime,
+							metric,
+							value,
+							serialNumber
+						)
+					);
+				}
+			}
+			JsonArray ssids = iface.getAsJsonArray("ssids");
+			if (ssids != null) {
+				for (JsonElement o2 : ssids) {
+					JsonObject ssid = o2.getAsJsonObject();
+					if (!ssid.has("bssid")) {
+						continue;
+					}
+					String bssid = ssid.get("bssid").getAsString();
+					JsonArray associations =
+						ssid.getAsJsonArray("associations");
+					if (associations != null) {
+						for (JsonElement o3 : associations) {
+							JsonObject client = o3.getAsJsonObject();
+							if (!client.has("bssid")) {
+								continue;
+							}
+							String clientBssid =
+								client.get("bssid").getAsString();
+							for (String s : DataCollector.CLIENT_KEYS) {
+								if (
+									!client.has(s) ||
+										!client.get(s).isJsonPrimitive()
+								) {
+									continue;
+								}
+								String metric = String.format(
+									"interface.%s.bssid.%s.client.%s.%s",
+									ifname,
+									bssid,
+									clientBssid,
+									s
+								);
+								long value = client.get(s).getAsLong();
+								results.add(
+									new StateRecord(
+										localtime,
+										metric,
+										value,
+										serialNumber
+									)
+								);
+							}
+							for (String s : DataCollector.CLIENT_RATE_KEYS) {
+								if (
+									!client.has(s) ||
+										!client.get(s).isJsonObject()
+								) {
+									continue;
+								}
+								String metricBase = String.format(
+									"interface.%s.bssid.%s.client.%s.%s",
+									ifname,
+									bssid,
+									clientBssid,
+									s
+								);
+								for (
+									Map.Entry<String, JsonElement> entry : client
+										.getAsJsonObject(s)
+										.entrySet()
+								) {
+									String metric = String.format(
+										"%s.%s",
+										metricBase,
+										entry.getKey()
+									);
+									long value;
+									if (
+										entry.getValue()
+											.getAsJsonPrimitive()
+											.isBoolean()
+									) {
+										value = entry.getValue().getAsBoolean()
+											? 1 : 0;
+									} else {
+										value = entry.getValue().getAsLong();
+									}
+									results.add(
+										new StateRecord(
+											localtime,
+											metric,
+											value,
+											serialNumber
+										)
+									);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// "radios"
+		// - store "channel", "channel_width", "noise", "tx_power" as
+		//   "radio.<N>.<counter_name>"
+		if (radios != null) {
+			for (int i = 0; i < radios.size(); i++) {
+				JsonObject o = radios.get(i).getAsJsonObject();
+				for (String s : DataCollector.RADIO_KEYS) {
+					if (!o.has(s) || !o.get(s).isJsonPrimitive()) {
+						continue;
+					}
+					String metric = String.format("radio.%d.%s", i, s);
+					long value = o.get(s).getAsLong();
+					results.add(
+						new StateRecord(localtime, metric, value, serialNumber)
+					);
+				}
+			}
+		}
+
+		// "unit"
+		// - store "uptime" as "unit.<counter_name>"
+		// - "load.0", "load.1", "load.2" => unclear what is going on
+		//   with these values, leaving them out for now
+		/*
+		JsonArray loadArray = unit.getAsJsonArray("load");
+		for (int i = 0; i < loadArray.size(); i++) {
+			String metric = String.format("unit.load.%d", i);
+			long load = loadArray.get(i).getAsLong();
+			results.add(new StateRecord(localtime, metric, load, serialNumber));
+		}
+		*/
+		long uptime = unit.get("uptime").getAsLong();
+		results.add(
+			new StateRecord(localtime, "unit.uptime", uptime, serialNumber)
+		);
+	}
+
+	/** Run all benchmarks in this class with the GC (allocation) profiler. */
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+			.include(StateRecordFlattenBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(opt).run();
+	}
+}
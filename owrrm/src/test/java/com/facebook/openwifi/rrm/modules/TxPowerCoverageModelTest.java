@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TxPowerCoverageModelTest {
+	/** Return the metric computed by the {@link ModelerUtils} methods. */
+	private static double referenceMetric(
+		int sampleSpace,
+		List<Double> apLocX,
+		List<Double> apLocY,
+		int[] txPower
+	) {
+		List<Double> txPowerList = new ArrayList<>();
+		for (int p : txPower) {
+			txPowerList.add((double) p);
+		}
+		int numOfAPs = txPower.length;
+		double[][][] rxPower = ModelerUtils.generateRxPower(
+			sampleSpace,
+			numOfAPs,
+			apLocX,
+			apLocY,
+			txPowerList
+		);
+		double[][] heatMap =
+			ModelerUtils.generateHeatMap(sampleSpace, numOfAPs, rxPower);
+		double[][] sinr =
+			ModelerUtils.generateSinr(sampleSpace, numOfAPs, rxPower);
+		return ModelerUtils.calculateTPCMetrics(sampleSpace, heatMap, sinr);
+	}
+
+	@Test
+	void test_matchesModelerUtils() throws Exception {
+		List<Double> apLocX = Arrays.asList(408.0, 453.0, 64.0, 457.0);
+		List<Double> apLocY = Arrays.asList(317.0, 49.0, 140.0, 274.0);
+		TxPowerCoverageModel model =
+			new TxPowerCoverageModel(500, apLocX, apLocY);
+		assertEquals(4, model.getNumOfAPs());
+
+		// Same cases as ModelerUtilsTest
+		assertEquals(
+			Double.POSITIVE_INFINITY,
+			model.evaluate(new int[] { 20, 20, 20, 20 })
+		);
+		assertEquals(
+			0.861,
+			model.evaluate(new int[] { 30, 30, 30, 30 }),
+			0.001
+		);
+
+		// Random layouts and tx powers (including capped rx power at the AP)
+		Random random = new Random(0);
+		for (int i = 0; i < 20; i++) {
+			int sampleSpace = 20 + random.nextInt(60);
+			int numOfAPs = 1 + random.nextInt(5);
+			List<Double> x = new ArrayList<>();
+			List<Double> y = new ArrayList<>();
+			int[] txPower = new int[numOfAPs];
+			for (int j = 0; j < numOfAPs; j++) {
+				x.add((double) random.nextInt(sampleSpace));
+				y.add((double) random.nextInt(sampleSpace));
+				txPower[j] = random.nextInt(31);
+			}
+			model = new TxPowerCoverageModel(sampleSpace, x, y);
+			assertEquals(
+				referenceMetric(sampleSpace, x, y, txPower),
+				model.evaluate(txPower),
+				1e-9
+			);
+
+			// Scratch buffers are reset between evaluations
+			txPower[0] = 30 - txPower[0];
+			assertEquals(
+				referenceMetric(sampleSpace, x, y, txPower),
+				model.evaluate(txPower),
+				1e-9
+			);
+		}
+	}
+
+	@Test
+	void test_update() throws Exception {
+		Random random = new Random(0);
+		for (int i = 0; i < 10; i++) {
+			int sampleSpace = 20 + random.nextInt(40);
+			int numOfAPs = 1 + random.nextInt(5);
+			List<Double> x = new ArrayList<>();
+			List<Double> y = new ArrayList<>();
+			int[] txPower = new int[numOfAPs];
+			for (int j = 0; j < numOfAPs; j++) {
+				x.add((double) random.nextInt(sampleSpace));
+				y.add((double) random.nextInt(sampleSpace));
+				txPower[j] = random.nextInt(31);
+			}
+			TxPowerCoverageModel model =
+				new TxPowerCoverageModel(sampleSpace, x, y);
+			TxPowerCoverageModel reference =
+				new TxPowerCoverageModel(sampleSpace, x, y);
+			model.evaluate(txPower);
+
+			// Random single-AP changes (including the highest AP dropping)
+			for (int j = 0; j < 50; j++) {
+				int apIndex = random.nextInt(numOfAPs);
+				txPower[apIndex] = random.nextInt(31);
+				assertEquals(
+					reference.evaluate(txPower),
+					model.update(apIndex, txPower[apIndex]),
+					1e-9
+				);
+			}
+		}
+	}
+
+	@Test
+	void test_invalidInput() throws Exception {
+		// Out of range
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> new TxPowerCoverageModel(
+				500,
+				Arrays.asList(408.0, 507.0),
+				Arrays.asList(317.0, 49.0)
+			)
+		);
+
+		// Mismatched sizes
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> new TxPowerCoverageModel(
+				500,
+				Arrays.asList(408.0, 453.0),
+				Arrays.asList(317.0)
+			)
+		);
+		TxPowerCoverageModel model = new TxPowerCoverageModel(
+			500,
+			Arrays.asList(408.0, 453.0),
+			Arrays.asList(317.0, 49.0)
+		);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> model.evaluate(new int[] { 20 })
+		);
+
+		// No previous evaluation
+		assertThrows(IllegalStateException.class, () -> model.update(0, 20));
+		model.evaluate(new int[] { 20, 20 });
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> model.update(2, 20)
+		);
+		model.lowerBound(new int[] { 0, 0 }, new int[] { 30, 30 });
+		assertThrows(IllegalStateException.class, () -> model.update(0, 20));
+	}
+}
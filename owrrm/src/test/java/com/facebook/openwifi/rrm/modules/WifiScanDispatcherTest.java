@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.modules;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.rrm.modules.WifiScanDispatcher.WifiScanDispatcherStats;
+
+public class WifiScanDispatcherTest {
+	@Test
+	void test_concurrencyLimits() throws Exception {
+		// Record started scans, completing them manually
+		Map<String, CompletableFuture<Boolean>> started = new LinkedHashMap<>();
+		WifiScanDispatcher dispatcher = new WifiScanDispatcher(3, 2, serial -> {
+			CompletableFuture<Boolean> future = new CompletableFuture<>();
+			started.put(serial, future);
+			return future;
+		});
+
+		// Zone A gets 2 scans (per-zone limit), zone B gets 1 (total limit)
+		assertTrue(dispatcher.submit("a1", "zoneA"));
+		assertTrue(dispatcher.submit("a2", "zoneA"));
+		assertTrue(dispatcher.submit("a3", "zoneA"));
+		assertTrue(dispatcher.submit("b1", "zoneB"));
+		assertTrue(dispatcher.submit("b2", "zoneB"));
+		assertTrue(dispatcher.submit("c1", "zoneC"));
+		assertFalse(dispatcher.submit("a3", "zoneA"));
+		assertEquals(
+			Arrays.asList("a1", "a2", "b1"),
+			new ArrayList<>(started.keySet())
+		);
+		WifiScanDispatcherStats stats = dispatcher.getStats();
+		assertEquals(3, stats.inFlight);
+		assertEquals(3, stats.backlog);
+		assertEquals(2, stats.zoneInFlight.get("zoneA"));
+		assertEquals(1, stats.zoneInFlight.get("zoneB"));
+		assertEquals(1, stats.zoneBacklog.get("zoneA"));
+		assertEquals(1, stats.zoneBacklog.get("zoneC"));
+
+		// In-flight devices can't be resubmitted until complete
+		assertFalse(dispatcher.submit("a1", "zoneA"));
+		assertTrue(dispatcher.isActive("a1"));
+
+		// Freed slots go to zones in round-robin order, subject to limits
+		started.get("a1").complete(true);
+		assertFalse(dispatcher.isActive("a1"));
+		assertTrue(started.containsKey("a3"));
+		started.get("a2").complete(true);
+		assertTrue(started.containsKey("b2"));
+		assertFalse(started.containsKey("c1"));
+
+		// Failures also free slots
+		started.get("b1").completeExceptionally(new RuntimeException());
+		assertTrue(started.containsKey("c1"));
+		started.get("c1").complete(false);
+
+		// Finish everything
+		for (String serial : Arrays.asList("a3", "b2")) {
+			started.get(serial).complete(true);
+		}
+		stats = dispatcher.getStats();
+		assertEquals(0, stats.inFlight);
+		assertEquals(0, stats.backlog);
+		assertTrue(stats.zoneInFlight.isEmpty());
+		assertTrue(stats.zoneBacklog.isEmpty());
+		assertEquals(4, stats.succeededCount);
+		assertEquals(2, stats.failedCount);
+	}
+
+	@Test
+	void test_perZoneLimitFunction() throws Exception {
+		// Zone limits come from the function (with a minimum of 1)
+		Map<String, Integer> zoneLimits = new HashMap<>();
+		zoneLimits.put("zoneA", 2);
+		zoneLimits.put("zoneB", 0);
+		Map<String, CompletableFuture<Boolean>> started = new LinkedHashMap<>();
+		WifiScanDispatcher dispatcher = new WifiScanDispatcher(
+			10,
+			zone -> zoneLimits.get(zone),
+			serial -> {
+				CompletableFuture<Boolean> future = new CompletableFuture<>();
+				started.put(serial, future);
+				return future;
+			}
+		);
+		for (String serial : Arrays.asList("a1", "a2", "a3")) {
+			dispatcher.submit(serial, "zoneA");
+		}
+		for (String serial : Arrays.asList("b1", "b2")) {
+			dispatcher.submit(serial, "zoneB");
+		}
+		assertEquals(
+			Arrays.asList("a1", "a2", "b1"),
+			new ArrayList<>(started.keySet())
+		);
+
+		// Limit changes (ex. zone growth) apply upon the next submission
+		zoneLimits.put("zoneA", 4);
+		dispatcher.submit("a4", "zoneA");
+		assertEquals(
+			Arrays.asList("a1", "a2", "b1", "a3", "a4"),
+			new ArrayList<>(started.keySet())
+		);
+		WifiScanDispatcherStats stats = dispatcher.getStats();
+		assertEquals(4, stats.zoneInFlight.get("zoneA"));
+		assertEquals(1, stats.zoneInFlight.get("zoneB"));
+		assertEquals(1, stats.zoneBacklog.get("zoneB"));
+	}
+
+	@Test
+	void test_synchronousCompletion() throws Exception {
+		// Scans which complete (or fail) immediately drain the whole backlog
+		List<String> started = new ArrayList<>();
+		WifiScanDispatcher dispatcher = new WifiScanDispatcher(1, 1, serial -> {
+			started.add(serial);
+			if (serial.startsWith("x")) {
+				throw new IllegalStateException("failed to start");
+			}
+			return CompletableFuture.completedFuture(true);
+		});
+		final int N = 10000;
+		for (int i = 0; i < N; i++) {
+			dispatcher.submit((i % 2 == 0 ? "x" : "y") + i, "zone");
+		}
+		assertEquals(N, started.size());
+		WifiScanDispatcherStats stats = dispatcher.getStats();
+		assertEquals(0, stats.inFlight);
+		assertEquals(N / 2, stats.succeededCount);
+		assertEquals(N / 2, stats.failedCount);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class DailyPartitionsTest {
+	@Test
+	void test_definitions() throws Exception {
+		LocalDate day = LocalDate.of(2022, 4, 7);
+		assertEquals("p20220407", DailyPartitions.name(day));
+		assertEquals(1649376000L, DailyPartitions.upperBound(day));
+		assertEquals(
+			"PARTITION BY RANGE (UNIX_TIMESTAMP(`time`)) (" +
+				"PARTITION p20220407 VALUES LESS THAN (1649376000), " +
+				"PARTITION p20220408 VALUES LESS THAN (1649462400), " +
+				"PARTITION pmax VALUES LESS THAN MAXVALUE)",
+			DailyPartitions.partitionClause(day, day.plusDays(1))
+		);
+	}
+
+	@Test
+	void test_maintenance() throws Exception {
+		LocalDate today = LocalDate.of(2022, 4, 7);
+		Map<String, Long> bounds = new LinkedHashMap<>();
+		for (int i = -3; i <= 1; i++) {
+			LocalDate day = today.plusDays(i);
+			bounds.put(
+				DailyPartitions.name(day),
+				DailyPartitions.upperBound(day)
+			);
+		}
+		bounds.put(DailyPartitions.MAX_PARTITION, null);
+		long maxBound = DailyPartitions.upperBound(today.plusDays(1));
+
+		// Only days past the last existing partition are created
+		assertEquals(
+			Arrays.asList(today.plusDays(2), today.plusDays(3)),
+			DailyPartitions.daysBetween(today, today.plusDays(3), maxBound)
+		);
+		assertEquals(
+			Collections.emptyList(),
+			DailyPartitions.daysBetween(today, today.plusDays(1), maxBound)
+		);
+
+		// Partitions before the first retained day are expired
+		assertEquals(
+			Arrays.asList("p20220404", "p20220405"),
+			DailyPartitions.expiredPartitions(bounds, today.minusDays(1))
+		);
+		assertEquals(
+			Collections.emptyList(),
+			DailyPartitions.expiredPartitions(bounds, today.minusDays(3))
+		);
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricSeriesQueryTest {
+	/** Return the number of "?" parameters in the given SQL. */
+	private static int paramCount(String sql) {
+		return (int) sql.chars().filter(c -> c == '?').count();
+	}
+
+	@Test
+	void test_sourcePruning() throws Exception {
+		final int total = MetricSeriesQuery.SOURCES.size();
+
+		// No prefix: every source is queried
+		MetricSeriesQuery query = new MetricSeriesQuery("", 0, 60000);
+		assertEquals(total, query.sourceCount);
+		assertEquals(4 * total, paramCount(query.sql));
+
+		// Only radio columns (and other metrics) may match a radio prefix
+		query = new MetricSeriesQuery("radio.0.", 0, 60000);
+		assertEquals(StateSnapshot.RADIO_COLUMNS.size() + 1, query.sourceCount);
+		assertEquals(4 * query.sourceCount, paramCount(query.sql));
+		query = new MetricSeriesQuery("radio.0.noise", 0, 60000);
+		assertEquals(2, query.sourceCount);
+
+		// Typed columns never match unrelated names
+		query = new MetricSeriesQuery("unit.uptime", 0, 60000);
+		assertEquals(2, query.sourceCount);
+		query = new MetricSeriesQuery("foo", 0, 60000);
+		assertEquals(1, query.sourceCount);
+
+		// Client prefixes only match client columns
+		query = new MetricSeriesQuery(
+			"interface.up0v0.bssid.bb:00:00:00:00:01.client.",
+			0,
+			60000
+		);
+		assertEquals(
+			StateSnapshot.CLIENT_COLUMNS.size() + 1,
+			query.sourceCount
+		);
+
+		// Buckets are relative to the start time
+		query = new MetricSeriesQuery("", 1649306810000L, 300000);
+		assertTrue(query.sql.contains("- 1649306810000) DIV 300000"));
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> new MetricSeriesQuery("", 0, 0)
+		);
+	}
+
+	@Test
+	void test_likePattern() throws Exception {
+		assertEquals("%", MetricSeriesQuery.likePattern(""));
+		assertEquals("radio.0.%", MetricSeriesQuery.likePattern("radio.0."));
+		assertEquals(
+			"radio.0.tx\\_power%",
+			MetricSeriesQuery.likePattern("radio.0.tx_power")
+		);
+		assertEquals("a\\%b\\\\c%", MetricSeriesQuery.likePattern("a%b\\c"));
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.rrm.mysql.StateRecordWriter.StateRecordWriterStats;
+
+public class StateRecordWriterTest {
+	/** Database manager recording inserted batches (without a database). */
+	private static class FakeDatabaseManager extends DatabaseManager {
+		/** Metric names of each inserted batch. */
+		final BlockingQueue<List<String>> inserted =
+			new LinkedBlockingQueue<>();
+
+		/** Released once inserts may proceed. */
+		final CountDownLatch release;
+
+		/** Whether inserts should fail. */
+		final boolean fail;
+
+		FakeDatabaseManager(CountDownLatch release, boolean fail) {
+			super("", "", "", "", 0, false, false);
+			this.release = release;
+			this.fail = fail;
+		}
+
+		@Override
+		public void addStateRecords(StateRecordBatch batch)
+			throws SQLException {
+			List<String> metrics = new ArrayList<>();
+			for (int i = 0; i < batch.size(); i++) {
+				metrics.add(batch.getMetric(i));
+			}
+			inserted.add(metrics);
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new SQLException(e);
+			}
+			if (fail) {
+				throw new SQLException("insert failed");
+			}
+		}
+	}
+
+	/**
+	 * Return a batch with one row per metric name, each as a separate state
+	 * record (i.e. with a distinct serial number).
+	 */
+	private static StateRecordBatch batchOf(String... metrics) {
+		StateRecordBatch batch = new StateRecordBatch();
+		for (String metric : metrics) {
+			batch.add(1649306810L, metric, 1, "serial-" + metric);
+		}
+		return batch;
+	}
+
+	@Test
+	void test_sizeAndTimeBoundedBatches() throws Exception {
+		FakeDatabaseManager dbManager =
+			new FakeDatabaseManager(new CountDownLatch(0), false);
+		StateRecordWriter writer =
+			new StateRecordWriter(dbManager, 3, 100, 100, 1000, 1);
+
+		// Rows are coalesced across calls into full batches...
+		StateRecordBatch batch = batchOf("a", "b", "c", "d");
+		assertTrue(writer.enqueue(batch));
+		assertEquals(4, batch.size()); // input is not modified
+		assertTrue(writer.enqueue(batchOf("e", "f", "g")));
+		assertEquals(
+			Arrays.asList("a", "b", "c"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+		assertEquals(
+			Arrays.asList("d", "e", "f"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+
+		// ...and the remainder is written after the maximum delay
+		assertEquals(
+			Arrays.asList("g"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+
+		assertTrue(writer.shutdown(5000));
+		StateRecordWriterStats stats = writer.getStats();
+		assertEquals(0, stats.queuedRows);
+		assertEquals(3, stats.batchCount);
+		assertEquals(7, stats.rowCount);
+		assertEquals(7 / 3.0, stats.avgBatchSize, 1e-9);
+		assertEquals(0, stats.droppedRowCount);
+		assertEquals(0, stats.failedRowCount);
+	}
+
+	@Test
+	void test_recordBoundaries() throws Exception {
+		FakeDatabaseManager dbManager =
+			new FakeDatabaseManager(new CountDownLatch(0), false);
+		StateRecordWriter writer =
+			new StateRecordWriter(dbManager, 2, 60000, 100, 1000, 1);
+
+		// A state record is never split, even past the maximum batch size
+		StateRecordBatch batch = new StateRecordBatch();
+		batch.add(1649306810L, "a", 1, "aaaaaaaaaaaa");
+		batch.add(1649306810L, "b", 1, "aaaaaaaaaaaa");
+		batch.add(1649306810L, "c", 1, "aaaaaaaaaaaa");
+		batch.add(1649306870L, "d", 1, "aaaaaaaaaaaa");
+		batch.add(1649306810L, "e", 1, "bbbbbbbbbbbb");
+		assertTrue(writer.enqueue(batch));
+		assertEquals(
+			Arrays.asList("a", "b", "c"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+		assertEquals(
+			Arrays.asList("d", "e"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+		assertTrue(writer.shutdown(5000));
+	}
+
+	@Test
+	void test_backpressure() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		FakeDatabaseManager dbManager =
+			new FakeDatabaseManager(release, false);
+		StateRecordWriter writer =
+			new StateRecordWriter(dbManager, 2, 60000, 4, 50, 1);
+
+		// First batch is being written (blocked), second batch is ready
+		assertTrue(writer.enqueue(batchOf("a", "b")));
+		assertEquals(
+			Arrays.asList("a", "b"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+		assertTrue(writer.enqueue(batchOf("c", "d")));
+		StateRecordWriterStats stats = writer.getStats();
+		assertEquals(4, stats.queuedRows);
+		assertEquals(1, stats.readyBatches);
+
+		// Queue is full: block until the timeout, then drop
+		assertFalse(writer.enqueue(batchOf("e")));
+		stats = writer.getStats();
+		assertEquals(1, stats.blockedCount);
+		assertEquals(1, stats.droppedRowCount);
+
+		// Unblock writes, then shut down (flushing queued rows)
+		release.countDown();
+		assertTrue(writer.shutdown(5000));
+		assertEquals(
+			Arrays.asList("c", "d"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+		assertNull(dbManager.inserted.poll());
+		stats = writer.getStats();
+		assertEquals(0, stats.queuedRows);
+		assertEquals(4, stats.rowCount);
+
+		// Rows are dropped after shutdown
+		assertFalse(writer.enqueue(batchOf("f")));
+		assertEquals(2, writer.getStats().droppedRowCount);
+	}
+
+	@Test
+	void test_failedInserts() throws Exception {
+		FakeDatabaseManager dbManager =
+			new FakeDatabaseManager(new CountDownLatch(0), true);
+		StateRecordWriter writer =
+			new StateRecordWriter(dbManager, 2, 0, 10, 1000, 2);
+
+		assertTrue(writer.enqueue(batchOf("a", "b", "c")));
+		assertTrue(writer.shutdown(5000));
+		StateRecordWriterStats stats = writer.getStats();
+		assertEquals(0, stats.queuedRows);
+		assertEquals(0, stats.batchCount);
+		assertEquals(0, stats.rowCount);
+		assertEquals(3, stats.failedRowCount);
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+
+public class StateSnapshotTest {
+	/** Return sorted string representations of the given records. */
+	private static List<String> toStrings(List<StateRecord> records) {
+		List<String> ret = new ArrayList<>();
+		for (StateRecord record : records) {
+			ret.add(record.toString());
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	@Test
+	void test_roundTrip() throws Exception {
+		final String serial = "aaaaaaaaaaaa";
+		final long ts = 1649306810L;
+		final String client =
+			"interface.up0v0.bssid.bb:00:00:00:00:01.client.aa:00:00:00:00:01.";
+		StateRecordBatch batch = new StateRecordBatch();
+		batch.add(ts, "radio.0.channel", 36, serial);
+		batch.add(ts, "radio.0.noise", -105, serial);
+		batch.add(ts, "radio.1.tx_power", 24, serial);
+		batch.add(ts, "interface.up0v0.rx_bytes", 12345, serial);
+		batch.add(ts, client + "rssi", -73, serial);
+		batch.add(ts, client + "tx_rate.mcs", 6, serial);
+		batch.add(ts, client + "tx_rate.vht", 1, serial);
+		batch.add(ts, "unit.uptime", 73107, serial);
+
+		// Metrics without typed columns
+		batch.add(ts, "interface.up0v0.foo", 1, serial);
+		batch.add(ts, client + "tx_rate.eht", 1, serial);
+		batch.add(
+			ts,
+			"interface.up0v0.bssid.BB:00:00:00:00:01.client.x.rssi",
+			-60,
+			serial
+		);
+		batch.add(ts, "radio.x.channel", 1, serial);
+
+		// A different snapshot
+		batch.add(ts + 60, "unit.uptime", 73167, serial);
+
+		List<StateSnapshot> snapshots = StateSnapshot.fromBatch(batch);
+		assertEquals(2, snapshots.size());
+		StateSnapshot snapshot = snapshots.get(0);
+		assertEquals(serial, snapshot.serial);
+		assertEquals(ts, snapshot.timestamp);
+		assertEquals(73107, snapshot.uptime);
+		assertEquals(2, snapshot.radios.size());
+		assertEquals(36, snapshot.radio(0)[0]);
+		assertNull(snapshot.radio(0)[1]);
+		assertEquals(1, snapshot.interfaces.size());
+		assertEquals(1, snapshot.clients.size());
+		assertEquals(4, snapshot.metrics.size());
+		assertEquals(ts + 60, snapshots.get(1).timestamp);
+
+		// Converting back yields the original rows
+		List<StateRecord> records = new ArrayList<>();
+		for (StateSnapshot s : snapshots) {
+			records.addAll(s.toStateRecords());
+		}
+		assertEquals(
+			toStrings(batch.toStateRecords()),
+			toStrings(records)
+		);
+	}
+
+	@Test
+	void test_toState() throws Exception {
+		final String serial = "aaaaaaaaaaaa";
+		final long ts = 1649306810L;
+		final String bss1 = "interface.up0v0.bssid.bb:00:00:00:00:01.client.";
+		final String bss2 = "interface.up0v1.bssid.bb:00:00:00:00:02.client.";
+		StateRecordBatch batch = new StateRecordBatch();
+		batch.add(ts, "radio.0.channel", 36, serial);
+		batch.add(ts, "radio.0.channel_width", 80, serial);
+		batch.add(ts, "radio.2.tx_power", 24, serial);
+		batch.add(ts, "interface.up0v0.rx_bytes", 12345, serial);
+		batch.add(ts, bss1 + "aa:00:00:00:00:01.rssi", -73, serial);
+		batch.add(ts, bss1 + "aa:00:00:00:00:01.tx_rate.mcs", 6, serial);
+		batch.add(ts, bss1 + "aa:00:00:00:00:01.tx_rate.vht", 1, serial);
+		batch.add(ts, bss1 + "aa:00:00:00:00:02.tx_bytes", 999, serial);
+		batch.add(ts, bss2 + "aa:00:00:00:00:03.rx_rate.sgi", 0, serial);
+		batch.add(ts, "unit.uptime", 73107, serial);
+
+		// Building State directly matches parsing the flattened rows
+		StateSnapshot snapshot = StateSnapshot.fromBatch(batch).get(0);
+		assertEquals(0, snapshot.metrics.size());
+		Gson gson = new Gson();
+		assertEquals(
+			gson.toJson(
+				DatabaseManager.toState(batch.toStateRecords(), ts * 1000)
+			),
+			gson.toJson(snapshot.toState())
+		);
+
+		// Snapshots with other metrics fall back to parsing rows
+		snapshot.add("interface.up0v0.foo", 1);
+		assertEquals(
+			gson.toJson(
+				DatabaseManager.toState(snapshot.toStateRecords(), ts * 1000)
+			),
+			gson.toJson(DatabaseManager.toState(snapshot))
+		);
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TimeOrderedIdGeneratorTest {
+	@Test
+	void test_ordering() throws Exception {
+		TimeOrderedIdGenerator gen = new TimeOrderedIdGenerator(1023);
+		long startMs = System.currentTimeMillis();
+
+		// IDs are strictly increasing, even past 4096 IDs per ms
+		long prev = 0;
+		for (int i = 0; i < 100000; i++) {
+			long id = gen.next();
+			assertTrue(id > prev);
+			prev = id;
+		}
+
+		// The time component is close to the current time
+		long timeMs = TimeOrderedIdGenerator.getTimeMs(prev);
+		assertTrue(timeMs >= startMs);
+		assertTrue(timeMs <= System.currentTimeMillis() + 100);
+
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> new TimeOrderedIdGenerator(1024)
+		);
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+
+public class WifiScanCodecTest {
+	/** Wrap a raw payload in the encoded format (version 1, deflated). */
+	private static byte[] pack(int... payload) {
+		byte[] b = new byte[payload.length];
+		for (int i = 0; i < payload.length; i++) {
+			b[i] = (byte) payload[i];
+		}
+		Deflater deflater = new Deflater();
+		deflater.setInput(b);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(1);
+		byte[] buf = new byte[256];
+		while (!deflater.finished()) {
+			out.write(buf, 0, deflater.deflate(buf));
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+
+	@Test
+	void test_roundTrip() throws Exception {
+		final long ts = 1649306810000L;
+		List<WifiScanEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			WifiScanEntry entry = new WifiScanEntry();
+			entry.bssid = String.format("bb:00:00:00:%02x:%02x", i / 4, i);
+			entry.ssid = i % 5 == 0 ? null : "ssid-" + (i % 3);
+			entry.last_seen = 1649306000L - i * 17;
+			entry.signal = -40 - (i * 7) % 50;
+			entry.channel = i % 2 == 0 ? 36 : 1;
+			entry.frequency = i % 2 == 0 ? 5180 : 2412;
+			entry.ht_oper =
+				i % 2 == 0 ? "JAUAAAAAAAAAAAAAAAAAAAAAAAAAAA==" : null;
+			entry.vht_oper = i % 4 == 0 ? "ASoAAAA=" : i % 4 == 1 ? "x" : null;
+			entry.unixTimeMs = ts;
+			entries.add(entry);
+		}
+
+		// Decoding restores all encoded fields
+		byte[] data = WifiScanCodec.encode(entries);
+		List<WifiScanEntry> decoded = WifiScanCodec.decode(data, ts);
+		assertEquals(entries, decoded);
+		for (int i = 0; i < entries.size(); i++) {
+			assertEquals(entries.get(i).signal, decoded.get(i).signal);
+		}
+		assertEquals(
+			Collections.emptyList(),
+			WifiScanCodec.decode(
+				WifiScanCodec.encode(Collections.emptyList()),
+				ts
+			)
+		);
+
+		// Malformed data is rejected
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> WifiScanCodec.decode(new byte[] { 0 }, ts)
+		);
+		byte[] truncated = new byte[data.length / 2];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> WifiScanCodec.decode(truncated, ts)
+		);
+	}
+
+	@Test
+	void test_malformedPayload() throws Exception {
+		final long ts = 1649306810000L;
+
+		// Valid payload: 1 entry (zero BSSID), no SSIDs, all fields zero
+		List<WifiScanEntry> entries = WifiScanCodec.decode(
+			pack(2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0),
+			ts
+		);
+		assertEquals(1, entries.size());
+		assertEquals("00:00:00:00:00:00", entries.get(0).bssid);
+
+		// Entry count larger than the remaining data, or negative
+		byte[] largeCount = pack(0xFE, 0xFF, 0xFF, 0xFF, 0x0F, 0);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> WifiScanCodec.decode(largeCount, ts)
+		);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> WifiScanCodec.decode(pack(1, 0), ts)
+		);
+
+		// SSID dictionary size larger than the remaining data, or negative
+		byte[] largeDictionary = pack(0, 0xFE, 0xFF, 0xFF, 0xFF, 0x0F);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> WifiScanCodec.decode(largeDictionary, ts)
+		);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> WifiScanCodec.decode(pack(0, 3), ts)
+		);
+
+		// SSID index outside the dictionary
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> WifiScanCodec.decode(
+				pack(2, 0, 0, 0, 0, 0, 0, 0, 10, 0, 0, 0, 0, 0, 0),
+				ts
+			)
+		);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> WifiScanCodec.decode(
+				pack(2, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0),
+				ts
+			)
+		);
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+
+/**
+ * Compares the storage size of a wifi scan's results between the
+ * row-per-entry "wifiscan_results" layout and a single {@link WifiScanCodec}
+ * blob, and measures the blob's encode/decode throughput.
+ *
+ * Each benchmark operation encodes or decodes one scan, so the throughput is
+ * in scans per second. Storage sizes are printed by {@link #main} before the
+ * benchmarks run; the row layout size is an estimate of the InnoDB clustered
+ * and secondary index records (excluding page overhead).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WifiScanStorageBenchmark {
+	/** The number of entries per scan. */
+	@Param({ "20", "100" })
+	public int entryCount;
+
+	/** The scan results. */
+	private List<WifiScanEntry> entries;
+
+	/** The encoded scan results. */
+	private byte[] encoded;
+
+	/** Return synthetic scan results with a realistic mix of SSIDs. */
+	public static List<WifiScanEntry> generateScan(int entryCount) {
+		Random random = new Random(0);
+		List<WifiScanEntry> entries = new ArrayList<>(entryCount);
+		for (int i = 0; i < entryCount; i++) {
+			boolean is5G = random.nextBoolean();
+			WifiScanEntry entry = new WifiScanEntry();
+			entry.bssid = String.format(
+				"%02x:%02x:%02x:%02x:%02x:%02x",
+				random.nextInt(8) * 2,
+				random.nextInt(256),
+				random.nextInt(256),
+				random.nextInt(256),
+				random.nextInt(256),
+				random.nextInt(256)
+			);
+			entry.ssid =
+				"network-" + random.nextInt(Math.max(entryCount / 4, 1));
+			entry.last_seen = 1649306000L + random.nextInt(60);
+			entry.signal = -40 - random.nextInt(50);
+			entry.channel =
+				is5G ? 36 + 4 * random.nextInt(8) : 1 + random.nextInt(11);
+			entry.frequency = is5G
+				? 5000 + 5 * entry.channel
+				: 2407 + 5 * entry.channel;
+			entry.ht_oper = "JAUAAAAAAAAAAAAAAAAAAAAAAAAAAA==";
+			entry.vht_oper = is5G ? "ASoAAAA=" : null;
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	/**
+	 * Return the estimated size of the given results in the row-per-entry
+	 * layout, in bytes.
+	 */
+	static long rowLayoutBytes(List<WifiScanEntry> entries) {
+		// Record header, hidden row ID, transaction ID, and roll pointer
+		final int rowOverhead = 5 + 6 + 6 + 7;
+		// "scan_id" secondary index record (key and row ID)
+		final int indexRecord = 5 + 8 + 6;
+		long bytes = 0;
+		for (WifiScanEntry entry : entries) {
+			// scan_id, bssid, lastseen, rssi, channel, time, frequency
+			bytes += rowOverhead + 8 + 8 + 8 + 4 + 4 + 4 + 4;
+			bytes += varcharBytes(entry.ssid);
+			bytes += varcharBytes(entry.ht_oper);
+			bytes += varcharBytes(entry.vht_oper);
+			bytes += indexRecord;
+		}
+		return bytes;
+	}
+
+	/** Return the stored size of a VARCHAR value. */
+	private static int varcharBytes(String s) {
+		return s == null ? 0 : 1 + s.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	@Setup
+	public void setup() {
+		entries = generateScan(entryCount);
+		encoded = WifiScanCodec.encode(entries);
+	}
+
+	/** Encode one scan. */
+	@Benchmark
+	public byte[] encode() {
+		return WifiScanCodec.encode(entries);
+	}
+
+	/** Decode one scan. */
+	@Benchmark
+	public List<WifiScanEntry> decode() {
+		return WifiScanCodec.decode(encoded, 1649306810000L);
+	}
+
+	/**
+	 * Print storage sizes, then run all benchmarks in this class with the GC
+	 * (allocation) profiler.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		for (int entryCount : new int[] { 20, 100 }) {
+			List<WifiScanEntry> entries = generateScan(entryCount);
+			System.out.printf(
+				"%d entries: row layout ~%d bytes, blob %d bytes%n",
+				entryCount,
+				rowLayoutBytes(entries),
+				WifiScanCodec.encode(entries).length
+			);
+		}
+		Options opt = new OptionsBuilder()
+			.include(WifiScanStorageBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.mysql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.rrm.mysql.WifiScanWriter.WifiScanWriterStats;
+
+public class WifiScanWriterTest {
+	/** Database manager recording inserted batches (without a database). */
+	private static class FakeDatabaseManager extends DatabaseManager {
+		/** Serial numbers of each inserted batch. */
+		final BlockingQueue<List<String>> inserted =
+			new LinkedBlockingQueue<>();
+
+		/** All inserted scan IDs, in insertion order. */
+		final List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+
+		/** Released once inserts may proceed. */
+		final CountDownLatch release;
+
+		FakeDatabaseManager(CountDownLatch release) {
+			super("", "", "", "", 0, false, false);
+			this.release = release;
+		}
+
+		@Override
+		public void addWifiScans(List<WifiScanRecord> scans)
+			throws SQLException {
+			List<String> serials = new ArrayList<>();
+			for (WifiScanRecord scan : scans) {
+				serials.add(scan.serial);
+				ids.add(scan.id);
+			}
+			inserted.add(serials);
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new SQLException(e);
+			}
+		}
+	}
+
+	/** Return a scan with one result. */
+	private static List<WifiScanEntry> scan() {
+		return Collections.singletonList(new WifiScanEntry());
+	}
+
+	@Test
+	void test_batching() throws Exception {
+		FakeDatabaseManager dbManager =
+			new FakeDatabaseManager(new CountDownLatch(0));
+		WifiScanWriter writer = new WifiScanWriter(dbManager, 2, 100, 10);
+
+		// Scans are written in full batches, then after the maximum delay
+		for (String serial : new String[] { "a", "b", "c" }) {
+			assertTrue(writer.enqueue(serial, 1649306810L, scan()));
+		}
+		assertEquals(
+			Arrays.asList("a", "b"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+		assertEquals(
+			Arrays.asList("c"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+
+		// IDs are assigned in enqueue order
+		List<Long> ids = new ArrayList<>(dbManager.ids);
+		List<Long> sortedIds = new ArrayList<>(ids);
+		Collections.sort(sortedIds);
+		assertEquals(sortedIds, ids);
+
+		assertTrue(writer.shutdown(5000));
+		WifiScanWriterStats stats = writer.getStats();
+		assertEquals(0, stats.queuedScans);
+		assertEquals(2, stats.batchCount);
+		assertEquals(3, stats.scanCount);
+		assertEquals(3, stats.resultCount);
+		assertEquals(0, stats.droppedScanCount);
+	}
+
+	@Test
+	void test_queueCapacity() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		FakeDatabaseManager dbManager = new FakeDatabaseManager(release);
+		WifiScanWriter writer = new WifiScanWriter(dbManager, 2, 60000, 3);
+
+		// First batch is being written (blocked)
+		assertTrue(writer.enqueue("a", 1649306810L, scan()));
+		assertTrue(writer.enqueue("b", 1649306810L, scan()));
+		assertEquals(
+			Arrays.asList("a", "b"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+
+		// Queue is full: scans are dropped without blocking
+		assertTrue(writer.enqueue("c", 1649306810L, scan()));
+		assertFalse(writer.enqueue("d", 1649306810L, scan()));
+		assertEquals(1, writer.getStats().droppedScanCount);
+
+		// Queued scans are flushed on shutdown
+		release.countDown();
+		assertTrue(writer.shutdown(5000));
+		assertEquals(
+			Arrays.asList("c"),
+			dbManager.inserted.poll(5, TimeUnit.SECONDS)
+		);
+		assertFalse(writer.enqueue("e", 1649306810L, scan()));
+		assertEquals(3, writer.getStats().scanCount);
+	}
+}
@@ -25,6 +25,7 @@ import com.facebook.openwifi.cloudsdk.UCentralUtils;
 import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.facebook.openwifi.rrm.optimizers.TestUtils;
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -58,7 +59,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils
 					.createState(aExpectedChannel, channelWidth, dummyBssid)
 			)
@@ -69,7 +70,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(36, 40, 44, 149))
 			)
 		);
@@ -87,7 +88,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(40, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(40, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -95,7 +96,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(TestUtils.createWifiScanList(channelsB))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsB))
 		);
 		Map<String, Integer> radioMapB = new HashMap<>();
 		radioMapB.put(band, bExpectedChannel);
@@ -112,7 +113,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(149, channelWidth, dummyBssid)
 			)
 		);
@@ -122,7 +123,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(TestUtils.createWifiScanList(channelsC))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsC))
 		);
 		Map<String, Integer> radioMapC = new HashMap<>();
 		radioMapC.put(band, cExpectedChannel);
@@ -162,7 +163,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils
 					.createState(aExpectedChannel, channelWidth, dummyBssid)
 			)
@@ -173,7 +174,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(6, 7, 8, 9, 10, 11))
 			)
 		);
@@ -191,7 +192,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(6, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(6, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -199,7 +200,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(TestUtils.createWifiScanList(channelsB))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsB))
 		);
 		Map<String, Integer> radioMapB = new HashMap<>();
 		radioMapB.put(band, bExpectedChannel);
@@ -213,7 +214,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(TestUtils.createState(6, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(6, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceC,
@@ -221,7 +222,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(6, 7, 10, 11))
 			)
 		);
@@ -270,7 +271,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils
 					.createState(aExpectedChannel, channelWidth, dummyBssid)
 			)
@@ -281,7 +282,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(36, 40, 44, 149))
 			)
 		);
@@ -298,7 +299,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(40, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(40, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -306,7 +307,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(TestUtils.createWifiScanList(channelsB))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsB))
 		);
 		Map<String, Integer> radioMapB = new HashMap<>();
 		radioMapB.put(band, userChannel);
@@ -322,7 +323,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(149, channelWidth, dummyBssid)
 			)
 		);
@@ -332,7 +333,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(TestUtils.createWifiScanList(channelsC))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsC))
 		);
 		Map<String, Integer> radioMapC = new HashMap<>();
 		radioMapC.put(band, userChannel);
@@ -380,7 +381,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils
 					.createState(aExpectedChannel, channelWidth, dummyBssid)
 			)
@@ -391,7 +392,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(36, 40, 44, 149))
 			)
 		);
@@ -410,7 +411,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(40, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(40, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -418,7 +419,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(TestUtils.createWifiScanList(channelsB))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsB))
 		);
 		Map<String, Integer> radioMapB = new HashMap<>();
 		radioMapB.put(band, 165);
@@ -435,7 +436,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(149, channelWidth, dummyBssid)
 			)
 		);
@@ -445,7 +446,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(TestUtils.createWifiScanList(channelsC))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsC))
 		);
 		Map<String, Integer> radioMapC = new HashMap<>();
 		radioMapC.put(band, 48);
@@ -487,7 +488,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils
 					.createState(aExpectedChannel, channelWidth, dummyBssid)
 			)
@@ -498,7 +499,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(36, 40, 44, 149))
 			)
 		);
@@ -518,7 +519,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(40, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(40, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -526,7 +527,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(TestUtils.createWifiScanList(channelsB))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsB))
 		);
 		Map<String, Integer> radioMapB = new HashMap<>();
 		radioMapB.put(band, bExpectedChannel);
@@ -543,7 +544,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(149, channelWidth, dummyBssid)
 			)
 		);
@@ -553,7 +554,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(TestUtils.createWifiScanList(channelsC))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsC))
 		);
 		Map<String, Integer> radioMapC = new HashMap<>();
 		radioMapC.put(band, cExpectedChannel);
@@ -569,7 +570,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceD,
-			Arrays.asList(TestUtils.createState(40, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(40, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceD,
@@ -577,7 +578,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceD,
-			Arrays.asList(TestUtils.createWifiScanList(channelsD))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsD))
 		);
 		Map<String, Integer> radioMapD = new HashMap<>();
 		radioMapD.put(band, dExpectedChannel);
@@ -626,7 +627,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils
 					.createState(aExpectedChannel, channelWidth, dummyBssid)
 			)
@@ -637,7 +638,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(149, 157, 165))
 			)
 		);
@@ -655,7 +656,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(36, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(36, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -663,7 +664,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(TestUtils.createWifiScanList(channelsB))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsB))
 		);
 		Map<String, Integer> radioMapB = new HashMap<>();
 		radioMapB.put(band, bExpectedChannel);
@@ -680,7 +681,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(149, channelWidth, dummyBssid)
 			)
 		);
@@ -690,7 +691,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(TestUtils.createWifiScanList(channelsC))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsC))
 		);
 		Map<String, Integer> radioMapC = new HashMap<>();
 		radioMapC.put(band, cExpectedChannel);
@@ -708,7 +709,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceD,
-			Arrays.asList(TestUtils.createState(36, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(36, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceD,
@@ -716,7 +717,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceD,
-			Arrays.asList(TestUtils.createWifiScanList(channelsD))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsD))
 		);
 		Map<String, Integer> radioMapD = new HashMap<>();
 		radioMapD.put(band, dExpectedChannel);
@@ -737,7 +738,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceE,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils
 					.createState(aExpectedChannel, channelWidth, dummyBssid)
 			)
@@ -748,7 +749,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceE,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(149, 157, 165))
 			)
 		);
@@ -790,7 +791,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils
 					.createState(aExpectedChannel, channelWidth, dummyBssid)
 			)
@@ -801,7 +802,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(36, 157))
 			)
 		);
@@ -818,7 +819,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(48, channelWidth, dummyBssid))
+			RingBuffer.of(TestUtils.createState(48, channelWidth, dummyBssid))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -826,7 +827,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanListWithWidth(
 					null,
 					Arrays.asList(36, 157),
@@ -854,7 +855,7 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(149, channelWidth, dummyBssid)
 			)
 		);
@@ -864,11 +865,11 @@ public class LeastUsedChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(TestUtils.createWifiScanList(channelsC1))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsC1))
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanListWithWidth(
 					null,
 					channelsC2,
@@ -11,7 +11,6 @@ package com.facebook.openwifi.rrm.optimizers.channel;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
-import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
 
@@ -23,6 +22,7 @@ import org.junit.jupiter.api.TestMethodOrder;
 import com.facebook.openwifi.cloudsdk.UCentralConstants;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.facebook.openwifi.rrm.optimizers.TestUtils;
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -49,13 +49,13 @@ public class RandomChannelInitializerTest {
 		DataModel dataModel = new DataModel();
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(6, channelWidth, deviceABssid)
 			)
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(11, channelWidth, deviceBBssid)
 			)
 		);
@@ -106,13 +106,13 @@ public class RandomChannelInitializerTest {
 		DataModel dataModel = new DataModel();
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(6, channelWidth, deviceABssid)
 			)
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(11, channelWidth, deviceBBssid)
 			)
 		);
@@ -24,6 +24,7 @@ import com.facebook.openwifi.cloudsdk.UCentralConstants;
 import com.facebook.openwifi.cloudsdk.UCentralUtils;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.facebook.openwifi.rrm.optimizers.TestUtils;
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -59,11 +60,9 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays
-				.asList(
-					TestUtils
-						.createState(aExpectedChannel, channelWidth, bssidA)
-				)
+			RingBuffer.of(
+				TestUtils.createState(aExpectedChannel, channelWidth, bssidA)
+			)
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceA,
@@ -71,7 +70,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(
 					Arrays.asList(36, 36, 40, 44, 149, 165, 165, 165, 165, 165)
 				)
@@ -91,7 +90,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(40, channelWidth, bssidB))
+			RingBuffer.of(TestUtils.createState(40, channelWidth, bssidB))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -99,7 +98,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(TestUtils.createWifiScanList(channelsB))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsB))
 		);
 		Map<String, Integer> radioMapB = new HashMap<>();
 		radioMapB.put(band, bExpectedChannel);
@@ -129,7 +128,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(TestUtils.createState(149, channelWidth, bssidC))
+			RingBuffer.of(TestUtils.createState(149, channelWidth, bssidC))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceC,
@@ -137,7 +136,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(TestUtils.createWifiScanList(channelsC, bssidsC))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsC, bssidsC))
 		);
 		Map<String, Integer> radioMapC = new HashMap<>();
 		radioMapC.put(band, cExpectedChannel);
@@ -179,11 +178,9 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays
-				.asList(
-					TestUtils
-						.createState(aExpectedChannel, channelWidth, bssidA)
-				)
+			RingBuffer.of(
+				TestUtils.createState(aExpectedChannel, channelWidth, bssidA)
+			)
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceA,
@@ -191,7 +188,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(6, 7, 8, 9, 10, 11))
 			)
 		);
@@ -209,7 +206,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(TestUtils.createState(6, channelWidth, bssidB))
+			RingBuffer.of(TestUtils.createState(6, channelWidth, bssidB))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceB,
@@ -217,7 +214,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceB,
-			Arrays.asList(TestUtils.createWifiScanList(channelsB))
+			RingBuffer.of(TestUtils.createWifiScanList(channelsB))
 		);
 		Map<String, Integer> radioMapB = new HashMap<>();
 		radioMapB.put(band, bExpectedChannel);
@@ -231,7 +228,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(TestUtils.createState(6, channelWidth, bssidC))
+			RingBuffer.of(TestUtils.createState(6, channelWidth, bssidC))
 		);
 		dataModel.latestDeviceCapabilitiesPhy.put(
 			deviceC,
@@ -239,7 +236,7 @@ public class UnmanagedApAwareChannelOptimizerTest {
 		);
 		dataModel.latestWifiScans.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createWifiScanList(Arrays.asList(6, 7, 10, 11))
 			)
 		);
@@ -10,7 +10,6 @@ package com.facebook.openwifi.rrm.optimizers.clientsteering;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -19,6 +18,7 @@ import org.junit.jupiter.api.Test;
 import com.facebook.openwifi.cloudsdk.UCentralConstants;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.facebook.openwifi.rrm.optimizers.TestUtils;
 import com.facebook.openwifi.rrm.optimizers.clientsteering.ClientSteeringOptimizer.CLIENT_STEERING_ACTIONS;
 
@@ -75,7 +75,7 @@ public class SingleAPBandSteeringTest {
 	) {
 		dataModel.latestStates.put(
 			apSerialNumber,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(
 					new int[] { 1, 36 },
 					new int[] { DEFAULT_CHANNEL_WIDTH, DEFAULT_CHANNEL_WIDTH },
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.optimizers.tpc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class GrayCodePermutationsTest {
+	/** Return all permutations visited, checking each step. */
+	private static Set<List<Integer>> visitAll(int choiceCount, int n) {
+		Set<List<Integer>> visited = new HashSet<>();
+		GrayCodePermutations permutations =
+			new GrayCodePermutations(choiceCount, n);
+		int[] previous = permutations.current().clone();
+		assertArrayEquals(new int[n], previous);
+		visited.add(toList(previous));
+		int position;
+		while ((position = permutations.next()) != -1) {
+			int[] current = permutations.current();
+
+			// Exactly one position changed, by one choice index
+			for (int j = 0; j < n; j++) {
+				if (j == position) {
+					assertEquals(1, Math.abs(current[j] - previous[j]));
+				} else {
+					assertEquals(previous[j], current[j]);
+				}
+				assertTrue(current[j] >= 0 && current[j] < choiceCount);
+			}
+			assertTrue(visited.add(toList(current)));
+			previous = current.clone();
+		}
+		assertEquals(-1, permutations.next());
+		return visited;
+	}
+
+	/** Convert an array to a list. */
+	private static List<Integer> toList(int[] array) {
+		return Arrays.stream(array).boxed().collect(Collectors.toList());
+	}
+
+	@Test
+	void test_visitsAllPermutations() throws Exception {
+		assertEquals(1, visitAll(1, 3).size());
+		assertEquals(1, visitAll(3, 0).size());
+		assertEquals(2, visitAll(2, 1).size());
+		assertEquals(8, visitAll(2, 3).size());
+		assertEquals(81, visitAll(3, 4).size());
+		assertEquals(625, visitAll(5, 4).size());
+		assertEquals(29791, visitAll(31, 3).size());
+	}
+
+	@Test
+	void test_invalidInput() throws Exception {
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> new GrayCodePermutations(0, 2)
+		);
+		assertThrows(
+			IllegalArgumentException.class,
+			() -> new GrayCodePermutations(2, -1)
+		);
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.optimizers.tpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.facebook.openwifi.rrm.modules.ModelerUtils;
+import com.facebook.openwifi.rrm.modules.TxPowerCoverageModel;
+
+/**
+ * Compares the cost of evaluating one tx power combination for
+ * {@link LocationBasedOptimalTPC} between the {@link ModelerUtils} methods
+ * (rx power, heat map, and SINR arrays rebuilt per combination) and a
+ * {@link TxPowerCoverageModel} (path loss computed once per AP set), either
+ * fully evaluated or updated for a change in one AP's tx power (as when
+ * enumerating combinations in {@link GrayCodePermutations} order).
+ *
+ * Each benchmark operation evaluates one combination, so the throughput is in
+ * combinations per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LocationBasedOptimalTPCBenchmark {
+	/** The boundary of the space. */
+	@Param({ "100", "500" })
+	public int sampleSpace;
+
+	/** The number of APs. */
+	@Param({ "4", "16" })
+	public int numOfAPs;
+
+	/** The location x of the APs. */
+	private List<Double> apLocX;
+
+	/** The location y of the APs. */
+	private List<Double> apLocY;
+
+	/** The tx powers to evaluate. */
+	private int[] txPower;
+
+	/** The coverage model (built once). */
+	private TxPowerCoverageModel model;
+
+	/** The AP changed by the last incremental update. */
+	private int apIndex = 0;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(0);
+		apLocX = new ArrayList<>();
+		apLocY = new ArrayList<>();
+		txPower = new int[numOfAPs];
+		for (int i = 0; i < numOfAPs; i++) {
+			apLocX.add((double) random.nextInt(sampleSpace));
+			apLocY.add((double) random.nextInt(sampleSpace));
+			txPower[i] = 10 + random.nextInt(21);
+		}
+		model = new TxPowerCoverageModel(sampleSpace, apLocX, apLocY);
+		model.evaluate(txPower);
+	}
+
+	/** Evaluate one combination using the {@link ModelerUtils} methods. */
+	@Benchmark
+	public double modelerUtils() {
+		List<Double> txPowerList = new ArrayList<>(numOfAPs);
+		for (int p : txPower) {
+			txPowerList.add((double) p);
+		}
+		double[][][] rxPower = ModelerUtils.generateRxPower(
+			sampleSpace,
+			numOfAPs,
+			apLocX,
+			apLocY,
+			txPowerList
+		);
+		double[][] heatMap =
+			ModelerUtils.generateHeatMap(sampleSpace, numOfAPs, rxPower);
+		double[][] sinr =
+			ModelerUtils.generateSinr(sampleSpace, numOfAPs, rxPower);
+		return ModelerUtils.calculateTPCMetrics(sampleSpace, heatMap, sinr);
+	}
+
+	/** Evaluate one combination using the precomputed coverage model. */
+	@Benchmark
+	public double coverageModel() {
+		return model.evaluate(txPower);
+	}
+
+	/** Evaluate one combination which differs from the last in one AP. */
+	@Benchmark
+	public double incrementalUpdate() {
+		apIndex = (apIndex + 1) % numOfAPs;
+		txPower[apIndex] = 40 - txPower[apIndex];
+		return model.update(apIndex, txPower[apIndex]);
+	}
+
+	/** Run all benchmarks in this class. */
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+			.include(LocationBasedOptimalTPCBenchmark.class.getSimpleName())
+			.build();
+		new Runner(opt).run();
+	}
+}
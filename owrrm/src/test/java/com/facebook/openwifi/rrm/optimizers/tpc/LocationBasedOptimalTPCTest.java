@@ -12,7 +12,9 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -27,6 +29,7 @@ import com.facebook.openwifi.cloudsdk.UCentralUtils;
 import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.facebook.openwifi.rrm.optimizers.TestUtils;
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -132,7 +135,7 @@ public class LocationBasedOptimalTPCTest {
 			);
 			dataModel.latestStates.put(
 				device,
-				Arrays.asList(
+				RingBuffer.of(
 					TestUtils.createState(
 						DEFAULT_CHANNEL_2G,
 						DEFAULT_CHANNEL_WIDTH,
@@ -209,7 +212,7 @@ public class LocationBasedOptimalTPCTest {
 			);
 			dataModel2.latestStates.put(
 				device,
-				Arrays.asList(
+				RingBuffer.of(
 					TestUtils.createState(
 						DEFAULT_CHANNEL_2G,
 						DEFAULT_CHANNEL_WIDTH,
@@ -240,7 +243,7 @@ public class LocationBasedOptimalTPCTest {
 			);
 		dataModel2.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(
 					DEFAULT_CHANNEL_5G,
 					DEFAULT_CHANNEL_WIDTH,
@@ -334,7 +337,7 @@ public class LocationBasedOptimalTPCTest {
 			);
 			dataModel2.latestStates.put(
 				device,
-				Arrays.asList(
+				RingBuffer.of(
 					TestUtils.createState(
 						DEFAULT_CHANNEL_2G,
 						DEFAULT_CHANNEL_WIDTH,
@@ -403,7 +406,7 @@ public class LocationBasedOptimalTPCTest {
 			);
 			dataModel3.latestStates.put(
 				device,
-				Arrays.asList(
+				RingBuffer.of(
 					TestUtils.createState(
 						DEFAULT_CHANNEL_2G,
 						DEFAULT_CHANNEL_WIDTH,
@@ -428,10 +431,14 @@ public class LocationBasedOptimalTPCTest {
 
 		Map<String, Map<String, Integer>> expected3 = new HashMap<>();
 
+		// (The choices fall back to the default list, which is too large for
+		// an exhaustive search)
 		LocationBasedOptimalTPC optimizer3 = new LocationBasedOptimalTPC(
 			dataModel3,
 			TEST_ZONE,
-			deviceDataManager3
+			deviceDataManager3,
+			LocationBasedOptimalTPC.SEARCH_STRATEGY_EXHAUSTIVE,
+			LocationBasedOptimalTPC.DEFAULT_TIME_BUDGET_MS
 		);
 
 		assertEquals(expected3, optimizer3.computeTxPowerMap());
@@ -462,7 +469,7 @@ public class LocationBasedOptimalTPCTest {
 			);
 			dataModel4.latestStates.put(
 				device,
-				Arrays.asList(
+				RingBuffer.of(
 					TestUtils.createState(
 						DEFAULT_CHANNEL_2G,
 						DEFAULT_CHANNEL_WIDTH,
@@ -490,9 +497,97 @@ public class LocationBasedOptimalTPCTest {
 		LocationBasedOptimalTPC optimizer4 = new LocationBasedOptimalTPC(
 			dataModel4,
 			TEST_ZONE,
-			deviceDataManager4
+			deviceDataManager4,
+			LocationBasedOptimalTPC.SEARCH_STRATEGY_EXHAUSTIVE,
+			LocationBasedOptimalTPC.DEFAULT_TIME_BUDGET_MS
 		);
 
 		assertEquals(expected4, optimizer4.computeTxPowerMap());
 	}
+
+	@Test
+	@Order(5)
+	void testLocationBasedOptimalTPCSearch() throws Exception {
+		final String deviceA = "aaaaaaaaaaaa";
+		final String deviceB = "bbbbbbbbbbbb";
+		final String deviceC = "cccccccccccc";
+		final String dummyBssid = "dd:dd:dd:dd:dd:dd";
+
+		// Too many combinations for an exhaustive search (31^3)
+		DeviceDataManager deviceDataManager = new DeviceDataManager();
+		deviceDataManager.setTopology(
+			TestUtils.createTopology(TEST_ZONE, deviceA, deviceB, deviceC)
+		);
+		final DeviceConfig apCfgA = new DeviceConfig();
+		final DeviceConfig apCfgB = new DeviceConfig();
+		final DeviceConfig apCfgC = new DeviceConfig();
+		apCfgA.boundary = 100;
+		apCfgA.location = new ArrayList<>(Arrays.asList(10, 10));
+		apCfgB.boundary = 100;
+		apCfgB.location = new ArrayList<>(Arrays.asList(30, 10));
+		apCfgC.boundary = 100;
+		apCfgC.location = new ArrayList<>(Arrays.asList(50, 10));
+		deviceDataManager.setDeviceApConfig(deviceA, apCfgA);
+		deviceDataManager.setDeviceApConfig(deviceB, apCfgB);
+		deviceDataManager.setDeviceApConfig(deviceC, apCfgC);
+
+		DataModel dataModel = new DataModel();
+		for (String device : Arrays.asList(deviceA, deviceB, deviceC)) {
+			dataModel.latestDeviceStatusRadios.put(
+				device,
+				TestUtils.createDeviceStatus(
+					UCentralConstants.BAND_2G,
+					DEFAULT_CHANNEL_2G
+				)
+			);
+			dataModel.latestStates.put(
+				device,
+				RingBuffer.of(
+					TestUtils.createState(
+						DEFAULT_CHANNEL_2G,
+						DEFAULT_CHANNEL_WIDTH,
+						DEFAULT_TX_POWER,
+						dummyBssid
+					)
+				)
+			);
+			dataModel.latestDeviceCapabilitiesPhy.put(
+				device,
+				TestUtils.createDeviceCapabilityPhy(UCentralConstants.BAND_2G)
+			);
+		}
+
+		// Every search strategy assigns a tx power to every AP
+		for (
+			String searchStrategy : Arrays.asList(
+				LocationBasedOptimalTPC.SEARCH_STRATEGY_AUTO,
+				TxPowerSearch.BRANCH_AND_BOUND,
+				TxPowerSearch.COORDINATE_DESCENT,
+				TxPowerSearch.SIMULATED_ANNEALING
+			)
+		) {
+			Map<String, String> args = new HashMap<>();
+			args.put("searchStrategy", searchStrategy);
+			args.put("timeBudgetMs", "500");
+			LocationBasedOptimalTPC optimizer =
+				LocationBasedOptimalTPC.makeWithArgs(
+					dataModel,
+					TEST_ZONE,
+					deviceDataManager,
+					args
+				);
+			Map<String, Map<String, Integer>> txPowerMap =
+				optimizer.computeTxPowerMap();
+			assertEquals(
+				new HashSet<>(Arrays.asList(deviceA, deviceB, deviceC)),
+				txPowerMap.keySet()
+			);
+			for (Map<String, Integer> bandToTxPower : txPowerMap.values()) {
+				assertEquals(
+					Collections.singleton(UCentralConstants.BAND_2G),
+					bandToTxPower.keySet()
+				);
+			}
+		}
+	}
 }
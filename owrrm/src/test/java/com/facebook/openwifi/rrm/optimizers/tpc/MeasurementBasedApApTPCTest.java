@@ -12,7 +12,6 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -32,6 +31,7 @@ import com.facebook.openwifi.cloudsdk.WifiScanEntry;
 import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.facebook.openwifi.rrm.optimizers.TestUtils;
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -94,7 +94,7 @@ public class MeasurementBasedApApTPCTest {
 			String bssid = bssids.get(i);
 			model.latestStates.put(
 				device,
-				Arrays.asList(
+				RingBuffer.of(
 					TestUtils.createState(
 						channel,
 						DEFAULT_CHANNEL_WIDTH,
@@ -138,7 +138,7 @@ public class MeasurementBasedApApTPCTest {
 			String bssid = bssids.get(i);
 			model.latestStates.put(
 				device,
-				Arrays.asList(
+				RingBuffer.of(
 					TestUtils.createState(
 						channel2G,
 						DEFAULT_CHANNEL_WIDTH,
@@ -174,7 +174,7 @@ public class MeasurementBasedApApTPCTest {
 		return model;
 	}
 
-	private static Map<String, List<List<WifiScanEntry>>> createLatestWifiScansA(
+	private static Map<String, RingBuffer<List<WifiScanEntry>>> createLatestWifiScansA(
 		int channel
 	) {
 		Map<String, Integer> rssiFromA = Map.ofEntries(
@@ -201,17 +201,17 @@ public class MeasurementBasedApApTPCTest {
 		List<WifiScanEntry> wifiScanC =
 			TestUtils.createWifiScanListWithBssid(rssiFromC, channel);
 
-		Map<String, List<List<WifiScanEntry>>> latestWifiScans =
+		Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans =
 			new HashMap<>();
-		latestWifiScans.put(DEVICE_A, List.of(wifiScanA));
-		latestWifiScans.put(DEVICE_B, List.of(wifiScanB));
-		latestWifiScans.put(DEVICE_C, List.of(wifiScanC));
+		latestWifiScans.put(DEVICE_A, RingBuffer.of(wifiScanA));
+		latestWifiScans.put(DEVICE_B, RingBuffer.of(wifiScanB));
+		latestWifiScans.put(DEVICE_C, RingBuffer.of(wifiScanC));
 
 		return latestWifiScans;
 	}
 
 	/** Sets up the tx powers as in the example in Po-Han's design doc */
-	private static Map<String, List<List<WifiScanEntry>>> createLatestWifiScansB(
+	private static Map<String, RingBuffer<List<WifiScanEntry>>> createLatestWifiScansB(
 		int channel
 	) {
 		Map<String, Integer> rssiFromA = Map.ofEntries(
@@ -235,11 +235,11 @@ public class MeasurementBasedApApTPCTest {
 		List<WifiScanEntry> wifiScanC =
 			TestUtils.createWifiScanListWithBssid(rssiFromC, channel);
 
-		Map<String, List<List<WifiScanEntry>>> latestWifiScans =
+		Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans =
 			new HashMap<>();
-		latestWifiScans.put(DEVICE_A, List.of(wifiScanA));
-		latestWifiScans.put(DEVICE_B, List.of(wifiScanB));
-		latestWifiScans.put(DEVICE_C, List.of(wifiScanC));
+		latestWifiScans.put(DEVICE_A, RingBuffer.of(wifiScanA));
+		latestWifiScans.put(DEVICE_B, RingBuffer.of(wifiScanB));
+		latestWifiScans.put(DEVICE_C, RingBuffer.of(wifiScanC));
 
 		return latestWifiScans;
 	}
@@ -255,7 +255,7 @@ public class MeasurementBasedApApTPCTest {
 	 * @param channel channel number
 	 * @return latest wifiscan map
 	 */
-	private static Map<String, List<List<WifiScanEntry>>> createLatestWifiScansC(
+	private static Map<String, RingBuffer<List<WifiScanEntry>>> createLatestWifiScansC(
 		int channel
 	) {
 		Map<String, Integer> rssiFromA = Map.ofEntries(
@@ -279,11 +279,11 @@ public class MeasurementBasedApApTPCTest {
 		List<WifiScanEntry> wifiScanC =
 			TestUtils.createWifiScanListWithBssid(rssiFromC, channel);
 
-		Map<String, List<List<WifiScanEntry>>> latestWifiScans =
+		Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans =
 			new HashMap<>();
-		latestWifiScans.put(DEVICE_A, List.of(wifiScanA));
-		latestWifiScans.put(DEVICE_B, List.of(wifiScanB));
-		latestWifiScans.put(DEVICE_C, List.of(wifiScanC));
+		latestWifiScans.put(DEVICE_A, RingBuffer.of(wifiScanA));
+		latestWifiScans.put(DEVICE_B, RingBuffer.of(wifiScanB));
+		latestWifiScans.put(DEVICE_C, RingBuffer.of(wifiScanC));
 
 		return latestWifiScans;
 	}
@@ -295,7 +295,7 @@ public class MeasurementBasedApApTPCTest {
 	 * @param channel channel number
 	 * @return latest wifiscan map for a {@code DataModel}
 	 */
-	private static Map<String, List<List<WifiScanEntry>>> createLatestWifiScansWithMissingEntries(
+	private static Map<String, RingBuffer<List<WifiScanEntry>>> createLatestWifiScansWithMissingEntries(
 		int channel
 	) {
 		Map<String, Integer> rssiFromA = Map.ofEntries(Map.entry(BSSID_B, -38));
@@ -310,10 +310,10 @@ public class MeasurementBasedApApTPCTest {
 			channel
 		);
 
-		Map<String, List<List<WifiScanEntry>>> latestWifiScans =
+		Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans =
 			new HashMap<>();
-		latestWifiScans.put(DEVICE_A, List.of(wifiScanA));
-		latestWifiScans.put(DEVICE_B, List.of(wifiScanB));
+		latestWifiScans.put(DEVICE_A, RingBuffer.of(wifiScanA));
+		latestWifiScans.put(DEVICE_B, RingBuffer.of(wifiScanB));
 		return latestWifiScans;
 	}
 
@@ -334,7 +334,7 @@ public class MeasurementBasedApApTPCTest {
 	void testBuildRssiMap() throws Exception {
 		// This example includes three APs, and one AP that is unmanaged
 		Set<String> bssidSet = Set.of(BSSID_A, BSSID_B, BSSID_C);
-		Map<String, List<List<WifiScanEntry>>> latestWifiScans =
+		Map<String, RingBuffer<List<WifiScanEntry>>> latestWifiScans =
 			createLatestWifiScansA(36);
 
 		Map<String, List<Integer>> rssiMap = MeasurementBasedApApTPC
@@ -526,10 +526,10 @@ public class MeasurementBasedApApTPCTest {
 		final int channel5G =
 			UCentralUtils.getLowerChannelLimit(UCentralConstants.BAND_5G);
 		// add 5G wifiscan results to dataModel.latestWifiScans
-		Map<String, List<List<WifiScanEntry>>> toMerge =
+		Map<String, RingBuffer<List<WifiScanEntry>>> toMerge =
 			createLatestWifiScansWithMissingEntries(channel5G);
 		for (
-			Map.Entry<String, List<List<WifiScanEntry>>> mapEntry : toMerge
+			Map.Entry<String, RingBuffer<List<WifiScanEntry>>> mapEntry : toMerge
 				.entrySet()
 		) {
 			String serialNumber = mapEntry.getKey();
@@ -537,7 +537,7 @@ public class MeasurementBasedApApTPCTest {
 			dataModel.latestWifiScans
 				.computeIfAbsent(
 					serialNumber,
-					k -> new ArrayList<List<WifiScanEntry>>()
+					k -> new RingBuffer<>(1)
 				)
 				.get(0)
 				.addAll(entriesToMerge);
@@ -587,7 +587,7 @@ public class MeasurementBasedApApTPCTest {
 		// now test when device C does not have a 5G radio
 		dataModel.latestStates.put(
 			DEVICE_C,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(
 					1,
 					DEFAULT_CHANNEL_WIDTH,
@@ -26,6 +26,7 @@ import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.DeviceLayeredConfig;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.facebook.openwifi.rrm.optimizers.TestUtils;
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -57,7 +58,7 @@ public class MeasurementBasedApClientTPCTest {
 		DataModel dataModel = new DataModel();
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(36, 20, 20, null, new int[] {})
 			)
 		);
@@ -67,7 +68,7 @@ public class MeasurementBasedApClientTPCTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(36, 20, 20, "", new int[] { -65 })
 			)
 		);
@@ -77,7 +78,7 @@ public class MeasurementBasedApClientTPCTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(
 					36,
 					40,
@@ -93,7 +94,7 @@ public class MeasurementBasedApClientTPCTest {
 		);
 		dataModel.latestStates.put(
 			deviceD,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(36, 20, 22, null, new int[] { -80 })
 			)
 		);
@@ -103,7 +104,7 @@ public class MeasurementBasedApClientTPCTest {
 		);
 		dataModel.latestStates.put(
 			deviceE,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(36, 20, 23, null, new int[] { -45 })
 			)
 		);
@@ -174,7 +175,7 @@ public class MeasurementBasedApClientTPCTest {
 		// 2G only
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(1, 20, 20, null, new int[] {})
 			)
 		);
@@ -185,7 +186,7 @@ public class MeasurementBasedApClientTPCTest {
 		// 5G only
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(36, 20, 20, null, new int[] {})
 			)
 		);
@@ -196,7 +197,7 @@ public class MeasurementBasedApClientTPCTest {
 		// 2G and 5G
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(
 					1,
 					20,
@@ -220,7 +221,7 @@ public class MeasurementBasedApClientTPCTest {
 		// No valid bands in 2G or 5G
 		dataModel.latestStates.put(
 			deviceD,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(25, 20, 20, null, new int[] {})
 			)
 		);
@@ -280,7 +281,7 @@ public class MeasurementBasedApClientTPCTest {
 		DataModel dataModel = new DataModel();
 		dataModel.latestStates.put(
 			deviceA,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(36, 20, 20, null, new int[] {})
 			)
 		);
@@ -290,7 +291,7 @@ public class MeasurementBasedApClientTPCTest {
 		);
 		dataModel.latestStates.put(
 			deviceB,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(36, 20, 20, "", new int[] { -65 })
 			)
 		);
@@ -300,7 +301,7 @@ public class MeasurementBasedApClientTPCTest {
 		);
 		dataModel.latestStates.put(
 			deviceC,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(
 					36,
 					40,
@@ -26,6 +26,7 @@ import com.facebook.openwifi.rrm.DeviceConfig;
 import com.facebook.openwifi.rrm.DeviceDataManager;
 import com.facebook.openwifi.rrm.DeviceLayeredConfig;
 import com.facebook.openwifi.rrm.modules.Modeler.DataModel;
+import com.facebook.openwifi.rrm.modules.RingBuffer;
 import com.facebook.openwifi.rrm.optimizers.TestUtils;
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -65,7 +66,7 @@ public class RandomTxPowerInitializerTest {
 		DataModel dataModel = new DataModel();
 		dataModel.latestStates.put(
 			DEVICE_A,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(
 					36,
 					DEFAULT_CHANNEL_WIDTH,
@@ -88,7 +89,7 @@ public class RandomTxPowerInitializerTest {
 		);
 		dataModel.latestStates.put(
 			DEVICE_B,
-			Arrays.asList(
+			RingBuffer.of(
 				TestUtils.createState(
 					2,
 					DEFAULT_CHANNEL_WIDTH,
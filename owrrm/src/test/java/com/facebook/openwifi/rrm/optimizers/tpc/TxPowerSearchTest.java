@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.optimizers.tpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.rrm.modules.TxPowerCoverageModel;
+
+public class TxPowerSearchTest {
+	/** Tx power choices for small instances. */
+	private static final int[] SMALL_CHOICES = new int[] { 0, 10, 20, 30 };
+
+	/** Return random AP locations within the given boundary. */
+	private static List<List<Double>> randomLocations(
+		Random random,
+		int sampleSpace,
+		int numOfAPs
+	) {
+		List<Double> apLocX = new ArrayList<>();
+		List<Double> apLocY = new ArrayList<>();
+		for (int i = 0; i < numOfAPs; i++) {
+			apLocX.add((double) random.nextInt(sampleSpace));
+			apLocY.add((double) random.nextInt(sampleSpace));
+		}
+		return Arrays.asList(apLocX, apLocY);
+	}
+
+	@Test
+	void test_create() throws Exception {
+		assertTrue(
+			TxPowerSearch.create(TxPowerSearch.BRANCH_AND_BOUND, 1)
+				instanceof TxPowerSearch.BranchAndBound
+		);
+		assertTrue(
+			TxPowerSearch.create(TxPowerSearch.COORDINATE_DESCENT, 1)
+				instanceof TxPowerSearch.CoordinateDescent
+		);
+		assertTrue(
+			TxPowerSearch.create(TxPowerSearch.SIMULATED_ANNEALING, 1)
+				instanceof TxPowerSearch.SimulatedAnnealing
+		);
+		assertNull(TxPowerSearch.create("unknown", 1));
+	}
+
+	@Test
+	void test_smallInstances() throws Exception {
+		Random random = new Random(0);
+		for (int i = 0; i < 5; i++) {
+			final int sampleSpace = 40;
+			final int numOfAPs = 3;
+			List<List<Double>> locations =
+				randomLocations(random, sampleSpace, numOfAPs);
+			TxPowerCoverageModel model = new TxPowerCoverageModel(
+				sampleSpace,
+				locations.get(0),
+				locations.get(1)
+			);
+			List<Integer> exhaustive =
+				LocationBasedOptimalTPC.runLocationBasedOptimalTPC(
+					sampleSpace,
+					numOfAPs,
+					locations.get(0),
+					locations.get(1),
+					Arrays.asList(0, 10, 20, 30)
+				);
+			double optimalMetric = model.evaluate(
+				exhaustive.stream().mapToInt(p -> p).toArray()
+			);
+			double uniformMetric = model.evaluate(
+				TxPowerSearch.uniformTxPower(model, SMALL_CHOICES)
+			);
+
+			// Branch and bound finishes, and finds an optimal solution
+			TxPowerSearch.Result result =
+				new TxPowerSearch.BranchAndBound(60000)
+					.search(model, SMALL_CHOICES);
+			assertTrue(result.complete);
+			assertEquals(optimalMetric, result.metric);
+			assertEquals(optimalMetric, model.evaluate(result.txPower));
+
+			// The other strategies improve on the uniform tx power
+			List<TxPowerSearch> searches = Arrays.asList(
+				new TxPowerSearch.CoordinateDescent(60000),
+				new TxPowerSearch.SimulatedAnnealing(60000, 1000, new Random(i))
+			);
+			for (TxPowerSearch search : searches) {
+				result = search.search(model, SMALL_CHOICES);
+				assertTrue(result.complete);
+				assertTrue(result.metric >= optimalMetric);
+				assertTrue(result.metric <= uniformMetric);
+				assertEquals(result.metric, model.evaluate(result.txPower));
+			}
+		}
+	}
+
+	@Test
+	void test_timeBudget() throws Exception {
+		final int sampleSpace = 60;
+		final int numOfAPs = 30;
+		final long timeBudgetMs = 100;
+		List<List<Double>> locations =
+			randomLocations(new Random(0), sampleSpace, numOfAPs);
+		TxPowerCoverageModel model = new TxPowerCoverageModel(
+			sampleSpace,
+			locations.get(0),
+			locations.get(1)
+		);
+		int[] choices = TPC.DEFAULT_TX_POWER_CHOICES.stream()
+			.mapToInt(p -> p)
+			.toArray();
+		double uniformMetric =
+			model.evaluate(TxPowerSearch.uniformTxPower(model, choices));
+
+		// Every strategy stops after its time budget with its best solution
+		for (
+			String name : Arrays.asList(
+				TxPowerSearch.BRANCH_AND_BOUND,
+				TxPowerSearch.COORDINATE_DESCENT,
+				TxPowerSearch.SIMULATED_ANNEALING
+			)
+		) {
+			long startMs = System.currentTimeMillis();
+			TxPowerSearch.Result result = TxPowerSearch
+				.create(name, timeBudgetMs)
+				.search(model, choices);
+			long elapsedMs = System.currentTimeMillis() - startMs;
+			assertTrue(elapsedMs < timeBudgetMs + 1000, name);
+			assertFalse(result.complete, name);
+			assertEquals(numOfAPs, result.txPower.length);
+			for (int txPower : result.txPower) {
+				assertTrue(txPower >= TPC.MIN_TX_POWER);
+				assertTrue(txPower <= TPC.MAX_TX_POWER);
+			}
+			assertTrue(result.metric <= uniformMetric, name);
+			assertEquals(result.metric, model.evaluate(result.txPower));
+		}
+	}
+}
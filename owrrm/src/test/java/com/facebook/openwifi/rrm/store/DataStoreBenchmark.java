@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.store;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.rrm.mysql.DatabaseManager;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.facebook.openwifi.rrm.mysql.WifiScanStorageBenchmark;
+
+/**
+ * Compares the write and read throughput of the {@link DataStore} backends.
+ *
+ * Each write operation inserts one state record (55 metrics) or one
+ * wifi scan (30 entries), and each read operation fetches the latest state of
+ * all devices. The MySQL backend is only run if the "rrm.benchmark.mysql"
+ * system property is set to a database host:port (with the user and password
+ * in "rrm.benchmark.mysql.user" and "rrm.benchmark.mysql.password"); it uses
+ * a separate "rrm_benchmark" database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DataStoreBenchmark {
+	/** The number of devices. */
+	private static final int DEVICE_COUNT = 100;
+
+	/** The system properties to pass to benchmark runs. */
+	private static final String[] PROPERTIES = new String[] {
+		"rrm.benchmark.mysql",
+		"rrm.benchmark.mysql.user",
+		"rrm.benchmark.mysql.password"
+	};
+
+	/** The backend ("segment" or "mysql"). */
+	@Param({ "segment" })
+	public String backend;
+
+	/** The data store. */
+	private DataStore store;
+
+	/** The segment store directory (if any). */
+	private Path dir;
+
+	/** The wifi scan results. */
+	private List<WifiScanEntry> scan;
+
+	/** The operation counter, used for serial numbers and timestamps. */
+	private long counter = 0;
+
+	/** Return the serial number of the given device. */
+	private static String serialOf(int device) {
+		return String.format("%012x", 0xaa0000000000L + device);
+	}
+
+	/** Return a state record with typical radio, interface, client metrics. */
+	private static StateRecordBatch generateState(String serial, long ts) {
+		StateRecordBatch batch = new StateRecordBatch();
+		for (int radio = 0; radio < 2; radio++) {
+			String prefix = "radio." + radio + ".";
+			batch.add(ts, prefix + "channel", 36 - 35 * radio, serial);
+			batch.add(ts, prefix + "channel_width", 80, serial);
+			batch.add(ts, prefix + "noise", -100, serial);
+			batch.add(ts, prefix + "tx_power", 20, serial);
+			batch.add(ts, prefix + "active_ms", 1000000, serial);
+			batch.add(ts, prefix + "busy_ms", 100000, serial);
+		}
+		batch.add(ts, "interface.up0v0.rx_bytes", 123456789, serial);
+		batch.add(ts, "interface.up0v0.tx_bytes", 987654321, serial);
+		for (int client = 0; client < 8; client++) {
+			String prefix = String.format(
+				"interface.up0v0.bssid.bb:00:00:00:00:01.client." +
+					"aa:00:00:00:00:%02x.",
+				client
+			);
+			batch.add(ts, prefix + "rssi", -60 - client, serial);
+			batch.add(ts, prefix + "rx_bytes", 1000 * client, serial);
+			batch.add(ts, prefix + "tx_bytes", 2000 * client, serial);
+			batch.add(ts, prefix + "tx_rate.bitrate", 433300, serial);
+			batch.add(ts, prefix + "tx_rate.mcs", 9, serial);
+		}
+		batch.add(ts, "unit.uptime", ts - 1649300000L, serial);
+		return batch;
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		if (backend.equals("mysql")) {
+			DatabaseManager dbManager = new DatabaseManager(
+				System.getProperty("rrm.benchmark.mysql"),
+				System.getProperty("rrm.benchmark.mysql.user", "root"),
+				System.getProperty("rrm.benchmark.mysql.password", ""),
+				"rrm_benchmark",
+				0,
+				false,
+				false
+			);
+			dbManager.init();
+			store = dbManager;
+		} else {
+			dir = Files.createTempDirectory("rrm-benchmark");
+			SegmentFileStore segmentStore =
+				new SegmentFileStore(dir, 3600000, 64 * 1024 * 1024, 0);
+			segmentStore.init();
+			store = segmentStore;
+		}
+
+		for (int i = 0; i < DEVICE_COUNT; i++) {
+			store.addStateRecords(generateState(serialOf(i), 1649306810L));
+		}
+		scan = WifiScanStorageBenchmark.generateScan(30);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		store.close();
+		if (dir != null) {
+			for (File f : dir.toFile().listFiles()) {
+				f.delete();
+			}
+			dir.toFile().delete();
+		}
+	}
+
+	/** Insert one state record. */
+	@Benchmark
+	public void addStateRecords() throws Exception {
+		long i = counter++;
+		store.addStateRecords(
+			generateState(
+				serialOf((int) (i % DEVICE_COUNT)),
+				1649306810L + i / DEVICE_COUNT
+			)
+		);
+	}
+
+	/** Insert one wifi scan. */
+	@Benchmark
+	public void addWifiScan() throws Exception {
+		long i = counter++;
+		store.addWifiScan(
+			serialOf((int) (i % DEVICE_COUNT)),
+			1649306810L + i / DEVICE_COUNT,
+			scan
+		);
+	}
+
+	/** Fetch the latest state of all devices. */
+	@Benchmark
+	public int getLatestState() throws Exception {
+		return store.getLatestState().size();
+	}
+
+	/** Run all benchmarks in this class (with MySQL, if configured). */
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder opt = new OptionsBuilder();
+		opt.include(DataStoreBenchmark.class.getSimpleName());
+		if (System.getProperty("rrm.benchmark.mysql") != null) {
+			opt.param("backend", "segment", "mysql");
+			for (String key : PROPERTIES) {
+				String value = System.getProperty(key);
+				if (value != null) {
+					opt.jvmArgsAppend("-D" + key + "=" + value);
+				}
+			}
+		}
+		Options options = opt.build();
+		new Runner(options).run();
+	}
+}
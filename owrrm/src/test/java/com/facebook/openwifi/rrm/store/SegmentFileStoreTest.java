@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.openwifi.rrm.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.facebook.openwifi.cloudsdk.WifiScanEntry;
+import com.facebook.openwifi.cloudsdk.models.ap.State;
+import com.facebook.openwifi.rrm.mysql.DatabaseManager;
+import com.facebook.openwifi.rrm.mysql.MetricBucket;
+import com.facebook.openwifi.rrm.mysql.StateRecordBatch;
+import com.facebook.openwifi.rrm.mysql.StateSnapshot;
+import com.google.gson.Gson;
+
+public class SegmentFileStoreTest {
+	private static final String SERIAL1 = "aaaaaaaaaaaa";
+	private static final String SERIAL2 = "bbbbbbbbbbbb";
+
+	/** Create an empty temporary data directory. */
+	private static Path createDir() throws Exception {
+		return Files.createTempDirectory("rrm-segments");
+	}
+
+	/** Delete a data directory. */
+	private static void deleteDir(Path dir) {
+		for (File f : dir.toFile().listFiles()) {
+			f.delete();
+		}
+		dir.toFile().delete();
+	}
+
+	/** Open a store (without retention). */
+	private static SegmentFileStore open(Path dir, int segmentSizeBytes)
+		throws Exception {
+		SegmentFileStore store =
+			new SegmentFileStore(dir, 3600000, segmentSizeBytes, 0);
+		store.init();
+		return store;
+	}
+
+	/** Return a state record batch for one device. */
+	private static StateRecordBatch stateOf(String serial, long ts, int noise) {
+		StateRecordBatch batch = new StateRecordBatch();
+		batch.add(ts, "radio.0.channel", 36, serial);
+		batch.add(ts, "radio.0.noise", noise, serial);
+		batch.add(ts, "unit.uptime", ts - 1649300000L, serial);
+		batch.add(
+			ts,
+			"interface.up0v0.bssid.bb:00:00:00:00:01.client." +
+				"aa:00:00:00:00:01.rssi",
+			-60,
+			serial
+		);
+		return batch;
+	}
+
+	/** Return a wifi scan with the given number of entries. */
+	private static List<WifiScanEntry> scanOf(int count, long ts) {
+		List<WifiScanEntry> entries = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			WifiScanEntry entry = new WifiScanEntry();
+			entry.bssid = String.format("bb:00:00:00:00:%02x", i);
+			entry.ssid = "ssid-" + i;
+			entry.signal = -50 - i;
+			entry.channel = 36;
+			entry.unixTimeMs = ts * 1000;
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	/** Return the expected State for a batch (of one snapshot). */
+	private static String expectedState(StateRecordBatch batch) {
+		return new Gson().toJson(
+			DatabaseManager.toState(StateSnapshot.fromBatch(batch).get(0))
+		);
+	}
+
+	@Test
+	void test_latestStateAndScans() throws Exception {
+		final long ts = 1649306810L;
+		Path dir = createDir();
+		try {
+			SegmentFileStore store = open(dir, 1 << 20);
+			StateRecordBatch batch = stateOf(SERIAL1, ts + 60, -100);
+			batch.add(ts + 60, "interface.up0v0.foo", 1, SERIAL1);
+			store.addStateRecords(batch);
+			store.addStateRecords(stateOf(SERIAL1, ts, -105));
+			store.addStateRecords(stateOf(SERIAL2, ts, -95));
+
+			// The latest state is by timestamp, not insertion order
+			Gson gson = new Gson();
+			Map<String, State> states = store.getLatestState();
+			assertEquals(2, states.size());
+			assertEquals(
+				expectedState(batch),
+				gson.toJson(states.get(SERIAL1))
+			);
+			assertEquals(
+				expectedState(stateOf(SERIAL2, ts, -95)),
+				gson.toJson(states.get(SERIAL2))
+			);
+			states = store.getLatestState(Arrays.asList(SERIAL2, "unknown"));
+			assertEquals(1, states.size());
+			assertTrue(states.containsKey(SERIAL2));
+
+			// Wifi scans are returned oldest first, limited to the newest N
+			store.addWifiScan(SERIAL1, ts + 60, scanOf(3, ts + 60));
+			store.addWifiScan(SERIAL1, ts, scanOf(1, ts));
+			store.addWifiScan(SERIAL1, ts + 120, scanOf(2, ts + 120));
+			store.addWifiScan(SERIAL1, ts + 180, scanOf(0, ts + 180));
+			store.addWifiScan(SERIAL2, ts, scanOf(4, ts));
+			Map<String, List<List<WifiScanEntry>>> scans =
+				store.getLatestWifiScans(Arrays.asList(SERIAL1, SERIAL2), 2, 0);
+			assertEquals(2, scans.size());
+			List<List<WifiScanEntry>> scans1 = scans.get(SERIAL1);
+			assertEquals(1, scans1.size()); // empty scan is omitted
+			assertEquals(2, scans1.get(0).size());
+			assertEquals((ts + 120) * 1000, scans1.get(0).get(0).unixTimeMs);
+			scans = store.getLatestWifiScans(
+				Collections.singletonList(SERIAL1),
+				10,
+				(ts + 60) * 1000
+			);
+			assertEquals(2, scans.get(SERIAL1).size());
+			assertEquals(3, scans.get(SERIAL1).get(0).size());
+			Map<Long, List<WifiScanEntry>> scanMap =
+				store.getLatestWifiScans(SERIAL1, 10);
+			assertEquals(
+				Arrays.asList(ts * 1000, (ts + 60) * 1000, (ts + 120) * 1000),
+				new ArrayList<>(scanMap.keySet())
+			);
+			assertEquals(scanOf(4, ts), scans(store, SERIAL2).get(0));
+
+			// Nothing is returned once closed
+			store.close();
+			assertNull(store.getLatestState());
+		} finally {
+			deleteDir(dir);
+		}
+	}
+
+	/** Return all wifi scans of one device. */
+	private static List<List<WifiScanEntry>> scans(
+		SegmentFileStore store,
+		String serial
+	) throws Exception {
+		return store
+			.getLatestWifiScans(Collections.singletonList(serial), 100, 0)
+			.get(serial);
+	}
+
+	@Test
+	void test_recovery() throws Exception {
+		final long ts = 1649306810L;
+		Path dir = createDir();
+		try {
+			SegmentFileStore store = open(dir, 1 << 20);
+			store.addStateRecords(stateOf(SERIAL1, ts, -100));
+			store.addWifiScan(SERIAL1, ts, scanOf(3, ts));
+			store.close();
+
+			// Simulate a torn write after the last record
+			Path path = dir.toFile().listFiles()[0].toPath();
+			int end;
+			try (
+				FileChannel channel =
+					FileChannel.open(path, StandardOpenOption.READ)
+			) {
+				ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+				channel.read(buf, 0);
+				end = 16;
+				while (buf.getInt(end) > 0) {
+					end += 8 + buf.getInt(end);
+				}
+			}
+			try (
+				FileChannel channel =
+					FileChannel.open(path, StandardOpenOption.WRITE)
+			) {
+				ByteBuffer torn = ByteBuffer.allocate(12);
+				torn.putInt(100).putInt(12345).putInt(-1).flip();
+				channel.write(torn, end);
+			}
+
+			// All records are read back, and appends continue after them
+			store = open(dir, 1 << 20);
+			assertEquals(
+				expectedState(stateOf(SERIAL1, ts, -100)),
+				new Gson().toJson(store.getLatestState().get(SERIAL1))
+			);
+			assertEquals(Arrays.asList(scanOf(3, ts)), scans(store, SERIAL1));
+			store.addStateRecords(stateOf(SERIAL1, ts + 60, -90));
+			store.close();
+			store = open(dir, 1 << 20);
+			assertEquals(
+				expectedState(stateOf(SERIAL1, ts + 60, -90)),
+				new Gson().toJson(store.getLatestState().get(SERIAL1))
+			);
+			assertEquals(1, store.getSegmentCount());
+			store.close();
+		} finally {
+			deleteDir(dir);
+		}
+	}
+
+	@Test
+	void test_rollingAndRetention() throws Exception {
+		final long now = System.currentTimeMillis();
+		final long ts = now / 1000;
+		Path dir = createDir();
+		try {
+			// Small segments are rolled often (and oversized records get
+			// their own segment)
+			SegmentFileStore store = new SegmentFileStore(dir, 3600000, 512, 7);
+			store.init();
+			for (int i = 0; i < 20; i++) {
+				store.addStateRecords(stateOf(SERIAL1, ts + i, -100 + i));
+			}
+			store.addWifiScan(SERIAL1, ts, scanOf(100, ts));
+			int segmentCount = store.getSegmentCount();
+			assertTrue(segmentCount > 2);
+			assertEquals(
+				expectedState(stateOf(SERIAL1, ts + 19, -81)),
+				new Gson().toJson(store.getLatestState().get(SERIAL1))
+			);
+			assertEquals(Arrays.asList(scanOf(100, ts)), scans(store, SERIAL1));
+
+			// Only expired segments are deleted
+			store.enforceRetention(now);
+			assertEquals(segmentCount, store.getSegmentCount());
+			store.enforceRetention(now + TimeUnit.DAYS.toMillis(8));
+			assertEquals(1, store.getSegmentCount());
+			assertEquals(1, dir.toFile().listFiles().length);
+			assertFalse(store.getLatestState().containsKey(SERIAL1));
+			store.close();
+		} finally {
+			deleteDir(dir);
+		}
+	}
+
+	@Test
+	void test_metricSeries() throws Exception {
+		final long ts = 1649306800L;
+		Path dir = createDir();
+		try {
+			SegmentFileStore store = open(dir, 1 << 20);
+			for (int i = 0; i < 6; i++) {
+				store.addStateRecords(stateOf(SERIAL1, ts + i * 30, -100 + i));
+			}
+			store.addStateRecords(stateOf(SERIAL2, ts, -50));
+
+			// 60s buckets of "radio.0.noise" over the first 150s
+			List<String> rows = new ArrayList<>();
+			store.getMetricSeries(
+				SERIAL1,
+				"radio.0.n",
+				ts * 1000,
+				(ts + 150) * 1000,
+				60000,
+				(MetricBucket b) -> rows.add(
+					String.format(
+						"%s %d %d %d %d %.1f %d",
+						b.metric,
+						b.timestamp / 1000 - ts,
+						b.count,
+						b.min,
+						b.max,
+						b.avg,
+						b.last
+					)
+				)
+			);
+			assertEquals(
+				Arrays.asList(
+					"radio.0.noise 0 2 -100 -99 -99.5 -99",
+					"radio.0.noise 60 2 -98 -97 -97.5 -97",
+					"radio.0.noise 120 1 -96 -96 -96.0 -96"
+				),
+				rows
+			);
+			store.close();
+		} finally {
+			deleteDir(dir);
+		}
+	}
+}